@@ -0,0 +1,88 @@
+package project;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+
+/**
+ * Writes warehouse layouts and simulations of a chosen size into temporary directories, so the
+ * benchmarks can scale the floor and the number of orders.
+ */
+final class BenchmarkFixtures {
+
+  /** Not instantiated. */
+  private BenchmarkFixtures() {}
+
+  /** Stop the warehouse logger from printing to the console while benchmarking. */
+  static void quiet() {
+    RunWarehouse.logger.setUseParentHandlers(false);
+  }
+
+  /**
+   * Return a generator for a floor of full racks, four colours of each model and orders arriving
+   * overnight.
+   *
+   * @param faces the number of pick faces, a multiple of 8 up to 26000.
+   * @param orders the number of orders.
+   * @return the generator.
+   */
+  static WorkloadGenerator generator(int faces, int orders) {
+    WorkloadGenerator generator = new WorkloadGenerator();
+    generator.setLayout((faces + 999) / 1000, 10, 10, 10);
+    generator.setCatalogue(faces / 8, 4);
+    generator.setOrders(orders, WorkloadGenerator.Arrival.OVERNIGHT);
+    return generator;
+  }
+
+  /**
+   * Create a directory holding a generated warehouse. The pick face with index <code>i</code>
+   * holds SKU <code>i + 1</code>.
+   *
+   * @param faces the number of pick faces, a multiple of 8 up to 26000.
+   * @return the directory.
+   * @throws IOException when a file cannot be written.
+   */
+  static Path warehouse(int faces) throws IOException {
+    Path directory = Files.createTempDirectory("warehouse");
+    generator(faces, 0).generate(directory, "sim_empty.txt");
+    return directory;
+  }
+
+  /**
+   * Write a generated simulation without errors, and its layout, into a directory.
+   *
+   * @param directory the directory to write in.
+   * @param faces the number of pick faces, a multiple of 8 up to 26000.
+   * @param orders the number of orders.
+   * @return the name of the simulation file.
+   * @throws IOException when a file cannot be written.
+   */
+  static String simulation(Path directory, int faces, int orders) throws IOException {
+    String name = "sim_" + faces + "_" + orders + ".txt";
+    generator(faces, orders).generate(directory, name);
+    return name;
+  }
+
+  /**
+   * Create a directory holding the bundled layout and simulations from the project root.
+   *
+   * @param simulations the names of the bundled simulation files to copy.
+   * @return the directory.
+   * @throws IOException when a file cannot be copied.
+   */
+  static Path bundled(String... simulations) throws IOException {
+    Path root = Paths.get(System.getProperty("user.dir"));
+    Path directory = Files.createTempDirectory("warehouse");
+    ArrayList<String> files = new ArrayList<>();
+    Collections.addAll(files, "traversal_table.csv", "translation.csv", "initial.csv");
+    Collections.addAll(files, simulations);
+    for (String file : files) {
+      Files.copy(root.resolve(file), directory.resolve(file), StandardCopyOption.REPLACE_EXISTING);
+    }
+    return directory;
+  }
+}
@@ -0,0 +1,183 @@
+package project;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Handing out pick requests to many pickers at once: a million take and release cycles shared
+ * between the pickers, one in 32 requests thrown back to be picked again. Compares the single
+ * queue <code>OrderManager</code> used, behind one lock, with a <code>PickDispatcher</code> of
+ * one deque per picker.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class DispatchBenchmark {
+
+  /** Number of take and release cycles in each run. */
+  private static final int CYCLES = 1 << 20;
+
+  /** Number of pickers taking pick requests at once, each on its own thread. */
+  @Param({"1", "4", "16", "64"})
+  int pickers;
+
+  /** How pick requests are handed out. */
+  @Param({"queue", "stealing"})
+  String dispatch;
+
+  /** The pick requests being handed out. */
+  private Dispatch active;
+
+  /** A thread for each picker. */
+  private ExecutorService pool;
+
+  /** The ways pick requests can be handed out. */
+  interface Dispatch {
+
+    /**
+     * Release a pick request.
+     *
+     * @param pickReq the pick request.
+     */
+    void release(PickRequest pickReq);
+
+    /**
+     * Return a pick request to be picked again.
+     *
+     * @param pickReq the pick request.
+     */
+    void repick(PickRequest pickReq);
+
+    /**
+     * Take the next pick request.
+     *
+     * @param picker the number of the picker.
+     * @return the pick request, or <code>null</code>.
+     */
+    PickRequest take(int picker);
+  }
+
+  /** The single queue of <code>OrderManager</code>, behind one lock. */
+  static final class SingleQueue implements Dispatch {
+
+    /** The queue. */
+    private final LinkedList<PickRequest> queue = new LinkedList<>();
+
+    @Override
+    public synchronized void release(PickRequest pickReq) {
+      queue.addLast(pickReq);
+    }
+
+    @Override
+    public synchronized void repick(PickRequest pickReq) {
+      queue.addFirst(pickReq);
+    }
+
+    @Override
+    public synchronized PickRequest take(int picker) {
+      return queue.pollFirst();
+    }
+  }
+
+  /** A <code>PickDispatcher</code> with a deque for each picker. */
+  static final class Stealing implements Dispatch {
+
+    /** The dispatcher. */
+    private final PickDispatcher dispatcher;
+
+    /**
+     * Creates a dispatcher for a number of pickers.
+     *
+     * @param pickers the number of pickers.
+     */
+    Stealing(int pickers) {
+      dispatcher = new PickDispatcher(pickers);
+    }
+
+    @Override
+    public void release(PickRequest pickReq) {
+      dispatcher.release(pickReq);
+    }
+
+    @Override
+    public void repick(PickRequest pickReq) {
+      dispatcher.repick(pickReq);
+    }
+
+    @Override
+    public PickRequest take(int picker) {
+      return dispatcher.take(picker);
+    }
+  }
+
+  /** Release eight pick requests for each picker and start the picker threads. */
+  @Setup
+  public void setUp() {
+    active = dispatch.equals("queue") ? new SingleQueue() : new Stealing(pickers);
+    for (int id = 0; id < pickers * 8; id++) {
+      active.release(new PickRequest(new LinkedList<>(), id));
+    }
+    pool = Executors.newFixedThreadPool(pickers);
+  }
+
+  /** Stop the picker threads. */
+  @TearDown
+  public void tearDown() {
+    pool.shutdownNow();
+  }
+
+  /**
+   * Every picker takes pick requests and releases them again until the cycles are shared out.
+   *
+   * @return the number of pick requests taken.
+   * @throws Exception when a picker fails.
+   */
+  @Benchmark
+  public long dispatch() throws Exception {
+    List<Callable<Long>> work = new ArrayList<>();
+    for (int picker = 0; picker < pickers; picker++) {
+      int number = picker;
+      work.add(() -> {
+        long taken = 0;
+        for (int cycle = number; cycle < CYCLES; cycle += pickers) {
+          PickRequest pickReq = active.take(number);
+          if (pickReq != null) {
+            taken++;
+            if ((cycle & 31) == 0) {
+              active.repick(pickReq);
+            } else {
+              active.release(pickReq);
+            }
+          }
+        }
+        return taken;
+      });
+    }
+    long taken = 0;
+    for (Future<Long> result : pool.invokeAll(work)) {
+      taken += result.get();
+    }
+    return taken;
+  }
+}
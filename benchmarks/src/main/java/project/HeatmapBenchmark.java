@@ -0,0 +1,74 @@
+package project;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Counting picks on one <code>PickHeatmap</code> shared by pickers on one thread and on four, all
+ * picking from the same few aisles.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HeatmapBenchmark {
+
+  /** The heatmap the pickers share. */
+  private PickHeatmap heatmap;
+
+  /** Where each picker is along the route. */
+  @State(Scope.Thread)
+  public static class Cursor {
+
+    /** Index of the next location. */
+    int next;
+  }
+
+  /** Lay out 1000 locations and pick from the first 64. */
+  @Setup
+  public void setUp() {
+    WorkloadGenerator layout = BenchmarkFixtures.generator(1000, 0);
+    ArrayList<String> places = new ArrayList<>();
+    for (int face = 0; face < 1000; face++) {
+      places.add(String.join(",", layout.location(face)));
+    }
+    heatmap = new PickHeatmap(places);
+  }
+
+  /**
+   * One picker counts a pick.
+   *
+   * @param cursor where the picker is.
+   */
+  @Benchmark
+  @Threads(1)
+  public void recordAlone(Cursor cursor) {
+    cursor.next = (cursor.next + 1) & 63;
+    heatmap.record(cursor.next, PickHeatmap.Activity.PICK);
+  }
+
+  /**
+   * Four pickers count picks at once.
+   *
+   * @param cursor where the picker is.
+   */
+  @Benchmark
+  @Threads(4)
+  public void recordShared(Cursor cursor) {
+    cursor.next = (cursor.next + 1) & 63;
+    heatmap.record(cursor.next, PickHeatmap.Activity.PICK);
+  }
+}
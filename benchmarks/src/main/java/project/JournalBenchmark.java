@@ -0,0 +1,148 @@
+package project;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The cost of the write-ahead journal: a generated simulation run with and without journaling,
+ * recovery from its journal, and the cost of journaling one operation with group commit.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class JournalBenchmark {
+
+  /** A generated simulation on a 10000 face floor, and the journal of one run of it. */
+  @State(Scope.Benchmark)
+  public static class Shift {
+
+    /** Number of orders in the simulation, about nine operations each. */
+    @Param({"40000", "400000"})
+    int orderCount;
+
+    /** The directory holding the layout, simulation and journal. */
+    Path directory;
+
+    /** The name of the simulation file. */
+    String simulation;
+
+    /** The journal written by a run of the simulation. */
+    Path journal;
+
+    /**
+     * Write the layout and simulation, and journal one run of it.
+     *
+     * @throws IOException when a file cannot be written.
+     */
+    @Setup
+    public void setUp() throws IOException {
+      BenchmarkFixtures.quiet();
+      directory = BenchmarkFixtures.warehouse(10000);
+      simulation = BenchmarkFixtures.simulation(directory, 10000, orderCount);
+      journal = directory.resolve("journal.bin");
+      RunWarehouseHelper helper = new RunWarehouseHelper();
+      helper.setJournal(journal);
+      helper.run(directory, simulation);
+    }
+  }
+
+  /** A journal receiving operations, committed in groups. */
+  @State(Scope.Thread)
+  public static class Open {
+
+    /** The journal file. */
+    Path file;
+
+    /** The journal under test. */
+    WarehouseJournal journal;
+
+    /**
+     * Create the journal.
+     *
+     * @throws IOException when the file cannot be written.
+     */
+    @Setup
+    public void setUp() throws IOException {
+      file = Files.createTempFile("journal", ".bin");
+      journal = new WarehouseJournal(file);
+    }
+
+    /**
+     * Close and delete the journal.
+     *
+     * @throws IOException when the file cannot be closed or deleted.
+     */
+    @TearDown
+    public void tearDown() throws IOException {
+      journal.close();
+      Files.delete(file);
+    }
+  }
+
+  /**
+   * Run the simulation without a journal.
+   *
+   * @param shift the simulation.
+   * @throws IOException when a file cannot be read or written.
+   */
+  @Benchmark
+  public void run(Shift shift) throws IOException {
+    new RunWarehouseHelper().run(shift.directory, shift.simulation);
+  }
+
+  /**
+   * Run the simulation, journaling every operation to a new journal.
+   *
+   * @param shift the simulation.
+   * @throws IOException when a file cannot be read or written.
+   */
+  @Benchmark
+  public void runJournaled(Shift shift) throws IOException {
+    RunWarehouseHelper helper = new RunWarehouseHelper();
+    helper.setJournal(shift.directory.resolve("rerun.bin"));
+    helper.run(shift.directory, shift.simulation);
+  }
+
+  /**
+   * Rebuild the warehouse at the end of the simulation from its journal.
+   *
+   * @param shift the simulation and its journal.
+   * @return the number of operations replayed.
+   * @throws IOException when a file cannot be read.
+   */
+  @Benchmark
+  public long recover(Shift shift) throws IOException {
+    return new RunWarehouseHelper().recover(shift.directory, shift.journal);
+  }
+
+  /**
+   * Journal one pick, including its share of the group commit.
+   *
+   * @param open the journal.
+   * @throws IOException when the journal cannot be written.
+   */
+  @Benchmark
+  @BenchmarkMode(Mode.AverageTime)
+  @OutputTimeUnit(TimeUnit.NANOSECONDS)
+  @Warmup(iterations = 3, time = 1)
+  @Measurement(iterations = 5, time = 1)
+  public void append(Open open) throws IOException {
+    open.journal.work("Alice", "1017");
+  }
+}
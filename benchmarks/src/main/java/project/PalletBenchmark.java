@@ -0,0 +1,100 @@
+package project;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** SKU searches on a full picking <code>Pallet</code>. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PalletBenchmark {
+
+  /** SKUs loaded on the pallet, built at run time so they are not interned constants. */
+  private String[] skus;
+
+  /** A full picking pallet. */
+  private Pallet pallet;
+
+  /** A SKU that is not on the pallet. */
+  private String missing;
+
+  /** Fill the pallet. */
+  @Setup
+  public void setUp() {
+    skus = new String[8];
+    for (int i = 0; i < skus.length; i++) {
+      skus[i] = String.valueOf(i + 1);
+    }
+    pallet = fill();
+    missing = String.valueOf(99);
+  }
+
+  /**
+   * Return a new picking pallet holding every SKU.
+   *
+   * @return the pallet.
+   */
+  private Pallet fill() {
+    Pallet full = new Pallet(skus.length);
+    for (String sku : skus) {
+      full.add(sku);
+    }
+    return full;
+  }
+
+  /**
+   * Look for the last SKU on the pallet.
+   *
+   * @return <code>true</code>.
+   */
+  @Benchmark
+  public boolean containsLast() {
+    return pallet.contains(skus[skus.length - 1]);
+  }
+
+  /**
+   * Look for a SKU that is not on the pallet.
+   *
+   * @return <code>false</code>.
+   */
+  @Benchmark
+  public boolean containsMissing() {
+    return pallet.contains(missing);
+  }
+
+  /**
+   * Fill a pallet, the baseline for <code>fillAndRemove</code>.
+   *
+   * @return the pallet.
+   */
+  @Benchmark
+  public Pallet fillOnly() {
+    return fill();
+  }
+
+  /**
+   * Fill a pallet then remove every SKU from it, as a <code>Sequencer</code> does.
+   *
+   * @return the emptied pallet.
+   */
+  @Benchmark
+  public Pallet fillAndRemove() {
+    Pallet full = fill();
+    for (String sku : skus) {
+      full.remove(sku);
+    }
+    return full;
+  }
+}
@@ -0,0 +1,130 @@
+package project;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Reading layout and simulation files. Besides operations per second, each benchmark reports
+ * <code>megabytes</code>, its throughput in MB/s.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ReadAndWriteBenchmark {
+
+  /** The file to read: the traversal table of a 10000 face floor, or a simulation. */
+  @Param({"traversal_table.csv", "sim_10000_40000.txt"})
+  String file;
+
+  /** The file to read. */
+  private Path location;
+
+  /** The separator of the file. */
+  private char separator;
+
+  /** Size of the file in megabytes. */
+  private double size;
+
+  /** Megabytes read, reported as a rate. */
+  @AuxCounters(AuxCounters.Type.OPERATIONS)
+  @State(Scope.Thread)
+  public static class Bytes {
+
+    /** Megabytes read during the iteration. */
+    public double megabytes;
+
+    /** Start each iteration from zero. */
+    @Setup(Level.Iteration)
+    public void clear() {
+      megabytes = 0;
+    }
+  }
+
+  /**
+   * Write the floor and a simulation of 40000 orders on it.
+   *
+   * @throws IOException when a file cannot be written.
+   */
+  @Setup
+  public void setUp() throws IOException {
+    Path directory = BenchmarkFixtures.warehouse(10000);
+    BenchmarkFixtures.simulation(directory, 10000, 40000);
+    location = directory.resolve(file);
+    separator = file.endsWith(".csv") ? ',' : ' ';
+    size = Files.size(location) / 1e6;
+  }
+
+  /**
+   * Read every line into a list of fields with a <code>BufferedReader</code> and
+   * <code>String.split</code>, as <code>ReadAndWrite.readFile</code> used to.
+   *
+   * @param bytes the megabytes read.
+   * @return the lines read.
+   * @throws IOException when the file cannot be read.
+   */
+  @Benchmark
+  public ArrayList<String[]> bufferedSplit(Bytes bytes) throws IOException {
+    ArrayList<String[]> lines = new ArrayList<>();
+    try (BufferedReader reader = Files.newBufferedReader(location)) {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        lines.add(line.split(String.valueOf(separator)));
+      }
+    }
+    bytes.megabytes += size;
+    return lines;
+  }
+
+  /**
+   * Read every line into a list of fields with <code>ReadAndWrite.readFile</code>.
+   *
+   * @param bytes the megabytes read.
+   * @return the lines read.
+   * @throws IOException when the file cannot be read.
+   */
+  @Benchmark
+  public ArrayList<String[]> readFile(Bytes bytes) throws IOException {
+    ArrayList<String[]> lines = ReadAndWrite.readFile(location, String.valueOf(separator), false);
+    bytes.megabytes += size;
+    return lines;
+  }
+
+  /**
+   * Scan every row with a <code>MappedCsvReader</code> without creating any <code>String</code>,
+   * parsing the last field of traversal table rows in place.
+   *
+   * @param bytes the megabytes read.
+   * @return the sum of the fields counted and parsed.
+   * @throws IOException when the file cannot be read.
+   */
+  @Benchmark
+  public long mappedRows(Bytes bytes) throws IOException {
+    long[] total = new long[1];
+    boolean parse = separator == ',';
+    new MappedCsvReader(separator).read(location, false, row -> {
+      total[0] += parse ? row.getInt(row.getFieldCount() - 1) : row.getFieldCount();
+    });
+    bytes.megabytes += size;
+    return total[0];
+  }
+}
@@ -0,0 +1,93 @@
+package project;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Writing a stock report like final.csv, with one row for every pick face. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ReportBenchmark {
+
+  /** Number of rows in the report. */
+  @Param({"10000", "1000000"})
+  int rows;
+
+  /** The file written. */
+  private Path report;
+
+  /**
+   * Choose where the report is written.
+   *
+   * @throws IOException when the directory cannot be created.
+   */
+  @Setup
+  public void setUp() throws IOException {
+    report = Files.createTempDirectory("report").resolve("final.csv");
+  }
+
+  /**
+   * Collect every row as a <code>String[]</code> and write them through one
+   * <code>StringBuilder</code>, as the reports used to.
+   *
+   * @return the length of the report.
+   * @throws IOException when the report cannot be written.
+   */
+  @Benchmark
+  public int stringBuilder() throws IOException {
+    ArrayList<String[]> lines = new ArrayList<>();
+    for (int row = 0; row < rows; row++) {
+      int rack = row % 1000;
+      lines.add(new String[] {String.valueOf((char) ('A' + row % 26)),
+          String.valueOf(rack % 10), String.valueOf(rack / 10 % 10), "0",
+          Integer.toString(row % 30)});
+    }
+    StringBuilder text = new StringBuilder();
+    for (String[] line : lines) {
+      for (String field : line) {
+        text.append(field + ",");
+      }
+      text.append("\n");
+    }
+    try (FileWriter writer = new FileWriter(report.toString())) {
+      writer.write(text.toString());
+    }
+    return text.length();
+  }
+
+  /**
+   * Write every row as it is produced through a <code>StreamingCsvWriter</code>.
+   *
+   * @return the number of rows written.
+   * @throws IOException when the report cannot be written.
+   */
+  @Benchmark
+  public long streaming() throws IOException {
+    try (StreamingCsvWriter writer = new StreamingCsvWriter(report)) {
+      for (int row = 0; row < rows; row++) {
+        int rack = row % 1000;
+        writer.field((char) ('A' + row % 26)).field((char) ('0' + rack % 10))
+            .field((char) ('0' + rack / 10 % 10)).field('0').field(row % 30).endRow();
+      }
+      return writer.getRows();
+    }
+  }
+}
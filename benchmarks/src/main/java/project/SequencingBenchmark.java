@@ -0,0 +1,121 @@
+package project;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Sequencing a marshaling area of 65536 picked <code>PickRequest</code> into the load zone, with
+ * sequencers each on their own thread taking pallets and merging them in ID order.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class SequencingBenchmark {
+
+  /** Number of <code>PickRequest</code> waiting to be sequenced in each run. */
+  private static final int REQUESTS = 1 << 16;
+
+  /** Number of sequencers working at once. */
+  @Param({"1", "2", "4", "8"})
+  int sequencers;
+
+  /** The warehouse the sequencers work in. */
+  private Controller controller;
+
+  /** The sequencers. */
+  private List<Sequencer> crew = new ArrayList<>();
+
+  /** A thread for each sequencer. */
+  private ExecutorService pool;
+
+  /**
+   * Create the warehouse and its sequencers.
+   *
+   * @throws IOException when the layout cannot be written.
+   */
+  @Setup
+  public void setUp() throws IOException {
+    BenchmarkFixtures.quiet();
+    controller = new Controller(BenchmarkFixtures.warehouse(8));
+    for (int number = 0; number < sequencers; number++) {
+      crew.add(new Sequencer("Sequencer S" + number, controller));
+    }
+    pool = Executors.newFixedThreadPool(sequencers);
+  }
+
+  /** Empty the load zone and marshal picked <code>PickRequest</code> for the next run. */
+  @Setup(Level.Invocation)
+  public void marshal() {
+    StagingManager staging = controller.getStaging();
+    for (int id = 0; id < REQUESTS; id++) {
+      staging.loadRemove(id);
+    }
+    for (int id = 0; id < REQUESTS; id++) {
+      LinkedList<Order> orders = new LinkedList<>();
+      for (int order = 0; order < 4; order++) {
+        orders.add(new Order(new ArrayList<>(Arrays.asList("1", "2")), id * 4 + order));
+      }
+      PickRequest request = new PickRequest(orders, id);
+      for (int item = 0; item < 8; item++) {
+        request.unsortedPal.add((item % 2 == 0) ? "1" : "2");
+      }
+      staging.marshalAdd(request);
+    }
+  }
+
+  /** Stop the sequencer threads. */
+  @TearDown
+  public void tearDown() {
+    pool.shutdownNow();
+  }
+
+  /**
+   * Every sequencer sequences pallets until the marshaling area is empty.
+   *
+   * @return the number of <code>PickRequest</code> in the load zone.
+   * @throws Exception when a sequencer fails.
+   */
+  @Benchmark
+  public int sequence() throws Exception {
+    List<Callable<Void>> work = new ArrayList<>();
+    for (Sequencer sequencer : crew) {
+      work.add(() -> {
+        for (sequencer.receive(); sequencer.pickReq != null; sequencer.receive()) {
+          for (int item = 0; item < 8; item++) {
+            sequencer.work((item % 2 == 0) ? "1" : "2");
+          }
+          sequencer.push();
+        }
+        return null;
+      });
+    }
+    for (Future<Void> done : pool.invokeAll(work)) {
+      done.get();
+    }
+    return controller.getStaging().getLoadZoneSize();
+  }
+}
@@ -0,0 +1,105 @@
+package project;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * End-to-end runs of <code>RunWarehouseHelper.run</code>: loading the layout, replaying a
+ * simulation and writing the reports.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SimulationBenchmark {
+
+  /** A simulation bundled with the project, on the bundled layout. */
+  @State(Scope.Thread)
+  public static class Bundled {
+
+    /** The simulation file to replay. */
+    @Param({"sim_mini.txt", "sim_no_error.txt", "sim_rescan.txt", "sim_order_error.txt",
+        "sim_empty_stock.txt"})
+    String simulation;
+
+    /** The directory holding the layout and simulation. */
+    Path directory;
+
+    /**
+     * Copy the bundled files.
+     *
+     * @throws IOException when a file cannot be copied.
+     */
+    @Setup
+    public void setUp() throws IOException {
+      BenchmarkFixtures.quiet();
+      directory = BenchmarkFixtures.bundled(simulation);
+    }
+  }
+
+  /** A generated simulation scaled by floor size and order count. */
+  @State(Scope.Thread)
+  public static class Generated {
+
+    /** Number of pick faces on the floor. */
+    @Param({"48", "1000", "10000"})
+    int floorSize;
+
+    /** Number of orders in the simulation. */
+    @Param({"80", "4000"})
+    int orderCount;
+
+    /** The directory holding the layout and simulation. */
+    Path directory;
+
+    /** The name of the simulation file. */
+    String simulation;
+
+    /**
+     * Write the layout and simulation.
+     *
+     * @throws IOException when a file cannot be written.
+     */
+    @Setup
+    public void setUp() throws IOException {
+      BenchmarkFixtures.quiet();
+      directory = BenchmarkFixtures.warehouse(floorSize);
+      simulation = BenchmarkFixtures.simulation(directory, floorSize, orderCount);
+    }
+  }
+
+  /**
+   * Replay a bundled simulation.
+   *
+   * @param state the simulation to replay.
+   * @throws IOException when a file cannot be read or written.
+   */
+  @Benchmark
+  public void bundled(Bundled state) throws IOException {
+    new RunWarehouseHelper().run(state.directory, state.simulation);
+  }
+
+  /**
+   * Replay a generated simulation.
+   *
+   * @param state the simulation to replay.
+   * @throws IOException when a file cannot be read or written.
+   */
+  @Benchmark
+  public void generated(Generated state) throws IOException {
+    new RunWarehouseHelper().run(state.directory, state.simulation);
+  }
+}
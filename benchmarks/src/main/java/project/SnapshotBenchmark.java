@@ -0,0 +1,97 @@
+package project;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Restarting a warehouse at the end of a generated day on a 10000 face floor: from a snapshot, or
+ * by parsing the start of day files and replaying the journal. Also the cost of taking the
+ * snapshot.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class SnapshotBenchmark {
+
+  /** Number of orders in the day. */
+  @Param({"40000", "400000"})
+  int orderCount;
+
+  /** The directory holding the layout, simulation, journal and snapshot. */
+  private Path directory;
+
+  /** The journal of the day. */
+  private Path journal;
+
+  /** The snapshot of the end of the day. */
+  private Path snapshot;
+
+  /** The warehouse at the end of the day. */
+  private Controller controller;
+
+  /**
+   * Run the day with a journal and take a snapshot of its end.
+   *
+   * @throws IOException when a file cannot be written.
+   */
+  @Setup
+  public void setUp() throws IOException {
+    BenchmarkFixtures.quiet();
+    directory = BenchmarkFixtures.warehouse(10000);
+    String simulation = BenchmarkFixtures.simulation(directory, 10000, orderCount);
+    journal = directory.resolve("journal.bin");
+    snapshot = directory.resolve("warehouse.snap");
+    RunWarehouseHelper helper = new RunWarehouseHelper();
+    helper.setJournal(journal);
+    helper.run(directory, simulation);
+    controller = helper.getController();
+    WarehouseSnapshot.write(snapshot, controller, 0);
+  }
+
+  /**
+   * Write a snapshot of the warehouse.
+   *
+   * @throws IOException when the snapshot cannot be written.
+   */
+  @Benchmark
+  public void write() throws IOException {
+    WarehouseSnapshot.write(directory.resolve("copy.snap"), controller, 0);
+  }
+
+  /**
+   * Restore the warehouse from its snapshot.
+   *
+   * @return the restored warehouse.
+   * @throws IOException when the snapshot cannot be read.
+   */
+  @Benchmark
+  public Controller restore() throws IOException {
+    return WarehouseSnapshot.read(snapshot).getController();
+  }
+
+  /**
+   * Rebuild the warehouse from the start of day files and the journal of the day.
+   *
+   * @return the number of operations replayed.
+   * @throws IOException when a file cannot be read.
+   */
+  @Benchmark
+  public long rebuild() throws IOException {
+    return new RunWarehouseHelper().recover(directory, journal);
+  }
+}
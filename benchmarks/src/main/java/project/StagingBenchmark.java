@@ -0,0 +1,61 @@
+package project;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Taking the next <code>PickRequest</code> to load out of a crowded load zone. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StagingBenchmark {
+
+  /** Number of <code>PickRequest</code> waiting in the load zone. */
+  @Param({"1", "20", "200"})
+  int loadZoneSize;
+
+  /** The staging areas under test. */
+  private StagingManager staging;
+
+  /** Fill the load zone with sequenced <code>PickRequest</code>. */
+  @Setup
+  public void setUp() {
+    BenchmarkFixtures.quiet();
+    staging = new StagingManager();
+    for (int id = 0; id < loadZoneSize; id++) {
+      LinkedList<Order> orders = new LinkedList<>();
+      for (int order = 0; order < 4; order++) {
+        orders.add(new Order(new ArrayList<>(Arrays.asList("1", "2")), id * 4 + order));
+      }
+      staging.loadAdd(new PickRequest(orders, id));
+    }
+  }
+
+  /**
+   * Remove the most recently added <code>PickRequest</code>, the worst case for a scan, and put it
+   * back.
+   *
+   * @return the removed <code>PickRequest</code>.
+   */
+  @Benchmark
+  public PickRequest loadRemoveLast() {
+    PickRequest next = staging.loadRemove(loadZoneSize - 1);
+    staging.loadAdd(next);
+    return next;
+  }
+}
@@ -0,0 +1,99 @@
+package project;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Inventory lookups and updates on <code>WarehouseManager</code> as the floor grows. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WarehouseBenchmark {
+
+  /** Number of pick faces on the floor. */
+  @Param({"48", "1000", "10000"})
+  int floorSize;
+
+  /** The warehouse under test. */
+  private WarehouseManager warehouse;
+
+  /** SKUs to look up, in random order. */
+  private String[] skus;
+
+  /** Locations to pick from, in random order. */
+  private String[] locations;
+
+  /** Index of the next SKU or location to use. */
+  private int next;
+
+  /**
+   * Build the floor and the random lookups.
+   *
+   * @throws IOException when the floor cannot be written or read.
+   */
+  @Setup
+  public void setUp() throws IOException {
+    BenchmarkFixtures.quiet();
+    Path directory = BenchmarkFixtures.warehouse(floorSize);
+    warehouse = new WarehouseManager(directory);
+    WorkloadGenerator layout = BenchmarkFixtures.generator(floorSize, 0);
+    Random random = new Random(42);
+    skus = new String[1024];
+    locations = new String[1024];
+    for (int i = 0; i < skus.length; i++) {
+      int face = random.nextInt(floorSize);
+      skus[i] = String.valueOf(face + 1);
+      locations[i] = String.join("", layout.location(face));
+    }
+  }
+
+  /**
+   * Find the location of a SKU.
+   *
+   * @return the location.
+   */
+  @Benchmark
+  public String getSkuLocation() {
+    next = (next + 1) & 1023;
+    return warehouse.getSkuLocation(skus[next]);
+  }
+
+  /** Pick an item and put it back, leaving the stock unchanged. */
+  @Benchmark
+  public void pickPutBack() {
+    next = (next + 1) & 1023;
+    warehouse.pick(locations[next]);
+    warehouse.putBack(locations[next]);
+  }
+
+  /**
+   * Route the eight SKUs of a <code>PickRequest</code>.
+   *
+   * @return the picking order.
+   */
+  @Benchmark
+  public ArrayList<String> optimize() {
+    ArrayList<String> toPick = new ArrayList<>(8);
+    for (int i = 0; i < 8; i++) {
+      next = (next + 1) & 1023;
+      toPick.add(skus[next]);
+    }
+    return WarehousePicking.optimize(toPick, warehouse);
+  }
+}
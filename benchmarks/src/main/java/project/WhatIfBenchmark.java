@@ -0,0 +1,108 @@
+package project;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Comparing four continuations of a 200000 order morning on a 10000 face floor: by forking a
+ * capture of the warehouse, on one thread or on all of them, or by re-running the whole day with
+ * each continuation appended.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class WhatIfBenchmark {
+
+  /** The directory holding the layout, the morning and the continuations. */
+  private Path directory;
+
+  /** The name of the simulation of the morning. */
+  private String morning;
+
+  /** The names of the continuations. */
+  private List<String> continuations = new ArrayList<>();
+
+  /** The names of the morning followed by each continuation. */
+  private List<String> days = new ArrayList<>();
+
+  /** The warehouse at the end of the morning. */
+  private WhatIfSimulation simulation;
+
+  /**
+   * Write the morning and four continuations of different sizes, and capture the morning.
+   *
+   * @throws IOException when a file cannot be written.
+   */
+  @Setup
+  public void setUp() throws IOException {
+    BenchmarkFixtures.quiet();
+    directory = BenchmarkFixtures.warehouse(10000);
+    morning = BenchmarkFixtures.simulation(directory, 10000, 200000);
+    List<String> morningLines = Files.readAllLines(directory.resolve(morning));
+    for (int orders = 10000; orders <= 40000; orders += 10000) {
+      String continuation = BenchmarkFixtures.simulation(directory, 10000, orders);
+      List<String> day = new ArrayList<>(morningLines);
+      List<String> afternoon = Files.readAllLines(directory.resolve(continuation));
+      day.addAll(afternoon.subList(1, afternoon.size()));
+      Files.write(directory.resolve("day_" + orders + ".txt"), day);
+      continuations.add(continuation);
+      days.add("day_" + orders + ".txt");
+    }
+    RunWarehouseHelper helper = new RunWarehouseHelper();
+    helper.run(directory, morning);
+    simulation = helper.capture();
+  }
+
+  /**
+   * Run every continuation on a fork, on as many threads as there are processors.
+   *
+   * @return the outcomes.
+   * @throws IOException when a continuation cannot be read.
+   */
+  @Benchmark
+  public List<WhatIfSimulation.Outcome> forkParallel() throws IOException {
+    simulation.setParallelism(Runtime.getRuntime().availableProcessors());
+    return simulation.run(directory, continuations);
+  }
+
+  /**
+   * Run every continuation on a fork, one after another.
+   *
+   * @return the outcomes.
+   * @throws IOException when a continuation cannot be read.
+   */
+  @Benchmark
+  public List<WhatIfSimulation.Outcome> forkSerial() throws IOException {
+    simulation.setParallelism(1);
+    return simulation.run(directory, continuations);
+  }
+
+  /**
+   * Re-run the whole day once for each continuation.
+   *
+   * @throws IOException when a file cannot be read or written.
+   */
+  @Benchmark
+  public void rerun() throws IOException {
+    for (String day : days) {
+      new RunWarehouseHelper().run(directory, day);
+    }
+  }
+}
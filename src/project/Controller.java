@@ -2,7 +2,11 @@ package project;
 
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
 import java.nio.file.Path;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
 
 /**
  * Controls the flow of information in the warehouse by coordinating databases with manipulators.
@@ -25,6 +29,9 @@ public class Controller {
   /** All Loaded and in the process of being loaded <code>Truck</code>. */
   private TruckManager trucks;
 
+  /** Whether picking and marshaling are scheduled by loading deadline rather than FIFO. */
+  private boolean deadlineScheduling = false;
+
 
 
   /**
@@ -44,6 +51,98 @@ public class Controller {
 
   }
 
+  /**
+   * Creates a warehouse from managers that already hold its state, such as those restored from a
+   * <code>WarehouseSnapshot</code>.
+   * 
+   * @param warehouse the <code>WarehouseManager</code>.
+   * @param orders the <code>OrderManager</code>.
+   * @param employees the <code>EmployeeManager</code>, whose workers work for this warehouse.
+   * @param staging the <code>StagingManager</code>.
+   * @param trucks the <code>TruckManager</code>.
+   */
+  protected Controller(WarehouseManager warehouse, OrderManager orders,
+      EmployeeManager employees, StagingManager staging, TruckManager trucks) {
+    this.warehouse = warehouse;
+    this.orders = orders;
+    this.employees = employees;
+    this.staging = staging;
+    this.trucks = trucks;
+  }
+
+  /**
+   * Publish the managers of this warehouse as JMX MXBeans under the <code>project</code> domain,
+   * replacing those of any warehouse registered before, so they can be watched with jconsole.
+   * 
+   * @throws JMException if the platform MBean server refuses the beans.
+   */
+  protected void registerMBeans() throws JMException {
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    Object[] beans = {warehouse, orders, employees, staging, trucks};
+    for (Object bean : beans) {
+      ObjectName name = new ObjectName("project:type=" + bean.getClass().getSimpleName());
+      if (server.isRegistered(name)) {
+        server.unregisterMBean(name);
+      }
+      server.registerMBean(bean, name);
+    }
+  }
+
+  /**
+   * Schedule picking and marshaling toward the docks: <code>Picker</code> and
+   * <code>Sequencer</code> take the <code>PickRequest</code> a <code>Loader</code> will need
+   * soonest, and a <code>Loader</code> kept waiting has the request it waits for picked next. A
+   * simulation only replays the same way on a warehouse scheduled as it was run.
+   * 
+   * @param deadlineScheduling <code>true</code> to schedule by deadline, <code>false</code> for
+   *        FIFO.
+   */
+  protected void setDeadlineScheduling(boolean deadlineScheduling) {
+    this.deadlineScheduling = deadlineScheduling;
+    orders.setDeadlines(deadlineScheduling ? trucks : null);
+    staging.setDeadlines(deadlineScheduling ? trucks : null);
+  }
+
+  /** Returns whether picking and marshaling are scheduled by loading deadline. */
+  protected boolean isDeadlineScheduling() {
+    return deadlineScheduling;
+  }
+
+  /**
+   * Reserve the stock of each <code>PickRequest</code> as it is released, holding back those
+   * without enough until replenishment lands, so no <code>Picker</code> reaches an empty
+   * <code>PickFace</code>. Set before orders arrive. A simulation only replays the same way on a
+   * warehouse reserving stock as it was run.
+   * 
+   * @param stockReservation <code>true</code> to reserve stock.
+   */
+  protected void setStockReservation(boolean stockReservation) {
+    warehouse.setReserving(stockReservation);
+    orders.setReservations(warehouse.getReservations());
+  }
+
+  /** Returns whether stock is reserved as <code>PickRequest</code> are released. */
+  protected boolean isStockReservation() {
+    return warehouse.getReservations() != null;
+  }
+
+  /**
+   * Hold a window of orders and group them into <code>PickRequest</code> whose SKUs lie close
+   * together along the route, instead of four at a time as they arrive. Requests still take IDs
+   * in turn, so every dock loads in order. Set before orders arrive. A simulation only replays the
+   * same way on a warehouse clustering orders as it was run.
+   * 
+   * @param window the number of orders held, a multiple of four; four groups them FIFO.
+   */
+  protected void setOrderClustering(int window) {
+    orders.setClustering(window, warehouse);
+  }
+
+  /** Returns the number of orders held before they are grouped, four when grouped FIFO. */
+  protected int getOrderClustering() {
+    return orders.getClusteringWindow();
+  }
+
   /** Provides access to the <code>WarehouseManager</code>. */
   protected WarehouseManager getWarehouse() {
     return warehouse;
@@ -1,17 +1,20 @@
 package project;
 
-import java.util.ArrayList;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * Keeps track of all <code>Worker</code> currently working in the warehouse.
  *
  */
-public class EmployeeManager {
+public class EmployeeManager implements EmployeeManagerMXBean {
 
   /**
-   * Contains a list of all <code>Worker</code> who are currently working in the warehouse.
+   * Contains a list of all <code>Worker</code> who are currently working in the warehouse. Copied
+   * on write, so monitoring can read it while employees are added.
    */
-  private ArrayList<Worker> warehouseEmployees = new ArrayList<>();
+  private CopyOnWriteArrayList<Worker> warehouseEmployees = new CopyOnWriteArrayList<>();
 
   /**
    * Creates a database containing all currently working <code>Worker</code>.
@@ -29,8 +32,21 @@ public class EmployeeManager {
    *        <code>Worker</code> work.
    */
   protected void addEmployee(String name, String type, Controller controller) {
+    addEmployee(name, type, controller, true);
+  }
+
+  /**
+   * Creates and adds a Worker, registering a <code>Picker</code> with the
+   * <code>OrderManager</code> unless it is being restored with the number it had.
+   * 
+   * @param name The name of the Worker.
+   * @param type The specific type the employee is supposed to be.
+   * @param controller The warehouse <code>Controller</code>.
+   * @param register <code>false</code> if the Worker is restored from a snapshot.
+   */
+  private void addEmployee(String name, String type, Controller controller, boolean register) {
     if (type.equals("Picker")) {
-      warehouseEmployees.add(new Picker(name, controller));
+      warehouseEmployees.add(new Picker(name, controller, register));
       RunWarehouse.logger.info(type + " " + name + " starts work.");
     } else if (type.equals("Sequencer")) {
       warehouseEmployees.add(new Sequencer(name, controller));
@@ -68,4 +84,56 @@ public class EmployeeManager {
   protected int getEmployeeCount() {
     return warehouseEmployees.size();
   }
+
+  /**
+   * Write every <code>Worker</code>, with their role and current task, to a snapshot.
+   * 
+   * @param out the snapshot being written.
+   */
+  protected void writeSnapshot(WarehouseSnapshot out) {
+    out.putInt(warehouseEmployees.size());
+    for (Worker employee : warehouseEmployees) {
+      out.putString(employee.getClass().getSimpleName());
+      out.putString(employee.getName());
+      employee.writeSnapshot(out);
+    }
+  }
+
+  /**
+   * Add the <code>Worker</code> of a snapshot written by <code>writeSnapshot</code>.
+   * 
+   * @param in the snapshot being read, whose <code>Controller</code> the workers work for.
+   */
+  protected void readSnapshot(WarehouseSnapshot in) {
+    for (int count = in.getInt(); count > 0; count--) {
+      String type = in.getString();
+      addEmployee(in.getString(), type, in.getController(), false);
+      warehouseEmployees.get(warehouseEmployees.size() - 1).readSnapshot(in);
+    }
+  }
+
+  @Override
+  public Map<String, Integer> getBusyWorkers() {
+    return countByRole(false);
+  }
+
+  @Override
+  public Map<String, Integer> getIdleWorkers() {
+    return countByRole(true);
+  }
+
+  /**
+   * Count the <code>Worker</code> of each role that are ready, or busy.
+   * 
+   * @param ready <code>true</code> to count ready workers, <code>false</code> to count busy ones.
+   * @return map from role to the number of workers.
+   */
+  private Map<String, Integer> countByRole(boolean ready) {
+    TreeMap<String, Integer> counts = new TreeMap<>();
+    for (Worker employee : warehouseEmployees) {
+      String role = employee.getClass().getSimpleName();
+      counts.put(role, counts.getOrDefault(role, 0) + ((employee.isReady() == ready) ? 1 : 0));
+    }
+    return counts;
+  }
 }
@@ -0,0 +1,24 @@
+package project;
+
+import java.util.Map;
+
+/**
+ * Live view of the <code>Worker</code> in the warehouse, published over JMX. Reading these
+ * attributes never blocks the workers.
+ */
+public interface EmployeeManagerMXBean {
+
+  /**
+   * Return the number of busy <code>Worker</code> of each role.
+   *
+   * @return map from role to the number of busy workers.
+   */
+  Map<String, Integer> getBusyWorkers();
+
+  /**
+   * Return the number of idle <code>Worker</code> of each role.
+   *
+   * @return map from role to the number of workers ready for work.
+   */
+  Map<String, Integer> getIdleWorkers();
+}
@@ -0,0 +1,440 @@
+package project;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * An asynchronous log of warehouse events. Call sites record fixed-schema events into a
+ * preallocated ring buffer, and a background thread drains the buffer to a compact binary file. No
+ * text is built while recording; <code>EventLogDecoder</code> turns a drained file into readable
+ * text on demand. Events are only recorded while the log is open, and are dropped if the buffer is
+ * full; dropped events are counted in the <code>events dropped</code> metric and reported when the
+ * log is closed. Each simulation instruction is recorded too, as its worker, the SKU it scans and
+ * the kind of instruction, such as <code>Picker pick</code>. Kinds and fax descriptions come from
+ * small fixed vocabularies, so each is stored once in the name table and referred to by ID
+ * afterwards, and the table stays bounded however long the day.
+ *
+ * <p>The file starts with the <code>MAGIC</code> bytes, a version byte, and the wall clock time in
+ * milliseconds and <code>System.nanoTime</code> at which it was opened. Each record then starts
+ * with a tag byte. Tag 0 defines a name, either a worker name or the text of an event: the
+ * varint name ID, the varint length and the UTF-8 bytes of the name. Any other tag is an event of
+ * type <code>tag - 1</code>: the zig-zag varint nanoseconds since the previous event, followed by
+ * the varint worker ID, SKU, <code>PickRequest</code> ID and <code>Order</code> ID, each stored plus
+ * one so that -1 takes a single byte. Types that carry text end with the varint name ID of the
+ * text, stored plus one in the same way.
+ */
+public class EventLog {
+
+  /** The first bytes of every event file. */
+  protected static final byte[] MAGIC = {'W', 'H', 'E', 'V'};
+
+  /** The version of the event file format. */
+  protected static final byte VERSION = 3;
+
+  /** Tag byte of a name record. */
+  protected static final byte NAME_TAG = 0;
+
+  /** Every <code>EventType</code>, by ordinal. */
+  private static final EventType[] EVENT_TYPES = EventType.values();
+
+  /** The number of event slots in the ring buffer, a power of two. */
+  private final int capacity;
+
+  /** Mask used to turn a sequence number into a slot index. */
+  private final int mask;
+
+  /** The <code>EventType</code> ordinal of each slot. */
+  private final byte[] types;
+
+  /** The worker ID of each slot. */
+  private final int[] workers;
+
+  /** The SKU number of each slot. */
+  private final int[] skus;
+
+  /** The <code>PickRequest</code> ID of each slot. */
+  private final int[] requests;
+
+  /** The <code>Order</code> ID of each slot. */
+  private final int[] orders;
+
+  /** The name ID of the text of each slot, or -1. */
+  private final int[] texts;
+
+  /** The <code>System.nanoTime</code> timestamp of each slot. */
+  private final long[] times;
+
+  /** The sequence number last written into each slot, set once the slot is readable. */
+  private final AtomicLongArray published;
+
+  /** The next sequence number to be claimed by a producer. */
+  private final AtomicLong claimed = new AtomicLong();
+
+  /** The next sequence number to be drained. */
+  private volatile long drained = 0;
+
+  /** Number of events dropped because the ring buffer was full since the log was opened. */
+  private final LongAdder dropped = new LongAdder();
+
+  /** The <code>events dropped</code> metric, set when the log is opened. */
+  private volatile LongAdder droppedMetric;
+
+  /** Name IDs of worker names and event texts. */
+  private final ConcurrentHashMap<String, Integer> workerIds = new ConcurrentHashMap<>();
+
+  /** Worker names and event texts by name ID. */
+  private final ArrayList<String> workerNames = new ArrayList<>();
+
+  /** <code>true</code> while a background thread is draining events to a file. */
+  private volatile boolean running = false;
+
+  /** The background thread draining the ring buffer. */
+  private Thread drainer;
+
+  /** The file events are drained to. */
+  private FileChannel out;
+
+  /** Staging buffer for records waiting to be written to <code>out</code>. */
+  private final ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+
+  /** Timestamp of the last event written, used to delta-encode the next one. */
+  private long lastTime;
+
+  /** Number of names already written to <code>out</code>. */
+  private int namesWritten;
+
+  /**
+   * Creates an <code>EventLog</code> able to buffer <code>capacity</code> events.
+   *
+   * @param capacity the size of the ring buffer, rounded up to a power of two.
+   */
+  public EventLog(int capacity) {
+    this.capacity = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+    mask = this.capacity - 1;
+    types = new byte[this.capacity];
+    workers = new int[this.capacity];
+    skus = new int[this.capacity];
+    requests = new int[this.capacity];
+    orders = new int[this.capacity];
+    texts = new int[this.capacity];
+    times = new long[this.capacity];
+    published = new AtomicLongArray(this.capacity);
+    for (int i = 0; i < this.capacity; i++) {
+      published.set(i, -1);
+    }
+  }
+
+  /**
+   * Return the ID of the worker with this name, registering the name if it is new.
+   *
+   * @param name the name of the <code>Worker</code>.
+   * @return <code>int</code> ID used to record events for this worker.
+   */
+  protected int registerWorker(String name) {
+    return register(name);
+  }
+
+  /**
+   * Return the name ID of an event text, registering the text if it is new. Texts are only
+   * registered while the log is open, so that they do not pile up when nothing is recorded. Only
+   * texts from a fixed vocabulary, such as kinds of instruction, should be registered.
+   *
+   * @param text the text of the event.
+   * @return <code>int</code> ID used to record the event, or -1 if the log is not open.
+   */
+  protected int registerText(String text) {
+    if (!running) {
+      return -1;
+    }
+    return register(text);
+  }
+
+  /**
+   * Return the ID of a name, adding it to the name table if it is new.
+   *
+   * @param name a worker name or event text.
+   * @return <code>int</code> name ID.
+   */
+  private int register(String name) {
+    return workerIds.computeIfAbsent(name, key -> {
+      synchronized (workerNames) {
+        workerNames.add(key);
+        return workerNames.size() - 1;
+      }
+    });
+  }
+
+  /**
+   * Parse a SKU into the number stored with an event, without allocating.
+   *
+   * @param sku the SKU as a <code>String</code>.
+   * @return the SKU number, or -1 if the SKU is not a number.
+   */
+  protected static int skuId(String sku) {
+    if (sku == null || sku.isEmpty() || sku.length() > 9) {
+      return -1;
+    }
+    int value = 0;
+    for (int i = 0; i < sku.length(); i++) {
+      char digit = sku.charAt(i);
+      if (digit < '0' || digit > '9') {
+        return -1;
+      }
+      value = value * 10 + (digit - '0');
+    }
+    return value;
+  }
+
+  /**
+   * Record an event. Does nothing unless the log is open.
+   *
+   * @param type the type of event.
+   * @param worker the worker ID, or -1.
+   * @param sku the SKU number, or -1.
+   * @param request the <code>PickRequest</code> ID, or -1.
+   * @param order the <code>Order</code> ID, or -1.
+   */
+  protected void record(EventType type, int worker, int sku, int request, int order) {
+    record(type, worker, sku, request, order, -1);
+  }
+
+  /**
+   * Record an event of a type that carries text. Does nothing unless the log is open.
+   *
+   * @param type the type of event.
+   * @param worker the worker ID, or -1.
+   * @param sku the SKU number, or -1.
+   * @param text the name ID of the text, from <code>registerText</code>.
+   */
+  protected void recordText(EventType type, int worker, int sku, int text) {
+    record(type, worker, sku, -1, -1, text);
+  }
+
+  /**
+   * Record an event into the next free slot. Does nothing unless the log is open.
+   *
+   * @param type the type of event.
+   * @param worker the worker ID, or -1.
+   * @param sku the SKU number, or -1.
+   * @param request the <code>PickRequest</code> ID, or -1.
+   * @param order the <code>Order</code> ID, or -1.
+   * @param text the name ID of the text, or -1.
+   */
+  private void record(EventType type, int worker, int sku, int request, int order, int text) {
+    if (!running) {
+      return;
+    }
+    long sequence;
+    do {
+      sequence = claimed.get();
+      if (sequence - drained >= capacity) {
+        dropped.increment();
+        droppedMetric.increment();
+        return;
+      }
+    } while (!claimed.compareAndSet(sequence, sequence + 1));
+    int slot = (int) (sequence & mask);
+    types[slot] = (byte) type.ordinal();
+    workers[slot] = worker;
+    skus[slot] = sku;
+    requests[slot] = request;
+    orders[slot] = order;
+    texts[slot] = text;
+    times[slot] = System.nanoTime();
+    published.lazySet(slot, sequence);
+  }
+
+  /**
+   * Return the number of events dropped because the buffer was full since the log was opened.
+   *
+   * @return <code>long</code> count of dropped events.
+   */
+  protected long getDropped() {
+    return dropped.sum();
+  }
+
+  /**
+   * Start draining events to a file in a background thread. Any file already open is closed first.
+   *
+   * @param file the <code>Path</code> of the file to write.
+   * @throws IOException when the file cannot be created.
+   */
+  protected synchronized void open(Path file) throws IOException {
+    close();
+    out = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+        StandardOpenOption.TRUNCATE_EXISTING);
+    lastTime = System.nanoTime();
+    buffer.clear();
+    buffer.put(MAGIC).put(VERSION).putLong(System.currentTimeMillis()).putLong(lastTime);
+    namesWritten = 0;
+    dropped.reset();
+    droppedMetric = RunWarehouse.metrics.counter("events dropped");
+    drained = claimed.get();
+    running = true;
+    drainer = new Thread(this::drainLoop, "event-log-drainer");
+    drainer.setDaemon(true);
+    drainer.start();
+  }
+
+  /**
+   * Stop recording, write every buffered event and close the file, warning if any events were
+   * dropped. Does nothing if the log is not open.
+   */
+  protected synchronized void close() {
+    if (drainer == null) {
+      return;
+    }
+    running = false;
+    LockSupport.unpark(drainer);
+    try {
+      drainer.join();
+    } catch (InterruptedException error) {
+      Thread.currentThread().interrupt();
+    }
+    drainer = null;
+    try {
+      drain();
+      flush();
+      out.close();
+    } catch (IOException error) {
+      RunWarehouse.logger.warning("Could not write event log: " + error.getMessage());
+    }
+    if (dropped.sum() > 0) {
+      RunWarehouse.logger.warning("Event log dropped " + dropped.sum()
+          + " events because its buffer was full.");
+    }
+  }
+
+  /** Body of the background thread: drain until the log is closed. */
+  private void drainLoop() {
+    try {
+      while (running) {
+        if (drain() == 0) {
+          flush();
+          LockSupport.parkNanos(1_000_000L);
+        }
+      }
+    } catch (IOException error) {
+      running = false;
+      RunWarehouse.logger.warning("Could not write event log: " + error.getMessage());
+    }
+  }
+
+  /**
+   * Write every published event to the file. Only ever called by one thread at a time.
+   *
+   * @return the number of events written.
+   * @throws IOException when the file cannot be written.
+   */
+  private int drain() throws IOException {
+    long sequence = drained;
+    long end = claimed.get();
+    int count = 0;
+    while (sequence < end) {
+      int slot = (int) (sequence & mask);
+      if (published.get(slot) != sequence) {
+        break; // claimed but not written yet
+      }
+      writeNames(Math.max(workers[slot], texts[slot]));
+      if (buffer.remaining() < 64) {
+        flush();
+      }
+      buffer.put((byte) (types[slot] + 1));
+      long delta = times[slot] - lastTime;
+      lastTime = times[slot];
+      putVarLong(buffer, (delta << 1) ^ (delta >> 63));
+      putVarLong(buffer, workers[slot] + 1L);
+      putVarLong(buffer, skus[slot] + 1L);
+      putVarLong(buffer, requests[slot] + 1L);
+      putVarLong(buffer, orders[slot] + 1L);
+      if (EVENT_TYPES[types[slot]].hasText()) {
+        putVarLong(buffer, texts[slot] + 1L);
+      }
+      sequence++;
+      count++;
+    }
+    drained = sequence;
+    return count;
+  }
+
+  /**
+   * Write all names registered up to and including this ID.
+   *
+   * @param worker a name ID about to be written.
+   * @throws IOException when the file cannot be written.
+   */
+  private void writeNames(int worker) throws IOException {
+    if (worker < namesWritten) {
+      return;
+    }
+    synchronized (workerNames) {
+      while (namesWritten <= worker && namesWritten < workerNames.size()) {
+        byte[] name = workerNames.get(namesWritten).getBytes(StandardCharsets.UTF_8);
+        int length = Math.min(name.length, 255);
+        if (buffer.remaining() < length + 16) {
+          flush();
+        }
+        buffer.put(NAME_TAG);
+        putVarLong(buffer, namesWritten);
+        putVarLong(buffer, length);
+        buffer.put(name, 0, length);
+        namesWritten++;
+      }
+    }
+  }
+
+  /**
+   * Write the staging buffer to the file.
+   *
+   * @throws IOException when the file cannot be written.
+   */
+  private void flush() throws IOException {
+    buffer.flip();
+    while (buffer.hasRemaining()) {
+      out.write(buffer);
+    }
+    buffer.clear();
+  }
+
+  /**
+   * Write an unsigned variable-length integer, seven bits per byte, low bits first.
+   *
+   * @param target the buffer to write to.
+   * @param value the value to write, treated as unsigned.
+   */
+  protected static void putVarLong(ByteBuffer target, long value) {
+    while ((value & ~0x7FL) != 0) {
+      target.put((byte) ((value & 0x7F) | 0x80));
+      value >>>= 7;
+    }
+    target.put((byte) value);
+  }
+
+  /**
+   * Read an unsigned variable-length integer written by <code>putVarLong</code>.
+   *
+   * @param source the buffer to read from.
+   * @return the value read.
+   */
+  protected static long getVarLong(ByteBuffer source) {
+    long value = 0;
+    int shift = 0;
+    byte next;
+    do {
+      next = source.get();
+      value |= (long) (next & 0x7F) << shift;
+      shift += 7;
+    } while (next < 0);
+    return value;
+  }
+}
@@ -0,0 +1,184 @@
+package project;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashSet;
+
+/**
+ * Reads event files written by <code>EventLog</code> and renders them as text. Events can be
+ * filtered by <code>Order</code>, <code>PickRequest</code>, worker or SKU; all filters that are set
+ * must match. Filtering by <code>Order</code> also matches every event of the
+ * <code>PickRequest</code> the order was added to.
+ */
+public class EventLogDecoder {
+
+  /** Only render events for this <code>Order</code> ID, or -1 for any. */
+  private int orderId = -1;
+
+  /** Only render events for this <code>PickRequest</code> ID, or -1 for any. */
+  private int requestId = -1;
+
+  /** Only render events for this SKU number, or -1 for any. */
+  private int skuId = -1;
+
+  /** Only render events for the worker with this name, or <code>null</code> for any. */
+  private String workerName = null;
+
+  /** Creates a decoder that renders every event. */
+  public EventLogDecoder() {}
+
+  /**
+   * Only render events about an <code>Order</code>.
+   *
+   * @param order the <code>Order</code> ID.
+   */
+  protected void filterOrder(int order) {
+    orderId = order;
+  }
+
+  /**
+   * Only render events about a <code>PickRequest</code>.
+   *
+   * @param request the <code>PickRequest</code> ID.
+   */
+  protected void filterRequest(int request) {
+    requestId = request;
+  }
+
+  /**
+   * Only render events about a SKU.
+   *
+   * @param sku the SKU number.
+   */
+  protected void filterSku(int sku) {
+    skuId = sku;
+  }
+
+  /**
+   * Only render events performed by a worker.
+   *
+   * @param name the name of the <code>Worker</code>.
+   */
+  protected void filterWorker(String name) {
+    workerName = name;
+  }
+
+  /**
+   * Decode an event file and append every matching event to <code>text</code>, one per line.
+   *
+   * @param file the event file written by an <code>EventLog</code>.
+   * @param text where the rendered lines are appended.
+   * @return the number of events rendered.
+   * @throws IOException when the file cannot be read or is not an event file.
+   */
+  protected long decode(Path file, Appendable text) throws IOException {
+    ByteBuffer source;
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      source = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    }
+    byte[] magic = new byte[EventLog.MAGIC.length];
+    if (source.remaining() < magic.length + 17) {
+      throw new IOException(file + " is not an event file.");
+    }
+    source.get(magic);
+    if (!Arrays.equals(magic, EventLog.MAGIC) || source.get() != EventLog.VERSION) {
+      throw new IOException(file + " is not an event file of version " + EventLog.VERSION + ".");
+    }
+    long epochMillis = source.getLong();
+    long time = source.getLong();
+    long startTime = time;
+    EventType[] eventTypes = EventType.values();
+    ArrayList<String> names = new ArrayList<>();
+    HashSet<Integer> orderRequests = new HashSet<>();
+    int workerId = (workerName == null) ? -1 : -2;
+    SimpleDateFormat clock = new SimpleDateFormat("HH:mm:ss.SSS");
+    long rendered = 0;
+    try {
+      while (source.hasRemaining()) {
+        int tag = source.get() & 0xFF;
+        if (tag == EventLog.NAME_TAG) {
+          int id = (int) EventLog.getVarLong(source);
+          byte[] name = new byte[(int) EventLog.getVarLong(source)];
+          source.get(name);
+          while (names.size() <= id) {
+            names.add(null);
+          }
+          names.set(id, new String(name, StandardCharsets.UTF_8));
+          if (names.get(id).equals(workerName)) {
+            workerId = id;
+          }
+          continue;
+        }
+        long delta = EventLog.getVarLong(source);
+        time += (delta >>> 1) ^ -(delta & 1);
+        int worker = (int) EventLog.getVarLong(source) - 1;
+        int sku = (int) EventLog.getVarLong(source) - 1;
+        int request = (int) EventLog.getVarLong(source) - 1;
+        int order = (int) EventLog.getVarLong(source) - 1;
+        EventType type = eventTypes[tag - 1];
+        int textId = type.hasText() ? (int) EventLog.getVarLong(source) - 1 : -1;
+        if (type == EventType.ORDER_ASSIGNED && order == orderId) {
+          orderRequests.add(request);
+        }
+        if ((orderId >= 0 && order != orderId && !orderRequests.contains(request))
+            || (requestId >= 0 && request != requestId) || (skuId >= 0 && sku != skuId)
+            || (workerId != -1 && worker != workerId)) {
+          continue;
+        }
+        String name = (worker >= 0 && worker < names.size()) ? names.get(worker) : null;
+        String eventText = (textId >= 0 && textId < names.size()) ? names.get(textId) : null;
+        text.append(clock.format(new Date(epochMillis + (time - startTime) / 1_000_000L)));
+        text.append(' ').append(type.render(name, sku, request, order, eventText));
+        text.append(System.lineSeparator());
+        rendered++;
+      }
+    } catch (BufferUnderflowException | ArrayIndexOutOfBoundsException error) {
+      throw new IOException(file + " is truncated or corrupt.");
+    }
+    return rendered;
+  }
+
+  /**
+   * Print the events in an event file, optionally filtered.
+   *
+   * @param args the event file, followed by any of <code>--order id</code>, <code>--request
+   *        id</code>, <code>--worker name</code> and <code>--sku number</code>.
+   * @throws IOException when the file cannot be read or is not an event file.
+   */
+  public static void main(String[] args) throws IOException {
+    if (args.length == 0 || args.length % 2 == 0) {
+      System.err.println("Usage: EventLogDecoder <events.bin> [--order id] [--request id]"
+          + " [--worker name] [--sku number]");
+      System.exit(1);
+    }
+    EventLogDecoder decoder = new EventLogDecoder();
+    for (int i = 1; i < args.length; i += 2) {
+      if (args[i].equals("--order")) {
+        decoder.filterOrder(Integer.parseInt(args[i + 1]));
+      } else if (args[i].equals("--request")) {
+        decoder.filterRequest(Integer.parseInt(args[i + 1]));
+      } else if (args[i].equals("--worker")) {
+        decoder.filterWorker(args[i + 1]);
+      } else if (args[i].equals("--sku")) {
+        decoder.filterSku(Integer.parseInt(args[i + 1]));
+      } else {
+        System.err.println("Unknown filter " + args[i] + ".");
+        System.exit(1);
+      }
+    }
+    PrintWriter text = new PrintWriter(System.out);
+    decoder.decode(Paths.get(args[0]), text);
+    text.flush();
+  }
+}
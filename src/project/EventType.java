@@ -0,0 +1,79 @@
+package project;
+
+/**
+ * The kinds of events recorded by <code>EventLog</code>. Each type carries the template used to
+ * render it as text, where <code>%1$s</code> is the worker name, <code>%2$s</code> the SKU,
+ * <code>%3$d</code> the <code>PickRequest</code> ID and <code>%4$d</code> the <code>Order</code>
+ * ID, and <code>%5$s</code> the text of a type that carries text.
+ */
+enum EventType {
+  ORDER_CREATED("Order #%4$d created"),
+  PICK_REQUEST_CREATED("Generated PickRequest %3$d"),
+  ORDER_ASSIGNED("Order #%4$d added to PickRequest %3$d"),
+  PICK_REQUEST_RECEIVED("Picker %1$s received pick request %3$d."),
+  NO_PICK_REQUEST("No pick requests available. %1$s ready."),
+  PICKED("Picker %1$s picks fascia %2$s for PickRequest %3$d"),
+  MARSHALED("Picker %1$s takes PickRequest %3$d to Marshaling"),
+  SEQUENCE_RECEIVED("Sequencer %1$s received PickRequest %3$d to sequence."),
+  NO_UNSORTED_PALLET("No pallets available for marshaling. %1$s ready."),
+  SEQUENCER_BUSY("Sequencer %1$s is already busy sequencing a pallet."),
+  SEQUENCED_FRONT("Sequencer %1$s sequenced %2$s on to the Front Pallet."),
+  SEQUENCED_REAR("Sequencer %1$s sequenced %2$s on to the Rear Pallet."),
+  RESEQUENCED("Sequencer %1$s sequenced %2$s."),
+  MOVED_TO_LOAD_ZONE("Sequencer %1$s moves PickRequest %3$d to load zone."),
+  SEQUENCER_RESCAN("Sequencer %1$s rescans. Begin checking from beginning."),
+  LOAD_ZONE_EMPTY("No pick requests in the loading zone."),
+  LOAD_WAITING("%1$s can not load yet, waiting for PickRequest %3$d to arrive first."),
+  LOAD_RECEIVED("Loader %1$s received sequenced pallets of PickRequest %3$d to load."),
+  CHECKED("%2$s is sequenced correctly."),
+  LOADER_IDLE("Loader %1$s has no active PickRequest."),
+  LOADED("Loader %1$s loads PickRequest %3$d"),
+  LOADER_RESCAN("Loader %1$s rescans. Begin checking from beginning."),
+  REPLENISH_REQUESTED("SKU # %2$s needs to be replenished."),
+  REPLENISHED("SKU # %2$s replenished."),
+  PICK_ESCALATED("PickRequest %3$d is holding up loading and will be picked next."),
+  FAX_RECEIVED("Incoming Fax: Order %5$s"),
+  INSTRUCTION("Instruction: %5$s by %1$s"),
+  SCAN_INSTRUCTION("Instruction: %5$s %2$s by %1$s"),
+  WAREHOUSE_INSTRUCTION("Instruction: %5$s");
+
+  /** The <code>String.format</code> template for this type of event. */
+  private final String template;
+
+  /** <code>true</code> if events of this type carry text. */
+  private final boolean text;
+
+  /**
+   * Creates an event type rendered with the given template.
+   *
+   * @param template the <code>String.format</code> template for the text form.
+   */
+  EventType(String template) {
+    this.template = template;
+    text = template.contains("%5$s");
+  }
+
+  /**
+   * Return whether events of this type carry text.
+   *
+   * @return <code>true</code> if the template uses the text.
+   */
+  protected boolean hasText() {
+    return text;
+  }
+
+  /**
+   * Render an event of this type as human-readable text.
+   *
+   * @param worker the name of the worker, or <code>null</code> if there is none.
+   * @param sku the SKU number, or -1 if there is none.
+   * @param request the <code>PickRequest</code> ID, or -1 if there is none.
+   * @param order the <code>Order</code> ID, or -1 if there is none.
+   * @param text the text of the event, or <code>null</code> if there is none.
+   * @return the text form of the event.
+   */
+  protected String render(String worker, int sku, int request, int order, String text) {
+    String skuText = (sku < 0) ? "?" : String.valueOf(sku);
+    return String.format(template, worker, skuText, request, order, text);
+  }
+}
@@ -0,0 +1,138 @@
+package project;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+/**
+ * Summarizes the warehouse events of a Flight Recorder recording: latency percentiles for each
+ * operation, and the pick faces where the most time is spent. Record with the warehouse.jfc
+ * settings profile, for example
+ * <code>java -XX:StartFlightRecording=settings=warehouse.jfc,filename=warehouse.jfr</code>.
+ */
+public class FlightRecordingSummary {
+
+  /** Prefix of the names of warehouse events. */
+  private static final String PREFIX = "project.";
+
+  /** Latency of each operation, by event name. */
+  private TreeMap<String, LatencyHistogram> operations = new TreeMap<>();
+
+  /** Number of operations at each location, for operations on pick faces. */
+  private HashMap<String, Long> locationCounts = new HashMap<>();
+
+  /** Total nanoseconds spent at each location, for operations on pick faces. */
+  private HashMap<String, Long> locationTimes = new HashMap<>();
+
+  /** Creates an empty summary. */
+  public FlightRecordingSummary() {}
+
+  /**
+   * Add every warehouse event in a recording to this summary.
+   *
+   * @param recording the .jfr file to read.
+   * @return the number of warehouse events read.
+   * @throws IOException when the file cannot be read or is not a recording.
+   */
+  protected long read(Path recording) throws IOException {
+    long read = 0;
+    try (RecordingFile file = new RecordingFile(recording)) {
+      while (file.hasMoreEvents()) {
+        RecordedEvent event = file.readEvent();
+        String type = event.getEventType().getName();
+        if (!type.startsWith(PREFIX)) {
+          continue;
+        }
+        long nanos = event.getDuration().toNanos();
+        operations.computeIfAbsent(type.substring(PREFIX.length()), key -> new LatencyHistogram())
+            .record(nanos);
+        String location = event.getString("location");
+        if (location != null && (type.endsWith("Pick") || type.endsWith("PutBack")
+            || type.endsWith("Replenish"))) {
+          locationCounts.merge(location, 1L, Long::sum);
+          locationTimes.merge(location, nanos, Long::sum);
+        }
+        read++;
+      }
+    }
+    return read;
+  }
+
+  /**
+   * Return the latency histogram of an operation.
+   *
+   * @param operation the event name without its prefix, for example <code>Pick</code>.
+   * @return the histogram, or <code>null</code> if the operation was not recorded.
+   */
+  protected LatencyHistogram getOperation(String operation) {
+    return operations.get(operation);
+  }
+
+  /**
+   * Return the locations with the most operations, busiest first.
+   *
+   * @param limit the maximum number of locations to return.
+   * @return list of locations.
+   */
+  protected ArrayList<String> getHotLocations(int limit) {
+    ArrayList<String> locations = new ArrayList<>(locationCounts.keySet());
+    locations.sort((first, second) -> {
+      int byCount = Long.compare(locationCounts.get(second), locationCounts.get(first));
+      return (byCount != 0) ? byCount : first.compareTo(second);
+    });
+    return new ArrayList<>(locations.subList(0, Math.min(limit, locations.size())));
+  }
+
+  /**
+   * Write the summary as a table of operations followed by a table of hot locations.
+   *
+   * @param text where the summary is written.
+   * @param limit the number of hot locations to list.
+   * @throws IOException when the summary cannot be written.
+   */
+  protected void write(Appendable text, int limit) throws IOException {
+    text.append(String.format(Locale.ROOT, "%-12s %10s %10s %10s %10s %10s%n", "operation",
+        "count", "mean us", "p50 us", "p99 us", "max us"));
+    for (Map.Entry<String, LatencyHistogram> entry : operations.entrySet()) {
+      LatencyHistogram histogram = entry.getValue();
+      text.append(String.format(Locale.ROOT, "%-12s %10d %10.1f %10.1f %10.1f %10.1f%n",
+          entry.getKey(), histogram.getCount(), histogram.getMean() / 1000.0,
+          histogram.getPercentile(50) / 1000.0, histogram.getPercentile(99) / 1000.0,
+          histogram.getMax() / 1000.0));
+    }
+    text.append(String.format(Locale.ROOT, "%n%-12s %10s %10s%n", "location", "count",
+        "total us"));
+    for (String location : getHotLocations(limit)) {
+      text.append(String.format(Locale.ROOT, "%-12s %10d %10.1f%n", location,
+          locationCounts.get(location), locationTimes.get(location) / 1000.0));
+    }
+  }
+
+  /**
+   * Print a summary of one or more recordings.
+   *
+   * @param args the .jfr files to summarize.
+   * @throws IOException when a file cannot be read or is not a recording.
+   */
+  public static void main(String[] args) throws IOException {
+    if (args.length == 0) {
+      System.err.println("Usage: FlightRecordingSummary <recording.jfr>...");
+      System.exit(1);
+    }
+    FlightRecordingSummary summary = new FlightRecordingSummary();
+    for (String recording : args) {
+      summary.read(Paths.get(recording));
+    }
+    PrintWriter text = new PrintWriter(System.out);
+    summary.write(text, 10);
+    text.flush();
+  }
+}
@@ -0,0 +1,142 @@
+package project;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A fixed-memory histogram of latencies in nanoseconds. Each power of two is split into
+ * <code>SUB_BUCKETS</code> linear buckets, so any percentile is reported within 12.5% of the true
+ * value. Recording never allocates and is safe from any number of threads.
+ */
+public class LatencyHistogram {
+
+  /** Number of linear buckets each power of two is split into. */
+  private static final int SUB_BUCKETS = 8;
+
+  /** log2 of <code>SUB_BUCKETS</code>. */
+  private static final int SUB_BITS = 3;
+
+  /** The number of recorded values in each bucket. */
+  private final AtomicLongArray buckets = new AtomicLongArray(64 * SUB_BUCKETS);
+
+  /** The number of recorded values. */
+  private final LongAdder count = new LongAdder();
+
+  /** The sum of all recorded values. */
+  private final LongAdder sum = new LongAdder();
+
+  /** The largest recorded value. */
+  private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+  /** Creates an empty <code>LatencyHistogram</code>. */
+  public LatencyHistogram() {}
+
+  /**
+   * Record one latency.
+   *
+   * @param nanos the latency in nanoseconds, negative values are recorded as 0.
+   */
+  protected void record(long nanos) {
+    long value = Math.max(0, nanos);
+    buckets.incrementAndGet(bucketOf(value));
+    count.increment();
+    sum.add(value);
+    max.accumulate(value);
+  }
+
+  /**
+   * Return the bucket a value falls in.
+   *
+   * @param value a non-negative value.
+   * @return index into <code>buckets</code>.
+   */
+  private static int bucketOf(long value) {
+    if (value < SUB_BUCKETS) {
+      return (int) value;
+    }
+    int exponent = 63 - Long.numberOfLeadingZeros(value);
+    int subBucket = (int) (value >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+    return (exponent - SUB_BITS + 1) * SUB_BUCKETS + subBucket;
+  }
+
+  /**
+   * Return the largest value that falls in a bucket.
+   *
+   * @param bucket index into <code>buckets</code>.
+   * @return the upper bound of the bucket.
+   */
+  private static long upperBound(int bucket) {
+    if (bucket < SUB_BUCKETS) {
+      return bucket;
+    }
+    int exponent = bucket / SUB_BUCKETS + SUB_BITS - 1;
+    long lower = (1L << exponent) + ((long) (bucket % SUB_BUCKETS) << (exponent - SUB_BITS));
+    return lower + (1L << (exponent - SUB_BITS)) - 1;
+  }
+
+  /**
+   * Return the number of recorded values.
+   *
+   * @return <code>long</code> count.
+   */
+  protected long getCount() {
+    return count.sum();
+  }
+
+  /**
+   * Return the mean of the recorded values.
+   *
+   * @return the mean in nanoseconds, or 0 if nothing has been recorded.
+   */
+  protected long getMean() {
+    long total = count.sum();
+    return (total == 0) ? 0 : sum.sum() / total;
+  }
+
+  /**
+   * Return the largest recorded value.
+   *
+   * @return the maximum in nanoseconds.
+   */
+  protected long getMax() {
+    return max.get();
+  }
+
+  /**
+   * Return an upper bound for the given percentile of the recorded values.
+   *
+   * @param percentile between 0 and 100.
+   * @return the percentile in nanoseconds, or 0 if nothing has been recorded.
+   */
+  protected long getPercentile(double percentile) {
+    long total = 0;
+    long[] counts = new long[buckets.length()];
+    for (int i = 0; i < counts.length; i++) {
+      counts[i] = buckets.get(i);
+      total += counts[i];
+    }
+    if (total == 0) {
+      return 0;
+    }
+    long rank = Math.max(1, (long) Math.ceil(total * percentile / 100.0));
+    long seen = 0;
+    for (int i = 0; i < counts.length; i++) {
+      seen += counts[i];
+      if (seen >= rank) {
+        return Math.min(upperBound(i), getMax());
+      }
+    }
+    return getMax();
+  }
+
+  /** Forget every recorded value. */
+  protected void reset() {
+    for (int i = 0; i < buckets.length(); i++) {
+      buckets.set(i, 0);
+    }
+    count.reset();
+    sum.reset();
+    max.reset();
+  }
+}
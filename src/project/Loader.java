@@ -3,7 +3,7 @@ package project;
 /** A Loader worker in the warehouse. */
 public class Loader extends Worker {
 
-  /** The pick ID for the next set of orders to be loaded onto the truck. */
+  /** The pick ID for the next set of orders to be loaded onto a truck. */
   private int nextPickId;
 
   /**
@@ -18,28 +18,39 @@ public class Loader extends Worker {
   }
 
   /**
-   * Get the next <code>PickRequest</code> to be loaded on the truck from the <code>loadZone</code>,
-   * if it is there.
+   * Get the next <code>PickRequest</code> to be loaded at any dock from the <code>loadZone</code>,
+   * if it is there. The next <code>PickRequest</code> of a dock another <code>Loader</code> is
+   * already loading has left the <code>loadZone</code>, so that dock is passed over. With deadline
+   * scheduling, a <code>PickRequest</code> this <code>Loader</code> waits for that has not been
+   * picked yet is escalated to be picked next.
    */
   @Override
   protected void receive() {
     TruckManager truckMan = controller.getTrucks();
     StagingManager stagMan = controller.getStaging();
     nextPickId = truckMan.getNextPickId();
-    pickReq = stagMan.loadRemove(nextPickId);
+    pickReq = null;
+    for (int dock = 0; dock < truckMan.getDocks() && pickReq == null; dock++) {
+      pickReq = stagMan.loadRemove(truckMan.getNextPickId(dock));
+      if (pickReq != null) {
+        nextPickId = pickReq.getPickRequestId();
+      }
+    }
     if (pickReq == null) {
       // There are no pick requests waiting in the load zone
       if (stagMan.getLoadZoneSize() == 0) {
-        RunWarehouse.logger.info("No pick requests in the loading zone.");
+        RunWarehouse.events.record(EventType.LOAD_ZONE_EMPTY, workerId, -1, -1, -1);
         // The desired pick request (by ID) is not waiting in the load
         // zone
       } else {
-        RunWarehouse.logger.info(name
-            + " can not load this PickRequest, waiting for correct PickRequest to arrive first.");
+        RunWarehouse.events.record(EventType.LOAD_WAITING, workerId, -1, nextPickId, -1);
+      }
+      if (controller.isDeadlineScheduling() && controller.getOrders().escalate(nextPickId)) {
+        RunWarehouse.events.record(EventType.PICK_ESCALATED, workerId, -1, nextPickId, -1);
       }
       // The correct one is there. Set the worker to busy.
     } else {
-      RunWarehouse.logger.info("Loader " + name + " received sequenced pallets to load.");
+      RunWarehouse.events.record(EventType.LOAD_RECEIVED, workerId, -1, nextPickId, -1);
       this.setBusy();
     }
   }
@@ -54,20 +65,35 @@ public class Loader extends Worker {
     if (pickReq != null) {
       int frontOrRear = progress % 2; // 0 is front pallets, 1 is rear pallet.
       int loadpos = progress / 2;
-      String correctSku = pickReq.getSeqOrds().get(loadpos).getContents().get(frontOrRear);
-      if (sku.equals(correctSku)) { // sku matches the correct sequential order.
+      if (pickReq.isExpected(progress, sku)) { // sku matches the correct sequential order.
         check(frontOrRear, sku, loadpos);
       } else { // not sequencing the correct sku
-        RunWarehouse.logger
-            .warning(sku + " is not the next SKU to check. Please check " + correctSku + " next.");
+        RunWarehouse.logger.warning(sku + " is not the next SKU to check. Please check "
+            + pickReq.getExpectedSku(progress) + " next.");
       }
     } else {
-      RunWarehouse.logger.info("Loader has no active PickRequest to check.");
+      RunWarehouse.events.record(EventType.LOADER_IDLE, workerId, -1, -1, -1);
+    }
+  }
+
+  /**
+   * Check a batch of scanned SKU numbers in order against the sequenced pallets.
+   * 
+   * @param skus The SKU numbers to be checked.
+   * @return <code>boolean[]</code> whether each SKU was checked in place.
+   */
+  @Override
+  protected boolean[] work(String[] skus) {
+    if (pickReq == null) {
+      RunWarehouse.events.record(EventType.LOADER_IDLE, workerId, -1, -1, -1);
+      return new boolean[skus.length];
     }
+    return super.work(skus);
   }
 
   /**
    * <code>Loader</code> checks the position of a SKU number on its sequenced <code>Pallet</code>.
+   * Positions checked before a rescan are not looked at on the <code>Pallet</code> again.
    * 
    * @param frontOrRear <code>int</code> indicating whether the SKU is on the <code>frontPal</code>
    *        or <code>rearPal</code>.
@@ -75,20 +101,25 @@ public class Loader extends Worker {
    * @param loadpos Item's load position on the <code>Pallet</code>.
    */
   private void check(int frontOrRear, String sku, int loadpos) {
-    if (frontOrRear == 0) {
-      if (pickReq.getFrontPallet().getItemAtPosition(loadpos).equals(sku)) {
-        progress++;
-        RunWarehouse.logger.info(sku + " is sequenced correctly.");
-      } else {
-        RunWarehouse.logger.warning(sku + " is sequenced incorrectly.");
-      }
+    WarehouseFlightEvents.Check event = new WarehouseFlightEvents.Check();
+    event.begin();
+    Pallet pallet = (frontOrRear == 0) ? pickReq.getFrontPallet() : pickReq.getRearPallet();
+    if (loadpos < pallet.getVerified() || sku.equals(pallet.getItemAtPosition(loadpos))) {
+      pallet.setVerified(loadpos + 1);
+      progress++;
+      RunWarehouse.events.record(EventType.CHECKED, workerId, EventLog.skuId(sku),
+          pickReq.getPickRequestId(), -1);
+    } else if (frontOrRear == 0) {
+      RunWarehouse.logger.warning(sku + " is sequenced incorrectly.");
     } else {
-      if (pickReq.getRearPallet().getItemAtPosition(loadpos).equals(sku)) {
-        progress++;
-        RunWarehouse.logger.info(sku + " is sequenced correctly.");
-      } else {
-        RunWarehouse.logger.info(sku + " is sequenced incorrectly.");
-      }
+      RunWarehouse.logger.info(sku + " is sequenced incorrectly.");
+    }
+    if (event.shouldCommit()) {
+      event.sku = sku;
+      event.location = ((frontOrRear == 0) ? "front " : "rear ") + loadpos;
+      event.worker = name;
+      event.requestId = pickReq.getPickRequestId();
+      event.commit();
     }
   }
 
@@ -98,24 +129,37 @@ public class Loader extends Worker {
   protected void push() {
     if (pickReq != null) {
       TruckManager truckMan = controller.getTrucks();
-      truckMan.load(pickReq);
-      RunWarehouse.logger
-          .info("Loader " + this.name + " loads PickRequest " + pickReq.getPickRequestId());
+      truckMan.load(pickReq, name);
+      RunWarehouse.events.record(EventType.LOADED, workerId, -1, pickReq.getPickRequestId(), -1);
       pickReq.updateAllOrders("loaded");
       pickReq.updateStatus("loaded");
       this.setReady();
       pickReq = null;
       progress = 0;
     } else {
-      RunWarehouse.logger.info("Loader has no active PickRequest to load.");
+      RunWarehouse.events.record(EventType.LOADER_IDLE, workerId, -1, -1, -1);
     }
   }
 
+  @Override
+  protected void writeSnapshot(WarehouseSnapshot out) {
+    super.writeSnapshot(out);
+    out.putInt(nextPickId);
+  }
+
+  @Override
+  protected void readSnapshot(WarehouseSnapshot in) {
+    super.readSnapshot(in);
+    nextPickId = in.getInt();
+  }
+
   /**
    * Causes <code>Loader</code> to start checking the sequenced pallets from the beginning again.
+   * Scans up to the verified prefix of each <code>Pallet</code> are only compared with the
+   * expected sequence; checking against the pallets resumes after it.
    */
   protected void rescan() {
     progress = 0;
-    RunWarehouse.logger.info("Loader " + name + " rescans. Begin checking from beginning.");
+    RunWarehouse.events.record(EventType.LOADER_RESCAN, workerId, -1, -1, -1);
   }
 }
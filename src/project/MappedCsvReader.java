@@ -0,0 +1,332 @@
+package project;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Reads delimited text files through a memory-mapped buffer, handing each row to a
+ * <code>RowHandler</code> as soon as its line is scanned. Separators and line breaks are found
+ * eight bytes at a time and fields are located in place: integers are parsed straight from the
+ * mapped bytes and a <code>String</code> is only created when one is asked for, so nothing is
+ * allocated per field and the file is never held in memory as text.
+ * The reader itself is the row passed to the handler and is only valid during the call.
+ */
+public class MappedCsvReader {
+
+  /** Receives the rows of a file one at a time. */
+  public interface RowHandler {
+
+    /**
+     * Handle one row.
+     *
+     * @param row the reader, positioned on the row.
+     * @throws IOException when the row cannot be handled.
+     */
+    void row(MappedCsvReader row) throws IOException;
+  }
+
+  /** Default number of bytes mapped at a time; a line cannot be longer than this. */
+  private static final int WINDOW = 1 << 30;
+
+  /** A one in every byte of a word. */
+  private static final long ONES = 0x0101010101010101L;
+
+  /** Eight line breaks, to find them a word at a time. */
+  private static final long NEWLINES = ONES * '\n';
+
+  /** The byte separating fields. */
+  private final byte separator;
+
+  /** Eight separators, to find them a word at a time. */
+  private final long separators;
+
+  /** Number of bytes mapped at a time. */
+  private final int window;
+
+  /** The mapped part of the file holding the current row. */
+  private MappedByteBuffer buffer;
+
+  /** Another view of <code>buffer</code>, for copying fields out in bulk. */
+  private ByteBuffer view;
+
+  /** Offset in <code>buffer</code> of the first byte of each field. */
+  private int[] starts = new int[16];
+
+  /** Offset in <code>buffer</code> just after the last byte of each field. */
+  private int[] ends = new int[16];
+
+  /** Offset in <code>buffer</code> of the start of the current line. */
+  private int lineStart;
+
+  /** Offset in <code>buffer</code> of the start of the current field. */
+  private int fieldStart;
+
+  /** Number of fields in the current row. */
+  private int fieldCount;
+
+  /** Index of the current row in the file, counting any header. */
+  private long rowNumber;
+
+  /** Reused when copying fields out of <code>buffer</code> to create a <code>String</code>. */
+  private byte[] scratch = new byte[64];
+
+  /**
+   * Creates a reader for files whose fields are separated by a character.
+   *
+   * @param separator an ASCII character, such as <code>','</code> or <code>' '</code>.
+   */
+  public MappedCsvReader(char separator) {
+    this(separator, WINDOW);
+  }
+
+  /**
+   * Creates a reader that maps a given number of bytes at a time.
+   *
+   * @param separator an ASCII character, such as <code>','</code> or <code>' '</code>.
+   * @param window number of bytes mapped at a time, at least as long as the longest line.
+   */
+  protected MappedCsvReader(char separator, int window) {
+    if (separator > 127 || separator == '\n' || separator == '\r') {
+      throw new IllegalArgumentException("Separator must be an ASCII character other than a "
+          + "line break.");
+    }
+    this.separator = (byte) separator;
+    this.separators = ONES * separator;
+    this.window = window;
+  }
+
+  /**
+   * Read a file, handing every row to <code>handler</code> in order. Lines end with
+   * <code>\n</code> or <code>\r\n</code>, and the last line does not need a line break.
+   *
+   * @param location the file to read.
+   * @param skipHeader if true the first line is not handed to <code>handler</code>.
+   * @param handler receives each row.
+   * @return the number of rows handed to <code>handler</code>.
+   * @throws IOException when the file cannot be read, a line is longer than the mapped window, or
+   *         <code>handler</code> fails.
+   */
+  protected long read(Path location, boolean skipHeader, RowHandler handler) throws IOException {
+    long handled = 0;
+    rowNumber = 0;
+    try (FileChannel channel = FileChannel.open(location, StandardOpenOption.READ)) {
+      long size = channel.size();
+      long position = 0;
+      while (position < size) {
+        int length = (int) Math.min(window, size - position);
+        boolean lastWindow = position + length == size;
+        buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+        view = buffer.duplicate();
+        lineStart = 0;
+        fieldStart = 0;
+        fieldCount = 0;
+        int i = 0;
+        for (; i + 8 <= length; i += 8) {
+          long word = buffer.getLong(i);
+          long found = matches(word ^ NEWLINES) | matches(word ^ separators);
+          while (found != 0) {
+            int at = i + (Long.numberOfLeadingZeros(found) >>> 3);
+            handled += delimiter(at, skipHeader, handler);
+            found ^= Long.highestOneBit(found);
+          }
+        }
+        for (; i < length; i++) {
+          byte next = buffer.get(i);
+          if (next == separator || next == '\n') {
+            handled += delimiter(i, skipHeader, handler);
+          }
+        }
+        if (lineStart < length && lastWindow) {
+          addField(fieldStart, (buffer.get(length - 1) == '\r') ? length - 1 : length);
+          if (rowNumber > 0 || !skipHeader) {
+            handler.row(this);
+            handled++;
+          }
+          rowNumber++;
+          lineStart = length;
+        } else if (lineStart == 0 && !lastWindow) {
+          throw new IOException(location + " has a line longer than " + window + " bytes.");
+        }
+        position += lineStart;
+      }
+    } finally {
+      buffer = null;
+      view = null;
+    }
+    return handled;
+  }
+
+  /**
+   * Return a word with the high bit set in every byte of <code>word</code> that is zero, and no
+   * others.
+   *
+   * @param word eight bytes.
+   * @return the mask of zero bytes.
+   */
+  private static long matches(long word) {
+    long low = (word & 0x7F7F7F7F7F7F7F7FL) + 0x7F7F7F7F7F7F7F7FL;
+    return ~(low | word | 0x7F7F7F7F7F7F7F7FL);
+  }
+
+  /**
+   * Handle a separator or line break in the mapped window, ending a field or a row.
+   *
+   * @param at offset of the separator or line break.
+   * @param skipHeader if true the first row is not handed to <code>handler</code>.
+   * @param handler receives the row when a line ends.
+   * @return 1 if a row was handed to <code>handler</code>, otherwise 0.
+   * @throws IOException when <code>handler</code> fails.
+   */
+  private int delimiter(int at, boolean skipHeader, RowHandler handler) throws IOException {
+    if (buffer.get(at) != '\n') {
+      addField(fieldStart, at);
+      fieldStart = at + 1;
+      return 0;
+    }
+    addField(fieldStart, (at > fieldStart && buffer.get(at - 1) == '\r') ? at - 1 : at);
+    int handled = 0;
+    if (rowNumber > 0 || !skipHeader) {
+      handler.row(this);
+      handled = 1;
+    }
+    rowNumber++;
+    lineStart = at + 1;
+    fieldStart = lineStart;
+    fieldCount = 0;
+    return handled;
+  }
+
+  /**
+   * Record the bounds of the next field of the current row.
+   *
+   * @param start offset of the first byte of the field.
+   * @param end offset just after the last byte of the field.
+   */
+  private void addField(int start, int end) {
+    if (fieldCount == starts.length) {
+      starts = Arrays.copyOf(starts, fieldCount * 2);
+      ends = Arrays.copyOf(ends, fieldCount * 2);
+    }
+    starts[fieldCount] = start;
+    ends[fieldCount] = end;
+    fieldCount++;
+  }
+
+  /**
+   * Return the number of fields in the current row. An empty line has one empty field.
+   *
+   * @return number of fields.
+   */
+  protected int getFieldCount() {
+    return fieldCount;
+  }
+
+  /**
+   * Return the index of the current row in the file, counting any skipped header.
+   *
+   * @return <code>long</code> row index, starting at 0.
+   */
+  protected long getRowNumber() {
+    return rowNumber;
+  }
+
+  /**
+   * Parse a field as a decimal integer without creating a <code>String</code>.
+   *
+   * @param field index of the field.
+   * @return the value of the field.
+   * @throws NumberFormatException if the field is not a decimal <code>int</code>.
+   */
+  protected int getInt(int field) {
+    int position = starts[field];
+    int end = ends[field];
+    boolean negative = position < end && buffer.get(position) == '-';
+    if (negative) {
+      position++;
+    }
+    if (position == end || end - position > 10) {
+      throw new NumberFormatException("Row " + rowNumber + " field " + field + " is not an int.");
+    }
+    long value = 0;
+    for (; position < end; position++) {
+      int digit = buffer.get(position) - '0';
+      if (digit < 0 || digit > 9) {
+        throw new NumberFormatException("Row " + rowNumber + " field " + field + " is not an int.");
+      }
+      value = value * 10 + digit;
+    }
+    value = negative ? -value : value;
+    if (value != (int) value) {
+      throw new NumberFormatException("Row " + rowNumber + " field " + field + " is not an int.");
+    }
+    return (int) value;
+  }
+
+  /**
+   * Return a field as a <code>String</code>.
+   *
+   * @param field index of the field.
+   * @return the text of the field.
+   */
+  protected String getString(int field) {
+    return getString(field, field);
+  }
+
+  /**
+   * Return consecutive fields joined into one <code>String</code> without separators, such as
+   * the zone, aisle, rack and level of a location.
+   *
+   * @param first index of the first field.
+   * @param last index of the last field.
+   * @return the text of the fields.
+   */
+  protected String getString(int first, int last) {
+    int length = 0;
+    for (int field = first; field <= last; field++) {
+      length += ends[field] - starts[field];
+    }
+    if (length > scratch.length) {
+      scratch = new byte[Math.max(length, scratch.length * 2)];
+    }
+    int copied = 0;
+    for (int field = first; field <= last; field++) {
+      view.position(starts[field]);
+      view.get(scratch, copied, ends[field] - starts[field]);
+      copied += ends[field] - starts[field];
+    }
+    int high = 0;
+    for (int i = 0; i < length; i++) {
+      high |= scratch[i];
+    }
+    // Plain ASCII, the usual case, needs no decoding
+    return new String(scratch, 0, length,
+        (high < 0) ? StandardCharsets.UTF_8 : StandardCharsets.US_ASCII);
+  }
+
+  /**
+   * Return every field of the current row, without trailing empty fields, as
+   * <code>String.split</code> would.
+   *
+   * @return the fields of the row.
+   */
+  protected String[] getStrings() {
+    int count = fieldCount;
+    while (count > 1 && starts[count - 1] == ends[count - 1]) {
+      count--;
+    }
+    if (count == 1 && starts[0] == ends[0]) {
+      return new String[] {""};
+    }
+    String[] fields = new String[count];
+    for (int field = 0; field < count; field++) {
+      fields[field] = getString(field);
+    }
+    return fields;
+  }
+}
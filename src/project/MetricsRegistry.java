@@ -0,0 +1,125 @@
+package project;
+
+import java.util.ArrayList;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Named counters, gauges and latency histograms describing the flow of <code>PickRequest</code>
+ * through the warehouse. Metrics are created once and kept by the classes that update them, so
+ * recording is a single lock-free update that never allocates.
+ */
+public class MetricsRegistry {
+
+  /** Counters by name. */
+  private final ConcurrentSkipListMap<String, LongAdder> counters = new ConcurrentSkipListMap<>();
+
+  /** Gauges by name. */
+  private final ConcurrentSkipListMap<String, AtomicLong> gauges = new ConcurrentSkipListMap<>();
+
+  /** Latency histograms by name. */
+  private final ConcurrentSkipListMap<String, LatencyHistogram> histograms =
+      new ConcurrentSkipListMap<>();
+
+  /** <code>System.nanoTime</code> at which the registry was created or last reset. */
+  private volatile long startTime = System.nanoTime();
+
+  /** Creates an empty <code>MetricsRegistry</code>. */
+  public MetricsRegistry() {}
+
+  /**
+   * Return the counter with this name, creating it if needed.
+   *
+   * @param name the name of the counter.
+   * @return the counter.
+   */
+  protected LongAdder counter(String name) {
+    return counters.computeIfAbsent(name, key -> new LongAdder());
+  }
+
+  /**
+   * Return the gauge with this name, creating it if needed.
+   *
+   * @param name the name of the gauge.
+   * @return the gauge.
+   */
+  protected AtomicLong gauge(String name) {
+    return gauges.computeIfAbsent(name, key -> new AtomicLong());
+  }
+
+  /**
+   * Return the latency histogram with this name, creating it if needed.
+   *
+   * @param name the name of the histogram.
+   * @return the histogram.
+   */
+  protected LatencyHistogram histogram(String name) {
+    return histograms.computeIfAbsent(name, key -> new LatencyHistogram());
+  }
+
+  /**
+   * Return how many times a counter has been incremented per hour since the registry was reset.
+   *
+   * @param name the name of the counter.
+   * @return the hourly rate of the counter.
+   */
+  protected double perHour(String name) {
+    double hours = (System.nanoTime() - startTime) / 3.6e12;
+    return (hours <= 0) ? 0 : counter(name).sum() / hours;
+  }
+
+  /** Set every metric back to zero and restart the clock used for rates. */
+  protected void reset() {
+    for (LongAdder counter : counters.values()) {
+      counter.reset();
+    }
+    for (AtomicLong gauge : gauges.values()) {
+      gauge.set(0);
+    }
+    for (LatencyHistogram histogram : histograms.values()) {
+      histogram.reset();
+    }
+    startTime = System.nanoTime();
+  }
+
+  /**
+   * Take a snapshot of every metric as lines of a csv report. Histogram values are in
+   * microseconds.
+   *
+   * @return a header line followed by one line per metric.
+   */
+  protected ArrayList<String[]> snapshot() {
+    ArrayList<String[]> lines = new ArrayList<>();
+    lines.add(new String[] {"metric", "type", "count", "value", "mean us", "p50 us", "p90 us",
+        "p99 us", "max us"});
+    for (Map.Entry<String, LongAdder> counter : counters.entrySet()) {
+      lines.add(new String[] {counter.getKey(), "counter", String.valueOf(counter.getValue().sum()),
+          String.format(Locale.ROOT, "%.1f/h", perHour(counter.getKey())), "", "", "", "", ""});
+    }
+    for (Map.Entry<String, AtomicLong> gauge : gauges.entrySet()) {
+      lines.add(new String[] {gauge.getKey(), "gauge", "", String.valueOf(gauge.getValue().get()),
+          "", "", "", "", ""});
+    }
+    for (Map.Entry<String, LatencyHistogram> entry : histograms.entrySet()) {
+      LatencyHistogram histogram = entry.getValue();
+      lines.add(new String[] {entry.getKey(), "histogram", String.valueOf(histogram.getCount()), "",
+          micros(histogram.getMean()), micros(histogram.getPercentile(50)),
+          micros(histogram.getPercentile(90)), micros(histogram.getPercentile(99)),
+          micros(histogram.getMax())});
+    }
+    return lines;
+  }
+
+  /**
+   * Format nanoseconds as microseconds.
+   *
+   * @param nanos a duration in nanoseconds.
+   * @return the duration in microseconds with one decimal.
+   */
+  private static String micros(long nanos) {
+    return String.format(Locale.ROOT, "%.1f", nanos / 1000.0);
+  }
+}
@@ -76,6 +76,38 @@ public class Order {
     return orderId;
   }
 
+  /**
+   * Write this <code>Order</code> to a snapshot.
+   * 
+   * @param out the snapshot being written.
+   */
+  protected void writeSnapshot(WarehouseSnapshot out) {
+    out.putInt(orderId);
+    out.putString(status);
+    out.putInt(contents.size());
+    for (String sku : contents) {
+      out.putString(sku);
+    }
+  }
+
+  /**
+   * Read an <code>Order</code> written by <code>writeSnapshot</code>.
+   * 
+   * @param in the snapshot being read.
+   * @return the restored <code>Order</code>.
+   */
+  protected static Order readSnapshot(WarehouseSnapshot in) {
+    int orderId = in.getInt();
+    String status = in.getString();
+    ArrayList<String> skus = new ArrayList<>();
+    for (int count = in.getInt(); count > 0; count--) {
+      skus.add(in.getString());
+    }
+    Order order = new Order(skus, orderId);
+    order.status = status;
+    return order;
+  }
+
   @Override
   public String toString() {
     return "Order # " + orderId + " Status: " + status + " Contains: " + contents.get(0).toString()
@@ -0,0 +1,163 @@
+package project;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.ToIntFunction;
+
+/**
+ * Groups a window of orders into <code>PickRequest</code> of four whose SKUs lie close together
+ * along the route, rather than four at a time as they arrive. A route is costed as
+ * <code>SlottingEngine</code> costs it: from the depot to each SKU in the order
+ * <code>WarehousePicking</code> picks them and back.
+ *
+ * <p>Each request starts from the oldest order not yet grouped and takes, one by one, the orders
+ * that lengthen its route least. Orders are then swapped between requests while any swap shortens
+ * the two routes. Requests are returned in order of their oldest order, each with its orders in
+ * the order they arrived, so the oldest order in a window is always in the first request formed.
+ * The requests of a window take consecutive IDs as any others do, so every dock still loads them
+ * in ID order; an order only waits for the rest of its window to arrive.
+ */
+public class OrderClustering {
+
+  /** Number of orders in a <code>PickRequest</code>. */
+  protected static final int ORDERS = 4;
+
+  /**
+   * Return the orders of a window in the order they are formed into <code>PickRequest</code>,
+   * every four from the start making one request.
+   *
+   * @param orders the SKUs of each order, in the order they arrived, a multiple of four of them.
+   * @param position how far along the route the location of a SKU is.
+   * @return the index of each order in <code>orders</code>, grouped four by four.
+   */
+  protected static int[] group(List<List<String>> orders, ToIntFunction<String> position) {
+    int count = orders.size();
+    int[] grouped = new int[count];
+    boolean[] taken = new boolean[count];
+    int oldest = 0;
+    for (int start = 0; start < count; start += ORDERS) {
+      while (taken[oldest]) {
+        oldest++;
+      }
+      grouped[start] = oldest;
+      taken[oldest] = true;
+      for (int slot = start + 1; slot < start + ORDERS; slot++) {
+        long shortest = Long.MAX_VALUE;
+        int nearest = -1;
+        for (int order = oldest + 1; order < count; order++) {
+          if (!taken[order]) {
+            grouped[slot] = order;
+            long length = routeLength(orders, grouped, start, slot + 1, position);
+            if (length < shortest) {
+              shortest = length;
+              nearest = order;
+            }
+          }
+        }
+        grouped[slot] = nearest;
+        taken[nearest] = true;
+      }
+    }
+    long[] lengths = new long[count / ORDERS];
+    for (int request = 0; request < lengths.length; request++) {
+      lengths[request] = routeLength(orders, grouped, request * ORDERS, (request + 1) * ORDERS,
+          position);
+    }
+    boolean improved = true;
+    while (improved) {
+      improved = false;
+      for (int first = 0; first < count; first++) {
+        for (int second = (first / ORDERS + 1) * ORDERS; second < count; second++) {
+          if (swap(orders, grouped, lengths, first, second, position)) {
+            improved = true;
+          }
+        }
+      }
+    }
+    return inArrivalOrder(grouped);
+  }
+
+  /**
+   * Swap two orders between requests if that shortens the two routes, keeping their lengths.
+   *
+   * @param orders the SKUs of each order.
+   * @param grouped the orders, grouped four by four.
+   * @param lengths the route length of each request.
+   * @param first the place in <code>grouped</code> of one order.
+   * @param second the place in <code>grouped</code> of an order in a later request.
+   * @param position how far along the route the location of a SKU is.
+   * @return <code>true</code> if the orders were swapped.
+   */
+  private static boolean swap(List<List<String>> orders, int[] grouped, long[] lengths, int first,
+      int second, ToIntFunction<String> position) {
+    int one = first / ORDERS;
+    int other = second / ORDERS;
+    swapPlaces(grouped, first, second);
+    long oneLength = routeLength(orders, grouped, one * ORDERS, (one + 1) * ORDERS, position);
+    long otherLength =
+        routeLength(orders, grouped, other * ORDERS, (other + 1) * ORDERS, position);
+    if (oneLength + otherLength < lengths[one] + lengths[other]) {
+      lengths[one] = oneLength;
+      lengths[other] = otherLength;
+      return true;
+    }
+    swapPlaces(grouped, first, second);
+    return false;
+  }
+
+  /**
+   * Swap two entries of an array.
+   *
+   * @param grouped the array.
+   * @param first the index of one entry.
+   * @param second the index of the other.
+   */
+  private static void swapPlaces(int[] grouped, int first, int second) {
+    int order = grouped[first];
+    grouped[first] = grouped[second];
+    grouped[second] = order;
+  }
+
+  /**
+   * Return the route length of some grouped orders, picked as <code>WarehousePicking</code> picks
+   * them.
+   *
+   * @param orders the SKUs of each order.
+   * @param grouped the orders, grouped four by four.
+   * @param from the place in <code>grouped</code> of the first order to route.
+   * @param to the place after the last.
+   * @param position how far along the route the location of a SKU is.
+   * @return <code>long</code> distance in locations.
+   */
+  private static long routeLength(List<List<String>> orders, int[] grouped, int from, int to,
+      ToIntFunction<String> position) {
+    ArrayList<String> skus = new ArrayList<>();
+    for (int place = from; place < to; place++) {
+      skus.addAll(orders.get(grouped[place]));
+    }
+    Collections.sort(skus);
+    return SlottingEngine.routeLength(skus, position);
+  }
+
+  /**
+   * Sort the orders of each request by arrival, and the requests by their oldest order.
+   *
+   * @param grouped the orders, grouped four by four.
+   * @return the same orders, reordered.
+   */
+  private static int[] inArrivalOrder(int[] grouped) {
+    int[][] requests = new int[grouped.length / ORDERS][];
+    for (int request = 0; request < requests.length; request++) {
+      requests[request] = Arrays.copyOfRange(grouped, request * ORDERS, (request + 1) * ORDERS);
+      Arrays.sort(requests[request]);
+    }
+    Arrays.sort(requests, (first, second) -> Integer.compare(first[0], second[0]));
+    int[] ordered = new int[grouped.length];
+    for (int request = 0; request < requests.length; request++) {
+      System.arraycopy(requests[request], 0, ordered, request * ORDERS, ORDERS);
+    }
+    return ordered;
+  }
+}
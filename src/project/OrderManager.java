@@ -6,15 +6,18 @@ import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Hashtable;
 import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
 
 /**
  * OrderManager keeps track of all orders and picking requests.
  */
-public class OrderManager {
+public class OrderManager implements OrderManagerMXBean {
 
   /**
-   * Stores up to four <code>Order</code>. Once a fourth <code>Order</code> is received pushes the
-   * list to <code>PickRequest</code> and moves all orders into <code>orderArchive</code>.
+   * Stores up to a window of <code>Order</code>, four unless clustering. Once the window is full
+   * pushes the list to <code>PickRequest</code> and moves all orders into
+   * <code>orderArchive</code>.
    */
   private LinkedList<Order> orderPurgatory = new LinkedList<>();
 
@@ -22,10 +25,10 @@ public class OrderManager {
   private ArrayList<Order> orderArchive = new ArrayList<>();
 
   /**
-   * Contains all active <code>PickRequests</code>. <code>Picker</code> selects the first
-   * <code>PickRequest</code> in the list to work on.
+   * Hands out all active <code>PickRequests</code> to <code>Picker</code>. With one deque,
+   * <code>Picker</code> always get the first <code>PickRequest</code> in line.
    */
-  private LinkedList<PickRequest> activePickRequests = new LinkedList<>();
+  private PickDispatcher activePickRequests = new PickDispatcher(1);
 
   /**
    * Represents the marshaling area. When <code>Picker</code> drops off an <code>unsortedPal</code>,
@@ -51,6 +54,33 @@ public class OrderManager {
    */
   private int orderId = 0;
 
+  /** Size of <code>orderPurgatory</code>, published for monitoring. */
+  private volatile int purgatorySize = 0;
+
+  /** Size of <code>activePickRequests</code>, published for monitoring. */
+  private volatile int activeSize = 0;
+
+  /** Size of <code>orderArchive</code>, published for monitoring. */
+  private volatile int archiveSize = 0;
+
+  /** Number of <code>PickRequest</code> created, published for monitoring. */
+  private volatile int pickRequestsCreated = 0;
+
+  /** The loading docks picking is scheduled toward, or <code>null</code> to pick FIFO. */
+  private TruckManager deadlines;
+
+  /** Stock reserved as <code>PickRequest</code> are released, or <code>null</code> if not. */
+  private StockReservations reservations;
+
+  /** Number of <code>Order</code> held before they are grouped, four to group them FIFO. */
+  private int clusteringWindow = OrderClustering.ORDERS;
+
+  /** The warehouse orders are clustered by the layout of, or <code>null</code> if not. */
+  private WarehouseManager layout;
+
+  /** <code>System.nanoTime</code> at which the oldest <code>Order</code> held arrived. */
+  private long heldSince;
+
   /**
    * Constructs <code>OrderManager</code> for the warehouse. <code>OrderManger</code> stores all
    * <code>Order</code> that have been received in the system and prepares them for
@@ -65,6 +95,14 @@ public class OrderManager {
     this.translationTable = translationTable(directory.resolve("translation.csv"));
   }
 
+  /**
+   * Creates an <code>OrderManager</code> with no translation table, to be filled from a snapshot
+   * by <code>readSnapshot</code>.
+   */
+  protected OrderManager() {
+    this.translationTable = new Hashtable<>();
+  }
+
   /**
    * Return the <code>orderArchive</code>.
    * 
@@ -85,41 +123,190 @@ public class OrderManager {
     ArrayList<String> skus = translate(color, model);
     Order newOrder = new Order(skus, orderId);
     orderId++;
-    RunWarehouse.logger.info("Order #" + String.valueOf(newOrder.getOrderId()) + " created");
+    RunWarehouse.events.record(EventType.ORDER_CREATED, -1, -1, -1, newOrder.getOrderId());
     moveToPurgatory(newOrder);
   }
 
   /**
    * Move new <code>Order</code> to <code>orderPurgatory</code>. When <code>orderPurgatory</code> is
-   * full, push all <code>Order</code> to <code>PickRequest</code>, remove each <code>Order</code>
-   * from <code>orderPurgatory</code> and move it to <code>orderArchive</code> in first in first out
-   * order.
+   * full, push all <code>Order</code> to <code>PickRequest</code> four at a time, grouped by
+   * <code>OrderClustering</code> when clustering and in first in first out order when not, remove
+   * each <code>Order</code> from <code>orderPurgatory</code> and move it to
+   * <code>orderArchive</code> in the order pushed.
    * 
    * @param newOrder the <code>Order</code> to add to <code>orderPurgatory</code>.
    */
   private void moveToPurgatory(Order newOrder) {
-    if (orderPurgatory.size() < 3) {
-      orderPurgatory.add(newOrder);
-    } else {
-      orderPurgatory.add(newOrder);
-      pushOrders(orderPurgatory);
-      while (!orderPurgatory.isEmpty()) {
-        orderArchive.add(orderPurgatory.remove());
+    if (orderPurgatory.isEmpty()) {
+      heldSince = System.nanoTime();
+    }
+    orderPurgatory.add(newOrder);
+    if (orderPurgatory.size() >= clusteringWindow) {
+      ArrayList<Order> window = new ArrayList<>(orderPurgatory);
+      if (layout != null) {
+        List<List<String>> skus = new ArrayList<>();
+        for (Order order : window) {
+          skus.add(order.getContents());
+        }
+        int[] grouped = OrderClustering.group(skus, layout.getSlotting()::position);
+        ArrayList<Order> arrived = new ArrayList<>(window);
+        for (int place = 0; place < grouped.length; place++) {
+          window.set(place, arrived.get(grouped[place]));
+        }
       }
+      release(window);
     }
+    publishSizes();
+  }
+
+  /**
+   * Release every <code>Order</code> held in <code>orderPurgatory</code> without waiting for the
+   * window to fill, such as when no more orders are coming or the oldest has waited too long.
+   * They are pushed to <code>PickRequest</code> four at a time in first in first out order, the
+   * last with fewer if there are not four left, and moved to <code>orderArchive</code>.
+   */
+  protected void flushPurgatory() {
+    if (!orderPurgatory.isEmpty()) {
+      release(new ArrayList<>(orderPurgatory));
+      publishSizes();
+    }
+  }
+
+  /**
+   * Push the orders of a window to <code>PickRequest</code> four at a time, the last with fewer
+   * if there are not four left, archive them and empty <code>orderPurgatory</code>.
+   * 
+   * @param window the orders held, in the order they are to be pushed.
+   */
+  private void release(List<Order> window) {
+    for (int start = 0; start < window.size(); start += OrderClustering.ORDERS) {
+      int end = Math.min(start + OrderClustering.ORDERS, window.size());
+      pushOrders(new LinkedList<>(window.subList(start, end)));
+    }
+    orderArchive.addAll(window);
+    orderPurgatory.clear();
+  }
+
+  /**
+   * Return how long the oldest <code>Order</code> held in <code>orderPurgatory</code> has waited.
+   * A restored warehouse counts from when it was restored.
+   * 
+   * @return <code>long</code> milliseconds, or 0 if no orders are held.
+   */
+  protected long getHeldMillis() {
+    return orderPurgatory.isEmpty() ? 0 : (System.nanoTime() - heldSince) / 1_000_000L;
   }
 
   /**
    * Create a new <code>pickingRequest</code> given <code>orderPurgatory</code>, and move that
-   * <code>pickingRequest</code> into <code>activePickRequests</code>.
+   * <code>pickingRequest</code> into <code>activePickRequests</code>. When stock is reserved, a
+   * <code>pickingRequest</code> whose stock cannot be reserved is held until it can.
    * 
    * @param orderPurgatory the list of <code>Order</code> to be made into a
    *        <code>pickingRequest</code>.
    */
   private void pushOrders(LinkedList<Order> orderPurgatory) {
     PickRequest pickingRequest = new PickRequest(orderPurgatory, pickReqId);
-    activePickRequests.add(pickingRequest);
+    if (reservations == null || reservations.reserve(pickingRequest)) {
+      activePickRequests.release(pickingRequest);
+    } else {
+      reservations.hold(pickingRequest, false);
+    }
     pickReqId++;
+    pickRequestsCreated = pickReqId;
+  }
+
+  /**
+   * Hand out active <code>PickRequest</code> over a number of deques, one per group of
+   * <code>Picker</code>, so that many pickers working at once do not all queue on one list. Must
+   * be called while no <code>PickRequest</code> are active.
+   * 
+   * @param deques the number of deques, at least one.
+   */
+  protected void setPickDeques(int deques) {
+    if (activePickRequests.size() > 0) {
+      throw new IllegalStateException("Deques can not change while pick requests are active.");
+    }
+    activePickRequests = new PickDispatcher(deques);
+    activePickRequests.setDeadlines(deadlines);
+  }
+
+  /**
+   * Schedule active <code>PickRequest</code> by how soon the docks will load them, or FIFO.
+   * 
+   * @param deadlines the <code>TruckManager</code> of the docks, or <code>null</code> for FIFO.
+   */
+  protected void setDeadlines(TruckManager deadlines) {
+    this.deadlines = deadlines;
+    activePickRequests.setDeadlines(deadlines);
+  }
+
+  /**
+   * Reserve stock for each <code>PickRequest</code> as it is released, or not.
+   * 
+   * @param reservations the <code>StockReservations</code> of the warehouse, or <code>null</code>
+   *        to release every <code>PickRequest</code> at once.
+   */
+  protected void setReservations(StockReservations reservations) {
+    this.reservations = reservations;
+  }
+
+  /**
+   * Hold a window of orders and group them into <code>PickRequest</code> whose SKUs lie close
+   * together, as <code>OrderClustering</code> describes, or group them four at a time as they
+   * arrive. Set before orders arrive.
+   * 
+   * @param window the number of orders held, a multiple of four; four groups them FIFO.
+   * @param warehouse the warehouse whose layout the orders are grouped by.
+   */
+  protected void setClustering(int window, WarehouseManager warehouse) {
+    if (window < OrderClustering.ORDERS || window % OrderClustering.ORDERS != 0) {
+      throw new IllegalArgumentException("Orders must be clustered in windows of a multiple of "
+          + OrderClustering.ORDERS + ".");
+    }
+    clusteringWindow = window;
+    layout = (window > OrderClustering.ORDERS) ? warehouse : null;
+  }
+
+  /**
+   * Return the number of orders held before they are grouped into <code>PickRequest</code>.
+   * 
+   * @return <code>int</code> number of orders, four when grouping them FIFO.
+   */
+  protected int getClusteringWindow() {
+    return clusteringWindow;
+  }
+
+  /**
+   * Release every held <code>PickRequest</code> whose stock can now be reserved, in the order
+   * they were held. Called when stock is added to the warehouse.
+   */
+  protected void releaseHeld() {
+    if (reservations != null) {
+      for (PickRequest pickReq : reservations.retry()) {
+        activePickRequests.release(pickReq);
+      }
+      publishSizes();
+    }
+  }
+
+  /**
+   * Have an active <code>PickRequest</code> that is holding up loading picked before any other.
+   * 
+   * @param pickId the ID of the <code>PickRequest</code>.
+   * @return <code>true</code> if it was waiting to be picked, not already picked.
+   */
+  protected boolean escalate(int pickId) {
+    return activePickRequests.escalate(pickId);
+  }
+
+  /**
+   * Register a <code>Picker</code> to be handed <code>PickRequest</code>.
+   * 
+   * @return <code>int</code> the number the <code>Picker</code> takes pick requests with.
+   */
+  protected int registerPicker() {
+    return activePickRequests.register();
   }
 
   /**
@@ -127,22 +314,137 @@ public class OrderManager {
    * 
    * @return The first pick request in the active pick request list.
    */
-  protected PickRequest getNewPickReq() { // add an exception check
-    if (!activePickRequests.isEmpty()) {
-      return activePickRequests.removeFirst();
-    } else {
-      return null;
+  protected PickRequest getNewPickReq() {
+    return getNewPickReq(0);
+  }
+
+  /**
+   * Remove and return the next <code>PickRequest</code> for a <code>Picker</code>, stealing one
+   * from another <code>Picker</code> if there are none on its own deque.
+   * 
+   * @param picker the number the <code>Picker</code> registered with.
+   * @return The next pick request, or <code>null</code> if there are none.
+   */
+  protected PickRequest getNewPickReq(int picker) {
+    PickRequest next = activePickRequests.take(picker);
+    if (next != null) {
+      publishSizes();
     }
+    return next;
   }
 
   /**
    * If <code>PickRequest</code> is improperly picked it is returned to the
-   * <code>activePickRequest</code> queue. It is added to the front so it gets picked next.
+   * <code>activePickRequest</code> queue. It is added to the front so it gets picked next. When
+   * stock is reserved, what it still had reserved is given back and the items it is to re-pick
+   * reserved instead, and it is held before any other if they cannot be.
    * 
    * @param pickReq The <code>PickRequest</code> to be added back into the queue.
    */
   protected void returnPickReq(PickRequest pickReq) {
-    activePickRequests.addFirst(pickReq);
+    if (reservations == null) {
+      activePickRequests.repick(pickReq);
+    } else {
+      reservations.release(pickReq);
+      if (reservations.reserve(pickReq)) {
+        activePickRequests.repick(pickReq);
+      } else {
+        reservations.hold(pickReq, true);
+      }
+      releaseHeld();
+    }
+    publishSizes();
+  }
+
+  /**
+   * Write the translation table, every <code>Order</code> and every queued
+   * <code>PickRequest</code> to a snapshot.
+   * 
+   * @param out the snapshot being written.
+   */
+  protected void writeSnapshot(WarehouseSnapshot out) {
+    out.putInt(translationTable.size());
+    for (Map.Entry<String, ArrayList<String>> entry : translationTable.entrySet()) {
+      out.putString(entry.getKey());
+      out.putInt(entry.getValue().size());
+      for (String sku : entry.getValue()) {
+        out.putString(sku);
+      }
+    }
+    out.putInt(orderId);
+    out.putInt(pickReqId);
+    out.putInt(orderArchive.size());
+    for (Order order : orderArchive) {
+      out.putOrder(order);
+    }
+    out.putInt(orderPurgatory.size());
+    for (Order order : orderPurgatory) {
+      out.putOrder(order);
+    }
+    out.putInt(activePickRequests.getSlots());
+    activePickRequests.writeSnapshot(out);
+    out.putInt(marshalQueue.size());
+    for (PickRequest request : marshalQueue) {
+      out.putRequest(request);
+    }
+  }
+
+  /**
+   * Fill an empty <code>OrderManager</code> from a snapshot written by <code>writeSnapshot</code>.
+   * 
+   * @param in the snapshot being read.
+   */
+  protected void readSnapshot(WarehouseSnapshot in) {
+    for (int count = in.getInt(); count > 0; count--) {
+      String description = in.getString();
+      ArrayList<String> skus = new ArrayList<>();
+      for (int size = in.getInt(); size > 0; size--) {
+        skus.add(in.getString());
+      }
+      translationTable.put(description, skus);
+    }
+    orderId = in.getInt();
+    pickReqId = in.getInt();
+    pickRequestsCreated = pickReqId;
+    for (int count = in.getInt(); count > 0; count--) {
+      orderArchive.add(in.getOrder());
+    }
+    for (int count = in.getInt(); count > 0; count--) {
+      orderPurgatory.add(in.getOrder());
+    }
+    heldSince = System.nanoTime();
+    activePickRequests = PickDispatcher.readSnapshot(in, in.getInt());
+    for (int count = in.getInt(); count > 0; count--) {
+      marshalQueue.add(in.getRequest());
+    }
+    publishSizes();
+  }
+
+  /** Copy the sizes of the order queues into the fields read by monitoring. */
+  private void publishSizes() {
+    purgatorySize = orderPurgatory.size();
+    activeSize = activePickRequests.size();
+    archiveSize = orderArchive.size();
+  }
+
+  @Override
+  public int getPurgatorySize() {
+    return purgatorySize;
+  }
+
+  @Override
+  public int getActivePickRequests() {
+    return activeSize;
+  }
+
+  @Override
+  public int getArchiveSize() {
+    return archiveSize;
+  }
+
+  @Override
+  public int getPickRequestsCreated() {
+    return pickRequestsCreated;
   }
 
   /**
@@ -166,14 +468,13 @@ public class OrderManager {
    */
   private Hashtable<String, ArrayList<String>> translationTable(Path translationlocation)
       throws FileNotFoundException, IOException {
-    ArrayList<String[]> fileContents = ReadAndWrite.readFile(translationlocation, ",", true);
     Hashtable<String, ArrayList<String>> translationTable = new Hashtable<>();
-    for (String[] line : fileContents) {
+    new MappedCsvReader(',').read(translationlocation, true, line -> {
       ArrayList<String> skus = new ArrayList<>();
-      skus.add(line[2]);
-      skus.add(line[3]);
-      translationTable.put(line[0] + line[1], skus);
-    }
+      skus.add(line.getString(2));
+      skus.add(line.getString(3));
+      translationTable.put(line.getString(0, 1), skus);
+    });
     return translationTable;
   }
 
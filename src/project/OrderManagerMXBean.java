@@ -0,0 +1,36 @@
+package project;
+
+/**
+ * Live view of <code>OrderManager</code> queues, published over JMX. Attributes are read from
+ * volatile fields, so reading them never blocks the creation or picking of orders.
+ */
+public interface OrderManagerMXBean {
+
+  /**
+   * Return the number of <code>Order</code> waiting in purgatory for a <code>PickRequest</code>.
+   *
+   * @return <code>int</code> size of the order purgatory.
+   */
+  int getPurgatorySize();
+
+  /**
+   * Return the number of <code>PickRequest</code> waiting for a <code>Picker</code>.
+   *
+   * @return <code>int</code> number of active pick requests.
+   */
+  int getActivePickRequests();
+
+  /**
+   * Return the number of <code>Order</code> already grouped into a <code>PickRequest</code>.
+   *
+   * @return <code>int</code> size of the order archive.
+   */
+  int getArchiveSize();
+
+  /**
+   * Return the number of <code>PickRequest</code> created so far.
+   *
+   * @return <code>int</code> number of pick requests created.
+   */
+  int getPickRequestsCreated();
+}
@@ -16,6 +16,12 @@ public class Pallet {
   /** Tracks the number of SKUs loaded onto <code>Pallet</code>. */
   private int fillProg = 0;
 
+  /**
+   * Number of leading positions a <code>Loader</code> has checked, so a rescan only has to check
+   * the positions after them against the <code>Pallet</code>.
+   */
+  private int verified = 0;
+
   /**
    * Constructs new <code>Pallet</code> object that can hold <code>size</code> number of SKUs.
    * 
@@ -63,6 +69,24 @@ public class Pallet {
     return surface[position];
   }
 
+  /**
+   * Returns the number of leading positions already checked by a <code>Loader</code>.
+   * 
+   * @return <code>int</code> the verified prefix of this <code>Pallet</code>.
+   */
+  protected int getVerified() {
+    return verified;
+  }
+
+  /**
+   * Record that every position up to a point has been checked. The verified prefix only grows.
+   * 
+   * @param positions the number of leading positions checked.
+   */
+  protected void setVerified(int positions) {
+    verified = Math.max(verified, positions);
+  }
+
   /**
    * Removed the given SKU from the <code>Pallet</code>.
    * 
@@ -104,5 +128,36 @@ public class Pallet {
     for (int i = 0; i < surface.length; i++) {
       surface[i] = null;
     }
+    verified = 0;
+  }
+
+  /**
+   * Write this <code>Pallet</code> to a snapshot.
+   *
+   * @param out the snapshot being written.
+   */
+  protected void writeSnapshot(WarehouseSnapshot out) {
+    out.putInt(surface.length);
+    out.putInt(fillProg);
+    out.putInt(verified);
+    for (String sku : surface) {
+      out.putString(sku);
+    }
+  }
+
+  /**
+   * Read a <code>Pallet</code> written by <code>writeSnapshot</code>.
+   *
+   * @param in the snapshot being read.
+   * @return the restored <code>Pallet</code>.
+   */
+  protected static Pallet readSnapshot(WarehouseSnapshot in) {
+    Pallet pallet = new Pallet(in.getInt());
+    pallet.fillProg = in.getInt();
+    pallet.verified = in.getInt();
+    for (int i = 0; i < pallet.surface.length; i++) {
+      pallet.surface[i] = in.getString();
+    }
+    return pallet;
   }
 }
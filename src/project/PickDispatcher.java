@@ -0,0 +1,293 @@
+package project;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Hands released <code>PickRequest</code> out to <code>Picker</code> without a single shared
+ * queue. Released requests are dealt round robin onto a number of deques, and each
+ * <code>Picker</code> takes from its own deque first. A <code>Picker</code> whose deque is empty
+ * steals from the others, taking the oldest request there so none is left behind while trucks wait
+ * to load in ID order. Requests thrown out to be picked again go on a shared deque of re-picks that
+ * every <code>Picker</code> takes from before anything else.
+ *
+ * <p>Each deque has its own lock, so pickers on different threads only meet when they steal or
+ * there are re-picks. A <code>Picker</code> that finds nothing waiting returns without locking any
+ * deque, and one that steals starts from a victim that varies with the picker and with each
+ * release, so pickers that run dry do not all queue on the same deque. The victim is derived
+ * rather than drawn at random, so a replayed simulation steals exactly as the original did. With a
+ * single deque, requests are handed out exactly as from one queue: re-picks first, most recent
+ * first, then in the order released.
+ *
+ * <p>With deadline scheduling, a <code>Picker</code> instead takes the request at the head of
+ * any deque that a <code>Loader</code> needs soonest, and a request blocking the head of the load
+ * sequence can be escalated to be picked before anything else. At most
+ * <code>DEADLINE_PROBES</code> deques are compared for each request taken.
+ */
+public class PickDispatcher {
+
+  /** Most deques whose heads are compared when taking the request needed soonest. */
+  protected static final int DEADLINE_PROBES = 8;
+
+  /** The deque of released <code>PickRequest</code> for each slot. */
+  private final ArrayList<ArrayDeque<PickRequest>> deques = new ArrayList<>();
+
+  /** <code>PickRequest</code> to be picked again, taken before any other. */
+  private final ArrayDeque<PickRequest> repicks = new ArrayDeque<>();
+
+  /** Size of <code>repicks</code>, so it is only locked when there are re-picks. */
+  private volatile int repickCount = 0;
+
+  /** Number of <code>PickRequest</code> released so far, to deal them round robin. */
+  private final AtomicInteger released = new AtomicInteger();
+
+  /** Number of <code>Picker</code> registered so far, to spread them over the slots. */
+  private final AtomicInteger registered = new AtomicInteger();
+
+  /** Number of <code>PickRequest</code> waiting, counted without a shared hot spot. */
+  private final LongAdder waiting = new LongAdder();
+
+  /** The loading docks requests are scheduled toward, or <code>null</code> to take them FIFO. */
+  private TruckManager deadlines;
+
+  /**
+   * Creates a dispatcher with a number of deques.
+   *
+   * @param slots the number of deques, at least one.
+   */
+  protected PickDispatcher(int slots) {
+    for (int slot = 0; slot < slots; slot++) {
+      deques.add(new ArrayDeque<>());
+    }
+  }
+
+  /**
+   * Register a <code>Picker</code>, returning the number it takes <code>PickRequest</code> with.
+   * Pickers are spread evenly over the deques.
+   *
+   * @return <code>int</code> the number of the picker.
+   */
+  protected int register() {
+    return registered.getAndIncrement();
+  }
+
+  /**
+   * Release a new <code>PickRequest</code> to be picked, onto the next deque in turn.
+   *
+   * @param pickReq the <code>PickRequest</code>.
+   */
+  protected void release(PickRequest pickReq) {
+    ArrayDeque<PickRequest> deque =
+        deques.get(Math.floorMod(released.getAndIncrement(), deques.size()));
+    synchronized (deque) {
+      deque.addLast(pickReq);
+    }
+    waiting.increment();
+  }
+
+  /**
+   * Return a <code>PickRequest</code> to be picked again, before any other.
+   *
+   * @param pickReq the <code>PickRequest</code>.
+   */
+  protected void repick(PickRequest pickReq) {
+    synchronized (repicks) {
+      repicks.addFirst(pickReq);
+      repickCount = repicks.size();
+    }
+    waiting.increment();
+  }
+
+  /**
+   * Schedule requests by how soon the docks will load them, or FIFO.
+   *
+   * @param deadlines the <code>TruckManager</code> of the docks, or <code>null</code> for FIFO.
+   */
+  protected void setDeadlines(TruckManager deadlines) {
+    this.deadlines = deadlines;
+  }
+
+  /**
+   * Take the next <code>PickRequest</code> for a <code>Picker</code>: a re-pick, else the oldest
+   * on its own deque, else the oldest on another deque. With deadline scheduling, the request
+   * needed soonest at the head of the deques compared is taken after re-picks.
+   *
+   * @param picker the number the <code>Picker</code> registered with.
+   * @return the <code>PickRequest</code>, or <code>null</code> if none are waiting.
+   */
+  protected PickRequest take(int picker) {
+    if (waiting.sum() <= 0) {
+      return null;
+    }
+    PickRequest next = null;
+    if (repickCount > 0) {
+      synchronized (repicks) {
+        next = repicks.pollFirst();
+        repickCount = repicks.size();
+      }
+    }
+    int slots = deques.size();
+    int own = Math.floorMod(picker, slots);
+    if (next == null && deadlines != null && slots > 1) {
+      next = takeSoonest(own);
+    }
+    int victim = (slots > 2) ? Math.floorMod(spread(picker, released.get()), slots - 1) : 0;
+    for (int steal = 0; next == null && steal < slots; steal++) {
+      int slot = (steal == 0) ? own : (own + 1 + (victim + steal - 1) % (slots - 1)) % slots;
+      ArrayDeque<PickRequest> deque = deques.get(slot);
+      synchronized (deque) {
+        next = deque.pollFirst();
+      }
+    }
+    if (next != null) {
+      waiting.decrement();
+    }
+    return next;
+  }
+
+  /**
+   * Return a number that spreads pickers and releases evenly over the deques to steal from.
+   *
+   * @param picker the number the <code>Picker</code> registered with.
+   * @param count the number of <code>PickRequest</code> released so far.
+   * @return <code>int</code> a well-mixed number.
+   */
+  private static int spread(int picker, int count) {
+    int hash = (picker * 31 + count) * 0x9E3779B9;
+    return hash ^ (hash >>> 16);
+  }
+
+  /**
+   * Take the request needed soonest from the heads of up to <code>DEADLINE_PROBES</code> deques,
+   * each of which holds its requests in ID order, stopping at a request its dock loads next. If
+   * another <code>Picker</code> takes it first, give up and take as without deadlines.
+   *
+   * @param own the deque of the <code>Picker</code>, preferred between equals.
+   * @return the <code>PickRequest</code>, or <code>null</code> if none was found or it was taken.
+   */
+  private PickRequest takeSoonest(int own) {
+    int slots = deques.size();
+    int probes = Math.min(slots, DEADLINE_PROBES);
+    ArrayDeque<PickRequest> soonest = null;
+    PickRequest head = null;
+    int least = Integer.MAX_VALUE;
+    for (int steal = 0; steal < probes && least > 0; steal++) {
+      ArrayDeque<PickRequest> deque = deques.get((own + steal) % slots);
+      PickRequest first;
+      synchronized (deque) {
+        first = deque.peekFirst();
+      }
+      if (first != null) {
+        int loadsAhead = deadlines.getLoadsAhead(first.getPickRequestId());
+        if (loadsAhead < least) {
+          least = loadsAhead;
+          soonest = deque;
+          head = first;
+        }
+      }
+    }
+    if (soonest == null) {
+      return null;
+    }
+    synchronized (soonest) {
+      return (soonest.peekFirst() == head) ? soonest.pollFirst() : null;
+    }
+  }
+
+  /**
+   * Move a waiting <code>PickRequest</code> that is holding up loading to the front of the
+   * re-picks, so the next <code>Picker</code> free takes it.
+   *
+   * @param pickId the ID of the <code>PickRequest</code>.
+   * @return <code>true</code> if it was waiting to be picked.
+   */
+  protected boolean escalate(int pickId) {
+    for (ArrayDeque<PickRequest> deque : deques) {
+      PickRequest straggler = null;
+      synchronized (deque) {
+        for (PickRequest request : deque) {
+          if (request.getPickRequestId() == pickId) {
+            straggler = request;
+            break;
+          }
+        }
+        if (straggler != null) {
+          deque.removeFirstOccurrence(straggler);
+        }
+      }
+      if (straggler != null) {
+        synchronized (repicks) {
+          repicks.addFirst(straggler);
+          repickCount = repicks.size();
+        }
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Return the number of <code>PickRequest</code> waiting to be picked.
+   *
+   * @return <code>int</code> number of requests.
+   */
+  protected int size() {
+    return waiting.intValue();
+  }
+
+  /**
+   * Return the number of deques.
+   *
+   * @return <code>int</code> number of deques.
+   */
+  protected int getSlots() {
+    return deques.size();
+  }
+
+  /**
+   * Write every waiting <code>PickRequest</code> to a snapshot, deque by deque.
+   *
+   * @param out the snapshot being written.
+   */
+  protected void writeSnapshot(WarehouseSnapshot out) {
+    out.putInt(released.get());
+    out.putInt(registered.get());
+    out.putInt(repicks.size());
+    for (PickRequest request : repicks) {
+      out.putRequest(request);
+    }
+    for (ArrayDeque<PickRequest> deque : deques) {
+      out.putInt(deque.size());
+      for (PickRequest request : deque) {
+        out.putRequest(request);
+      }
+    }
+  }
+
+  /**
+   * Read a dispatcher written by <code>writeSnapshot</code>, with the same number of deques.
+   *
+   * @param in the snapshot being read.
+   * @param slots the number of deques.
+   * @return the restored <code>PickDispatcher</code>.
+   */
+  protected static PickDispatcher readSnapshot(WarehouseSnapshot in, int slots) {
+    PickDispatcher dispatcher = new PickDispatcher(slots);
+    dispatcher.released.set(in.getInt());
+    dispatcher.registered.set(in.getInt());
+    for (int count = in.getInt(); count > 0; count--) {
+      dispatcher.repicks.addLast(in.getRequest());
+      dispatcher.waiting.increment();
+    }
+    dispatcher.repickCount = dispatcher.repicks.size();
+    for (ArrayDeque<PickRequest> deque : dispatcher.deques) {
+      for (int count = in.getInt(); count > 0; count--) {
+        deque.addLast(in.getRequest());
+        dispatcher.waiting.increment();
+      }
+    }
+    return dispatcher;
+  }
+}
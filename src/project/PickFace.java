@@ -1,20 +1,36 @@
 package project;
 
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntUnaryOperator;
+
 /**
  * A location in the warehouse that contains the item associated with a SKU and the number of those
  * SKU in stock.
  */
 public class PickFace {
 
+  /**
+   * The location of this <code>PickFace</code> in the warehouse, or <code>null</code> if it is not
+   * on the warehouse floor.
+   */
+  private String location;
+
+  /**
+   * Position of this <code>PickFace</code> along the route through the warehouse, counting from 0,
+   * or -1 if it is not on the warehouse floor.
+   */
+  private int slot = -1;
+
   /**
    * An alpha-numeric value to identify the contents of this <code>PickFace</code>.
    */
   private String sku;
 
   /**
-   * The quantity of items in this <code>PickFace</code>.
+   * The quantity of items in this <code>PickFace</code>, changed atomically as workers on several
+   * threads pick from and replenish it.
    */
-  private int stockQuantity;
+  private final AtomicInteger stockQuantity;
 
   /**
    * Initializes a <code>PickFace</code> with a SKU and the amount of initial stock.
@@ -24,7 +40,19 @@ public class PickFace {
    */
   public PickFace(String sku, int stock) {
     this.sku = sku;
-    this.stockQuantity = stock;
+    this.stockQuantity = new AtomicInteger(stock);
+  }
+
+  /**
+   * Initializes a <code>PickFace</code> at a location on the warehouse floor.
+   * 
+   * @param location the location of this pick face.
+   * @param sku represents the item in this pick face.
+   * @param stock amount of the item in this pick face.
+   */
+  public PickFace(String location, String sku, int stock) {
+    this(sku, stock);
+    this.location = location;
   }
 
   /**
@@ -33,7 +61,25 @@ public class PickFace {
    * @param amount to decrease stockQuantity by.
    */
   protected void removeFromStock(int amount) {
-    stockQuantity -= amount;
+    stockQuantity.addAndGet(-amount);
+  }
+
+  /**
+   * Decrease <code>stockQuantity</code> by a given amount if that much is in stock.
+   * 
+   * @param amount to decrease stockQuantity by.
+   * @return <code>true</code> if the stock was taken, <code>false</code> if too little was left.
+   */
+  protected boolean takeFromStock(int amount) {
+    while (true) {
+      int current = stockQuantity.get();
+      if (current < amount) {
+        return false;
+      }
+      if (stockQuantity.compareAndSet(current, current - amount)) {
+        return true;
+      }
+    }
   }
 
   /**
@@ -42,7 +88,16 @@ public class PickFace {
    * @param amount to increase stockQuantity by.
    */
   protected void addToStock(int amount) {
-    stockQuantity += amount;
+    stockQuantity.addAndGet(amount);
+  }
+
+  /**
+   * Change <code>stockQuantity</code> by a function of the current quantity, in one step.
+   * 
+   * @param update gives the new quantity from the current one.
+   */
+  protected void updateStockQty(IntUnaryOperator update) {
+    stockQuantity.updateAndGet(update);
   }
 
   /**
@@ -52,7 +107,7 @@ public class PickFace {
    * @param amount to set the <code>stockQuantity</code> to.
    */
   protected void setStockQty(int amount) {
-    stockQuantity = amount;
+    stockQuantity.set(amount);
   }
 
   /**
@@ -64,12 +119,49 @@ public class PickFace {
     return sku;
   }
 
+  /**
+   * The location of this <code>PickFace</code> in the warehouse.
+   * 
+   * @return <code>String</code> representing the location, or <code>null</code> if unknown.
+   */
+  protected String getLocation() {
+    return location;
+  }
+
+  /**
+   * Move this <code>PickFace</code>, its SKU and stock, to another location when the warehouse is
+   * re-slotted.
+   * 
+   * @param location the new location.
+   */
+  protected void setLocation(String location) {
+    this.location = location;
+  }
+
+  /**
+   * Return the position of this <code>PickFace</code> along the route through the warehouse.
+   * 
+   * @return <code>int</code> position counting from 0, or -1 if it is not on the warehouse floor.
+   */
+  protected int getSlot() {
+    return slot;
+  }
+
+  /**
+   * Place this <code>PickFace</code> along the route through the warehouse, as its location is.
+   * 
+   * @param slot the position counting from 0.
+   */
+  protected void setSlot(int slot) {
+    this.slot = slot;
+  }
+
   /**
    * The amount of stock currently in inventory.
    * 
    * @return <code>int</code> representing the quantity.
    */
   protected int getStockQty() {
-    return stockQuantity;
+    return stockQuantity.get();
   }
 }
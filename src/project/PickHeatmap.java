@@ -0,0 +1,329 @@
+package project;
+
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts the picks, put-backs, wrong items returned and replenishments at every location of the
+ * warehouse, to show which zones, aisles, racks and levels are hot. Only locations are counted as
+ * they happen; every coarser total is rolled up when it is read, so recording costs the same
+ * however it is reported.
+ *
+ * <p>Counts are kept in a ring of time windows, each an <code>AtomicLongArray</code> split into
+ * stripes. A thread always counts in the stripe its hash picks, so pickers on different threads
+ * rarely touch the same cache line, and recording never takes a lock or reads the clock: it adds
+ * one to the window that is current. A background thread moves every heatmap on to its next
+ * window as time passes, adding the counts of the window it reuses to the totals for the day.
+ *
+ * <p>A heatmap holds <code>STRIPES</code> &times; 4 counts for each location in each window, so
+ * the number of stripes is capped at <code>MAX_STRIPES</code> however many processors there are.
+ * The cap trades scaling for memory: on a host with more than a couple of processors, more pickers
+ * than stripes count at once and share stripes, so recording at a busy location no longer scales
+ * with concurrent pickers.
+ */
+public class PickHeatmap {
+
+  /** What happened at a location. */
+  public enum Activity {
+    /** An item was picked. */
+    PICK,
+    /** An item was put back, such as one no longer needed by a <code>PickRequest</code>. */
+    PUT_BACK,
+    /** An item picked in error was returned. */
+    WRONG_ITEM,
+    /** The <code>PickFace</code> was replenished. */
+    REPLENISH
+  }
+
+  /** Every activity, in <code>ordinal</code> order. */
+  private static final Activity[] ACTIVITIES = Activity.values();
+
+  /** Most stripes a window is split into. */
+  protected static final int MAX_STRIPES = 4;
+
+  /**
+   * Number of stripes: the smallest power of two at least twice the number of processors, capped
+   * at <code>MAX_STRIPES</code>, so 2 on one processor and 4 on two or more.
+   */
+  private static final int STRIPES = Math.min(MAX_STRIPES,
+      Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 4 - 1));
+
+  /** Default length of a window, five minutes. */
+  protected static final long WINDOW_MILLIS = 300_000L;
+
+  /** Default number of windows kept, an hour of them. */
+  protected static final int WINDOWS = 12;
+
+  /** How often the background thread looks for heatmaps due a new window. */
+  private static final long TICK_MILLIS = 1000;
+
+  /** Every heatmap the background thread moves on, until it is no longer used. */
+  private static final ArrayList<WeakReference<PickHeatmap>> TICKING = new ArrayList<>();
+
+  /** The background thread, started with the first heatmap. */
+  private static Thread ticker;
+
+  /** Every location as its zone, aisle, rack and level separated by commas, in route order. */
+  private final List<String> places;
+
+  /** Index of each location in <code>places</code>. */
+  private final HashMap<String, Integer> index = new HashMap<>();
+
+  /** Number of counts in each stripe, one for each location and activity. */
+  private final int cells;
+
+  /** Length of a window in milliseconds. */
+  private final long width;
+
+  /** <code>System.currentTimeMillis</code> at which the first window began. */
+  private final long start = System.currentTimeMillis();
+
+  /** The counts of each window, by stripe, location and activity. */
+  private final AtomicLongArray[] windows;
+
+  /** Index in <code>windows</code> of the window counting now. */
+  private volatile int current = 0;
+
+  /** The window of time each of <code>windows</code> counts, from 0 at start. Guarded by this. */
+  private final long[] epochs;
+
+  /** The window of time counting now. Guarded by this. */
+  private long epoch = 0;
+
+  /** Counts of windows that have gone round, by location and activity. Guarded by this. */
+  private final long[] retired;
+
+  /**
+   * Creates an empty heatmap with the default windows.
+   *
+   * @param places every location as its zone, aisle, rack and level separated by commas.
+   */
+  protected PickHeatmap(List<String> places) {
+    this(places, WINDOW_MILLIS, WINDOWS);
+  }
+
+  /**
+   * Creates an empty heatmap.
+   *
+   * @param places every location as its zone, aisle, rack and level separated by commas.
+   * @param width the length of a window in milliseconds.
+   * @param count the number of windows kept.
+   */
+  protected PickHeatmap(List<String> places, long width, int count) {
+    this.places = places;
+    this.width = width;
+    for (int place = 0; place < places.size(); place++) {
+      index.put(places.get(place).replace(",", ""), place);
+    }
+    cells = places.size() * ACTIVITIES.length;
+    windows = new AtomicLongArray[count];
+    for (int window = 0; window < count; window++) {
+      windows[window] = new AtomicLongArray(STRIPES * cells);
+    }
+    epochs = new long[count];
+    retired = new long[cells];
+    synchronized (TICKING) {
+      TICKING.add(new WeakReference<>(this));
+      if (ticker == null) {
+        ticker = new Thread(PickHeatmap::tickLoop, "pick-heatmap-ticker");
+        ticker.setDaemon(true);
+        ticker.start();
+      }
+    }
+  }
+
+  /**
+   * Count an activity at a location.
+   *
+   * @param slot the position of the location along the route, as <code>PickFace.getSlot</code>
+   *        gives it.
+   * @param activity what happened.
+   */
+  protected void record(int slot, Activity activity) {
+    int stripe = Thread.currentThread().hashCode() & (STRIPES - 1);
+    windows[current].incrementAndGet(stripe * cells + slot * ACTIVITIES.length
+        + activity.ordinal());
+  }
+
+  /** Move every heatmap still in use on to the window of time it is due, once a tick. */
+  private static void tickLoop() {
+    while (true) {
+      try {
+        Thread.sleep(TICK_MILLIS);
+      } catch (InterruptedException error) {
+        return;
+      }
+      synchronized (TICKING) {
+        for (Iterator<WeakReference<PickHeatmap>> heatmaps = TICKING.iterator();
+            heatmaps.hasNext();) {
+          PickHeatmap heatmap = heatmaps.next().get();
+          if (heatmap == null) {
+            heatmaps.remove();
+          } else {
+            heatmap.tick();
+          }
+        }
+      }
+    }
+  }
+
+  /** Move on to the window of time due now, if the current one has ended. */
+  private synchronized void tick() {
+    long due = Math.max(0, System.currentTimeMillis() - start) / width;
+    for (long behind = Math.min(due - epoch, windows.length); behind > 0; behind--) {
+      advance();
+    }
+    if (due > epoch) { // Idle for longer than the windows kept
+      epoch = due;
+      epochs[current] = due;
+    }
+  }
+
+  /**
+   * Start counting in the next window, adding what it held to the totals for the day. A thread
+   * that read the old window just before still counts there, in the window of time just ended.
+   */
+  protected synchronized void advance() {
+    int next = (current + 1) % windows.length;
+    AtomicLongArray counts = windows[next];
+    for (int slot = 0; slot < counts.length(); slot++) {
+      retired[slot % cells] += counts.getAndSet(slot, 0);
+    }
+    epoch++;
+    epochs[next] = epoch;
+    current = next;
+  }
+
+  /**
+   * Return the counts at every location, by location and activity.
+   *
+   * @param recent the number of the latest windows to count, or 0 for the whole day.
+   * @return <code>long[]</code> count of each activity at each location in route order.
+   */
+  protected synchronized long[] counts(int recent) {
+    tick();
+    long[] counts = (recent > 0) ? new long[cells] : retired.clone();
+    for (int window = 0; window < windows.length; window++) {
+      if (recent > 0 && epochs[window] <= epoch - recent) {
+        continue;
+      }
+      AtomicLongArray stripes = windows[window];
+      for (int slot = 0; slot < stripes.length(); slot++) {
+        counts[slot % cells] += stripes.get(slot);
+      }
+    }
+    return counts;
+  }
+
+  /**
+   * Return the number of times an activity happened at a location during the day, reading only
+   * the counts of that location.
+   *
+   * @param location a <code>String</code> identification of a <code>PickFace</code>.
+   * @param activity what happened.
+   * @return <code>long</code> count.
+   * @throws IllegalArgumentException if the location is not on the warehouse floor.
+   */
+  protected synchronized long getCount(String location, Activity activity) {
+    Integer place = index.get(location);
+    if (place == null) {
+      throw new IllegalArgumentException("Unknown location " + location + ".");
+    }
+    tick();
+    int cell = place * ACTIVITIES.length + activity.ordinal();
+    long count = retired[cell];
+    for (AtomicLongArray stripes : windows) {
+      for (int stripe = 0; stripe < STRIPES; stripe++) {
+        count += stripes.get(stripe * cells + cell);
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Return how often an activity happened in each aisle over the windows kept.
+   *
+   * @param activity what happened.
+   * @return map from zone and aisle, such as <code>A0</code>, to count, in route order.
+   */
+  protected Map<String, Long> getAisleCounts(Activity activity) {
+    long[] counts = counts(windows.length);
+    LinkedHashMap<String, Long> aisles = new LinkedHashMap<>();
+    for (int place = 0; place < places.size(); place++) {
+      String[] fields = places.get(place).split(",");
+      aisles.merge(fields[0] + fields[1], counts[place * ACTIVITIES.length + activity.ordinal()],
+          Long::sum);
+    }
+    return aisles;
+  }
+
+  /**
+   * Write the counts rolled up from zone to aisle to rack to level. Each row is the zone, aisle,
+   * rack and level, left blank from the level the row totals, then the picks, put-backs, wrong
+   * items returned and replenishments. A zone is followed by its aisles, each aisle by its racks
+   * and each rack by its levels, in route order.
+   *
+   * @param file the report file.
+   * @param recent the number of the latest windows to count, or 0 for the whole day.
+   * @throws IOException when the file cannot be written.
+   */
+  protected void writeReport(Path file, int recent) throws IOException {
+    long[] counts = counts(recent);
+    LinkedHashMap<String, long[]> rows = new LinkedHashMap<>();
+    for (int place = 0; place < places.size(); place++) {
+      String[] fields = places.get(place).split(",");
+      String group = "";
+      for (int depth = 0; depth < fields.length; depth++) {
+        group = (depth == 0) ? fields[0] : group + "," + fields[depth];
+        long[] row = rows.computeIfAbsent(group, key -> new long[ACTIVITIES.length]);
+        for (Activity activity : ACTIVITIES) {
+          row[activity.ordinal()] += counts[place * ACTIVITIES.length + activity.ordinal()];
+        }
+      }
+    }
+    try (StreamingCsvWriter writer = new StreamingCsvWriter(file)) {
+      for (Map.Entry<String, long[]> row : rows.entrySet()) {
+        String[] fields = row.getKey().split(",");
+        for (int depth = 0; depth < 4; depth++) {
+          writer.field((depth < fields.length) ? fields[depth] : "");
+        }
+        for (long count : row.getValue()) {
+          writer.field(count);
+        }
+        writer.endRow();
+      }
+    }
+  }
+
+  /**
+   * Write the counts for the day to a snapshot. The windows are not kept.
+   *
+   * @param out the snapshot being written.
+   */
+  protected void writeSnapshot(WarehouseSnapshot out) {
+    long[] counts = counts(0);
+    out.putInt(counts.length);
+    for (long count : counts) {
+      out.putLong(count);
+    }
+  }
+
+  /**
+   * Read counts written by <code>writeSnapshot</code> into the totals for the day.
+   *
+   * @param in the snapshot being read.
+   */
+  protected synchronized void readSnapshot(WarehouseSnapshot in) {
+    for (int cell = 0, count = in.getInt(); cell < count; cell++) {
+      retired[cell] += in.getLong();
+    }
+  }
+}
@@ -29,9 +29,37 @@ class PickRequest {
   /** <code>Pallet</code> used by <code>Sequencer</code>, contains sorted rear SKUs. */
   protected Pallet rearPal = new Pallet(4);
 
+  /**
+   * SKU number expected at each position of the <code>frontPal</code>, as
+   * <code>EventLog.skuId</code> gives it, so a scan is checked without walking
+   * <code>sequentialOrders</code>.
+   */
+  private int[] expectedFront;
+
+  /** SKU number expected at each position of the <code>rearPal</code>. */
+  private int[] expectedRear;
+
   /** The order in which SKUs should be picked, received from third party. */
   private ArrayList<String> pickOrder = null;
 
+  /** The SKU picked at each location of <code>pickOrder</code>. */
+  private ArrayList<String> pickSkus = null;
+
+  /**
+   * Version of the warehouse layout <code>pickOrder</code> was planned for, or -1 if it must be
+   * looked up again.
+   */
+  private int routedLayout = -1;
+
+  /** SKUs of the items reserved for this request and not yet picked, or <code>null</code>. */
+  protected ArrayList<String> reserved = null;
+
+  /** <code>System.nanoTime</code> at which this <code>PickRequest</code> was created. */
+  private long createdTime;
+
+  /** <code>System.nanoTime</code> at which this <code>PickRequest</code> entered its stage. */
+  private long stageStart;
+
   /**
    * Creates new <code>PickRequest</code>. Transfers the <code>orderPuragtory</code>
    * <code>Order</code> into a list to keep track of the correct order in which they were received.
@@ -40,16 +68,87 @@ class PickRequest {
    * @param pickReqId the unique ID recieved from the <code>OrderManager</code>.
    */
   public PickRequest(LinkedList<Order> orders, int pickReqId) {
+    this.pickRequestId = pickReqId;
+    createdTime = System.nanoTime();
+    stageStart = createdTime;
+    RunWarehouse.events.record(EventType.PICK_REQUEST_CREATED, -1, -1, pickRequestId, -1);
     for (Order ord : orders) {
       this.sequentialOrders.add(ord);
+      RunWarehouse.events.record(EventType.ORDER_ASSIGNED, -1, -1, pickRequestId,
+          ord.getOrderId());
     }
-    this.pickRequestId = pickReqId;
+    expectSequence();
     status = "created";
-    RunWarehouse.logger.info("Generated PickRequest " + pickRequestId);
   }
 
   /**
-   * Get the optimized picking order. Called by <code>Picker</code>.
+   * Creates an empty <code>PickRequest</code> to be filled from a snapshot, without recording any
+   * event.
+   * 
+   * @param pickReqId the unique ID of the restored <code>PickRequest</code>.
+   */
+  private PickRequest(int pickReqId) {
+    this.pickRequestId = pickReqId;
+  }
+
+  /**
+   * Lay out the SKUs of <code>sequentialOrders</code> as the expected front and rear sequences.
+   */
+  private void expectSequence() {
+    expectedFront = new int[sequentialOrders.size()];
+    expectedRear = new int[sequentialOrders.size()];
+    int position = 0;
+    for (Order ord : sequentialOrders) {
+      expectedFront[position] = canonicalSkuId(ord.getContents().get(0));
+      expectedRear[position] = canonicalSkuId(ord.getContents().get(1));
+      position++;
+    }
+  }
+
+  /**
+   * Parse a SKU into a number only if the number is written the one way <code>String.valueOf</code>
+   * writes it, so that two SKUs with the same number are the same text.
+   * 
+   * @param sku the SKU as a <code>String</code>.
+   * @return the SKU number, or -1 if the SKU is not a number or has leading zeros.
+   */
+  private static int canonicalSkuId(String sku) {
+    int id = EventLog.skuId(sku);
+    return (id >= 0 && (sku.length() == 1 || sku.charAt(0) != '0')) ? id : -1;
+  }
+
+  /**
+   * Return <code>true</code> if a SKU is the one expected at a position of the sequence, where
+   * position <code>2n</code> is the front and <code>2n + 1</code> the rear bumper of
+   * <code>Order</code> <code>n</code>. SKUs are compared as numbers only when both are written
+   * without leading zeros, and otherwise as text, so <code>07</code> is not taken for
+   * <code>7</code>.
+   * 
+   * @param position the position in the sequence.
+   * @param sku the SKU scanned.
+   * @return <code>true</code> if the SKU belongs at that position.
+   */
+  protected boolean isExpected(int position, String sku) {
+    int expected = ((position % 2 == 0) ? expectedFront : expectedRear)[position / 2];
+    return (expected >= 0) ? canonicalSkuId(sku) == expected
+        : sku.equals(getExpectedSku(position));
+  }
+
+  /**
+   * Return the SKU expected at a position of the sequence.
+   * 
+   * @param position the position in the sequence.
+   * @return the SKU.
+   */
+  protected String getExpectedSku(int position) {
+    int expected = ((position % 2 == 0) ? expectedFront : expectedRear)[position / 2];
+    return (expected >= 0) ? String.valueOf(expected)
+        : sequentialOrders.get(position / 2).getContents().get(position % 2);
+  }
+
+  /**
+   * Get the optimized picking order. Called by <code>Picker</code>. If SKUs have moved since it
+   * was planned, the same list is updated to their new locations.
    * 
    * @param warehouse The warehouse worker is working in.
    * @return pickOrder, a list of SKU locations.
@@ -62,11 +161,94 @@ class PickRequest {
         toBeProcessed.add(ord.getContents().get(0));
         toBeProcessed.add(ord.getContents().get(1));
       }
-      pickOrder = WarehousePicking.optimize(toBeProcessed, warehouse);
+      route(toBeProcessed, warehouse);
+    } else if (routedLayout != warehouse.getLayoutVersion()) {
+      routedLayout = warehouse.getLayoutVersion();
+      for (int item = 0; item < pickSkus.size(); item++) {
+        pickOrder.set(item, warehouse.getSkuLocation(pickSkus.get(item)));
+      }
     }
     return pickOrder;
   }
 
+  /**
+   * Get the SKU picked at each location of the optimized picking order.
+   * 
+   * @param warehouse The warehouse worker is working in.
+   * @return the SKUs, in the order they are picked.
+   */
+  protected ArrayList<String> getPickSkus(WarehouseManager warehouse) {
+    getPickOrder(warehouse);
+    return pickSkus;
+  }
+
+  /**
+   * Plan the picking order of some SKUs and record the route for slotting.
+   * 
+   * @param skus the SKUs to be picked.
+   * @param warehouse The warehouse worker is working in.
+   */
+  private void route(ArrayList<String> skus, WarehouseManager warehouse) {
+    routedLayout = warehouse.getLayoutVersion();
+    pickOrder = WarehousePicking.optimize(skus, warehouse, pickRequestId);
+    pickSkus = skus;
+    warehouse.getSlotting().routed(pickSkus);
+  }
+
+  /**
+   * Plan a re-pick of only the SKUs of this <code>PickRequest</code> that are on none of its
+   * pallets, keeping those already picked or sequenced. Any SKU on the <code>unsortedPal</code>
+   * that no <code>Order</code> needs is put back in stock, and the rest of the
+   * <code>unsortedPal</code> is packed to the front to make room for the re-picked items.
+   * 
+   * @param warehouse The warehouse worker is working in.
+   * @return <code>int</code> number of SKUs to be picked again.
+   */
+  protected int planRepick(WarehouseManager warehouse) {
+    ArrayList<String> missing = new ArrayList<>();
+    for (Order ord : this.sequentialOrders) {
+      missing.add(ord.getContents().get(0));
+      missing.add(ord.getContents().get(1));
+    }
+    for (int position = 0; position < frontPal.getFillProg(); position++) {
+      missing.remove(frontPal.getItemAtPosition(position));
+      missing.remove(rearPal.getItemAtPosition(position));
+    }
+    Pallet kept = new Pallet(8);
+    for (int position = 0; position < unsortedPal.getFillProg(); position++) {
+      String sku = unsortedPal.getItemAtPosition(position);
+      if (sku != null && missing.remove(sku)) {
+        kept.add(sku);
+      } else if (sku != null) {
+        warehouse.putBack(warehouse.getSkuLocation(sku), null, pickRequestId);
+      }
+    }
+    unsortedPal = kept;
+    route(missing, warehouse);
+    return missing.size();
+  }
+
+  /**
+   * End the current stage of this <code>PickRequest</code> and start the next one.
+   * 
+   * @return nanoseconds spent in the stage that ended.
+   */
+  protected long endStage() {
+    long now = System.nanoTime();
+    long elapsed = now - stageStart;
+    stageStart = now;
+    return elapsed;
+  }
+
+  /**
+   * Return how long ago this <code>PickRequest</code> was created.
+   * 
+   * @return nanoseconds since creation.
+   */
+  protected long getAge() {
+    return System.nanoTime() - createdTime;
+  }
+
   /**
    * Return the ID for this <code>PickRequest</code>.
    * 
@@ -149,4 +331,73 @@ class PickRequest {
     return sequentialOrders;
   }
 
+  /**
+   * Write this <code>PickRequest</code>, its <code>Order</code> and its <code>Pallet</code> to a
+   * snapshot. Times are written as ages so they stay meaningful when restored.
+   * 
+   * @param out the snapshot being written.
+   */
+  protected void writeSnapshot(WarehouseSnapshot out) {
+    out.putInt(pickRequestId);
+    out.putString(status);
+    out.putLong(out.getNow() - createdTime);
+    out.putLong(out.getNow() - stageStart);
+    out.putInt(sequentialOrders.size());
+    for (Order order : sequentialOrders) {
+      out.putOrder(order);
+    }
+    out.putPallet(unsortedPal);
+    out.putPallet(frontPal);
+    out.putPallet(rearPal);
+    out.putInt((pickSkus == null) ? -1 : pickSkus.size());
+    if (pickSkus != null) {
+      for (String sku : pickSkus) {
+        out.putString(sku);
+      }
+    }
+    out.putInt((reserved == null) ? -1 : reserved.size());
+    if (reserved != null) {
+      for (String sku : reserved) {
+        out.putString(sku);
+      }
+    }
+  }
+
+  /**
+   * Read a <code>PickRequest</code> written by <code>writeSnapshot</code>.
+   * 
+   * @param in the snapshot being read.
+   * @return the restored <code>PickRequest</code>.
+   */
+  protected static PickRequest readSnapshot(WarehouseSnapshot in) {
+    PickRequest request = new PickRequest(in.getInt());
+    request.status = in.getString();
+    request.createdTime = in.getNow() - in.getLong();
+    request.stageStart = in.getNow() - in.getLong();
+    for (int count = in.getInt(); count > 0; count--) {
+      request.sequentialOrders.add(in.getOrder());
+    }
+    request.expectSequence();
+    request.unsortedPal = in.getPallet();
+    request.frontPal = in.getPallet();
+    request.rearPal = in.getPallet();
+    int skus = in.getInt();
+    if (skus >= 0) {
+      request.pickSkus = new ArrayList<>(skus);
+      for (; skus > 0; skus--) {
+        request.pickSkus.add(in.getString());
+      }
+      // Looked up in the restored warehouse when first asked for.
+      request.pickOrder = new ArrayList<>(request.pickSkus);
+    }
+    int reserved = in.getInt();
+    if (reserved >= 0) {
+      request.reserved = new ArrayList<>(reserved);
+      for (; reserved > 0; reserved--) {
+        request.reserved.add(in.getString());
+      }
+    }
+    return request;
+  }
+
 }
@@ -14,6 +14,16 @@ public class Picker extends Worker {
   /** Active <code>PickRequest</code>. */
   protected PickRequest pickReq;
 
+  /** The number this <code>Picker</code> takes <code>PickRequest</code> with. */
+  private int pickerNumber;
+
+  /** Time <code>PickRequest</code> wait between release and a <code>Picker</code> taking them. */
+  private static final LatencyHistogram RELEASE_WAIT =
+      RunWarehouse.metrics.histogram("stage release wait");
+
+  /** Time <code>Picker</code> spend picking a <code>PickRequest</code>. */
+  private static final LatencyHistogram PICKING = RunWarehouse.metrics.histogram("stage picking");
+
   /**
    * Constructs new <code>Picker</code> with a name and a <code>Controller</code>, giving
    * <code>Picker</code> access to the rest of the warehouse.
@@ -22,7 +32,22 @@ public class Picker extends Worker {
    * @param controller The warehouse <code>Controller</code>.
    */
   public Picker(String name, Controller controller) {
+    this(name, controller, true);
+  }
+
+  /**
+   * Constructs new <code>Picker</code> that registers for a number to take
+   * <code>PickRequest</code> with, or keeps the number it had when restored from a snapshot.
+   * 
+   * @param name The Picker's name.
+   * @param controller The warehouse <code>Controller</code>.
+   * @param register <code>false</code> if <code>readSnapshot</code> restores the number.
+   */
+  protected Picker(String name, Controller controller, boolean register) {
     super(name, controller);
+    if (register) {
+      pickerNumber = controller.getOrders().registerPicker();
+    }
   }
 
   /**
@@ -32,13 +57,15 @@ public class Picker extends Worker {
    */
   protected void receive() {
     if (this.isReady()) {
-      pickReq = controller.getOrders().getNewPickReq();
+      pickReq = controller.getOrders().getNewPickReq(pickerNumber);
       if (pickReq != null) {
+        RELEASE_WAIT.record(pickReq.endStage());
         pickOrder = pickReq.getPickOrder(controller.getWarehouse());
-        RunWarehouse.logger.info("Picker " + name + " received new pick request.");
+        RunWarehouse.events.record(EventType.PICK_REQUEST_RECEIVED, workerId, -1,
+            pickReq.getPickRequestId(), -1);
         this.setBusy();
       } else {
-        RunWarehouse.logger.info("No pick requests available. " + name + " ready.");
+        RunWarehouse.events.record(EventType.NO_PICK_REQUEST, workerId, -1, -1, -1);
       }
     }
   }
@@ -50,39 +77,118 @@ public class Picker extends Worker {
    * @param sku The SKU number to be picked from inventory.
    */
   protected void work(String sku) {
+    pickOrder = pickReq.getPickOrder(controller.getWarehouse()); // Follows any SKUs moved.
     String skuLoc = controller.getWarehouse().getSkuLocation(sku);
-    controller.getWarehouse().pick(skuLoc);
-    if (pickReq.pickPalFull()) {
+    controller.getWarehouse().pick(skuLoc, name, pickReq.getPickRequestId());
+    if (pickReq.pickPalFull() || progress >= pickOrder.size()) {
       RunWarehouse.logger
           .warning("Pallet is already full. Maximum number of bumpers have been picked.");
     } else {
       if (!skuLoc.equals(pickOrder.get(progress))) {
-        controller.getWarehouse().putBack(skuLoc);
+        controller.getWarehouse().returnWrongItem(skuLoc, name, pickReq.getPickRequestId());
         RunWarehouse.logger.warning("Wrong item! Please pick item at " + pickOrder.get(progress)
             + ". Returning " + sku + ".");
       } else {
         pickReq.unsortedPal.add(sku);
         progress++;
-        RunWarehouse.logger
-            .info("Picker " + this.name + " picks faschia " + sku + " from location " + skuLoc);
+        pickedReserved(sku);
+        RunWarehouse.events.record(EventType.PICKED, workerId, EventLog.skuId(sku),
+            pickReq.getPickRequestId(), -1);
       }
     }
   }
 
+  /**
+   * Picks a batch of scanned SKUs in one pass. The whole batch is checked against the
+   * <code>pickOrder</code> before any stock moves, so a wrong SKU, or one scanned once the pallet
+   * is full, is never taken from its location. The SKUs accepted are taken from inventory together,
+   * and only then are their reservations released, as for a single SKU.
+   * 
+   * @param skus The SKU numbers scanned, in order.
+   * @return <code>boolean[]</code> whether each SKU was picked onto the pallet.
+   */
+  @Override
+  protected boolean[] work(String[] skus) {
+    WarehouseManager warehouse = controller.getWarehouse();
+    pickOrder = pickReq.getPickOrder(warehouse);
+    boolean[] picked = new boolean[skus.length];
+    ArrayList<String> taken = new ArrayList<>(skus.length);
+    StringBuilder returned = new StringBuilder();
+    int overfull = 0;
+    for (int item = 0; item < skus.length; item++) {
+      String skuLoc = warehouse.getSkuLocation(skus[item]);
+      if (pickReq.pickPalFull() || progress >= pickOrder.size()) {
+        overfull++;
+      } else if (skuLoc.equals(pickOrder.get(progress))) {
+        pickReq.unsortedPal.add(skus[item]);
+        progress++;
+        taken.add(skuLoc);
+        picked[item] = true;
+      } else {
+        returned.append(' ').append(skus[item]);
+      }
+    }
+    warehouse.pick(taken, name, pickReq.getPickRequestId());
+    for (int item = 0; item < skus.length; item++) {
+      if (picked[item]) {
+        pickedReserved(skus[item]);
+        RunWarehouse.events.record(EventType.PICKED, workerId, EventLog.skuId(skus[item]),
+            pickReq.getPickRequestId(), -1);
+      }
+    }
+    if (overfull > 0) {
+      RunWarehouse.logger.warning("Pallet is already full. Not picking " + overfull + " more.");
+    }
+    if (returned.length() > 0) {
+      RunWarehouse.logger.warning("Wrong items! Not picking" + returned + "."
+          + ((progress < pickOrder.size()) ? " Please pick item at " + pickOrder.get(progress)
+              + "." : ""));
+    }
+    return picked;
+  }
+
   /**
    * After pick, check if the <code>Picker</code> is done with this order. If yes, mark orders as
    * picked and send to <code>marshalQueue</code>.
    */
   @Override
   protected void push() {
+    PICKING.record(pickReq.endStage());
     updateStatus("picked");
-    RunWarehouse.logger.info("Picker " + this.name + " takes PickRequest "
-        + pickReq.getPickRequestId() + " to Marshaling");
+    RunWarehouse.events.record(EventType.MARSHALED, workerId, -1, pickReq.getPickRequestId(), -1);
     controller.getStaging().marshalAdd(pickReq);
     progress = 0;
     this.setReady();
   }
 
+  @Override
+  protected void writeSnapshot(WarehouseSnapshot out) {
+    super.writeSnapshot(out);
+    out.putInt(pickerNumber);
+    out.putRequest(pickReq);
+  }
+
+  @Override
+  protected void readSnapshot(WarehouseSnapshot in) {
+    super.readSnapshot(in);
+    pickerNumber = in.getInt();
+    pickReq = in.getRequest();
+    pickOrder = (pickReq == null) ? null : pickReq.getPickOrder(controller.getWarehouse());
+  }
+
+  /**
+   * Note that an item reserved for the <code>PickRequest</code> has been picked, if stock is
+   * reserved.
+   * 
+   * @param sku the SKU picked.
+   */
+  private void pickedReserved(String sku) {
+    StockReservations reservations = controller.getWarehouse().getReservations();
+    if (reservations != null) {
+      reservations.picked(pickReq, sku);
+    }
+  }
+
   /**
    * Before a <code>PickRequest</code> is marshaled, update the status on all orders in that
    * <code>PickRequest</code> and the status of <code>PickRequest</code> itself to picked.
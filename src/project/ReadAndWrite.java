@@ -2,7 +2,6 @@ package project;
 
 import java.io.BufferedReader;
 import java.io.FileNotFoundException;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -15,7 +14,9 @@ public class ReadAndWrite {
 
   /**
    * Read a file line by line. Each line is a <code>String[]</code> in an <code>ArrayList</code>,
-   * the line is split up according to the given separator.
+   * the line is split up according to the given separator. Single character separators are read
+   * through a <code>MappedCsvReader</code>; for large files prefer using one directly, so rows are
+   * handled as they are read instead of being collected.
    * 
    * @param location the file path of the file to be read.
    * @param separator determines how each line is split.
@@ -27,31 +28,20 @@ public class ReadAndWrite {
    */
   protected static ArrayList<String[]> readFile(Path location, String separator, boolean skipHeader)
       throws IOException, FileNotFoundException {
-    BufferedReader br = null;
-    String line = "";
     ArrayList<String[]> fileContents = new ArrayList<>();
-    try {
-      br = new BufferedReader(Files.newBufferedReader(location));
+    if (separator.length() == 1 && separator.charAt(0) < 128
+        && ".$|()[]{}^?*+\\\r\n".indexOf(separator.charAt(0)) < 0) {
+      new MappedCsvReader(separator.charAt(0)).read(location, skipHeader,
+          row -> fileContents.add(row.getStrings()));
+      return fileContents;
+    }
+    try (BufferedReader br = Files.newBufferedReader(location)) {
       if (skipHeader) {
         br.readLine(); // Skip the Header
       }
+      String line;
       while ((line = br.readLine()) != null) {
-        String[] lineItems;
-        lineItems = line.split(separator);
-        fileContents.add(lineItems);
-      }
-    } catch (FileNotFoundException fileNotFound) {
-      System.err.println("File " + location + " not found, please enter a valid file path.");
-    } catch (IOException error) {
-      // TODO Auto-generated catch block
-      error.printStackTrace();
-    } finally {
-      if (br != null) {
-        try {
-          br.close();
-        } catch (IOException error) {
-          error.printStackTrace();
-        }
+        fileContents.add(line.split(separator));
       }
     }
     return fileContents;
@@ -60,7 +50,8 @@ public class ReadAndWrite {
   /**
    * Given a list of <code>String[]</code> write a comma separated value file. Each
    * <code>String[]</code> in the list corresponds to one line in the file. If the file already
-   * exists, overwrite it, else create a new file.
+   * exists, overwrite it, else create a new file. Large reports should write their rows straight
+   * to a <code>StreamingCsvWriter</code> instead of collecting them first.
    * 
    * @param fileDirectory the file directory in which the file is to be stored in.
    * @param name of the file to be written.
@@ -69,23 +60,10 @@ public class ReadAndWrite {
    */
   protected static void writeFile(Path fileDirectory, String name, ArrayList<String[]> toBeWritten)
       throws IOException {
-    try {
-      Path fileName = fileDirectory.resolve(name);
-      String csvFile = fileName.toString();
-      FileWriter writer = new FileWriter(csvFile);
-      int size = toBeWritten.size();
-      StringBuilder oneLine = new StringBuilder();
-      for (int index = 0; index < size; index++) {
-        String[] stringToBeWritten = toBeWritten.get(index);
-        for (int j = 0; j < stringToBeWritten.length; j++) {
-          oneLine.append(stringToBeWritten[j] + ",");
-        }
-        oneLine.append("\n");
+    try (StreamingCsvWriter writer = new StreamingCsvWriter(fileDirectory.resolve(name))) {
+      for (String[] line : toBeWritten) {
+        writer.row(line);
       }
-      writer.write(oneLine.toString());
-      writer.close();
-    } catch (FileNotFoundException error) {
-      System.err.print(error.getMessage());
     }
   }
 }
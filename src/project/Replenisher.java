@@ -29,15 +29,16 @@ public class Replenisher extends Worker {
   /**
    * Replenishes stock at input location in the warehouse. Check to make sure the location is the
    * one received by the <code>replenishRequest</code> Triggered when the location has 5 or less SKU
-   * remaining.
+   * remaining. Any <code>PickRequest</code> held for want of this stock is then released.
    * 
    * @param location The <code>PickFace</code> location coordinate to be replenished.
    */
   protected void work(String location) {
     if (!(replenishThis == null)) {
       if (controller.getWarehouse().getWarehouseFloor().get(location).equals(replenishThis)) {
-        controller.getWarehouse().replenish(replenishThis);
+        controller.getWarehouse().replenish(replenishThis, name);
         replenishThis = null;
+        controller.getOrders().releaseHeld();
       } else {
         RunWarehouse.logger.warning("Output: Replenisher " + name
             + " does not have a replenish request corresponding to this location.");
@@ -47,4 +48,18 @@ public class Replenisher extends Worker {
           .warning("Output: Replenisher " + name + " does not have a replenish request");
     }
   }
+
+  @Override
+  protected void writeSnapshot(WarehouseSnapshot out) {
+    super.writeSnapshot(out);
+    out.putString((replenishThis == null) ? null : replenishThis.getLocation());
+  }
+
+  @Override
+  protected void readSnapshot(WarehouseSnapshot in) {
+    super.readSnapshot(in);
+    String location = in.getString();
+    replenishThis = (location == null) ? null
+        : controller.getWarehouse().getWarehouseFloor().get(location);
+  }
 }
@@ -5,6 +5,7 @@ import java.io.IOException;
 import java.io.InputStreamReader;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Arrays;
 import java.util.logging.ConsoleHandler;
 import java.util.logging.Handler;
 import java.util.logging.Level;
@@ -16,6 +17,12 @@ public class RunWarehouse {
   /** Creates a logger to keep track of events that occur in the warehouse. */
   protected static final Logger logger = Logger.getLogger(RunWarehouse.class.getName());
 
+  /** Records structured events on the hot path, drained to a file in the background. */
+  protected static final EventLog events = new EventLog(1 << 16);
+
+  /** Counters, gauges and latency histograms for the pick, marshal, sequence and load stages. */
+  protected static final MetricsRegistry metrics = new MetricsRegistry();
+
   /** Prints logged information to the console. */
   private static final Handler consoleHandler = new ConsoleHandler();
 
@@ -36,14 +43,24 @@ public class RunWarehouse {
   }
 
   /**
-   * Executes the program given the simulation and creates a report when finished.
+   * Executes the program given the simulation and creates a report when finished. Given
+   * <code>--what-if</code>, a snapshot and continuations instead, forks the snapshot and compares
+   * the continuations in whatif.csv.
    * 
-   * @param args Input the simulation to run.
+   * @param args Input the simulation to run, or <code>--what-if</code> followed by the snapshot
+   *        and the continuations.
    * @throws IOException when input and output files cannot be write or read.
    */
   public static void main(String[] args) throws IOException {
     RunWarehouseHelper helper = new RunWarehouseHelper();
     helper.createLogFile(currentRelativePath);
+    if (args[0].equals("--what-if")) {
+      helper.whatIf(currentRelativePath, currentRelativePath.resolve(args[1]),
+          Arrays.asList(args).subList(2, args.length));
+      events.close();
+      return;
+    }
+    helper.setJournal(currentRelativePath.resolve("journal.bin"));
     String simulation = args[0];
     logger.info("simluation is about to take place");
     helper.run(currentRelativePath, simulation);
@@ -54,8 +71,10 @@ public class RunWarehouse {
       System.out.print("Enter the simulation you would like to run: ");
       String nextSimulation = input.readLine();
       helper.run(currentRelativePath, nextSimulation);
+      events.close();
     } else {
       logger.info("Simulation terminated.");
+      events.close();
       System.exit(1);
     }
   }
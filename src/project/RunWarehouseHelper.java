@@ -5,18 +5,22 @@ import java.io.IOException;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.logging.FileHandler;
 import java.util.logging.Level;
 import java.util.logging.SimpleFormatter;
+import javax.management.JMException;
 
 /**
  * Performs all of the functions to run the warehouse, called from <code>RunWarehouse</code>.
+ * Each instruction can be recorded in a <code>WarehouseJournal</code> before it is run, and the
+ * warehouse can be checkpointed to a <code>WarehouseSnapshot</code>. A warehouse can be recovered
+ * from a journal, or restored from a snapshot and the journal written after it.
  */
-public class RunWarehouseHelper {
-
-  /** Stores the list of actions to perform in the Warehouse. */
-  private ArrayList<String[]> events;
+public class RunWarehouseHelper implements WarehouseOperations {
 
   /** Key words in the simulation file to invoke a <code>Worker.work</code> method. */
   private String[] workKeyWords = new String[] {"pick", "sequence", "check", "replenish", "scan"};
@@ -27,12 +31,52 @@ public class RunWarehouseHelper {
   /** Controls information flow throughout the system, for this particular warehouse. */
   private Controller sysController;
 
+  /** Where each run journals its instructions, or <code>null</code> to not keep a journal. */
+  private Path journalFile;
+
+  /** The journal of the current run, or <code>null</code> when not journaling. */
+  private WarehouseJournal journal;
+
+  /** Number of operations run since the start of the day. */
+  private long sequence = 0;
+
+  /** Where checkpoints are written during a run, or <code>null</code> to not take any. */
+  private Path checkpointFile;
+
+  /** Number of operations between checkpoints. */
+  private long checkpointInterval;
+
+  /** Value of <code>sequence</code> at the last checkpoint, or when the run began. */
+  private long checkpointed;
+
+  /** Number of docks trucks are loaded at. */
+  private int docks = 1;
+
+  /** Whether picking and marshaling are scheduled by loading deadline rather than FIFO. */
+  private boolean deadlineScheduling = false;
+
+  /** Whether stock is reserved as pick requests are released. */
+  private boolean stockReservation = false;
+
+  /** Number of orders held before they are grouped into pick requests. */
+  private int orderClustering = OrderClustering.ORDERS;
+
+  /** Default longest time orders are held to be clustered, a minute. */
+  protected static final long ORDER_TIMEOUT_MILLIS = 60_000L;
+
+  /** Longest time in milliseconds orders are held to be clustered before they are flushed. */
+  private long orderTimeout = ORDER_TIMEOUT_MILLIS;
+
   /** Instantiate the helper. */
   public RunWarehouseHelper() {}
 
   /**
-   * Read and run the simulation file. Create a various reports when the simulation has fully
-   * executed.
+   * Read and run the simulation file. Each line is executed as soon as it is read, so the file is
+   * never held in memory. The manifest of each truck is streamed to manifests.csv as it is loaded.
+   * Create a various reports when the simulation has fully executed. If a journal file is set,
+   * every instruction is journaled before it is run, and if checkpoints are set the warehouse is
+   * checkpointed as the run goes. Orders still held to be clustered when the file ends are
+   * flushed.
    * 
    * @param fileDirectory a <code>Path</code> storing the current working directory.
    * @param simulation the name of the simulation to be run.
@@ -40,67 +84,465 @@ public class RunWarehouseHelper {
    */
   protected void run(Path fileDirectory, String simulation) throws IOException {
     sysController = new Controller(fileDirectory);
-    events = ReadAndWrite.readFile(fileDirectory.resolve(simulation), " ", false);
-    String simulationDescription = "";
-    for (String item : events.get(0)) {
-      simulationDescription = simulationDescription + " " + item;
-    }
-    RunWarehouse.logger.info(simulationDescription);
-    events.remove(0); // remove the summary before executing
-    execute();
+    sysController.getTrucks().setDocks(docks);
+    sysController.setDeadlineScheduling(deadlineScheduling);
+    sysController.setStockReservation(stockReservation);
+    sysController.setOrderClustering(orderClustering);
+    RunWarehouse.metrics.reset();
+    sequence = 0;
+    try {
+      sysController.registerMBeans();
+    } catch (JMException error) {
+      RunWarehouse.logger.warning("Could not register MBeans: " + error.getMessage());
+    }
+    journal = (journalFile == null) ? null : new WarehouseJournal(journalFile);
+    try (TruckManifest manifest = new TruckManifest(fileDirectory.resolve("manifests.csv"))) {
+      sysController.getTrucks().setManifest(manifest);
+      play(fileDirectory.resolve(simulation));
+      if (isClustering() && sysController.getOrders().getPurgatorySize() > 0) {
+        flush();
+      }
+    } finally {
+      sysController.getTrucks().setManifest(null);
+      if (journal != null) {
+        journal.close();
+        journal = null;
+      }
+    }
     report(fileDirectory);
   }
 
+  /**
+   * Read and execute each line of a simulation file on the current warehouse, checkpointing as
+   * the run goes if checkpoints are set. Before each line, orders held to be clustered for longer
+   * than the order timeout are flushed.
+   * 
+   * @param simulationFile the simulation file.
+   * @throws IOException when the file cannot be read, or an operation journaled or checkpointed.
+   */
+  private void play(Path simulationFile) throws IOException {
+    checkpointed = sequence;
+    new MappedCsvReader(' ').read(simulationFile, false, row -> {
+      String[] line = row.getStrings();
+      if (row.getRowNumber() == 0) { // the summary is logged, not executed
+        String simulationDescription = "";
+        for (String item : line) {
+          simulationDescription = simulationDescription + " " + item;
+        }
+        RunWarehouse.logger.info(simulationDescription);
+      } else {
+        if (isClustering() && sysController.getOrders().getHeldMillis() >= orderTimeout) {
+          flush();
+        }
+        execute(line);
+        if (checkpointFile != null
+            && sequence / checkpointInterval > checkpointed / checkpointInterval) {
+          checkpoint(checkpointFile);
+        }
+      }
+    });
+  }
+
+  /**
+   * Continue a restored warehouse with the operations of a simulation file, as if they followed
+   * on from the snapshot. Nothing is journaled and no reports are written, and the shared metrics
+   * are left alone, so several forks of one warehouse can be continued at once on different
+   * helpers.
+   * 
+   * @param restored the snapshot holding the warehouse to continue.
+   * @param simulationFile the simulation file of the operations to continue with.
+   * @return the number of operations run since the start of the day.
+   * @throws IOException when the file cannot be read.
+   */
+  protected long resume(WarehouseSnapshot restored, Path simulationFile) throws IOException {
+    sysController = restored.getController();
+    journal = null;
+    sequence = restored.getSequence();
+    play(simulationFile);
+    return sequence;
+  }
+
+  /**
+   * Fork a snapshot, such as a checkpoint taken during the day, run each continuation on its own
+   * fork in parallel, and compare how they end in whatif.csv.
+   * 
+   * @param fileDirectory <code>Path</code> of the directory holding the continuations and report.
+   * @param snapshot the snapshot file to fork.
+   * @param continuations the names of the simulation files to continue with.
+   * @throws IOException when a file cannot be read or written.
+   */
+  protected void whatIf(Path fileDirectory, Path snapshot, List<String> continuations)
+      throws IOException {
+    List<WhatIfSimulation.Outcome> outcomes =
+        WhatIfSimulation.load(snapshot).run(fileDirectory, continuations);
+    ReadAndWrite.writeFile(fileDirectory, "whatif.csv", WhatIfSimulation.report(outcomes));
+    RunWarehouse.logger.info("Generated report: whatif.csv");
+  }
+
+  /**
+   * Capture a point-in-time copy of the warehouse, to try out different continuations of it.
+   * 
+   * @return a <code>WhatIfSimulation</code> forking from the warehouse as it is now.
+   */
+  protected WhatIfSimulation capture() {
+    return WhatIfSimulation.capture(sysController, sequence);
+  }
+
+  /**
+   * Rebuild a warehouse after a crash: load the start of day files, then replay every operation
+   * committed to the journal of the interrupted run. Nothing is journaled while replaying.
+   * 
+   * @param fileDirectory a <code>Path</code> storing the layout the journaled run started from.
+   * @param journaled the journal of the interrupted run.
+   * @return the number of operations replayed.
+   * @throws IOException when a file cannot be read or the journal is damaged.
+   */
+  protected long recover(Path fileDirectory, Path journaled) throws IOException {
+    sysController = new Controller(fileDirectory);
+    sysController.getTrucks().setDocks(docks);
+    sysController.setDeadlineScheduling(deadlineScheduling);
+    sysController.setStockReservation(stockReservation);
+    sysController.setOrderClustering(orderClustering);
+    RunWarehouse.metrics.reset();
+    journal = null;
+    sequence = 0;
+    return WarehouseJournal.replay(journaled, this);
+  }
+
+  /**
+   * Restore a warehouse from a snapshot, then replay the operations committed to the journal after
+   * the snapshot was taken. Nothing is journaled while replaying.
+   * 
+   * @param snapshot the snapshot file.
+   * @param journaled the journal written since, or <code>null</code> to only restore the snapshot.
+   * @return the number of operations run since the start of the day.
+   * @throws IOException when a file cannot be read, is damaged, or the journal does not follow on
+   *         from the snapshot.
+   */
+  protected long restore(Path snapshot, Path journaled) throws IOException {
+    WarehouseSnapshot restored = WarehouseSnapshot.read(snapshot);
+    sysController = restored.getController();
+    RunWarehouse.metrics.reset();
+    journal = null;
+    sequence = restored.getSequence();
+    if (journaled != null) {
+      WarehouseJournal.replay(journaled, this, sequence);
+    }
+    return sequence;
+  }
+
+  /**
+   * Write a snapshot of the warehouse, then start a new journal from it if journaling, so that
+   * recovery only has to replay what happens after. If a crash comes between the two, the old
+   * journal is still replayed correctly onto the new snapshot.
+   * 
+   * @param snapshot the snapshot file, replaced atomically.
+   * @throws IOException when the snapshot or journal cannot be written.
+   */
+  protected void checkpoint(Path snapshot) throws IOException {
+    if (journal != null) {
+      journal.commit();
+    }
+    WarehouseSnapshot.write(snapshot, sysController, sequence);
+    checkpointed = sequence;
+    if (journal != null) {
+      journal.close();
+      journal = new WarehouseJournal(journalFile, sequence);
+    }
+  }
+
+  /**
+   * Checkpoint every later run to a file at a regular number of operations. A checkpoint is taken
+   * after the line whose operations reach the next multiple of the interval, so a line that runs
+   * no operation never checkpoints the same sequence again.
+   * 
+   * @param snapshot the snapshot file, or <code>null</code> to stop checkpointing.
+   * @param interval the number of operations between checkpoints, at least one.
+   */
+  protected void setCheckpoints(Path snapshot, long interval) {
+    if (snapshot != null && interval < 1) {
+      throw new IllegalArgumentException("Checkpoints must be at least one operation apart.");
+    }
+    checkpointFile = snapshot;
+    checkpointInterval = interval;
+  }
+
+  /**
+   * Load trucks at a number of docks at once in every later run or recovery. A journal must be
+   * recovered with the same number of docks it was run with; a snapshot keeps its own.
+   * 
+   * @param docks the number of docks, at least one.
+   */
+  protected void setDocks(int docks) {
+    this.docks = docks;
+  }
+
+  /**
+   * Schedule picking and marshaling by loading deadline in every later run or recovery, as
+   * <code>Controller.setDeadlineScheduling</code> describes; a snapshot keeps its own scheduling.
+   * 
+   * @param deadlineScheduling <code>true</code> to schedule by deadline, <code>false</code> for
+   *        FIFO.
+   */
+  protected void setDeadlineScheduling(boolean deadlineScheduling) {
+    this.deadlineScheduling = deadlineScheduling;
+  }
+
+  /**
+   * Reserve stock as pick requests are released in every later run or recovery, as
+   * <code>Controller.setStockReservation</code> describes; a snapshot keeps its own setting.
+   * 
+   * @param stockReservation <code>true</code> to reserve stock.
+   */
+  protected void setStockReservation(boolean stockReservation) {
+    this.stockReservation = stockReservation;
+  }
+
+  /**
+   * Cluster orders into pick requests in every later run or recovery, as
+   * <code>Controller.setOrderClustering</code> describes; a snapshot keeps its own window.
+   * 
+   * @param window the number of orders held, a multiple of four; four groups them FIFO.
+   */
+  protected void setOrderClustering(int window) {
+    this.orderClustering = window;
+  }
+
+  /**
+   * Flush orders held to be clustered once the oldest has waited this long, in every later run.
+   * The flush is journaled like any other operation, so recovery releases them at the same point.
+   * 
+   * @param millis the longest time an order is held, in milliseconds.
+   */
+  protected void setOrderTimeout(long millis) {
+    this.orderTimeout = millis;
+  }
+
+  /**
+   * Return whether the current warehouse holds orders to cluster them, rather than grouping every
+   * four as they arrive.
+   * 
+   * @return <code>true</code> if orders are clustered.
+   */
+  private boolean isClustering() {
+    return sysController.getOrderClustering() > OrderClustering.ORDERS;
+  }
+
+  /**
+   * Journal the instructions of every later run to a file, replacing the journal of the run
+   * before.
+   * 
+   * @param file the journal file, or <code>null</code> to stop journaling.
+   */
+  protected void setJournal(Path file) {
+    journalFile = file;
+  }
 
   /**
-   * Given a list of events, call on the appropriate elements in the Warehouse to perform the
-   * actions of the events.
+   * Provides access to the <code>Controller</code> of the last warehouse run or recovered.
+   * 
+   * @return the <code>Controller</code>.
+   */
+  protected Controller getController() {
+    return sysController;
+  }
+
+
+  /**
+   * Given an event, call on the appropriate elements in the Warehouse to perform the actions of
+   * the event. The event is recorded in the <code>EventLog</code> rather than logged as text.
+   * 
+   * @param line the event, split into words.
+   * @throws IOException when the event cannot be journaled.
+   */
+  private void execute(String[] line) throws IOException {
+    record(line);
+    if (line[0].equals("Order")) {
+      order(line[1], line[2]);
+    } else if (line[0].equals("Reslot")) {
+      reslot();
+    } else if (line[0].equals("Flush")) {
+      flush();
+    } else {
+      workerDoesWork(line);
+    }
+  }
+
+  /**
+   * Record a line of the simulation in the <code>EventLog</code> as typed fields: a fax by the
+   * model and colour ordered, and an instruction by its worker, the kind of instruction with the
+   * worker name left out, and each SKU it scans. Targets that are not all SKUs, such as the
+   * location to replenish, stay in the kind, so every text registered comes from a bounded
+   * vocabulary.
+   * 
+   * @param line the event, split into words.
    */
-  private void execute() {
-    while (!events.isEmpty()) {
-      String[] line = events.get(0);
-      events.remove(0);
-      if (line[0].equals("Order")) {
-        RunWarehouse.logger.info("Incoming Fax: " + stringBuilder(line));
-        order(line);
+  private void record(String[] line) {
+    EventLog events = RunWarehouse.events;
+    if (line[0].equals("Order")) {
+      events.recordText(EventType.FAX_RECEIVED, -1, -1,
+          events.registerText(line[1] + " " + line[2]));
+    } else if (line.length < 3) {
+      events.recordText(EventType.WAREHOUSE_INSTRUCTION, -1, -1,
+          events.registerText(String.join(" ", line)));
+    } else {
+      int worker = events.registerWorker(line[1]);
+      boolean scans = line.length > 3 && Arrays.asList(workKeyWords).contains(line[2]);
+      for (int target = 3; scans && target < line.length; target++) {
+        scans = EventLog.skuId(line[target]) >= 0;
+      }
+      if (scans) {
+        int kind = events.registerText(line[0] + " " + line[2]);
+        for (int target = 3; target < line.length; target++) {
+          events.recordText(EventType.SCAN_INSTRUCTION, worker, EventLog.skuId(line[target]),
+              kind);
+        }
       } else {
-        RunWarehouse.logger.info("Instruction: " + stringBuilder(line));
-        workerDoesWork(line);
+        String kind = line[0] + " " + String.join(" ", Arrays.copyOfRange(line, 2, line.length));
+        events.recordText(EventType.INSTRUCTION, worker, -1, events.registerText(kind));
       }
     }
   }
 
   /**
    * Creates a new <code>Worker</code> of specified type, or get <code>Worker</code> currently
-   * working in the warehouse to do one of three tasks: receive, work, or push.
+   * working in the warehouse to do one of three tasks: receive, work, or push. A work line naming
+   * several SKUs or locations is a batch of scans uploaded together.
    * 
    * @param line contains the information to create new <code>Worker</code> or have them perform
    *        tasks.
+   * @throws IOException when the task cannot be journaled.
    */
-  private void workerDoesWork(String[] line) {
+  private void workerDoesWork(String[] line) throws IOException {
     if (line[2].equals("ready")) {
-      sysController.getEmployees().addEmployee(line[1], line[0], sysController);
-    } else {
-      Worker employee = sysController.getEmployees().getEmployee(line[1]);
-      if (line[2].equals("get")) {
-        employee.receive();
-      } else if (line[2].equals("rescan")) {
-        employee.rescan();
-      } else if (Arrays.asList(workKeyWords).contains(line[2])) {
-        employee.work(line[3]);
-      } else if (Arrays.asList(pushKeyWords).contains(line[2])) {
-        employee.push();
-      }
+      ready(line[0], line[1]);
+    } else if (line[2].equals("get")) {
+      receive(line[1]);
+    } else if (line[2].equals("rescan")) {
+      rescan(line[1]);
+    } else if (Arrays.asList(workKeyWords).contains(line[2]) && line.length > 4) {
+      work(line[1], Arrays.copyOfRange(line, 3, line.length));
+    } else if (Arrays.asList(workKeyWords).contains(line[2])) {
+      work(line[1], line[3]);
+    } else if (Arrays.asList(pushKeyWords).contains(line[2])) {
+      push(line[1]);
     }
   }
 
   /**
    * Create and store a new <code>Order</code>.
    * 
-   * @param toDo contains pertinent command information.
+   * @param model the model of the minivan.
+   * @param colour the colour of the minivan.
+   * @throws IOException when the order cannot be journaled.
+   */
+  @Override
+  public void order(String model, String colour) throws IOException {
+    sequence++;
+    if (journal != null) {
+      journal.order(model, colour);
+    }
+    sysController.getOrders().newOrder(colour, model);
+  }
+
+  @Override
+  public void ready(String role, String name) throws IOException {
+    sequence++;
+    if (journal != null) {
+      journal.ready(role, name);
+    }
+    sysController.getEmployees().addEmployee(name, role, sysController);
+  }
+
+  @Override
+  public void receive(String name) throws IOException {
+    sequence++;
+    if (journal != null) {
+      journal.receive(name);
+    }
+    sysController.getEmployees().getEmployee(name).receive();
+  }
+
+  @Override
+  public void work(String name, String target) throws IOException {
+    sequence++;
+    if (journal != null) {
+      journal.work(name, target);
+    }
+    sysController.getEmployees().getEmployee(name).work(target);
+  }
+
+  @Override
+  public void work(String name, String[] targets) throws IOException {
+    sequence++;
+    if (journal != null) {
+      journal.work(name, targets);
+    }
+    sysController.getEmployees().getEmployee(name).work(targets);
+  }
+
+  /**
+   * Move SKUs to where the picks recorded so far say they should be, planned by the
+   * <code>SlottingEngine</code> of the warehouse. The moves planned are journaled, not the
+   * instruction, so replaying never depends on the plan.
+   * 
+   * @throws IOException when the moves cannot be journaled.
    */
-  private void order(String[] toDo) {
-    sysController.getOrders().newOrder(toDo[2], toDo[1]);
+  private void reslot() throws IOException {
+    LinkedHashMap<String, String> plan = sysController.getWarehouse().getSlotting().plan();
+    if (plan.isEmpty()) {
+      RunWarehouse.logger.info("No SKUs need to be moved.");
+      return;
+    }
+    ArrayList<String> moves = new ArrayList<>();
+    for (Map.Entry<String, String> move : plan.entrySet()) {
+      moves.add(move.getKey());
+      moves.add(move.getValue());
+    }
+    reslot(moves.toArray(new String[0]));
+  }
+
+  @Override
+  public void flush() throws IOException {
+    sequence++;
+    if (journal != null) {
+      journal.flush();
+    }
+    int held = sysController.getOrders().getPurgatorySize();
+    sysController.getOrders().flushPurgatory();
+    RunWarehouse.logger.info("Released " + held + " orders held for clustering.");
+  }
+
+  @Override
+  public void reslot(String[] moves) throws IOException {
+    sequence++;
+    if (journal != null) {
+      journal.reslot(moves);
+    }
+    LinkedHashMap<String, String> plan = new LinkedHashMap<>();
+    for (int move = 0; move + 1 < moves.length; move += 2) {
+      plan.put(moves[move], moves[move + 1]);
+    }
+    sysController.getWarehouse().reslot(plan);
+    RunWarehouse.logger.info("Moved " + plan.size() + " SKUs.");
+  }
+
+  @Override
+  public void push(String name) throws IOException {
+    sequence++;
+    if (journal != null) {
+      journal.push(name);
+    }
+    sysController.getEmployees().getEmployee(name).push();
+  }
+
+  @Override
+  public void rescan(String name) throws IOException {
+    sequence++;
+    if (journal != null) {
+      journal.rescan(name);
+    }
+    sysController.getEmployees().getEmployee(name).rescan();
   }
 
   /**
@@ -112,78 +554,106 @@ public class RunWarehouseHelper {
   private void report(Path fileDirectory) throws IOException {
     createStockReport(fileDirectory);
     createOrderReport(fileDirectory);
+    createMetricsReport(fileDirectory);
+    createSlottingPlan(fileDirectory);
+    createHeatmapReport(fileDirectory);
   }
 
   /**
-   * Creates and stores a report of all inventory item whos' quantity is not 30.
+   * Creates and stores a report of the picks, put-backs, wrong items returned and replenishments
+   * of the day, rolled up from zone to aisle to rack to level.
    * 
+   * @param fileDirectory Path of the directory to write the report in.
    * @throws IOException when input and output files cannot be write or read.
    */
-  private void createStockReport(Path fileDirectory) throws IOException {
-    HashMap<String, PickFace> floor = sysController.getWarehouse().getWarehouseFloor();
-    ArrayList<String[]> linesToWrite = new ArrayList<String[]>();
-    for (String location : floor.keySet()) {
-      Integer skuQuantity = sysController.getWarehouse().getStock(location);
-      if (skuQuantity != 30) {
-        String[] splitLocation = location.split("");
-        linesToWrite.add(new String[] {splitLocation[0], splitLocation[1], splitLocation[2],
-            splitLocation[3], skuQuantity.toString()});
-      }
-    }
-    ReadAndWrite.writeFile(fileDirectory, "final.csv", linesToWrite);
-    RunWarehouse.logger.info("Generated report: final.csv");
+  private void createHeatmapReport(Path fileDirectory) throws IOException {
+    sysController.getWarehouse().getHeatmap().writeReport(fileDirectory.resolve("heatmap.csv"), 0);
+    RunWarehouse.logger.info("Generated report: heatmap.csv");
   }
 
   /**
-   * Creates and stores a report of all <code>Order</code> that were successfully loaded onto a
-   * truck. <code>Order</code> which were sequenced but not loaded are not included.
+   * Plans where SKUs should be from the picks of the day, and stores the new layout in the format
+   * of traversal_table.csv as slotting.csv, and the moves to get there as moves.csv.
    * 
    * @param fileDirectory Path of the directory to write the reports in.
    * @throws IOException when input and output files cannot be write or read.
    */
-  private void createOrderReport(Path fileDirectory) throws IOException {
-    ArrayList<String[]> ordersToWrite = new ArrayList<String[]>();
-    ArrayList<Order> loadedOrders = getLoadedOrders();
-    for (Order order : loadedOrders) {
-      String[] line = {order.toString()};
-      ordersToWrite.add(line);
-    }
-    ReadAndWrite.writeFile(fileDirectory, "orders.csv", ordersToWrite);
-    RunWarehouse.logger.info("Generated report: orders.csv");
+  protected void createSlottingPlan(Path fileDirectory) throws IOException {
+    SlottingEngine slotting = sysController.getWarehouse().getSlotting();
+    LinkedHashMap<String, String> plan = slotting.plan();
+    slotting.writeTraversal(fileDirectory.resolve("slotting.csv"), plan);
+    slotting.writeMoves(fileDirectory.resolve("moves.csv"), plan);
+    RunWarehouse.logger.info("Generated report: slotting.csv, cutting travel from "
+        + slotting.getTravel(Collections.emptyMap()) + " to " + slotting.getTravel(plan));
+    RunWarehouse.logger.info("Generated report: moves.csv");
   }
 
   /**
-   * Retrieve all <code>Order</code> that have been successfully loaded.
+   * Creates and stores a report of the pipeline metrics: counters with their hourly rates, queue
+   * depths, and time-in-stage percentiles for each <code>PickRequest</code>.
    * 
-   * @return a list of <code>Order</code> that have a status of loaded.
+   * @param fileDirectory Path of the directory to write the reports in.
+   * @throws IOException when input and output files cannot be write or read.
+   */
+  private void createMetricsReport(Path fileDirectory) throws IOException {
+    ReadAndWrite.writeFile(fileDirectory, "metrics.csv", RunWarehouse.metrics.snapshot());
+    RunWarehouse.logger.info("Generated report: metrics.csv");
+  }
+
+  /**
+   * Creates and stores a report of all inventory item whos' quantity is not 30.
+   * 
+   * @throws IOException when input and output files cannot be write or read.
+   */
+  private void createStockReport(Path fileDirectory) throws IOException {
+    createStockSnapshot(fileDirectory, "final.csv");
+  }
+
+  /**
+   * Writes the current quantity of every inventory item whos' quantity is not 30, in the format of
+   * final.csv. Only the pick faces that have changed are visited, so this can be called at any
+   * point in a shift.
+   * 
+   * @param fileDirectory Path of the directory to write the report in.
+   * @param name the name of the report.
+   * @throws IOException when input and output files cannot be write or read.
    */
-  private ArrayList<Order> getLoadedOrders() {
-    ArrayList<Order> loaded = new ArrayList<>();
-    ArrayList<Order> allOrders = sysController.getOrders().getOrderArchive();
-    for (Order order : allOrders) {
-      if (order.getStatus() == "loaded") {
-        loaded.add(order);
+  protected void createStockSnapshot(Path fileDirectory, String name) throws IOException {
+    try (StreamingCsvWriter writer = new StreamingCsvWriter(fileDirectory.resolve(name))) {
+      for (PickFace pickFace : sysController.getWarehouse().getChangedFaces()) {
+        String location = pickFace.getLocation();
+        int skuQuantity = pickFace.getStockQty();
+        if (skuQuantity != WarehouseManager.BASELINE_STOCK) { // May have changed since listed
+          writer.field(location.charAt(0)).field(location.charAt(1)).field(location.charAt(2))
+              .field(location.charAt(3)).field(skuQuantity).endRow();
+        }
       }
     }
-    return loaded;
+    RunWarehouse.logger.info("Generated report: " + name);
   }
 
   /**
-   * Creates a single String element out of a String Array.
+   * Creates and stores a report of all <code>Order</code> that were successfully loaded onto a
+   * truck. <code>Order</code> which were sequenced but not loaded are not included. Each line is
+   * written as it is found.
    * 
-   * @param line the <code>String[]</code> to combine.
-   * @return a single String composed of the String Array.
+   * @param fileDirectory Path of the directory to write the reports in.
+   * @throws IOException when input and output files cannot be write or read.
    */
-  private String stringBuilder(String[] line) {
-    StringBuilder builder = new StringBuilder();
-    for (String stringItem : line) {
-      builder.append(stringItem + " ");
+  private void createOrderReport(Path fileDirectory) throws IOException {
+    try (StreamingCsvWriter writer = new StreamingCsvWriter(fileDirectory.resolve("orders.csv"))) {
+      for (Order order : sysController.getOrders().getOrderArchive()) {
+        if ("loaded".equals(order.getStatus())) {
+          writer.field(order.toString()).endRow();
+        }
+      }
     }
-    return builder.toString();
+    RunWarehouse.logger.info("Generated report: orders.csv");
   }
 
   /**
-   * Creates a file to log events that occur in the warehouse.
+   * Creates a file to log events that occur in the warehouse, and starts draining the structured
+   * <code>EventLog</code> to events.bin in the same directory.
    * 
    * @param filePath <code>Path</code> of the directory to write the log in.
    * @throws IOException when input and output files cannot be write or read.
@@ -199,5 +669,6 @@ public class RunWarehouseHelper {
     } catch (SecurityException error) {
       RunWarehouse.logger.warning(error.toString());;
     }
+    RunWarehouse.events.open(filePath.resolve("events.bin"));
   }
 }
@@ -1,8 +1,17 @@
 package project;
 
+import java.util.concurrent.atomic.LongAdder;
+
 /** A <code>Sequencer</code> worker in the Warehouse. */
 public class Sequencer extends Worker {
 
+  /** Time <code>Sequencer</code> spend sequencing a <code>PickRequest</code>. */
+  private static final LatencyHistogram SEQUENCING =
+      RunWarehouse.metrics.histogram("stage sequencing");
+
+  /** Number of SKUs sent back to be picked again because they were missing. */
+  private static final LongAdder ITEMS_REPICKED = RunWarehouse.metrics.counter("items re-picked");
+
   /**
    * Constructs new <code>Sequencer</code> worker with a name and <code>Controller</code>, giving
    * this <code>Sequencer</code> access to the rest of the Warehouse.
@@ -23,13 +32,14 @@ public class Sequencer extends Worker {
       pickReq = controller.getStaging().marshalRemove();
       progress = 0;
       if (pickReq != null) {
-        RunWarehouse.logger.info("Sequencer " + name + " received new pallet to sequence.");
+        RunWarehouse.events.record(EventType.SEQUENCE_RECEIVED, workerId, -1,
+            pickReq.getPickRequestId(), -1);
         this.setBusy();
       } else {
-        RunWarehouse.logger.info("No pallets available for marshaling. " + name + " ready.");
+        RunWarehouse.events.record(EventType.NO_UNSORTED_PALLET, workerId, -1, -1, -1);
       }
     } else {
-      RunWarehouse.logger.info("Sequencer " + name + " is already busy sequencing a pallet.");
+      RunWarehouse.events.record(EventType.SEQUENCER_BUSY, workerId, -1, -1, -1);
     }
   }
 
@@ -40,25 +50,63 @@ public class Sequencer extends Worker {
    * @param sku The SKU to be sequenced.
    */
   protected void work(String sku) {
+    WarehouseFlightEvents.Sequence event = new WarehouseFlightEvents.Sequence();
+    event.begin();
+    PickRequest request = pickReq; // cleared if it is sent to be re-picked
+    int position = progress;
+    sequence(sku);
+    if (event.shouldCommit() && request != null) {
+      event.sku = sku;
+      event.location = ((position % 2 == 0) ? "front " : "rear ") + (position / 2);
+      event.worker = name;
+      event.requestId = request.getPickRequestId();
+      event.commit();
+    }
+  }
+
+  /**
+   * Sequence a batch of scanned SKUs in order, each checked against the expected sequence as it
+   * comes. Once a missing SKU sends the <code>PickRequest</code> to be re-picked, the rest of the
+   * batch is refused.
+   * 
+   * @param skus The SKUs to be sequenced.
+   * @return <code>boolean[]</code> whether each SKU was sequenced or found in place.
+   */
+  @Override
+  protected boolean[] work(String[] skus) {
+    boolean[] sequenced = new boolean[skus.length];
+    for (int item = 0; item < skus.length && pickReq != null; item++) {
+      int position = progress;
+      work(skus[item]);
+      sequenced[item] = progress > position;
+    }
+    return sequenced;
+  }
+
+  /**
+   * Check the SKU against the next one expected and sequence it onto its <code>Pallet</code>.
+   * 
+   * @param sku The SKU to be sequenced.
+   */
+  private void sequence(String sku) {
     int frontOrRear = progress % 2; // 0 is front pallets, 1 is rear pallet.
-    String correctSku = pickReq.sequentialOrders.get(progress / 2).getContents().get(frontOrRear);
     // After a rescan event - check if the sku is already on the pallet
     if (rescanCheck(frontOrRear, sku)) {
-      RunWarehouse.logger.info("Sequencer " + this.name + " sequenced " + sku + ".");
-    } else if (sku.equals(correctSku)) {
+      RunWarehouse.events.record(EventType.RESEQUENCED, workerId, EventLog.skuId(sku),
+          pickReq.getPickRequestId(), -1);
+    } else if (pickReq.isExpected(progress, sku)) {
       if (seqCheck(sku)) {
         load(frontOrRear, sku);
         pickReq.unsortedPal.remove(sku);
         progress++;
-        RunWarehouse.logger.info("Sequencer " + this.name + " sequenced " + sku + ".");
       } else { // not sequencing the correct sku
-        throwOut();
-        RunWarehouse.logger
-            .warning(sku + " is not on the unsorted pallet. Sending PickRequest to be re-picked.");
+        int missing = repickMissing();
+        RunWarehouse.logger.warning(sku + " is not on the unsorted pallet. Sending PickRequest "
+            + "to re-pick " + missing + " missing items.");
       }
     } else {
-      RunWarehouse.logger.warning(
-          sku + " is not the correct SKU to sequence. Please sequence " + correctSku + " next.");
+      RunWarehouse.logger.warning(sku + " is not the correct SKU to sequence. Please sequence "
+          + pickReq.getExpectedSku(progress) + " next.");
     }
   }
 
@@ -69,10 +117,11 @@ public class Sequencer extends Worker {
    */
   @Override
   protected void push() {
+    SEQUENCING.record(pickReq.endStage());
     pickReq.updateStatus("sequenced");
     controller.getStaging().loadAdd(pickReq);
-    RunWarehouse.logger.info("Sequencer " + this.name + " moves PickRequest "
-        + pickReq.getPickRequestId() + " to load zone.");
+    RunWarehouse.events.record(EventType.MOVED_TO_LOAD_ZONE, workerId, -1,
+        pickReq.getPickRequestId(), -1);
     progress = 0;
     this.setReady();
   }
@@ -97,10 +146,12 @@ public class Sequencer extends Worker {
   private void load(int frontOrRear, String sku) {
     if (frontOrRear == 0) {
       pickReq.frontPal.add(sku);
-      RunWarehouse.logger.info(sku + " loaded on to Front Pallet");
+      RunWarehouse.events.record(EventType.SEQUENCED_FRONT, workerId, EventLog.skuId(sku),
+          pickReq.getPickRequestId(), -1);
     } else {
       pickReq.rearPal.add(sku);
-      RunWarehouse.logger.info(sku + " loaded on to Rear Pallet");
+      RunWarehouse.events.record(EventType.SEQUENCED_REAR, workerId, EventLog.skuId(sku),
+          pickReq.getPickRequestId(), -1);
     }
   }
 
@@ -135,21 +186,23 @@ public class Sequencer extends Worker {
    */
   protected void rescan() {
     progress = 0;
-    RunWarehouse.logger.info("Sequencer " + name + " rescans. Begin checking from beginning.");
+    RunWarehouse.events.record(EventType.SEQUENCER_RESCAN, workerId, -1, -1, -1);
   }
 
   /**
-   * Throw out all SKUs on all <code>Pallet</code> for this <code>PickRequest</code>, and send it
-   * back to <code>activePickRequest</code> queue.
+   * Send this <code>PickRequest</code> back to the <code>activePickRequest</code> queue to pick
+   * only the SKUs missing from its pallets. Items already picked or sequenced stay where they are,
+   * so they are neither picked twice nor lost, and are checked again when it is next sequenced.
+   * 
+   * @return <code>int</code> number of SKUs to be picked again.
    */
-  private void throwOut() {
-    // Clean the pallets
-    pickReq.frontPal.clear();
-    pickReq.rearPal.clear();
-    pickReq.unsortedPal.clear();
+  private int repickMissing() {
+    int missing = pickReq.planRepick(controller.getWarehouse());
+    ITEMS_REPICKED.add(missing);
     controller.getOrders().returnPickReq(pickReq);
     pickReq = null;
     progress = 0;
     this.setReady();
+    return missing;
   }
 }
@@ -0,0 +1,459 @@
+package project;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToIntFunction;
+
+/**
+ * Plans where each SKU should be kept, from how often it is picked and which SKUs are picked one
+ * after another. A <code>Picker</code> walks from the depot to each location of a
+ * <code>PickRequest</code> in its picking order and back, and a location is as far from the depot
+ * as its row in traversal_table.csv. Since the picking order follows the SKUs, not where they are,
+ * the travel of every route recorded so far can be worked out for any layout: each SKU that starts
+ * or ends a route costs its distance from the depot, and each pair of SKUs picked one after the
+ * other costs the distance between them.
+ *
+ * <p>A plan starts from both the current layout and the SKUs ordered by how often they are picked,
+ * nearest the depot first, improves each by swapping pairs of SKUs while travel falls, and keeps
+ * the better. It never plans a layout with more travel than the current one. Counts are kept in
+ * <code>LongAdder</code> so pickers on many threads record without meeting.
+ */
+public class SlottingEngine {
+
+  /** Largest number of locations every pair of which is tried in a swap. */
+  private static final int FULL_SEARCH = 64;
+
+  /** How many locations along the route a SKU is swapped with in a larger warehouse. */
+  private static final int WINDOW = 32;
+
+  /** Most passes over the route while swapping. */
+  private static final int PASSES = 50;
+
+  /** The warehouse being slotted. */
+  private final WarehouseManager warehouse;
+
+  /** Number of items picked of each SKU. */
+  private final ConcurrentHashMap<String, LongAdder> picks = new ConcurrentHashMap<>();
+
+  /** Number of times two SKUs were picked one after the other, by the SKUs and a space. */
+  private final ConcurrentHashMap<String, LongAdder> pairs = new ConcurrentHashMap<>();
+
+  /** Number of times each SKU was the first or last of a route. */
+  private final ConcurrentHashMap<String, LongAdder> ends = new ConcurrentHashMap<>();
+
+  /** Number of routes recorded. */
+  private final LongAdder routes = new LongAdder();
+
+  /** Travel of every route recorded, on the layout it was planned on. */
+  private final LongAdder travel = new LongAdder();
+
+  /**
+   * Creates the slotting statistics of a warehouse, with nothing recorded.
+   *
+   * @param warehouse the warehouse being slotted.
+   */
+  protected SlottingEngine(WarehouseManager warehouse) {
+    this.warehouse = warehouse;
+  }
+
+  /**
+   * An item of a SKU has been picked.
+   *
+   * @param sku the SKU.
+   */
+  protected void picked(String sku) {
+    picks.computeIfAbsent(sku, key -> new LongAdder()).increment();
+  }
+
+  /**
+   * A <code>PickRequest</code> has been routed through the warehouse.
+   *
+   * @param skus the SKUs to be picked, in picking order.
+   */
+  protected void routed(List<String> skus) {
+    if (skus.isEmpty()) {
+      return;
+    }
+    String first = skus.get(0);
+    String last = skus.get(skus.size() - 1);
+    ends.computeIfAbsent(first, key -> new LongAdder()).increment();
+    ends.computeIfAbsent(last, key -> new LongAdder()).increment();
+    for (int item = 1; item < skus.size(); item++) {
+      String from = skus.get(item - 1);
+      String to = skus.get(item);
+      if (!from.equals(to)) {
+        pairs.computeIfAbsent(pair(from, to), key -> new LongAdder()).increment();
+      }
+    }
+    travel.add(routeLength(skus, this::position));
+    routes.increment();
+  }
+
+  /**
+   * Return the travel of a route from the depot to the location of each SKU in the order given
+   * and back.
+   *
+   * @param skus the SKUs, in picking order.
+   * @param position how far along the route the location of a SKU is.
+   * @return <code>long</code> distance in locations.
+   */
+  protected static long routeLength(List<String> skus, ToIntFunction<String> position) {
+    if (skus.isEmpty()) {
+      return 0;
+    }
+    long distance = position.applyAsInt(skus.get(0))
+        + position.applyAsInt(skus.get(skus.size() - 1));
+    for (int item = 1; item < skus.size(); item++) {
+      distance += Math.abs(position.applyAsInt(skus.get(item - 1))
+          - position.applyAsInt(skus.get(item)));
+    }
+    return distance;
+  }
+
+  /**
+   * Return the number of items picked of a SKU.
+   *
+   * @param sku the SKU.
+   * @return <code>long</code> number of items.
+   */
+  protected long getPicks(String sku) {
+    LongAdder count = picks.get(sku);
+    return (count == null) ? 0 : count.sum();
+  }
+
+  /**
+   * Return the number of routes recorded.
+   *
+   * @return <code>long</code> number of routes.
+   */
+  protected long getRoutes() {
+    return routes.sum();
+  }
+
+  /**
+   * Return the travel of every route recorded, each on the layout it was planned on.
+   *
+   * @return <code>long</code> distance in locations.
+   */
+  protected long getTravel() {
+    return travel.sum();
+  }
+
+  /**
+   * Return what the travel of every route recorded would have been if SKUs had been moved.
+   *
+   * @param moves the new location of each SKU moved, as <code>plan</code> gives them.
+   * @return <code>long</code> distance in locations.
+   */
+  protected long getTravel(Map<String, String> moves) {
+    Layout layout = new Layout();
+    int[] slotOf = layout.slotOf.clone();
+    for (Map.Entry<String, String> move : moves.entrySet()) {
+      slotOf[layout.index.get(move.getKey())] = warehouse.getRoutePosition(move.getValue()) - 1;
+    }
+    return layout.cost(slotOf);
+  }
+
+  /**
+   * Plan where every SKU should be to cut the travel of the routes recorded so far.
+   *
+   * @return the new location of each SKU to be moved, in route order of the new locations; empty
+   *         if no layout found travels less than the current one.
+   */
+  protected LinkedHashMap<String, String> plan() {
+    Layout layout = new Layout();
+    int slots = layout.skus.length;
+    int[] current = layout.slotOf.clone();
+    long currentCost = layout.cost(current);
+    Integer[] byPicks = new Integer[slots];
+    for (int sku = 0; sku < slots; sku++) {
+      byPicks[sku] = sku;
+    }
+    Arrays.sort(byPicks, Comparator.comparingLong((Integer sku) -> -getPicks(layout.skus[sku]))
+        .thenComparingInt(sku -> current[sku]));
+    int[] frequent = new int[slots];
+    for (int slot = 0; slot < slots; slot++) {
+      frequent[byPicks[slot]] = slot;
+    }
+    int[] improved = current.clone();
+    layout.improve(improved);
+    layout.improve(frequent);
+    int[] best = (layout.cost(frequent) < layout.cost(improved)) ? frequent : improved;
+    LinkedHashMap<String, String> moves = new LinkedHashMap<>();
+    if (layout.cost(best) >= currentCost) {
+      return moves;
+    }
+    String[] skuAt = new String[slots];
+    for (int sku = 0; sku < slots; sku++) {
+      skuAt[best[sku]] = layout.skus[sku];
+    }
+    List<String> route = warehouse.getRoute();
+    for (int slot = 0; slot < slots; slot++) {
+      if (best[layout.index.get(skuAt[slot])] != current[layout.index.get(skuAt[slot])]) {
+        moves.put(skuAt[slot], route.get(slot).replace(",", ""));
+      }
+    }
+    return moves;
+  }
+
+  /**
+   * Write the layout after moving SKUs in the format of traversal_table.csv, so it can replace
+   * the table for the next day.
+   *
+   * @param file the file to write.
+   * @param moves the new location of each SKU moved.
+   * @throws IOException when the file cannot be written.
+   */
+  protected void writeTraversal(Path file, Map<String, String> moves) throws IOException {
+    HashMap<String, String> skuAt = new HashMap<>();
+    for (Map.Entry<String, String> move : moves.entrySet()) {
+      skuAt.put(move.getValue(), move.getKey());
+    }
+    try (StreamingCsvWriter writer = new StreamingCsvWriter(file)) {
+      for (String place : warehouse.getRoute()) {
+        String location = place.replace(",", "");
+        for (String field : place.split(",")) {
+          writer.field(field);
+        }
+        writer.field(skuAt.getOrDefault(location, warehouse.getSku(location))).endRow();
+      }
+    }
+  }
+
+  /**
+   * Write the moves as a plan to carry out on the floor: a row of the cycle, SKU, location it
+   * leaves and location it goes to for each SKU moved. The SKUs of a cycle take each other's
+   * places; the first of each cycle is lifted out first and put down last, and every SKU after it
+   * goes to the location just emptied.
+   *
+   * @param file the file to write.
+   * @param moves the new location of each SKU moved.
+   * @throws IOException when the file cannot be written.
+   */
+  protected void writeMoves(Path file, Map<String, String> moves) throws IOException {
+    HashMap<String, String> arriving = new HashMap<>();
+    for (Map.Entry<String, String> move : moves.entrySet()) {
+      arriving.put(move.getValue(), move.getKey());
+    }
+    LinkedHashMap<String, String> left = new LinkedHashMap<>(moves);
+    try (StreamingCsvWriter writer = new StreamingCsvWriter(file)) {
+      for (int cycle = 0; !left.isEmpty(); cycle++) {
+        String first = left.keySet().iterator().next();
+        String sku = first;
+        do {
+          String from = warehouse.getSkuLocation(sku);
+          writer.field(cycle).field(sku).field(from).field(left.remove(sku)).endRow();
+          sku = arriving.get(from);
+        } while (!sku.equals(first));
+      }
+    }
+  }
+
+  /**
+   * Write the statistics recorded to a snapshot.
+   *
+   * @param out the snapshot being written.
+   */
+  protected void writeSnapshot(WarehouseSnapshot out) {
+    for (ConcurrentHashMap<String, LongAdder> counts : Arrays.asList(picks, pairs, ends)) {
+      out.putInt(counts.size());
+      for (Map.Entry<String, LongAdder> count : counts.entrySet()) {
+        out.putString(count.getKey());
+        out.putLong(count.getValue().sum());
+      }
+    }
+    out.putLong(routes.sum());
+    out.putLong(travel.sum());
+  }
+
+  /**
+   * Read statistics written by <code>writeSnapshot</code>, adding them to those recorded.
+   *
+   * @param in the snapshot being read.
+   */
+  protected void readSnapshot(WarehouseSnapshot in) {
+    for (ConcurrentHashMap<String, LongAdder> counts : Arrays.asList(picks, pairs, ends)) {
+      for (int count = in.getInt(); count > 0; count--) {
+        counts.computeIfAbsent(in.getString(), key -> new LongAdder()).add(in.getLong());
+      }
+    }
+    routes.add(in.getLong());
+    travel.add(in.getLong());
+  }
+
+  /**
+   * Return how far along the route the location of a SKU is.
+   *
+   * @param sku the SKU.
+   * @return <code>int</code> position, counting from 1 at the depot.
+   */
+  protected int position(String sku) {
+    return warehouse.getRoutePosition(warehouse.getSkuLocation(sku));
+  }
+
+  /**
+   * Return the key of a pair of SKUs, the same whichever way round they were picked.
+   *
+   * @param one a SKU.
+   * @param other the other SKU.
+   * @return the key.
+   */
+  private static String pair(String one, String other) {
+    return (one.compareTo(other) < 0) ? one + " " + other : other + " " + one;
+  }
+
+  /** The SKUs of the warehouse and the statistics recorded, by index, for planning. */
+  private final class Layout {
+
+    /** SKU at each location along the route, when the layout was taken. */
+    private final String[] skus;
+
+    /** Index of each SKU in <code>skus</code>. */
+    private final HashMap<String, Integer> index = new HashMap<>();
+
+    /** Location of each SKU along the route, counting from 0, when the layout was taken. */
+    private final int[] slotOf;
+
+    /** Number of routes each SKU started or ended. */
+    private final long[] endCounts;
+
+    /** The SKUs each SKU was picked next to. */
+    private final int[][] neighbours;
+
+    /** Number of times each SKU was picked next to each of its <code>neighbours</code>. */
+    private final long[][] weights;
+
+    /** Takes the current layout and statistics. */
+    Layout() {
+      List<String> route = warehouse.getRoute();
+      skus = new String[route.size()];
+      slotOf = new int[skus.length];
+      endCounts = new long[skus.length];
+      for (int slot = 0; slot < skus.length; slot++) {
+        skus[slot] = warehouse.getSku(route.get(slot).replace(",", ""));
+        index.put(skus[slot], slot);
+        slotOf[slot] = slot;
+        LongAdder count = ends.get(skus[slot]);
+        endCounts[slot] = (count == null) ? 0 : count.sum();
+      }
+      ArrayList<ArrayList<long[]>> edges = new ArrayList<>();
+      for (int sku = 0; sku < skus.length; sku++) {
+        edges.add(new ArrayList<>());
+      }
+      for (Map.Entry<String, LongAdder> count : pairs.entrySet()) {
+        String[] both = count.getKey().split(" ");
+        Integer one = index.get(both[0]);
+        Integer other = index.get(both[1]);
+        if (one != null && other != null) {
+          edges.get(one).add(new long[] {other, count.getValue().sum()});
+          edges.get(other).add(new long[] {one, count.getValue().sum()});
+        }
+      }
+      neighbours = new int[skus.length][];
+      weights = new long[skus.length][];
+      for (int sku = 0; sku < skus.length; sku++) {
+        neighbours[sku] = new int[edges.get(sku).size()];
+        weights[sku] = new long[edges.get(sku).size()];
+        for (int edge = 0; edge < neighbours[sku].length; edge++) {
+          neighbours[sku][edge] = (int) edges.get(sku).get(edge)[0];
+          weights[sku][edge] = edges.get(sku).get(edge)[1];
+        }
+      }
+    }
+
+    /**
+     * Return the travel of every route recorded on a layout.
+     *
+     * @param slot location of each SKU along the route, counting from 0.
+     * @return <code>long</code> distance in locations.
+     */
+    long cost(int[] slot) {
+      long cost = 0;
+      for (int sku = 0; sku < skus.length; sku++) {
+        cost += endCounts[sku] * (slot[sku] + 1);
+        for (int edge = 0; edge < neighbours[sku].length; edge++) {
+          if (neighbours[sku][edge] > sku) {
+            cost += weights[sku][edge] * Math.abs(slot[sku] - slot[neighbours[sku][edge]]);
+          }
+        }
+      }
+      return cost;
+    }
+
+    /**
+     * Swap pairs of SKUs on a layout while any swap cuts travel.
+     *
+     * @param slotOf location of each SKU along the route, changed in place.
+     */
+    void improve(int[] slotOf) {
+      int slots = skus.length;
+      int window = (slots <= FULL_SEARCH) ? slots : WINDOW;
+      int[] skuAt = new int[slots];
+      for (int sku = 0; sku < slots; sku++) {
+        skuAt[slotOf[sku]] = sku;
+      }
+      boolean improved = true;
+      for (int pass = 0; improved && pass < PASSES; pass++) {
+        improved = false;
+        for (int near = 0; near < slots; near++) {
+          for (int far = near + 1; far < Math.min(slots, near + 1 + window); far++) {
+            int one = skuAt[near];
+            int other = skuAt[far];
+            if (gain(slotOf, one, other) > 0) {
+              slotOf[one] = far;
+              slotOf[other] = near;
+              skuAt[near] = other;
+              skuAt[far] = one;
+              improved = true;
+            }
+          }
+        }
+      }
+    }
+
+    /**
+     * Return how much travel swapping two SKUs would save. The distance between them is unchanged.
+     *
+     * @param slotOf location of each SKU along the route.
+     * @param one a SKU.
+     * @param other the other SKU.
+     * @return <code>long</code> distance saved, negative if travel would rise.
+     */
+    private long gain(int[] slotOf, int one, int other) {
+      long gain = (endCounts[one] - endCounts[other]) * (slotOf[one] - slotOf[other]);
+      gain += moved(slotOf, one, other, slotOf[other]);
+      gain += moved(slotOf, other, one, slotOf[one]);
+      return gain;
+    }
+
+    /**
+     * Return how much travel moving one SKU to another location saves on the pairs it is in.
+     *
+     * @param slotOf location of each SKU along the route.
+     * @param sku the SKU moved.
+     * @param other the SKU it swaps with, whose pair is left out.
+     * @param slot the location it moves to.
+     * @return <code>long</code> distance saved, negative if travel would rise.
+     */
+    private long moved(int[] slotOf, int sku, int other, int slot) {
+      long gain = 0;
+      for (int edge = 0; edge < neighbours[sku].length; edge++) {
+        int next = neighbours[sku][edge];
+        if (next != other) {
+          gain += weights[sku][edge]
+              * (Math.abs(slotOf[sku] - slotOf[next]) - Math.abs(slot - slotOf[next]));
+        }
+      }
+      return gain;
+    }
+  }
+}
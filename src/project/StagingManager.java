@@ -1,15 +1,24 @@
 package project;
 
-import java.util.ArrayList;
 import java.util.LinkedList;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * <code>StagingManager</code> tracks the areas of the warehouse where <code>PickRequest</code> are
  * passing between workers types. Includes <code>marshalQueue</code>, where <code>Pallet</code> are
  * sent after picking and before sequencing, and the <code>loadingZone</code> for after sequencing
- * but before loading.
+ * but before loading. With deadline scheduling, <code>Sequencer</code> take the pallets a
+ * <code>Loader</code> will need soonest from the marshaling area, rather than the oldest.
+ *
+ * <p>Any number of <code>Sequencer</code> can work at once on their own threads. The marshaling
+ * area is locked only to hand out a <code>PickRequest</code>, and sequenced pallets are merged
+ * into the <code>loadZone</code> without a lock. The <code>loadZone</code> keeps them in
+ * <code>pickRequestId</code> order however they finish, and a <code>Loader</code> only ever takes
+ * the next ID its dock loads, so a gap left by a slow sequencer is waited out, never skipped.
  */
-public class StagingManager {
+public class StagingManager implements StagingManagerMXBean {
 
   /**
    * Represents the marshaling area. When <code>Picker</code> drops off an <code>unsortedPal</code>,
@@ -21,9 +30,33 @@ public class StagingManager {
   /**
    * Represents the loading area. When <code>Sequencer</code> drops off a sorted pick order,
    * <code>Pallet</code> and corresponding <code>PickRequest</code> are added to the
-   * <code>loadQueue</code>.
+   * <code>loadZone</code>, ordered by ID.
    */
-  private ArrayList<PickRequest> loadZone = new ArrayList<>();
+  private final ConcurrentSkipListMap<Integer, PickRequest> loadZone =
+      new ConcurrentSkipListMap<>();
+
+  /** The loading docks marshaling is scheduled toward, or <code>null</code> to take it FIFO. */
+  private TruckManager deadlines;
+
+  /** Size of <code>marshalQueue</code>, published for monitoring. */
+  private volatile int marshalDepth = 0;
+
+  /** Size of <code>loadZone</code>, published for monitoring. */
+  private final AtomicInteger loadDepth = new AtomicInteger();
+
+  /** Number of <code>PickRequest</code> waiting in the <code>marshalQueue</code>. */
+  private static final AtomicLong MARSHAL_DEPTH = RunWarehouse.metrics.gauge("marshal queue depth");
+
+  /** Number of <code>PickRequest</code> waiting in the <code>loadZone</code>. */
+  private static final AtomicLong LOAD_DEPTH = RunWarehouse.metrics.gauge("load zone depth");
+
+  /** Time <code>PickRequest</code> wait in the <code>marshalQueue</code>. */
+  private static final LatencyHistogram MARSHAL_WAIT =
+      RunWarehouse.metrics.histogram("stage marshal wait");
+
+  /** Time <code>PickRequest</code> wait in the <code>loadZone</code>. */
+  private static final LatencyHistogram LOAD_WAIT =
+      RunWarehouse.metrics.histogram("stage load wait");
 
   /**
    * Constructs a <code>StagingManager</code> that belongs to <code>Controller</code>.
@@ -40,48 +73,93 @@ public class StagingManager {
    *        <code>Pallet</code>.
    */
   protected void marshalAdd(PickRequest newPickReq) {
-    marshalQueue.add(newPickReq);
+    synchronized (marshalQueue) {
+      marshalQueue.add(newPickReq);
+      marshalDepth = marshalQueue.size();
+    }
+    MARSHAL_DEPTH.incrementAndGet();
+  }
+
+  /**
+   * Schedule the marshaling area by how soon the docks will load each <code>PickRequest</code>,
+   * or FIFO.
+   * 
+   * @param deadlines the <code>TruckManager</code> of the docks, or <code>null</code> for FIFO.
+   */
+  protected void setDeadlines(TruckManager deadlines) {
+    this.deadlines = deadlines;
   }
 
   /**
-   * Remove and return the first item in the <code>marshalQueue</code>.
+   * Remove and return the first item in the <code>marshalQueue</code>, or with deadline
+   * scheduling the one a <code>Loader</code> needs soonest.
    * 
-   * @return The first <code>PickRequest</code> in the <code>marshalQueue</code>.
+   * @return The next <code>PickRequest</code> in the <code>marshalQueue</code>.
    */
   protected PickRequest marshalRemove() { // add an exception check
-    if (marshalQueue.size() > 0) {
-      return marshalQueue.removeFirst();
-    } else {
-      return null;
+    PickRequest next;
+    synchronized (marshalQueue) {
+      if (marshalQueue.isEmpty()) {
+        return null;
+      }
+      next = (deadlines == null) ? marshalQueue.removeFirst() : removeSoonest();
+      marshalDepth = marshalQueue.size();
+    }
+    MARSHAL_DEPTH.decrementAndGet();
+    MARSHAL_WAIT.record(next.endStage());
+    return next;
+  }
+
+  /**
+   * Remove the <code>PickRequest</code> in the <code>marshalQueue</code> with the fewest loads
+   * ahead of it, the oldest of those if there is a tie.
+   * 
+   * @return the <code>PickRequest</code>.
+   */
+  private PickRequest removeSoonest() {
+    PickRequest soonest = null;
+    int least = Integer.MAX_VALUE;
+    for (PickRequest request : marshalQueue) {
+      int ahead = deadlines.getLoadsAhead(request.getPickRequestId());
+      if (ahead < least) {
+        least = ahead;
+        soonest = request;
+      }
     }
+    marshalQueue.removeFirstOccurrence(soonest);
+    return soonest;
   }
 
   /**
-   * Add <code>PickRequest</code> to <code>loadingZone</code>. Called when the
-   * <code>Sequencer</code> is finished checking and ordering the pick request's SKUs.
+   * Merge a <code>PickRequest</code> into the <code>loadZone</code> in ID order. Called when the
+   * <code>Sequencer</code> is finished checking and ordering the pick request's SKUs, from any
+   * thread.
    * 
-   * @param newPickReq The <code>PickRequest</code> used by the <code>Sequencer</code> for this
+   * @param pickReq The <code>PickRequest</code> used by the <code>Sequencer</code> for this
    *        <code>Pallet</code>.
    */
   protected void loadAdd(PickRequest pickReq) {
-    loadZone.add(pickReq);
+    if (loadZone.put(pickReq.getPickRequestId(), pickReq) == null) {
+      loadDepth.incrementAndGet();
+      LOAD_DEPTH.incrementAndGet();
+    }
   }
 
   /**
-   * Remove and return the next <code>PickRequest</code> to be loaded onto <code>Truck</code>.
+   * Remove and return the next <code>PickRequest</code> to be loaded onto <code>Truck</code>, if
+   * it has been sequenced. Two <code>Loader</code> never get the same one.
    * 
-   * @return <code>PickRequest</code> to be loaded onto <code>Truck</code>.
+   * @param nextPickId the ID of the <code>PickRequest</code> the dock loads next.
+   * @return <code>PickRequest</code> to be loaded onto <code>Truck</code>, or <code>null</code>.
    */
-
   protected PickRequest loadRemove(int nextPickId) {
-    for (int i = 0; i < loadZone.size(); i++) {
-      if (loadZone.get(i).getPickRequestId() == nextPickId) {
-        PickRequest nextLoad = loadZone.get(i);
-        loadZone.remove(nextLoad);
-        return nextLoad;
-      }
+    PickRequest nextLoad = loadZone.remove(nextPickId);
+    if (nextLoad != null) {
+      loadDepth.decrementAndGet();
+      LOAD_DEPTH.decrementAndGet();
+      LOAD_WAIT.record(nextLoad.endStage());
     }
-    return null;
+    return nextLoad;
   }
 
   /**
@@ -90,6 +168,46 @@ public class StagingManager {
    * @return <code>int</code> representing the size of <code>loadingZone</code>.
    */
   protected int getLoadZoneSize() {
-    return loadZone.size();
+    return loadDepth.get();
+  }
+
+  /**
+   * Write the marshaling area and load zone to a snapshot.
+   *
+   * @param out the snapshot being written.
+   */
+  protected void writeSnapshot(WarehouseSnapshot out) {
+    out.putInt(marshalQueue.size());
+    for (PickRequest request : marshalQueue) {
+      out.putRequest(request);
+    }
+    out.putInt(loadZone.size());
+    for (PickRequest request : loadZone.values()) {
+      out.putRequest(request);
+    }
+  }
+
+  /**
+   * Fill the empty staging areas from a snapshot written by <code>writeSnapshot</code>.
+   *
+   * @param in the snapshot being read.
+   */
+  protected void readSnapshot(WarehouseSnapshot in) {
+    for (int count = in.getInt(); count > 0; count--) {
+      marshalAdd(in.getRequest());
+    }
+    for (int count = in.getInt(); count > 0; count--) {
+      loadAdd(in.getRequest());
+    }
+  }
+
+  @Override
+  public int getMarshalQueueDepth() {
+    return marshalDepth;
+  }
+
+  @Override
+  public int getLoadZoneDepth() {
+    return loadDepth.get();
   }
 }
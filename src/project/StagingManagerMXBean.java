@@ -0,0 +1,22 @@
+package project;
+
+/**
+ * Live view of the <code>StagingManager</code> areas, published over JMX. Attributes are read from
+ * volatile fields, so reading them never blocks marshaling or loading.
+ */
+public interface StagingManagerMXBean {
+
+  /**
+   * Return the number of <code>PickRequest</code> waiting in the marshaling area.
+   *
+   * @return <code>int</code> depth of the marshal queue.
+   */
+  int getMarshalQueueDepth();
+
+  /**
+   * Return the number of <code>PickRequest</code> waiting in the loading zone.
+   *
+   * @return <code>int</code> depth of the load zone.
+   */
+  int getLoadZoneDepth();
+}
@@ -0,0 +1,241 @@
+package project;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Reserves the stock of every <code>PickRequest</code> as it is released, so a
+ * <code>Picker</code> is never sent to a <code>PickFace</code> that will be empty when they get
+ * there. A request reserves all of its items or none of them. One that cannot is held, in the
+ * order it was released, with its short pick faces queued for replenishment, and is released once
+ * enough stock lands.
+ *
+ * <p>Each SKU counts its reserved items in an <code>AtomicInteger</code>, raised by compare and
+ * set, so reserving on one thread and picking on others never take a lock. Reservations are kept
+ * by SKU rather than location so they follow a SKU moved to another pick face. An item stays
+ * reserved for its <code>PickRequest</code> until it is picked, and what is still reserved is given
+ * back when the request is sent to be re-picked.
+ */
+public class StockReservations {
+
+  /** Number of <code>PickRequest</code> held for want of stock. */
+  private static final LongAdder REQUESTS_HELD =
+      RunWarehouse.metrics.counter("pick requests held");
+
+  /** The warehouse whose stock is reserved. */
+  private final WarehouseManager warehouse;
+
+  /** Number of items reserved of each SKU. */
+  private final ConcurrentHashMap<String, AtomicInteger> reserved = new ConcurrentHashMap<>();
+
+  /** <code>PickRequest</code> waiting for stock, in the order they are to be released. */
+  private final ArrayDeque<PickRequest> held = new ArrayDeque<>();
+
+  /** Size of <code>held</code>, so it is only locked when requests are held. */
+  private volatile int heldCount = 0;
+
+  /**
+   * Creates the reservations of a warehouse, with nothing reserved.
+   *
+   * @param warehouse the warehouse whose stock is reserved.
+   */
+  protected StockReservations(WarehouseManager warehouse) {
+    this.warehouse = warehouse;
+  }
+
+  /**
+   * Reserve every item left to pick for a <code>PickRequest</code>, or none of them. Pick faces
+   * without enough unreserved stock are queued for replenishment.
+   *
+   * @param pickReq the <code>PickRequest</code>.
+   * @return <code>true</code> if its items are reserved.
+   */
+  protected boolean reserve(PickRequest pickReq) {
+    ArrayList<String> pickSkus = pickReq.getPickSkus(warehouse);
+    LinkedHashMap<String, Integer> needed = new LinkedHashMap<>();
+    for (String sku : pickSkus) {
+      needed.merge(sku, 1, Integer::sum);
+    }
+    boolean enough = true;
+    for (Map.Entry<String, Integer> need : needed.entrySet()) {
+      if (available(need.getKey()) < need.getValue()) {
+        warehouse.requestReplenish(warehouse.getSkuLocation(need.getKey()));
+        enough = false;
+      }
+    }
+    if (!enough) {
+      return false;
+    }
+    ArrayList<String> taken = new ArrayList<>();
+    for (Map.Entry<String, Integer> need : needed.entrySet()) {
+      if (!take(need.getKey(), need.getValue())) {
+        for (String sku : taken) {
+          reserved.get(sku).addAndGet(-needed.get(sku));
+        }
+        return false;
+      }
+      taken.add(need.getKey());
+    }
+    pickReq.reserved = new ArrayList<>(pickSkus);
+    return true;
+  }
+
+  /**
+   * Raise the reservation of a SKU if enough stock is still unreserved, retrying if another
+   * thread reserves or picks at the same moment.
+   *
+   * @param sku the SKU.
+   * @param count the number of items to reserve.
+   * @return <code>true</code> if they were reserved.
+   */
+  private boolean take(String sku, int count) {
+    AtomicInteger counter = reserved.computeIfAbsent(sku, key -> new AtomicInteger());
+    while (true) {
+      int current = counter.get();
+      if (warehouse.getStock(warehouse.getSkuLocation(sku)) - current < count) {
+        return false;
+      }
+      if (counter.compareAndSet(current, current + count)) {
+        return true;
+      }
+    }
+  }
+
+  /**
+   * Return the stock of a SKU that is not reserved.
+   *
+   * @param sku the SKU.
+   * @return <code>int</code> number of items free to reserve.
+   */
+  protected int available(String sku) {
+    AtomicInteger counter = reserved.get(sku);
+    return warehouse.getStock(warehouse.getSkuLocation(sku))
+        - ((counter == null) ? 0 : counter.get());
+  }
+
+  /**
+   * An item reserved for a <code>PickRequest</code> has been picked.
+   *
+   * @param pickReq the <code>PickRequest</code>.
+   * @param sku the SKU picked.
+   */
+  protected void picked(PickRequest pickReq, String sku) {
+    if (pickReq.reserved != null && pickReq.reserved.remove(sku)) {
+      reserved.get(sku).decrementAndGet();
+    }
+  }
+
+  /**
+   * Give back every item still reserved for a <code>PickRequest</code>.
+   *
+   * @param pickReq the <code>PickRequest</code>.
+   */
+  protected void release(PickRequest pickReq) {
+    if (pickReq.reserved != null) {
+      for (String sku : pickReq.reserved) {
+        reserved.get(sku).decrementAndGet();
+      }
+      pickReq.reserved = null;
+    }
+  }
+
+  /**
+   * Hold a <code>PickRequest</code> until its items can be reserved.
+   *
+   * @param pickReq the <code>PickRequest</code>.
+   * @param first <code>true</code> to release it before every other held request.
+   */
+  protected void hold(PickRequest pickReq, boolean first) {
+    synchronized (held) {
+      if (first) {
+        held.addFirst(pickReq);
+      } else {
+        held.addLast(pickReq);
+      }
+      heldCount = held.size();
+    }
+    REQUESTS_HELD.increment();
+  }
+
+  /**
+   * Reserve the items of every held <code>PickRequest</code> that now has enough stock, in the
+   * order held, and stop holding them.
+   *
+   * @return the <code>PickRequest</code> now reserved, in order.
+   */
+  protected ArrayList<PickRequest> retry() {
+    ArrayList<PickRequest> ready = new ArrayList<>();
+    if (heldCount == 0) {
+      return ready;
+    }
+    synchronized (held) {
+      for (Iterator<PickRequest> waiting = held.iterator(); waiting.hasNext();) {
+        PickRequest pickReq = waiting.next();
+        if (reserve(pickReq)) {
+          waiting.remove();
+          ready.add(pickReq);
+        }
+      }
+      heldCount = held.size();
+    }
+    return ready;
+  }
+
+  /**
+   * Return the number of <code>PickRequest</code> held for want of stock.
+   *
+   * @return <code>int</code> number of requests.
+   */
+  protected int getHeld() {
+    return heldCount;
+  }
+
+  /**
+   * Write the reserved items and held <code>PickRequest</code> to a snapshot.
+   *
+   * @param out the snapshot being written.
+   */
+  protected void writeSnapshot(WarehouseSnapshot out) {
+    ArrayList<Map.Entry<String, AtomicInteger>> counts = new ArrayList<>();
+    for (Map.Entry<String, AtomicInteger> count : reserved.entrySet()) {
+      if (count.getValue().get() != 0) {
+        counts.add(count);
+      }
+    }
+    out.putInt(counts.size());
+    for (Map.Entry<String, AtomicInteger> count : counts) {
+      out.putString(count.getKey());
+      out.putInt(count.getValue().get());
+    }
+    out.putInt(held.size());
+    for (PickRequest pickReq : held) {
+      out.putRequest(pickReq);
+    }
+  }
+
+  /**
+   * Read reservations written by <code>writeSnapshot</code>.
+   *
+   * @param in the snapshot being read.
+   * @param warehouse the restored warehouse whose stock is reserved.
+   * @return the restored <code>StockReservations</code>.
+   */
+  protected static StockReservations readSnapshot(WarehouseSnapshot in,
+      WarehouseManager warehouse) {
+    StockReservations reservations = new StockReservations(warehouse);
+    for (int count = in.getInt(); count > 0; count--) {
+      reservations.reserved.put(in.getString(), new AtomicInteger(in.getInt()));
+    }
+    for (int count = in.getInt(); count > 0; count--) {
+      reservations.held.addLast(in.getRequest());
+    }
+    reservations.heldCount = reservations.held.size();
+    return reservations;
+  }
+}
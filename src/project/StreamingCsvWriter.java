@@ -0,0 +1,211 @@
+package project;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Writes a comma separated value file one field at a time through a reused buffer, so a report is
+ * never held in memory. Every field is followed by a comma, as in the reports written by
+ * <code>ReadAndWrite.writeFile</code>. Integers are written without creating a
+ * <code>String</code>. Use in a try-with-resources statement so the file is always closed.
+ */
+public class StreamingCsvWriter implements Closeable {
+
+  /** Default size of the buffer in bytes. */
+  private static final int BUFFER_SIZE = 1 << 16;
+
+  /** The file being written. */
+  private final FileChannel channel;
+
+  /** Bytes waiting to be written to <code>channel</code>. */
+  private final ByteBuffer buffer;
+
+  /** Reused to write the digits of an integer in reverse. */
+  private final byte[] digits = new byte[20];
+
+  /** Number of rows ended so far. */
+  private long rows = 0;
+
+  /**
+   * Creates or replaces a file and opens it for writing.
+   *
+   * @param file the file to write.
+   * @throws IOException when the file cannot be opened.
+   */
+  public StreamingCsvWriter(Path file) throws IOException {
+    this(file, BUFFER_SIZE);
+  }
+
+  /**
+   * Creates or replaces a file and opens it for writing with a given buffer size.
+   *
+   * @param file the file to write.
+   * @param bufferSize number of bytes buffered before they are written.
+   * @throws IOException when the file cannot be opened.
+   */
+  protected StreamingCsvWriter(Path file, int bufferSize) throws IOException {
+    channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+        StandardOpenOption.TRUNCATE_EXISTING);
+    buffer = ByteBuffer.allocateDirect(bufferSize);
+  }
+
+  /**
+   * Write a field of text.
+   *
+   * @param text the field.
+   * @return this writer.
+   * @throws IOException when the file cannot be written.
+   */
+  protected StreamingCsvWriter field(String text) throws IOException {
+    int length = text.length();
+    for (int i = 0; i < length; i++) {
+      if (text.charAt(i) >= 0x80) {
+        put(text.getBytes(StandardCharsets.UTF_8));
+        return put((byte) ',');
+      }
+    }
+    for (int i = 0; i < length; i++) {
+      if (!buffer.hasRemaining()) {
+        flush();
+      }
+      buffer.put((byte) text.charAt(i));
+    }
+    return put((byte) ',');
+  }
+
+  /**
+   * Write a field of one ASCII character, such as one part of a location.
+   *
+   * @param character the field.
+   * @return this writer.
+   * @throws IOException when the file cannot be written.
+   */
+  protected StreamingCsvWriter field(char character) throws IOException {
+    if (character >= 0x80) {
+      return field(String.valueOf(character));
+    }
+    put((byte) character);
+    return put((byte) ',');
+  }
+
+  /**
+   * Write a field holding a decimal integer.
+   *
+   * @param value the field.
+   * @return this writer.
+   * @throws IOException when the file cannot be written.
+   */
+  protected StreamingCsvWriter field(long value) throws IOException {
+    if (value < 0) {
+      put((byte) '-');
+    }
+    int count = 0;
+    do {
+      digits[count++] = (byte) ('0' + Math.abs(value % 10));
+      value /= 10;
+    } while (value != 0);
+    while (count > 0) {
+      put(digits[--count]);
+    }
+    return put((byte) ',');
+  }
+
+  /**
+   * End the current row.
+   *
+   * @return this writer.
+   * @throws IOException when the file cannot be written.
+   */
+  protected StreamingCsvWriter endRow() throws IOException {
+    rows++;
+    return put((byte) '\n');
+  }
+
+  /**
+   * Write every field of a row and end it.
+   *
+   * @param fields the fields of the row.
+   * @return this writer.
+   * @throws IOException when the file cannot be written.
+   */
+  protected StreamingCsvWriter row(String[] fields) throws IOException {
+    for (String text : fields) {
+      field(text);
+    }
+    return endRow();
+  }
+
+  /**
+   * Return the number of rows written.
+   *
+   * @return <code>long</code> number of rows.
+   */
+  protected long getRows() {
+    return rows;
+  }
+
+  /**
+   * Add one byte to the buffer, writing the buffer out first if it is full.
+   *
+   * @param next the byte.
+   * @return this writer.
+   * @throws IOException when the file cannot be written.
+   */
+  private StreamingCsvWriter put(byte next) throws IOException {
+    if (!buffer.hasRemaining()) {
+      flush();
+    }
+    buffer.put(next);
+    return this;
+  }
+
+  /**
+   * Add bytes to the buffer, writing the buffer out as often as it fills.
+   *
+   * @param bytes the bytes.
+   * @throws IOException when the file cannot be written.
+   */
+  private void put(byte[] bytes) throws IOException {
+    int offset = 0;
+    while (offset < bytes.length) {
+      if (!buffer.hasRemaining()) {
+        flush();
+      }
+      int length = Math.min(buffer.remaining(), bytes.length - offset);
+      buffer.put(bytes, offset, length);
+      offset += length;
+    }
+  }
+
+  /**
+   * Write out everything in the buffer.
+   *
+   * @throws IOException when the file cannot be written.
+   */
+  protected void flush() throws IOException {
+    buffer.flip();
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+    buffer.clear();
+  }
+
+  /**
+   * Write out everything in the buffer and close the file.
+   *
+   * @throws IOException when the file cannot be written or closed.
+   */
+  @Override
+  public void close() throws IOException {
+    try {
+      flush();
+    } finally {
+      channel.close();
+    }
+  }
+}
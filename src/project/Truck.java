@@ -45,6 +45,24 @@ public class Truck {
     loadPos++;
   }
 
+  /**
+   * Return whether a number of <code>Pallet</code> still fit on the <code>truckBed</code>.
+   * 
+   * @param pallets the number of <code>Pallet</code>.
+   * @return true if there is room for them.
+   */
+  protected boolean hasRoom(int pallets) {
+    return loadPos + pallets <= bedSize;
+  }
+
+  /**
+   * The <code>Truck</code> leaves the warehouse, releasing the <code>Pallet</code> on its
+   * <code>truckBed</code>. Nothing more can be loaded.
+   */
+  protected void dispatch() {
+    truckBed = null;
+  }
+
   /**
    * Return this truck's identification number.
    * 
@@ -54,6 +72,15 @@ public class Truck {
     return truckId;
   }
 
+  /**
+   * Return the number of <code>Pallet</code> this <code>Truck</code> can hold.
+   * 
+   * @return <code>int</code> representing the size of <code>truckBed</code>.
+   */
+  protected int getBedSize() {
+    return bedSize;
+  }
+
   /**
    * Return the next spot on the truck to be loaded.
    * 
@@ -62,4 +89,31 @@ public class Truck {
   protected int getLoadPos() {
     return loadPos;
   }
+
+  /**
+   * Write this <code>Truck</code> and the <code>Pallet</code> loaded on it to a snapshot.
+   *
+   * @param out the snapshot being written.
+   */
+  protected void writeSnapshot(WarehouseSnapshot out) {
+    out.putInt(truckId);
+    out.putInt(loadPos);
+    for (int position = 0; position < loadPos; position++) {
+      out.putPallet(truckBed[position]);
+    }
+  }
+
+  /**
+   * Read a <code>Truck</code> written by <code>writeSnapshot</code>.
+   *
+   * @param in the snapshot being read.
+   * @return the restored <code>Truck</code>.
+   */
+  protected static Truck readSnapshot(WarehouseSnapshot in) {
+    Truck truck = new Truck(in.getInt());
+    for (int count = in.getInt(); count > 0; count--) {
+      truck.load(in.getPallet());
+    }
+    return truck;
+  }
 }
@@ -1,32 +1,189 @@
 package project;
 
+import java.io.IOException;
 import java.util.LinkedList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.LongAdder;
 
-/** <code>TruckManager</code> tracks all <code>Truck</code> loaded at the warehouse. */
+/**
+ * <code>TruckManager</code> tracks all <code>Truck</code> loaded at the warehouse. Trucks are loaded
+ * at one or more docks at once, each with its own <code>Truck</code>. Each
+ * <code>PickRequest</code> is assigned to a dock by the ID it is released with, and every dock
+ * loads its own <code>PickRequest</code> in ID order, so <code>Loader</code> at different docks
+ * never wait on each other. A full truck is dispatched at once and replaced; its manifest is
+ * streamed out as it is loaded, and nothing of it is kept once it has left.
+ *
+ * <p><code>Loader</code> at different docks load at once. Each dock has its own lock, held while a
+ * <code>PickRequest</code> is loaded there and while its <code>Truck</code> is replaced; the
+ * counters shared by every dock are atomic, and <code>truckList</code> is guarded by its own
+ * monitor.
+ */
 
-public class TruckManager {
+public class TruckManager implements TruckManagerMXBean {
   /**
    * ID that increments with each new <code>Truck</code>. Used to generate the <code>truckId</code>.
    */
-  private int nextTruckId = 0;
+  private final AtomicInteger nextTruckId = new AtomicInteger();
 
   /**
-   * List of all <code>Truck</code> that have been loaded at the warehouse.
+   * List of the <code>Truck</code> at the docks, in the order they arrived. A <code>Truck</code>
+   * leaves the list when it is dispatched. Guarded by its own monitor.
    */
-  private LinkedList<Truck> truckList = new LinkedList<>();
+  private final LinkedList<Truck> truckList = new LinkedList<>();
 
-  /** Constructs a <code>TruckManager</code> for the warehouse. */
+  /** Where the manifest of each <code>Truck</code> is streamed, or <code>null</code>. */
+  private volatile TruckManifest manifest;
+
+  /** Number of <code>Truck</code> dispatched, published for monitoring. */
+  private final AtomicInteger trucksDispatched = new AtomicInteger();
+
+  /** The <code>Truck</code> that arrived last, published for monitoring. */
+  private volatile Truck activeTruck;
+
+  /** Number of loading docks, published for monitoring. */
+  private volatile int docks;
+
+  /** The <code>Truck</code> being loaded at each dock, guarded by the lock of the dock. */
+  private volatile Truck[] dockTrucks;
+
+  /** The lock of each dock. */
+  private volatile Object[] dockLocks;
+
+  /** Number of <code>PickRequest</code> loaded at each dock. */
+  private volatile AtomicIntegerArray dockLoaded;
+
+  /** Number of <code>PickRequest</code> loaded, published for monitoring. */
+  private final AtomicInteger pickRequestsLoaded = new AtomicInteger();
+
+  /** Time <code>Loader</code> spend checking a <code>PickRequest</code> before loading it. */
+  private static final LatencyHistogram LOADING = RunWarehouse.metrics.histogram("stage loading");
+
+  /** Time from the creation of a <code>PickRequest</code> to it being loaded. */
+  private static final LatencyHistogram TOTAL = RunWarehouse.metrics.histogram("total");
+
+  /** Number of <code>PickRequest</code> loaded onto a <code>Truck</code>. */
+  private static final LongAdder PICK_REQUESTS_LOADED =
+      RunWarehouse.metrics.counter("pick requests loaded");
+
+  /** Number of <code>Order</code> loaded onto a <code>Truck</code>. */
+  private static final LongAdder ORDERS_LOADED = RunWarehouse.metrics.counter("orders loaded");
+
+  /** Constructs a <code>TruckManager</code> for the warehouse, with one dock. */
   public TruckManager() {
-    Truck firstTruck = new Truck(nextTruckId);
-    nextTruckId++;
-    truckList.add(firstTruck);
+    setDocks(1);
+  }
+
+  /**
+   * Open a number of loading docks, each with a new <code>Truck</code>, in place of those open.
+   * <code>PickRequest</code> <code>n</code> is loaded at dock <code>n % docks</code>. Must be
+   * called before anything is loaded.
+   * 
+   * @param docks the number of docks, at least one.
+   */
+  protected void setDocks(int docks) {
+    if (pickRequestsLoaded.get() > 0) {
+      throw new IllegalStateException("Docks can not change once loading has started.");
+    }
+    dockTrucks = new Truck[docks];
+    dockLocks = newLocks(docks);
+    dockLoaded = new AtomicIntegerArray(docks);
+    this.docks = docks;
+    synchronized (truckList) {
+      truckList.clear();
+    }
+    nextTruckId.set(0);
+    for (int dock = 0; dock < docks; dock++) {
+      newTruck(dock);
+    }
+  }
+
+  /**
+   * Return a lock for each dock.
+   * 
+   * @param docks the number of docks.
+   * @return <code>Object[]</code> of locks.
+   */
+  private static Object[] newLocks(int docks) {
+    Object[] locks = new Object[docks];
+    for (int dock = 0; dock < docks; dock++) {
+      locks[dock] = new Object();
+    }
+    return locks;
   }
 
-  /** A new <code>Truck</code> arrives at the warehouse to be loaded. */
+  /** A new <code>Truck</code> arrives at the first dock to be loaded. */
   protected void newTruck() {
-    Truck newTruck = new Truck(nextTruckId);
-    truckList.add(newTruck);
-    nextTruckId++;
+    newTruck(0);
+  }
+
+  /**
+   * A new <code>Truck</code> arrives at a dock to be loaded, and the one there is dispatched.
+   * 
+   * @param dock the dock.
+   */
+  protected void newTruck(int dock) {
+    synchronized (dockLocks[dock]) {
+      if (dockTrucks[dock] != null) {
+        dispatch(dock);
+      }
+      Truck newTruck = new Truck(nextTruckId.getAndIncrement());
+      synchronized (truckList) {
+        truckList.add(newTruck);
+      }
+      dockTrucks[dock] = newTruck;
+      activeTruck = newTruck;
+    }
+  }
+
+  /**
+   * The <code>Truck</code> at a dock leaves the warehouse. Its manifest is completed and its
+   * pallets released. Called holding the lock of the dock.
+   * 
+   * @param dock the dock.
+   */
+  private void dispatch(int dock) {
+    WarehouseFlightEvents.TruckDispatch event = new WarehouseFlightEvents.TruckDispatch();
+    event.begin();
+    Truck truck = dockTrucks[dock];
+    synchronized (truckList) {
+      truckList.remove(truck);
+    }
+    trucksDispatched.incrementAndGet();
+    TruckManifest manifest = this.manifest;
+    if (manifest != null) {
+      try {
+        manifest.dispatched(truck);
+      } catch (IOException error) {
+        stopManifest(error);
+      }
+    }
+    if (event.shouldCommit()) {
+      event.location = "dock " + dock;
+      event.truckId = truck.getTruckId();
+      event.pallets = truck.getLoadPos();
+      event.commit();
+    }
+    truck.dispatch();
+  }
+
+  /**
+   * Stop streaming manifests after the manifest file could not be written.
+   * 
+   * @param error the error writing the manifest.
+   */
+  private void stopManifest(IOException error) {
+    RunWarehouse.logger.warning("Could not write the truck manifest: " + error.getMessage());
+    manifest = null;
+  }
+
+  /**
+   * Stream the manifest of every <code>Truck</code> from now on. The caller closes it.
+   * 
+   * @param manifest the manifest, or <code>null</code> to stop.
+   */
+  protected void setManifest(TruckManifest manifest) {
+    this.manifest = manifest;
   }
 
   /**
@@ -37,25 +194,202 @@ public class TruckManager {
    *        <code>rearPal</code>.
    */
   protected void load(PickRequest pickReq) {
-    truckList.getLast().load(pickReq.getRearPallet());
-    truckList.getLast().load(pickReq.getFrontPallet());
+    load(pickReq, null);
+  }
+
+  /**
+   * Load one <code>PickRequest</code> worth of SKUs onto the <code>Truck</code> at its dock on
+   * behalf of a <code>Loader</code>, and add both pallets to its manifest. A <code>Truck</code> is
+   * dispatched as soon as it is full, and a new one arrives at the dock. Holds the lock of the
+   * dock throughout, so a <code>Loader</code> at another dock is never held up.
+   * 
+   * @param pickReq <code>PickRequest</code> containing the sequenced pallets.
+   * @param worker the name of the <code>Loader</code>, or <code>null</code>.
+   */
+  protected void load(PickRequest pickReq, String worker) {
+    WarehouseFlightEvents.TruckLoad event = new WarehouseFlightEvents.TruckLoad();
+    event.begin();
+    int dock = getDock(pickReq.getPickRequestId());
+    Truck truck;
+    int position;
+    synchronized (dockLocks[dock]) {
+      truck = dockTrucks[dock];
+      truck.load(pickReq.getRearPallet());
+      truck.load(pickReq.getFrontPallet());
+      position = truck.getLoadPos() - 2;
+      dockLoaded.incrementAndGet(dock);
+      TruckManifest manifest = this.manifest;
+      if (manifest != null) {
+        try {
+          manifest.loaded(truck, position, "rear", pickReq, pickReq.getRearPallet());
+          manifest.loaded(truck, position + 1, "front", pickReq, pickReq.getFrontPallet());
+        } catch (IOException error) {
+          stopManifest(error);
+        }
+      }
+      if (!truck.hasRoom(2)) {
+        newTruck(dock);
+      }
+    }
+    LOADING.record(pickReq.endStage());
+    TOTAL.record(pickReq.getAge());
+    PICK_REQUESTS_LOADED.increment();
+    pickRequestsLoaded.incrementAndGet();
+    ORDERS_LOADED.add(pickReq.getSeqOrds().size());
+    if (event.shouldCommit()) {
+      event.location = "truck " + truck.getTruckId() + " position " + position;
+      event.worker = worker;
+      event.requestId = pickReq.getPickRequestId();
+      event.commit();
+    }
   }
 
   /**
-   * Return <code>truckId</code> for the <code>Truck</code> currently being loaded.
+   * Return <code>truckId</code> for the <code>Truck</code> that arrived last.
    * 
    * @return <code>int</code> of <code>Truck</code> that is being loaded.
    */
   protected int getActiveTruckId() {
-    return truckList.getLast().getTruckId();
+    return activeTruck.getTruckId();
+  }
+
+  /**
+   * Return the <code>Truck</code> being loaded at a dock.
+   * 
+   * @param dock the dock.
+   * @return the <code>Truck</code>.
+   */
+  protected Truck getDockTruck(int dock) {
+    synchronized (dockLocks[dock]) {
+      return dockTrucks[dock];
+    }
+  }
+
+  /**
+   * Return the dock a <code>PickRequest</code> is loaded at.
+   * 
+   * @param pickRequestId the ID of the <code>PickRequest</code>.
+   * @return <code>int</code> the dock.
+   */
+  protected int getDock(int pickRequestId) {
+    return pickRequestId % docks;
   }
 
   /**
-   * Returns the next <code>PickRequestId</code> that should be loaded on the truck.
+   * Returns the lowest <code>PickRequestId</code> still to be loaded at any dock. With one dock,
+   * <code>PickRequest</code> are loaded in ID order across every <code>Truck</code>.
    * 
    * @return <code>int</code> representing the unique ID of <code>PickRequest</code>.
    */
   protected int getNextPickId() {
-    return (truckList.getLast().getLoadPos() / 2);
+    int next = getNextPickId(0);
+    for (int dock = 1; dock < docks; dock++) {
+      next = Math.min(next, getNextPickId(dock));
+    }
+    return next;
+  }
+
+  /**
+   * Returns the next <code>PickRequestId</code> that should be loaded at a dock.
+   * 
+   * @param dock the dock.
+   * @return <code>int</code> representing the unique ID of <code>PickRequest</code>.
+   */
+  protected int getNextPickId(int dock) {
+    return dock + dockLoaded.get(dock) * docks;
+  }
+
+  /**
+   * Returns how many <code>PickRequest</code> its dock loads before a <code>PickRequest</code>,
+   * which is how soon a <code>Loader</code> needs it: 0 when it is next.
+   * 
+   * @param pickId the ID of the <code>PickRequest</code>.
+   * @return <code>int</code> number of loads ahead of it.
+   */
+  protected int getLoadsAhead(int pickId) {
+    return pickId / docks - dockLoaded.get(pickId % docks);
+  }
+
+  /**
+   * Write every <code>Truck</code> and the loading progress to a snapshot. Nothing may be loaded
+   * while the snapshot is written.
+   *
+   * @param out the snapshot being written.
+   */
+  protected void writeSnapshot(WarehouseSnapshot out) {
+    out.putInt(nextTruckId.get());
+    out.putInt(pickRequestsLoaded.get());
+    out.putInt(trucksDispatched.get());
+    synchronized (truckList) {
+      out.putInt(truckList.size());
+      for (Truck truck : truckList) {
+        truck.writeSnapshot(out);
+      }
+      out.putInt(docks);
+      for (int dock = 0; dock < docks; dock++) {
+        out.putInt(dockLoaded.get(dock));
+        out.putInt(truckList.indexOf(dockTrucks[dock]));
+      }
+    }
+  }
+
+  /**
+   * Replace the trucks of a new <code>TruckManager</code> with those of a snapshot written by
+   * <code>writeSnapshot</code>.
+   *
+   * @param in the snapshot being read.
+   */
+  protected void readSnapshot(WarehouseSnapshot in) {
+    nextTruckId.set(in.getInt());
+    pickRequestsLoaded.set(in.getInt());
+    trucksDispatched.set(in.getInt());
+    synchronized (truckList) {
+      truckList.clear();
+      for (int count = in.getInt(); count > 0; count--) {
+        truckList.add(Truck.readSnapshot(in));
+      }
+      activeTruck = truckList.getLast();
+      int docks = in.getInt();
+      Truck[] trucks = new Truck[docks];
+      AtomicIntegerArray loaded = new AtomicIntegerArray(docks);
+      for (int dock = 0; dock < docks; dock++) {
+        loaded.set(dock, in.getInt());
+        trucks[dock] = truckList.get(in.getInt());
+      }
+      dockTrucks = trucks;
+      dockLocks = newLocks(docks);
+      dockLoaded = loaded;
+      this.docks = docks;
+    }
+  }
+
+  @Override
+  public int getActiveTruck() {
+    return activeTruck.getTruckId();
+  }
+
+  @Override
+  public int getActiveTruckFill() {
+    return activeTruck.getLoadPos();
+  }
+
+  @Override
+  public int getTruckCapacity() {
+    return activeTruck.getBedSize();
+  }
+
+  @Override
+  public int getTrucksDispatched() {
+    return trucksDispatched.get();
+  }
+
+  @Override
+  public int getDocks() {
+    return docks;
+  }
+
+  @Override
+  public int getPickRequestsLoaded() {
+    return pickRequestsLoaded.get();
   }
 }
@@ -0,0 +1,50 @@
+package project;
+
+/**
+ * Live view of the <code>Truck</code> being loaded at the docks, published over JMX. Attributes
+ * are read from volatile fields, so reading them never blocks loading.
+ */
+public interface TruckManagerMXBean {
+
+  /**
+   * Return the ID of the <code>Truck</code> that arrived last.
+   *
+   * @return <code>int</code> truck ID.
+   */
+  int getActiveTruck();
+
+  /**
+   * Return the number of <code>Pallet</code> loaded on the <code>Truck</code> that arrived last.
+   *
+   * @return <code>int</code> fill level of the active truck.
+   */
+  int getActiveTruckFill();
+
+  /**
+   * Return the number of <code>Pallet</code> a <code>Truck</code> can hold.
+   *
+   * @return <code>int</code> truck capacity.
+   */
+  int getTruckCapacity();
+
+  /**
+   * Return the number of <code>Truck</code> dispatched.
+   *
+   * @return <code>int</code> number of trucks dispatched.
+   */
+  int getTrucksDispatched();
+
+  /**
+   * Return the number of docks loading trucks at once.
+   *
+   * @return <code>int</code> number of docks.
+   */
+  int getDocks();
+
+  /**
+   * Return the number of <code>PickRequest</code> loaded onto trucks.
+   *
+   * @return <code>int</code> number of pick requests loaded.
+   */
+  int getPickRequestsLoaded();
+}
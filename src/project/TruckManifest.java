@@ -0,0 +1,76 @@
+package project;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Streams the manifest of every <code>Truck</code> to a CSV file as it is loaded, so the manifests
+ * can be tailed while the warehouse runs and trucks need not be kept once they leave.
+ *
+ * <p>Each <code>Pallet</code> loaded is a row of the truck ID, its position in the
+ * <code>truckBed</code>, <code>front</code> or <code>rear</code>, the <code>PickRequest</code> ID,
+ * then the <code>Order</code> ID and SKU of each position on the pallet in sequence. When a truck
+ * leaves, a row of its ID, <code>dispatched</code> and its number of pallets follows, and the
+ * manifest is flushed to the file. Docks load at once, so each row is written whole under the
+ * manifest's monitor and rows of different trucks never interleave.
+ */
+public class TruckManifest implements Closeable {
+
+  /** The manifest file being written. */
+  private final StreamingCsvWriter writer;
+
+  /**
+   * Creates or replaces a manifest file.
+   *
+   * @param file the manifest file.
+   * @throws IOException when the file cannot be opened.
+   */
+  public TruckManifest(Path file) throws IOException {
+    writer = new StreamingCsvWriter(file);
+  }
+
+  /**
+   * Record a <code>Pallet</code> loaded onto a <code>Truck</code>.
+   *
+   * @param truck the <code>Truck</code>.
+   * @param position the position of the pallet in the <code>truckBed</code>.
+   * @param side <code>front</code> or <code>rear</code>.
+   * @param pickReq the <code>PickRequest</code> the pallet was sequenced for.
+   * @param pallet the <code>Pallet</code>.
+   * @throws IOException when the manifest cannot be written.
+   */
+  protected synchronized void loaded(Truck truck, int position, String side, PickRequest pickReq,
+      Pallet pallet) throws IOException {
+    writer.field(truck.getTruckId()).field(position).field(side)
+        .field(pickReq.getPickRequestId());
+    List<Order> orders = pickReq.getSeqOrds();
+    for (int item = 0; item < orders.size(); item++) {
+      String sku = pallet.getItemAtPosition(item);
+      writer.field(orders.get(item).getOrderId()).field(sku == null ? "" : sku);
+    }
+    writer.endRow();
+  }
+
+  /**
+   * Record that a <code>Truck</code> has left, and flush its manifest to the file.
+   *
+   * @param truck the <code>Truck</code>.
+   * @throws IOException when the manifest cannot be written.
+   */
+  protected synchronized void dispatched(Truck truck) throws IOException {
+    writer.field(truck.getTruckId()).field("dispatched").field(truck.getLoadPos()).endRow();
+    writer.flush();
+  }
+
+  /**
+   * Flush and close the manifest file. Trucks still at the docks are not dispatched.
+   *
+   * @throws IOException when the file cannot be written.
+   */
+  @Override
+  public synchronized void close() throws IOException {
+    writer.close();
+  }
+}
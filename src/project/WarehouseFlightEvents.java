@@ -0,0 +1,105 @@
+package project;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JDK Flight Recorder events for the hot operations of the warehouse. Every event is disabled by
+ * default and costs nothing until it is switched on, normally with the warehouse.jfc settings
+ * profile shipped with the project.
+ */
+final class WarehouseFlightEvents {
+
+  /** Not instantiated, only holds the event classes. */
+  private WarehouseFlightEvents() {}
+
+  /** Fields shared by every warehouse operation. */
+  @Category("Warehouse")
+  @Enabled(false)
+  @StackTrace(false)
+  abstract static class Operation extends Event {
+
+    /** SKU the operation worked on. */
+    @Label("SKU")
+    String sku;
+
+    /** Location of the operation: a pick face, pallet position or truck position. */
+    @Label("Location")
+    String location;
+
+    /** Name of the worker performing the operation. */
+    @Label("Worker")
+    String worker;
+
+    /** ID of the <code>PickRequest</code> the operation belongs to. */
+    @Label("Pick Request")
+    int requestId = -1;
+  }
+
+  /** <code>WarehouseManager.pick</code>. */
+  @Name("project.Pick")
+  @Label("Pick")
+  @Description("An item is picked from a pick face")
+  static final class Pick extends Operation {}
+
+  /** <code>WarehouseManager.putBack</code>. */
+  @Name("project.PutBack")
+  @Label("Put Back")
+  @Description("An item is returned to its pick face")
+  static final class PutBack extends Operation {}
+
+  /** <code>WarehouseManager.replenish</code>. */
+  @Name("project.Replenish")
+  @Label("Replenish")
+  @Description("A pick face is refilled from the reserve room")
+  static final class Replenish extends Operation {}
+
+  /** <code>WarehousePicking.optimize</code>. */
+  @Name("project.Optimize")
+  @Label("Optimize")
+  @Description("The picking order of a pick request is computed")
+  static final class Optimize extends Operation {
+
+    /** Number of SKUs routed. */
+    @Label("SKU Count")
+    int skuCount;
+  }
+
+  /** <code>Sequencer.work</code>. */
+  @Name("project.Sequence")
+  @Label("Sequence")
+  @Description("A sequencer scans an item onto a front or rear pallet")
+  static final class Sequence extends Operation {}
+
+  /** <code>Loader.check</code>. */
+  @Name("project.Check")
+  @Label("Check")
+  @Description("A loader checks the position of an item on a sequenced pallet")
+  static final class Check extends Operation {}
+
+  /** <code>TruckManager.load</code>. */
+  @Name("project.TruckLoad")
+  @Label("Truck Load")
+  @Description("The pallets of a pick request are loaded onto a truck")
+  static final class TruckLoad extends Operation {}
+
+  /** <code>TruckManager.dispatch</code>. */
+  @Name("project.TruckDispatch")
+  @Label("Truck Dispatch")
+  @Description("A truck leaves its dock and its manifest is completed")
+  static final class TruckDispatch extends Operation {
+
+    /** ID of the truck. */
+    @Label("Truck")
+    int truckId;
+
+    /** Number of pallets on the truck. */
+    @Label("Pallets")
+    int pallets;
+  }
+}
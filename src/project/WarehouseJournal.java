@@ -0,0 +1,645 @@
+package project;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.zip.CRC32C;
+
+/**
+ * An append-only write-ahead journal of <code>WarehouseOperations</code>. Each operation is
+ * recorded before it is run, and replaying the journal on the layout it started from rebuilds the
+ * warehouse after a crash.
+ *
+ * <p>Operations are buffered and committed in groups: one write and one <code>fsync</code> for up
+ * to <code>groupRecords</code> operations, or for whatever has been buffered once
+ * <code>groupNanos</code> have passed since the group began. A background thread commits a group
+ * that is still open when its time is up, so the last operations of a burst do not wait for the
+ * next one. A crash loses at most the group being buffered; <code>commit</code> makes everything
+ * recorded so far durable at once.
+ *
+ * <p>The file starts with the <code>MAGIC</code> bytes, a version byte, and the sequence number of
+ * the checkpoint the journal starts from. Each group is then a frame: the length of its records in
+ * bytes, the number of records and their CRC-32C checksum, followed by the records. A record starts
+ * with a tag byte. Tag 0 defines the next worker ID by name, and the others are operations whose
+ * workers are referred to by ID. A batch of scans is its count followed by the scans, and a
+ * re-slotting the count of SKUs and locations followed by each SKU and its new location. A flush of
+ * the orders held is its tag alone. Strings
+ * are a varint length followed by UTF-8 bytes. Replay stops at the first incomplete or corrupt
+ * frame, which can only be the one being written in a crash.
+ */
+public class WarehouseJournal implements WarehouseOperations, Closeable {
+
+  /** The first bytes of every journal. */
+  protected static final byte[] MAGIC = {'W', 'H', 'J', 'L'};
+
+  /** The version of the journal format. */
+  protected static final byte VERSION = 1;
+
+  /** Length of the journal header in bytes. */
+  private static final int HEADER = MAGIC.length + 1 + Long.BYTES;
+
+  /** Length of the header of each frame in bytes. */
+  private static final int FRAME_HEADER = 3 * Integer.BYTES;
+
+  /** Tag of a record defining a worker name. */
+  private static final byte NAME = 0;
+
+  /** Tag of an <code>order</code> record. */
+  private static final byte ORDER = 1;
+
+  /** Tag of a <code>ready</code> record. */
+  private static final byte READY = 2;
+
+  /** Tag of a <code>receive</code> record. */
+  private static final byte RECEIVE = 3;
+
+  /** Tag of a <code>work</code> record. */
+  private static final byte WORK = 4;
+
+  /** Tag of a <code>push</code> record. */
+  private static final byte PUSH = 5;
+
+  /** Tag of a <code>rescan</code> record. */
+  private static final byte RESCAN = 6;
+
+  /** Tag of a batch <code>work</code> record. */
+  private static final byte BATCH = 7;
+
+  /** Tag of a <code>reslot</code> record. */
+  private static final byte RESLOT = 8;
+
+  /** Tag of a <code>flush</code> record. */
+  private static final byte FLUSH = 9;
+
+  /** Default largest number of records committed together. */
+  private static final int GROUP_RECORDS = 4096;
+
+  /** Default longest time a record waits to be committed, in nanoseconds. */
+  private static final long GROUP_NANOS = 10_000_000L;
+
+  /** The journal file. */
+  private final FileChannel channel;
+
+  /** Largest number of records committed together. */
+  private final int groupRecords;
+
+  /** Longest time in nanoseconds between the first record of a group and its commit. */
+  private final long groupNanos;
+
+  /** The group being buffered, after room for its frame header. */
+  private ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+
+  /** Checksums each group. */
+  private final CRC32C checksum = new CRC32C();
+
+  /** IDs of the workers named so far in the journal. */
+  private final HashMap<String, Integer> workerIds = new HashMap<>();
+
+  /** Sequence number of the next operation. */
+  private long sequence;
+
+  /** Sequence number of the first operation not yet committed. */
+  private long durable;
+
+  /** Number of records in the group being buffered. */
+  private int pending = 0;
+
+  /** <code>System.nanoTime</code> when the first record of the group was buffered. */
+  private long groupStart;
+
+  /** Number of groups committed. */
+  private long commits = 0;
+
+  /** Whether the journal has been closed, which stops <code>flusher</code>. */
+  private boolean closed = false;
+
+  /** Commits each group once <code>groupNanos</code> have passed since it began. */
+  private final Thread flusher;
+
+  /**
+   * Creates or replaces a journal that starts from the beginning of the day.
+   *
+   * @param file the journal file.
+   * @throws IOException when the file cannot be written.
+   */
+  public WarehouseJournal(Path file) throws IOException {
+    this(file, 0, GROUP_RECORDS, GROUP_NANOS);
+  }
+
+  /**
+   * Creates or replaces a journal that starts from a checkpoint.
+   *
+   * @param file the journal file.
+   * @param checkpoint sequence number of the first operation, all earlier operations being part of
+   *        the snapshot the journal starts from.
+   * @throws IOException when the file cannot be written.
+   */
+  protected WarehouseJournal(Path file, long checkpoint) throws IOException {
+    this(file, checkpoint, GROUP_RECORDS, GROUP_NANOS);
+  }
+
+  /**
+   * Creates or replaces a journal with a given group commit policy. The header is written to a
+   * temporary file that is then moved over any old journal, so a crash leaves either journal
+   * whole.
+   *
+   * @param file the journal file.
+   * @param checkpoint sequence number of the first operation, all earlier operations being part of
+   *        the state the journal starts from.
+   * @param groupRecords largest number of records committed together.
+   * @param groupNanos longest time in nanoseconds a record waits to be committed.
+   * @throws IOException when the file cannot be written.
+   */
+  protected WarehouseJournal(Path file, long checkpoint, int groupRecords, long groupNanos)
+      throws IOException {
+    Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+    channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+        StandardOpenOption.TRUNCATE_EXISTING);
+    this.groupRecords = groupRecords;
+    this.groupNanos = groupNanos;
+    sequence = checkpoint;
+    durable = checkpoint;
+    ByteBuffer header = ByteBuffer.allocate(HEADER).put(MAGIC).put(VERSION).putLong(checkpoint);
+    header.flip();
+    while (header.hasRemaining()) {
+      channel.write(header);
+    }
+    channel.force(false);
+    Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE,
+        StandardCopyOption.REPLACE_EXISTING);
+    buffer.position(FRAME_HEADER);
+    flusher = new Thread(this::flushLoop, "journal-flusher");
+    flusher.setDaemon(true);
+    flusher.start();
+  }
+
+  @Override
+  public synchronized void order(String model, String colour) throws IOException {
+    reserve(model.length() + colour.length());
+    buffer.put(ORDER);
+    putString(model);
+    putString(colour);
+    recorded();
+  }
+
+  @Override
+  public synchronized void ready(String role, String name) throws IOException {
+    int worker = workerId(name);
+    reserve(role.length());
+    buffer.put(READY);
+    putString(role);
+    EventLog.putVarLong(buffer, worker);
+    recorded();
+  }
+
+  @Override
+  public synchronized void receive(String name) throws IOException {
+    recordWorker(RECEIVE, name);
+  }
+
+  @Override
+  public synchronized void work(String name, String target) throws IOException {
+    int worker = workerId(name);
+    reserve(target.length());
+    buffer.put(WORK);
+    EventLog.putVarLong(buffer, worker);
+    putString(target);
+    recorded();
+  }
+
+  @Override
+  public synchronized void work(String name, String[] targets) throws IOException {
+    int worker = workerId(name);
+    int characters = 0;
+    for (String target : targets) {
+      characters += target.length() + 2;
+    }
+    reserve(characters);
+    buffer.put(BATCH);
+    EventLog.putVarLong(buffer, worker);
+    EventLog.putVarLong(buffer, targets.length);
+    for (String target : targets) {
+      putString(target);
+    }
+    recorded();
+  }
+
+  @Override
+  public synchronized void reslot(String[] moves) throws IOException {
+    int characters = 0;
+    for (String move : moves) {
+      characters += move.length() + 2;
+    }
+    reserve(characters);
+    buffer.put(RESLOT);
+    EventLog.putVarLong(buffer, moves.length);
+    for (String move : moves) {
+      putString(move);
+    }
+    recorded();
+  }
+
+  @Override
+  public synchronized void flush() throws IOException {
+    reserve(0);
+    buffer.put(FLUSH);
+    recorded();
+  }
+
+  @Override
+  public synchronized void push(String name) throws IOException {
+    recordWorker(PUSH, name);
+  }
+
+  @Override
+  public synchronized void rescan(String name) throws IOException {
+    recordWorker(RESCAN, name);
+  }
+
+  /**
+   * Record an operation whose only argument is a worker.
+   *
+   * @param tag the tag of the operation.
+   * @param name the name of the <code>Worker</code>.
+   * @throws IOException when a group cannot be committed.
+   */
+  private void recordWorker(byte tag, String name) throws IOException {
+    int worker = workerId(name);
+    reserve(0);
+    buffer.put(tag);
+    EventLog.putVarLong(buffer, worker);
+    recorded();
+  }
+
+  /**
+   * Return the ID of a worker, recording a name definition if the worker is new.
+   *
+   * @param name the name of the <code>Worker</code>.
+   * @return the ID of the worker in this journal.
+   * @throws IOException when a group cannot be committed.
+   */
+  private int workerId(String name) throws IOException {
+    Integer worker = workerIds.get(name);
+    if (worker == null) {
+      worker = workerIds.size();
+      workerIds.put(name, worker);
+      reserve(name.length());
+      buffer.put(NAME);
+      putString(name);
+      buffered();
+    }
+    return worker;
+  }
+
+  /**
+   * Make sure the buffer has room for a record, committing the group or growing the buffer if it
+   * does not.
+   *
+   * @param characters the number of characters in the strings of the record.
+   * @throws IOException when a group cannot be committed.
+   */
+  private void reserve(int characters) throws IOException {
+    int needed = 32 + 3 * characters;
+    if (buffer.remaining() >= needed) {
+      return;
+    }
+    commit();
+    if (buffer.remaining() < needed) {
+      ByteBuffer larger = ByteBuffer.allocate(buffer.capacity() + needed);
+      buffer.flip();
+      buffer = larger.put(buffer);
+    }
+  }
+
+  /**
+   * Write a string as its varint length followed by its UTF-8 bytes.
+   *
+   * @param text the string.
+   */
+  private void putString(String text) {
+    int length = text.length();
+    for (int i = 0; i < length; i++) {
+      if (text.charAt(i) >= 0x80) {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        EventLog.putVarLong(buffer, bytes.length);
+        buffer.put(bytes);
+        return;
+      }
+    }
+    EventLog.putVarLong(buffer, length);
+    for (int i = 0; i < length; i++) {
+      buffer.put((byte) text.charAt(i));
+    }
+  }
+
+  /** Count a record just buffered, noting when the group began and waking the flusher. */
+  private void buffered() {
+    if (pending++ == 0) {
+      groupStart = System.nanoTime();
+      notifyAll();
+    }
+  }
+
+  /**
+   * Body of the background thread: wait for a group to begin, then commit it once
+   * <code>groupNanos</code> have passed, unless a record has committed it already.
+   */
+  private synchronized void flushLoop() {
+    try {
+      while (!closed) {
+        long wait = groupNanos - (System.nanoTime() - groupStart);
+        if (pending == 0) {
+          wait();
+        } else if (wait > 0) {
+          wait(wait / 1_000_000L, (int) (wait % 1_000_000L));
+        } else {
+          commit();
+        }
+      }
+    } catch (InterruptedException error) {
+      return;
+    } catch (IOException error) {
+      RunWarehouse.logger.warning("Could not commit journal: " + error.getMessage());
+    }
+  }
+
+  /**
+   * Count an operation just buffered, and commit the group if it is full or old enough.
+   *
+   * @throws IOException when the group cannot be committed.
+   */
+  private void recorded() throws IOException {
+    sequence++;
+    buffered();
+    if (pending >= groupRecords || System.nanoTime() - groupStart >= groupNanos) {
+      commit();
+    }
+  }
+
+  /**
+   * Write the buffered group as one frame and <code>fsync</code> it, making every operation
+   * recorded so far durable. Does nothing if no record is buffered.
+   *
+   * @throws IOException when the journal cannot be written.
+   */
+  protected synchronized void commit() throws IOException {
+    if (pending == 0) {
+      return;
+    }
+    int length = buffer.position() - FRAME_HEADER;
+    checksum.reset();
+    checksum.update(buffer.array(), FRAME_HEADER, length);
+    buffer.putInt(0, length).putInt(Integer.BYTES, pending)
+        .putInt(2 * Integer.BYTES, (int) checksum.getValue());
+    buffer.flip();
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+    channel.force(false);
+    buffer.clear().position(FRAME_HEADER);
+    pending = 0;
+    durable = sequence;
+    commits++;
+  }
+
+  /**
+   * Return the sequence number of the next operation, that is the number of operations since the
+   * start of the day.
+   *
+   * @return <code>long</code> sequence number.
+   */
+  protected synchronized long getSequence() {
+    return sequence;
+  }
+
+  /**
+   * Return the sequence number of the first operation that is not yet durable.
+   *
+   * @return <code>long</code> sequence number.
+   */
+  protected synchronized long getDurableSequence() {
+    return durable;
+  }
+
+  /**
+   * Return the number of groups committed, each costing one <code>fsync</code>.
+   *
+   * @return <code>long</code> number of commits.
+   */
+  protected synchronized long getCommits() {
+    return commits;
+  }
+
+  /**
+   * Commit every buffered operation and close the journal.
+   *
+   * @throws IOException when the journal cannot be written or closed.
+   */
+  @Override
+  public synchronized void close() throws IOException {
+    closed = true;
+    notifyAll();
+    try {
+      commit();
+    } finally {
+      channel.close();
+    }
+  }
+
+  /**
+   * Replay every committed operation of a journal that starts from the beginning of the day.
+   *
+   * @param file the journal file.
+   * @param operations receives each operation.
+   * @return the sequence number after the last operation replayed.
+   * @throws IOException when the file cannot be read or is not a journal, or an operation fails.
+   */
+  protected static long replay(Path file, WarehouseOperations operations) throws IOException {
+    return replay(file, operations, 0);
+  }
+
+  /**
+   * Replay, in order, every committed operation of a journal from a sequence number on. Earlier
+   * operations are skipped, so a journal that was not yet replaced when a later snapshot was taken
+   * can still be replayed onto that snapshot. An incomplete or corrupt final group, left by a crash
+   * while it was being written, is skipped with a warning.
+   *
+   * @param file the journal file.
+   * @param operations receives each operation.
+   * @param from the sequence number of the first operation to replay.
+   * @return the sequence number after the last operation replayed.
+   * @throws IOException when the file cannot be read or is not a journal, the journal starts after
+   *         <code>from</code>, or an operation fails.
+   */
+  protected static long replay(Path file, WarehouseOperations operations, long from)
+      throws IOException {
+    try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ)) {
+      ByteBuffer header = ByteBuffer.allocate(HEADER);
+      readFully(in, header, 0);
+      byte[] magic = new byte[MAGIC.length];
+      if (header.limit() == HEADER) {
+        header.get(magic);
+      }
+      if (!Arrays.equals(magic, MAGIC) || header.get() != VERSION) {
+        throw new IOException(file + " is not a warehouse journal.");
+      }
+      long replayed = header.getLong();
+      if (replayed > from) {
+        throw new IOException(file + " starts at operation " + replayed + ", after " + from + ".");
+      }
+      ArrayList<String> workers = new ArrayList<>();
+      CRC32C check = new CRC32C();
+      ByteBuffer frame = ByteBuffer.allocate(1 << 16);
+      long size = in.size();
+      long position = HEADER;
+      while (position < size) {
+        ByteBuffer frameHeader = ByteBuffer.allocate(FRAME_HEADER);
+        readFully(in, frameHeader, position);
+        if (frameHeader.limit() < FRAME_HEADER) {
+          break;
+        }
+        int length = frameHeader.getInt(0);
+        if (length < 0 || length > size - position - FRAME_HEADER) {
+          break;
+        }
+        if (frame.capacity() < length) {
+          frame = ByteBuffer.allocate(length);
+        }
+        frame.clear().limit(length);
+        readFully(in, frame, position + FRAME_HEADER);
+        check.reset();
+        check.update(frame.array(), 0, length);
+        if ((int) check.getValue() != frameHeader.getInt(2 * Integer.BYTES)) {
+          break;
+        }
+        try {
+          for (int record = frameHeader.getInt(Integer.BYTES); record > 0; record--) {
+            if (apply(frame, workers, (replayed < from) ? null : operations)) {
+              replayed++;
+            }
+          }
+        } catch (BufferUnderflowException | IndexOutOfBoundsException error) {
+          throw new IOException(file + " has a malformed group at byte " + position + ".");
+        }
+        position += FRAME_HEADER + length;
+      }
+      if (position < size) {
+        RunWarehouse.logger.warning("Journal " + file + " ends with an incomplete group; ignored "
+            + (size - position) + " bytes after operation " + replayed + ".");
+      }
+      return replayed;
+    }
+  }
+
+  /**
+   * Decode one record and hand it to <code>operations</code>.
+   *
+   * @param frame the records of a group, positioned at the record.
+   * @param workers the names of the workers defined so far, by ID.
+   * @param operations receives the operation, or <code>null</code> to skip it.
+   * @return true if the record was an operation, false if it defined a worker.
+   * @throws IOException when the operation fails.
+   */
+  private static boolean apply(ByteBuffer frame, ArrayList<String> workers,
+      WarehouseOperations operations) throws IOException {
+    byte tag = frame.get();
+    if (tag == NAME) {
+      workers.add(getString(frame));
+      return false;
+    } else if (tag < ORDER || tag > FLUSH) {
+      throw new IOException("Unknown journal record " + tag + ".");
+    } else if (tag == FLUSH) {
+      if (operations != null) {
+        operations.flush();
+      }
+      return true;
+    } else if (tag == BATCH || tag == RESLOT) {
+      String name = (tag == BATCH) ? workers.get((int) EventLog.getVarLong(frame)) : null;
+      long count = EventLog.getVarLong(frame);
+      if (count < 0 || count > frame.remaining()) {
+        throw new BufferUnderflowException();
+      }
+      String[] targets = new String[(int) count];
+      for (int target = 0; target < targets.length; target++) {
+        targets[target] = getString(frame);
+      }
+      if (operations != null && tag == BATCH) {
+        operations.work(name, targets);
+      } else if (operations != null) {
+        operations.reslot(targets);
+      }
+      return true;
+    }
+    String first = (tag == ORDER || tag == READY) ? getString(frame)
+        : workers.get((int) EventLog.getVarLong(frame));
+    String second = (tag == ORDER || tag == WORK) ? getString(frame)
+        : (tag == READY) ? workers.get((int) EventLog.getVarLong(frame)) : null;
+    if (operations == null) {
+      return true;
+    }
+    switch (tag) {
+      case ORDER:
+        operations.order(first, second);
+        break;
+      case READY:
+        operations.ready(first, second);
+        break;
+      case RECEIVE:
+        operations.receive(first);
+        break;
+      case WORK:
+        operations.work(first, second);
+        break;
+      case PUSH:
+        operations.push(first);
+        break;
+      default:
+        operations.rescan(first);
+        break;
+    }
+    return true;
+  }
+
+  /**
+   * Read a string written by <code>putString</code>.
+   *
+   * @param frame the buffer to read from.
+   * @return the string.
+   */
+  private static String getString(ByteBuffer frame) {
+    int length = (int) EventLog.getVarLong(frame);
+    String text = new String(frame.array(), frame.position(), length, StandardCharsets.UTF_8);
+    frame.position(frame.position() + length);
+    return text;
+  }
+
+  /**
+   * Read from a position until a buffer is full or the file ends, then flip the buffer.
+   *
+   * @param in the file.
+   * @param target the buffer to fill.
+   * @param position the offset in the file to read from.
+   * @throws IOException when the file cannot be read.
+   */
+  private static void readFully(FileChannel in, ByteBuffer target, long position)
+      throws IOException {
+    while (target.hasRemaining()) {
+      int read = in.read(target, position);
+      if (read < 0) {
+        break;
+      }
+      position += read;
+    }
+    target.flip();
+  }
+}
@@ -4,19 +4,68 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
-import java.util.LinkedList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Contains the <code>warehouseFloor</code>, and manages inventory.
  */
-public class WarehouseManager {
+public class WarehouseManager implements WarehouseManagerMXBean {
+
+  /** Quantity every <code>PickFace</code> holds at the start of a day unless stated otherwise. */
+  protected static final int BASELINE_STOCK = 30;
 
   /** Stores the SKUs and their stock quantities in a location in the warehouse. */
   private HashMap<String, PickFace> warehouseFloor = new HashMap<>();
 
-  /** Keeps track of all <code>PickFace</code> that need to be replenished. */
-  private LinkedList<PickFace> toReplenish = new LinkedList<>();
+  /** Location of each SKU on the <code>warehouseFloor</code>. */
+  private HashMap<String, String> skuLocations = new HashMap<>();
+
+  /**
+   * Every <code>PickFace</code> whose quantity differs from <code>BASELINE_STOCK</code>, by
+   * location. Kept up to date as stock changes so reports only visit these faces, and concurrent
+   * so it can be read over JMX while the warehouse runs.
+   */
+  private ConcurrentHashMap<String, PickFace> changedFaces = new ConcurrentHashMap<>();
+
+  /**
+   * Keeps track of all <code>PickFace</code> that need to be replenished, each once, in the order
+   * requested. Guarded by its own lock, as pickers on several threads request replenishment.
+   */
+  private final LinkedHashSet<PickFace> toReplenish = new LinkedHashSet<>();
+
+  /** Size of <code>toReplenish</code>, published for monitoring. */
+  private volatile int replenishBacklog = 0;
+
+  /** Stock reserved for released <code>PickRequest</code>, or <code>null</code> if not reserved. */
+  private StockReservations reservations;
+
+  /**
+   * Every location as its zone, aisle, rack and level separated by commas, in the order of
+   * traversal_table.csv, which is the order a <code>Picker</code> walks them.
+   */
+  private ArrayList<String> route = new ArrayList<>();
+
+  /** Position of each location along <code>route</code>, counting from 1. */
+  private HashMap<String, Integer> routePositions = new HashMap<>();
+
+  /** Number of times SKUs have been moved, so routes planned before a move can follow them. */
+  private volatile int layoutVersion = 0;
+
+  /** Collects how often SKUs are picked and routed together, to plan where they should be. */
+  private SlottingEngine slotting = new SlottingEngine(this);
+
+  /** Counts what happens at each location, to show where the warehouse is busiest. */
+  private PickHeatmap heatmap;
 
   /** Path of the file directory where all pertinent .csv files are kept. */
   private Path filePath;
@@ -34,9 +83,15 @@ public class WarehouseManager {
   public WarehouseManager(Path directory) throws FileNotFoundException, IOException {
     filePath = directory;
     createWarehouse();
+    heatmap = new PickHeatmap(route);
     updateStockLevels();
   }
 
+  /**
+   * Creates an empty warehouse, to be filled from a snapshot by <code>readSnapshot</code>.
+   */
+  protected WarehouseManager() {}
+
   /**
    * Creates a brand new warehouse according to traversal_table.csv. Each pick face in the warehouse
    * is initially set to 30.
@@ -46,13 +101,17 @@ public class WarehouseManager {
    *         not be found.
    */
   private void createWarehouse() throws FileNotFoundException, IOException {
-    ArrayList<String[]> fileContents =
-        ReadAndWrite.readFile(filePath.resolve("traversal_table.csv"), ",", false);
-    for (String[] line : fileContents) {
-      String location = line[0] + line[1] + line[2] + line[3];
-      PickFace pickFace = new PickFace(line[4], 30);
+    new MappedCsvReader(',').read(filePath.resolve("traversal_table.csv"), false, line -> {
+      String location = line.getString(0, 3);
+      String sku = line.getString(4);
+      PickFace pickFace = new PickFace(location, sku, BASELINE_STOCK);
+      pickFace.setSlot(route.size());
       warehouseFloor.put(location, pickFace);
-    }
+      skuLocations.put(sku, location);
+      route.add(line.getString(0) + "," + line.getString(1) + "," + line.getString(2) + ","
+          + line.getString(3));
+      routePositions.put(location, route.size());
+    });
   }
 
   /**
@@ -64,13 +123,23 @@ public class WarehouseManager {
    *         not be found.
    */
   private void updateStockLevels() throws FileNotFoundException, IOException {
-    ArrayList<String[]> fileContents =
-        ReadAndWrite.readFile(filePath.resolve("initial.csv"), ",", true);
-    for (String[] line : fileContents) {
-      String location = line[0] + line[1] + line[2] + line[3];
-      PickFace pickFace = warehouseFloor.get(location); // Find the pick face.
-      pickFace.setStockQty(Integer.valueOf(line[4])); // Set the quantity of the pick face
-    }
+    new MappedCsvReader(',').read(filePath.resolve("initial.csv"), true, line -> {
+      PickFace pickFace = warehouseFloor.get(line.getString(0, 3)); // Find the pick face.
+      pickFace.setStockQty(line.getInt(4)); // Set the quantity of the pick face
+      stockChanged(pickFace);
+    });
+  }
+
+  /**
+   * Record whether a <code>PickFace</code> now differs from <code>BASELINE_STOCK</code>. Called
+   * after every change to its quantity. The quantity is read while its location is locked in
+   * <code>changedFaces</code>, so the last of concurrent changes decides the entry.
+   * 
+   * @param pickFace the <code>PickFace</code> whose quantity changed.
+   */
+  private void stockChanged(PickFace pickFace) {
+    changedFaces.compute(pickFace.getLocation(),
+        (location, face) -> (pickFace.getStockQty() != BASELINE_STOCK) ? pickFace : null);
   }
 
 
@@ -82,15 +151,76 @@ public class WarehouseManager {
    * @param location The inventory location of the pick.
    */
   protected void pick(String location) {
+    pick(location, null, -1);
+  }
+
+  /**
+   * An item is picked from this inventory location by a worker, for a <code>PickRequest</code>.
+   * 
+   * @param location The inventory location of the pick.
+   * @param worker The name of the <code>Worker</code> picking, or <code>null</code>.
+   * @param requestId The ID of the <code>PickRequest</code> being picked, or -1.
+   */
+  protected void pick(String location, String worker, int requestId) {
+    WarehouseFlightEvents.Pick event = new WarehouseFlightEvents.Pick();
+    event.begin();
     PickFace pickFace = warehouseFloor.get(location);
-    if (pickFace.getStockQty() > 0) {
-      pickFace.removeFromStock(1);
+    slotting.picked(pickFace.getSku());
+    heatmap.record(pickFace.getSlot(), PickHeatmap.Activity.PICK);
+    if (pickFace.takeFromStock(1)) {
+      stockChanged(pickFace);
     } else {
       RunWarehouse.logger.warning("Can not pick from this location, inventory is 0.");
     }
     if (pickFace.getStockQty() <= 5) {
       replenishRequest(location, pickFace);
     }
+    if (event.shouldCommit()) {
+      event.sku = pickFace.getSku();
+      event.location = location;
+      event.worker = worker;
+      event.requestId = requestId;
+      event.commit();
+    }
+  }
+
+  /**
+   * Items are picked together from inventory locations by a worker, for a
+   * <code>PickRequest</code>. Stock levels and replenish requests change exactly as for a
+   * <code>pick</code> from each location in turn, but each <code>PickFace</code> picked from is
+   * marked changed once for the batch. A <code>Pick</code> flight event is committed for each
+   * item, as for a <code>pick</code>, so recordings summarize the same either way.
+   * 
+   * @param locations The inventory location of each pick, in order.
+   * @param worker The name of the <code>Worker</code> picking, or <code>null</code>.
+   * @param requestId The ID of the <code>PickRequest</code> being picked, or -1.
+   */
+  protected void pick(List<String> locations, String worker, int requestId) {
+    LinkedHashMap<String, PickFace> picked = new LinkedHashMap<>();
+    for (String location : locations) {
+      WarehouseFlightEvents.Pick event = new WarehouseFlightEvents.Pick();
+      event.begin();
+      PickFace pickFace = warehouseFloor.get(location);
+      slotting.picked(pickFace.getSku());
+      heatmap.record(pickFace.getSlot(), PickHeatmap.Activity.PICK);
+      if (!pickFace.takeFromStock(1)) {
+        RunWarehouse.logger.warning("Can not pick from this location, inventory is 0.");
+      }
+      if (pickFace.getStockQty() <= 5) {
+        replenishRequest(location, pickFace);
+      }
+      picked.put(location, pickFace);
+      if (event.shouldCommit()) {
+        event.sku = pickFace.getSku();
+        event.location = location;
+        event.worker = worker;
+        event.requestId = requestId;
+        event.commit();
+      }
+    }
+    for (PickFace pickFace : picked.values()) {
+      stockChanged(pickFace);
+    }
   }
 
   /**
@@ -100,8 +230,57 @@ public class WarehouseManager {
    *        warehouse.
    */
   protected void putBack(String location) {
+    putBack(location, null, -1);
+  }
+
+  /**
+   * Return an item back to its location on behalf of a worker.
+   * 
+   * @param location a <code>String</code> identification of a <code>PickFace</code> in the
+   *        warehouse.
+   * @param worker The name of the <code>Worker</code> returning the item, or <code>null</code>.
+   * @param requestId The ID of the <code>PickRequest</code> the item was picked for, or -1.
+   */
+  protected void putBack(String location, String worker, int requestId) {
+    putBack(location, worker, requestId, PickHeatmap.Activity.PUT_BACK);
+  }
+
+  /**
+   * Return an item picked in error back to its location on behalf of a worker.
+   * 
+   * @param location a <code>String</code> identification of a <code>PickFace</code> in the
+   *        warehouse.
+   * @param worker The name of the <code>Worker</code> returning the item, or <code>null</code>.
+   * @param requestId The ID of the <code>PickRequest</code> it was picked for in error, or -1.
+   */
+  protected void returnWrongItem(String location, String worker, int requestId) {
+    putBack(location, worker, requestId, PickHeatmap.Activity.WRONG_ITEM);
+  }
+
+  /**
+   * Return an item back to its location, counted on the heatmap as a given activity.
+   * 
+   * @param location a <code>String</code> identification of a <code>PickFace</code> in the
+   *        warehouse.
+   * @param worker The name of the <code>Worker</code> returning the item, or <code>null</code>.
+   * @param requestId The ID of the <code>PickRequest</code> the item was picked for, or -1.
+   * @param activity why the item was returned.
+   */
+  private void putBack(String location, String worker, int requestId,
+      PickHeatmap.Activity activity) {
+    WarehouseFlightEvents.PutBack event = new WarehouseFlightEvents.PutBack();
+    event.begin();
     PickFace pickFace = warehouseFloor.get(location);
     pickFace.addToStock(1);
+    stockChanged(pickFace);
+    heatmap.record(pickFace.getSlot(), activity);
+    if (event.shouldCommit()) {
+      event.sku = pickFace.getSku();
+      event.location = location;
+      event.worker = worker;
+      event.requestId = requestId;
+      event.commit();
+    }
   }
 
   /**
@@ -112,13 +291,29 @@ public class WarehouseManager {
    *        warehouse.
    */
   protected void replenish(PickFace pickFace) {
-    if (pickFace.getStockQty() <= 5) {
-      pickFace.addToStock(25);
-    } else {
-      pickFace.setStockQty(30);
+    replenish(pickFace, null);
+  }
+
+  /**
+   * Replenishes a <code>PickFace</code> on behalf of a worker.
+   * 
+   * @param pickFace the <code>PickFace</code> to replenish.
+   * @param worker The name of the <code>Replenisher</code>, or <code>null</code>.
+   */
+  protected void replenish(PickFace pickFace, String worker) {
+    WarehouseFlightEvents.Replenish event = new WarehouseFlightEvents.Replenish();
+    event.begin();
+    pickFace.updateStockQty(stock -> (stock <= 5) ? stock + 25 : BASELINE_STOCK);
+    stockChanged(pickFace);
+    heatmap.record(pickFace.getSlot(), PickHeatmap.Activity.REPLENISH);
+    RunWarehouse.events.record(EventType.REPLENISHED, -1, EventLog.skuId(pickFace.getSku()), -1,
+        -1);
+    if (event.shouldCommit()) {
+      event.sku = pickFace.getSku();
+      event.location = pickFace.getLocation();
+      event.worker = worker;
+      event.commit();
     }
-    RunWarehouse.logger.info("SKU # " + pickFace.getSku() + " replenished. Current stock at "
-        + pickFace.getStockQty() + ".");
   }
 
   /**
@@ -130,11 +325,45 @@ public class WarehouseManager {
    * @param pickFace The SKU and number of that SKU in the <code>PickFace</code>.
    */
   private void replenishRequest(String location, PickFace pickFace) {
-    if (!toReplenish.contains(pickFace)) {
+    synchronized (toReplenish) {
       toReplenish.add(pickFace);
+      replenishBacklog = toReplenish.size();
+    }
+    RunWarehouse.events.record(EventType.REPLENISH_REQUESTED, -1,
+        EventLog.skuId(pickFace.getSku()), -1, -1);
+  }
+
+  /**
+   * Request that the <code>PickFace</code> at a location is replenished, unless it already is.
+   * 
+   * @param location a <code>String</code> identification of a <code>PickFace</code> in the
+   *        warehouse.
+   */
+  protected void requestReplenish(String location) {
+    replenishRequest(location, warehouseFloor.get(location));
+  }
+
+  /**
+   * Reserve stock for <code>PickRequest</code> as they are released, or stop reserving. Turning
+   * reservation on keeps any reservations already made.
+   * 
+   * @param reserving <code>true</code> to reserve stock.
+   */
+  protected void setReserving(boolean reserving) {
+    if (!reserving) {
+      reservations = null;
+    } else if (reservations == null) {
+      reservations = new StockReservations(this);
     }
-    RunWarehouse.logger.info("SKU # " + pickFace.getSku() + " at " + location
-        + " needs to be replenished. " + pickFace.getStockQty() + " items remaining.");
+  }
+
+  /**
+   * Return the stock reserved for released <code>PickRequest</code>.
+   * 
+   * @return the <code>StockReservations</code>, or <code>null</code> if stock is not reserved.
+   */
+  protected StockReservations getReservations() {
+    return reservations;
   }
 
   /**
@@ -180,12 +409,7 @@ public class WarehouseManager {
    * @return <code>String</code> representation of the location.
    */
   protected String getSkuLocation(String sku) {
-    for (String key : warehouseFloor.keySet()) {
-      if (warehouseFloor.get(key).getSku().equals(sku)) {
-        return key;
-      }
-    }
-    return null;
+    return skuLocations.get(sku);
   }
 
   /**
@@ -194,7 +418,13 @@ public class WarehouseManager {
    * @return next <code>PickFace</code> that needs to be replenished
    */
   protected PickFace getNextReplenish() {
-    return toReplenish.removeFirst();
+    synchronized (toReplenish) {
+      Iterator<PickFace> first = toReplenish.iterator();
+      PickFace next = first.next();
+      first.remove();
+      replenishBacklog = toReplenish.size();
+      return next;
+    }
   }
 
   /**
@@ -206,6 +436,206 @@ public class WarehouseManager {
     return warehouseFloor;
   }
 
+  /**
+   * Return every location as its zone, aisle, rack and level separated by commas, in the order a
+   * <code>Picker</code> walks them.
+   * 
+   * @return unmodifiable view of the route through the warehouse.
+   */
+  protected List<String> getRoute() {
+    return Collections.unmodifiableList(route);
+  }
+
+  /**
+   * Return how far along the route through the warehouse a location is.
+   * 
+   * @param location a <code>String</code> identification of a <code>PickFace</code> in the
+   *        warehouse.
+   * @return <code>int</code> position of the location, counting from 1.
+   */
+  protected int getRoutePosition(String location) {
+    return routePositions.get(location);
+  }
+
+  /**
+   * Return the number of times SKUs have been moved to other locations.
+   * 
+   * @return <code>int</code> version of the layout.
+   */
+  protected int getLayoutVersion() {
+    return layoutVersion;
+  }
+
+  /**
+   * Return the pick statistics the warehouse is re-slotted from.
+   * 
+   * @return the <code>SlottingEngine</code>.
+   */
+  protected SlottingEngine getSlotting() {
+    return slotting;
+  }
+
+  /**
+   * Return the counts of what has happened at each location.
+   * 
+   * @return the <code>PickHeatmap</code>.
+   */
+  protected PickHeatmap getHeatmap() {
+    return heatmap;
+  }
+
+  /**
+   * Move SKUs to other locations, each <code>PickFace</code> keeping its stock and any
+   * replenish request. The locations filled must be exactly those emptied, so every location
+   * still holds one SKU. <code>PickRequest</code> already routed follow their SKUs. Each location
+   * is only ever overwritten, never removed, so the floor keeps its shape and a thread reading or
+   * iterating it meanwhile sees each location with either its old or its new <code>PickFace</code>.
+   * 
+   * @param moves the new location of each SKU moved.
+   * @throws IllegalArgumentException if a SKU or location is unknown, or the moves would leave a
+   *         location empty or holding two SKUs.
+   */
+  protected void reslot(Map<String, String> moves) {
+    HashSet<String> emptied = new HashSet<>();
+    HashSet<String> filled = new HashSet<>();
+    for (Map.Entry<String, String> move : moves.entrySet()) {
+      String from = skuLocations.get(move.getKey());
+      if (from == null || !routePositions.containsKey(move.getValue())) {
+        throw new IllegalArgumentException(
+            "Can not move SKU " + move.getKey() + " to " + move.getValue() + ".");
+      }
+      emptied.add(from);
+      filled.add(move.getValue());
+    }
+    if (!emptied.equals(filled) || filled.size() != moves.size()) {
+      throw new IllegalArgumentException("Moves must fill exactly the locations they empty.");
+    }
+    ArrayList<PickFace> moved = new ArrayList<>();
+    for (String location : emptied) {
+      moved.add(warehouseFloor.get(location));
+    }
+    for (PickFace pickFace : moved) {
+      String location = moves.get(pickFace.getSku());
+      pickFace.setLocation(location);
+      pickFace.setSlot(routePositions.get(location) - 1);
+      warehouseFloor.put(location, pickFace);
+      skuLocations.put(pickFace.getSku(), location);
+      stockChanged(pickFace);
+    }
+    layoutVersion++;
+  }
+
+  /**
+   * Return every <code>PickFace</code> whose quantity differs from <code>BASELINE_STOCK</code>,
+   * without scanning the warehouse floor.
+   * 
+   * @return unmodifiable live view of the changed <code>PickFace</code>.
+   */
+  protected Collection<PickFace> getChangedFaces() {
+    return Collections.unmodifiableCollection(changedFaces.values());
+  }
+
+  /**
+   * Write the layout, stock levels and replenish requests of the warehouse floor to a snapshot.
+   * 
+   * @param out the snapshot being written.
+   */
+  protected void writeSnapshot(WarehouseSnapshot out) {
+    out.putInt(route.size());
+    for (String place : route) {
+      PickFace pickFace = warehouseFloor.get(place.replace(",", ""));
+      out.putString(place);
+      out.putString(pickFace.getSku());
+      out.putInt(pickFace.getStockQty());
+    }
+    synchronized (toReplenish) {
+      out.putInt(toReplenish.size());
+      for (PickFace pickFace : toReplenish) {
+        out.putString(pickFace.getLocation());
+      }
+    }
+    out.putBoolean(reservations != null);
+    if (reservations != null) {
+      reservations.writeSnapshot(out);
+    }
+    slotting.writeSnapshot(out);
+    heatmap.writeSnapshot(out);
+  }
+
+  /**
+   * Fill an empty warehouse from a snapshot written by <code>writeSnapshot</code>.
+   * 
+   * @param in the snapshot being read.
+   */
+  protected void readSnapshot(WarehouseSnapshot in) {
+    for (int count = in.getInt(); count > 0; count--) {
+      String place = in.getString();
+      String location = place.replace(",", "");
+      String sku = in.getString();
+      PickFace pickFace = new PickFace(location, sku, in.getInt());
+      pickFace.setSlot(route.size());
+      warehouseFloor.put(location, pickFace);
+      skuLocations.put(sku, location);
+      route.add(place);
+      routePositions.put(location, route.size());
+      stockChanged(pickFace);
+    }
+    heatmap = new PickHeatmap(route);
+    synchronized (toReplenish) {
+      for (int count = in.getInt(); count > 0; count--) {
+        toReplenish.add(warehouseFloor.get(in.getString()));
+      }
+      replenishBacklog = toReplenish.size();
+    }
+    if (in.getBoolean()) {
+      reservations = StockReservations.readSnapshot(in, this);
+    }
+    slotting.readSnapshot(in);
+    heatmap.readSnapshot(in);
+  }
+
+  @Override
+  public int getPickFaceCount() {
+    return warehouseFloor.size();
+  }
+
+  @Override
+  public long getTotalStock() {
+    long total = 0;
+    for (PickFace pickFace : warehouseFloor.values()) {
+      total += pickFace.getStockQty();
+    }
+    return total;
+  }
+
+  @Override
+  public Map<String, Integer> getStockLevels() {
+    TreeMap<String, Integer> levels = new TreeMap<>();
+    for (Map.Entry<String, PickFace> entry : warehouseFloor.entrySet()) {
+      levels.put(entry.getKey(), entry.getValue().getStockQty());
+    }
+    return levels;
+  }
+
+  @Override
+  public Map<String, Integer> getChangedStockLevels() {
+    TreeMap<String, Integer> levels = new TreeMap<>();
+    for (PickFace pickFace : changedFaces.values()) {
+      levels.put(pickFace.getLocation(), pickFace.getStockQty());
+    }
+    return levels;
+  }
+
+  @Override
+  public Map<String, Long> getAislePicks() {
+    return heatmap.getAisleCounts(PickHeatmap.Activity.PICK);
+  }
+
+  @Override
+  public int getReplenishBacklog() {
+    return replenishBacklog;
+  }
+
 }
 
 
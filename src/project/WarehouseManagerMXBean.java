@@ -0,0 +1,59 @@
+package project;
+
+import java.util.Map;
+
+/**
+ * Live view of <code>WarehouseManager</code> inventory, published over JMX. No attribute takes a
+ * lock that picking or replenishing takes, so reading them never blocks either.
+ * <code>getTotalStock</code> and <code>getStockLevels</code> walk every <code>PickFace</code> of
+ * the plain floor map, whose locations are fixed once the warehouse is built, reading each
+ * quantity atomically; a re-slotting at the same moment can show a SKU at its old location. The
+ * other attributes read a concurrent map, volatile counts or the heatmap's counters.
+ */
+public interface WarehouseManagerMXBean {
+
+  /**
+   * Return the number of <code>PickFace</code> on the warehouse floor.
+   *
+   * @return <code>int</code> number of pick faces.
+   */
+  int getPickFaceCount();
+
+  /**
+   * Return the total quantity of stock over all <code>PickFace</code>.
+   *
+   * @return <code>long</code> total stock.
+   */
+  long getTotalStock();
+
+  /**
+   * Return the stock level of every <code>PickFace</code> by location.
+   *
+   * @return map from location to quantity.
+   */
+  Map<String, Integer> getStockLevels();
+
+  /**
+   * Return the stock level of every <code>PickFace</code> whose quantity is not the start of day
+   * baseline, by location. Costs one step per changed face rather than a scan of the floor, so it
+   * can be read at any time as a mid-shift snapshot.
+   *
+   * @return map from location to quantity.
+   */
+  Map<String, Integer> getChangedStockLevels();
+
+  /**
+   * Return the number of <code>PickFace</code> waiting to be replenished.
+   *
+   * @return <code>int</code> size of the replenish backlog.
+   */
+  int getReplenishBacklog();
+
+  /**
+   * Return the number of items picked in each aisle over the last hour, rolled up from the
+   * counts at each location when read.
+   *
+   * @return map from zone and aisle to picks.
+   */
+  Map<String, Long> getAislePicks();
+}
@@ -0,0 +1,87 @@
+package project;
+
+import java.io.IOException;
+
+/**
+ * The instructions that change the state of a warehouse, one per line of a simulation. Every pick,
+ * put-back, replenish, marshal, sequence and load follows from these, so replaying them in order on
+ * the start of day layout rebuilds the whole warehouse.
+ */
+public interface WarehouseOperations {
+
+  /**
+   * A fax for a new <code>Order</code> arrives.
+   *
+   * @param model the model of the minivan.
+   * @param colour the colour of the minivan.
+   * @throws IOException when the operation cannot be recorded.
+   */
+  void order(String model, String colour) throws IOException;
+
+  /**
+   * A <code>Worker</code> starts work.
+   *
+   * @param role the type of <code>Worker</code>, such as <code>Picker</code>.
+   * @param name the name of the <code>Worker</code>.
+   * @throws IOException when the operation cannot be recorded.
+   */
+  void ready(String role, String name) throws IOException;
+
+  /**
+   * A <code>Worker</code> receives their next task.
+   *
+   * @param name the name of the <code>Worker</code>.
+   * @throws IOException when the operation cannot be recorded.
+   */
+  void receive(String name) throws IOException;
+
+  /**
+   * A <code>Worker</code> works on one item: picking, sequencing, checking or replenishing.
+   *
+   * @param name the name of the <code>Worker</code>.
+   * @param target the SKU or location worked on.
+   * @throws IOException when the operation cannot be recorded.
+   */
+  void work(String name, String target) throws IOException;
+
+  /**
+   * A <code>Worker</code> uploads a batch of scans at once, worked on in order.
+   *
+   * @param name the name of the <code>Worker</code>.
+   * @param targets the SKUs or locations worked on.
+   * @throws IOException when the operation cannot be recorded.
+   */
+  void work(String name, String[] targets) throws IOException;
+
+  /**
+   * SKUs are moved to other locations, as <code>WarehouseManager.reslot</code> moves them.
+   *
+   * @param moves each SKU moved followed by its new location.
+   * @throws IOException when the operation cannot be recorded.
+   */
+  void reslot(String[] moves) throws IOException;
+
+  /**
+   * Every <code>Order</code> held to be clustered is released at once, as
+   * <code>OrderManager.flushPurgatory</code> releases them.
+   *
+   * @throws IOException when the operation cannot be recorded.
+   */
+  void flush() throws IOException;
+
+  /**
+   * A <code>Worker</code> passes their finished task on: marshalling, moving or loading.
+   *
+   * @param name the name of the <code>Worker</code>.
+   * @throws IOException when the operation cannot be recorded.
+   */
+  void push(String name) throws IOException;
+
+  /**
+   * A <code>Worker</code> rescans their current task.
+   *
+   * @param name the name of the <code>Worker</code>.
+   * @throws IOException when the operation cannot be recorded.
+   */
+  void rescan(String name) throws IOException;
+}
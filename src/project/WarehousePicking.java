@@ -15,10 +15,32 @@ public class WarehousePicking {
    */
   protected static ArrayList<String> optimize(ArrayList<String> skuNums,
       WarehouseManager warehouse) {
+    return optimize(skuNums, warehouse, -1);
+  }
+
+  /**
+   * Returns an optimized picking order as locations for the SKUs of a <code>PickRequest</code>.
+   * 
+   * @param skuNums <code>ArrayList</code> of SKU numbers to be picked.
+   * @param warehouse The warehouse we are working in.
+   * @param requestId The ID of the <code>PickRequest</code> being routed, or -1.
+   * @return List of <code>String</code> locations for the SKU to be picked, optimized for speed.
+   */
+  protected static ArrayList<String> optimize(ArrayList<String> skuNums,
+      WarehouseManager warehouse, int requestId) {
+    WarehouseFlightEvents.Optimize event = new WarehouseFlightEvents.Optimize();
+    event.begin();
     Collections.sort(skuNums);
     ArrayList<String> optimizedOrder = new ArrayList<>();
     optimizedOrder = warehouse.getSkuLocs(skuNums);
-
+    if (event.shouldCommit()) {
+      event.requestId = requestId;
+      event.skuCount = skuNums.size();
+      if (!optimizedOrder.isEmpty()) {
+        event.location = optimizedOrder.get(0);
+      }
+      event.commit();
+    }
     return optimizedOrder;
   }
 
@@ -0,0 +1,488 @@
+package project;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.zip.CRC32C;
+
+/**
+ * A compact binary snapshot of the whole state of a <code>Controller</code>: the warehouse floor
+ * and its layout, the translation table, order queues, pick requests with their pallets, staging
+ * zones, trucks and workers. Restoring one is much faster than parsing the start of day files and
+ * replaying a journal, so a warehouse can restart quickly or be copied to try out a different
+ * day.
+ *
+ * <p>Each class writes and reads its own state through the methods of this class. Integers are
+ * zig-zag varints. Strings, <code>Order</code>, <code>PickRequest</code> and <code>Pallet</code>
+ * are written once and referred to by number after that, which keeps the file small and keeps
+ * objects shared between queues, workers and trucks shared when restored: a reference is a varint
+ * that is 0 for <code>null</code>, the number plus one of an object already written, or one more
+ * than the number written so far when the object itself follows.
+ *
+ * <p>The file starts with the <code>MAGIC</code> bytes, a version byte, the journal sequence
+ * number the snapshot was taken at, the length of the body and its CRC-32C checksum. It is written
+ * to a temporary file which is then moved over the old snapshot, so a crash never leaves a partial
+ * snapshot behind, and is read through a memory-mapped buffer.
+ */
+public class WarehouseSnapshot {
+
+  /** The first bytes of every snapshot. */
+  protected static final byte[] MAGIC = {'W', 'H', 'S', 'N'};
+
+  /** The version of the snapshot format. */
+  protected static final byte VERSION = 10;
+
+  /** Length of the header in bytes. */
+  private static final int HEADER = MAGIC.length + 1 + 2 * Long.BYTES + Integer.BYTES;
+
+  /** The body being written or read. */
+  private ByteBuffer buffer;
+
+  /** <code>System.nanoTime</code> when the snapshot was taken or restored, for ages. */
+  private final long now = System.nanoTime();
+
+  /** Journal sequence number of the snapshot. */
+  private long sequence;
+
+  /** The restored <code>Controller</code>, when reading. */
+  private Controller controller;
+
+  /** Number of each string written, when writing. */
+  private HashMap<String, Integer> stringIds;
+
+  /** Number of each <code>Order</code> written, when writing. */
+  private IdentityHashMap<Order, Integer> orderIds;
+
+  /** Number of each <code>PickRequest</code> written, when writing. */
+  private IdentityHashMap<PickRequest, Integer> requestIds;
+
+  /** Number of each <code>Pallet</code> written, when writing. */
+  private IdentityHashMap<Pallet, Integer> palletIds;
+
+  /** Strings read so far, by number. */
+  private ArrayList<String> strings;
+
+  /** <code>Order</code> read so far, by number. */
+  private ArrayList<Order> orders;
+
+  /** <code>PickRequest</code> read so far, by number. */
+  private ArrayList<PickRequest> requests;
+
+  /** <code>Pallet</code> read so far, by number. */
+  private ArrayList<Pallet> pallets;
+
+  /** Creates an empty snapshot, to be filled by <code>write</code> or <code>read</code>. */
+  private WarehouseSnapshot() {}
+
+  /**
+   * Atomically write a snapshot of a warehouse, replacing any snapshot already in the file.
+   *
+   * @param file the snapshot file.
+   * @param controller the warehouse.
+   * @param sequence the journal sequence number of the state, that is the number of operations
+   *        run since the start of the day.
+   * @throws IOException when the file cannot be written.
+   */
+  protected static void write(Path file, Controller controller, long sequence)
+      throws IOException {
+    ByteBuffer body = image(controller, sequence);
+    Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+    try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+        StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+      while (body.hasRemaining()) {
+        channel.write(body);
+      }
+      channel.force(true);
+    }
+    Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE,
+        StandardCopyOption.REPLACE_EXISTING);
+  }
+
+  /**
+   * Take a snapshot of a warehouse in memory, in the same format as a snapshot file. The image is
+   * never changed, so it can be restored by <code>read</code> any number of times, from any
+   * number of threads at once.
+   *
+   * @param controller the warehouse.
+   * @param sequence the journal sequence number of the state.
+   * @return a read-only buffer holding the whole snapshot, header included.
+   */
+  protected static ByteBuffer image(Controller controller, long sequence) {
+    WarehouseSnapshot out = new WarehouseSnapshot();
+    out.buffer = ByteBuffer.allocate(1 << 16);
+    out.buffer.position(HEADER);
+    out.stringIds = new HashMap<>();
+    out.orderIds = new IdentityHashMap<>();
+    out.requestIds = new IdentityHashMap<>();
+    out.palletIds = new IdentityHashMap<>();
+    controller.getWarehouse().writeSnapshot(out);
+    controller.getOrders().writeSnapshot(out);
+    controller.getStaging().writeSnapshot(out);
+    controller.getTrucks().writeSnapshot(out);
+    out.putBoolean(controller.isDeadlineScheduling());
+    out.putInt(controller.getOrderClustering());
+    controller.getEmployees().writeSnapshot(out);
+    ByteBuffer body = out.buffer;
+    int length = body.position() - HEADER;
+    CRC32C checksum = new CRC32C();
+    checksum.update(body.array(), HEADER, length);
+    body.put(0, MAGIC[0]).put(1, MAGIC[1]).put(2, MAGIC[2]).put(3, MAGIC[3]).put(4, VERSION)
+        .putLong(5, sequence).putLong(13, length).putInt(21, (int) checksum.getValue());
+    body.flip();
+    return body.asReadOnlyBuffer();
+  }
+
+  /**
+   * Restore a warehouse from a snapshot file.
+   *
+   * @param file the snapshot file.
+   * @return the snapshot, holding the restored <code>Controller</code>.
+   * @throws IOException when the file cannot be read, is not a snapshot or is damaged.
+   */
+  protected static WarehouseSnapshot read(Path file) throws IOException {
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      long size = channel.size();
+      if (size > Integer.MAX_VALUE) {
+        throw new IOException(file + " is not a warehouse snapshot.");
+      }
+      MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+      return read(mapped, file.toString());
+    }
+  }
+
+  /**
+   * Restore a warehouse from a snapshot image taken by <code>image</code>. The image itself is
+   * not changed.
+   *
+   * @param image the snapshot image.
+   * @return the snapshot, holding a new restored <code>Controller</code>.
+   * @throws IOException when the image is not a snapshot or is damaged.
+   */
+  protected static WarehouseSnapshot read(ByteBuffer image) throws IOException {
+    return read(image.duplicate(), "Snapshot image");
+  }
+
+  /**
+   * Check and restore a snapshot from its position in a buffer to the limit.
+   *
+   * @param image the snapshot, read from its position.
+   * @param source the name of the snapshot, for errors.
+   * @return the snapshot, holding the restored <code>Controller</code>.
+   * @throws IOException when the snapshot is not a snapshot, is damaged or malformed.
+   */
+  private static WarehouseSnapshot read(ByteBuffer image, String source) throws IOException {
+    WarehouseSnapshot in = new WarehouseSnapshot();
+    int size = image.remaining();
+    if (size < HEADER) {
+      throw new IOException(source + " is not a warehouse snapshot.");
+    }
+    byte[] magic = new byte[MAGIC.length];
+    image.get(magic);
+    if (!Arrays.equals(magic, MAGIC) || image.get() != VERSION) {
+      throw new IOException(source + " is not a warehouse snapshot.");
+    }
+    in.sequence = image.getLong();
+    long length = image.getLong();
+    int expected = image.getInt();
+    if (length != size - HEADER) {
+      throw new IOException(source + " is truncated.");
+    }
+    CRC32C checksum = new CRC32C();
+    checksum.update(image.duplicate());
+    if ((int) checksum.getValue() != expected) {
+      throw new IOException(source + " is damaged.");
+    }
+    in.buffer = image;
+    in.strings = new ArrayList<>();
+    in.orders = new ArrayList<>();
+    in.requests = new ArrayList<>();
+    in.pallets = new ArrayList<>();
+    try {
+      WarehouseManager warehouse = new WarehouseManager();
+      warehouse.readSnapshot(in);
+      OrderManager orderManager = new OrderManager();
+      orderManager.readSnapshot(in);
+      StagingManager staging = new StagingManager();
+      staging.readSnapshot(in);
+      TruckManager trucks = new TruckManager();
+      trucks.readSnapshot(in);
+      boolean deadlineScheduling = in.getBoolean();
+      int orderClustering = in.getInt();
+      EmployeeManager employees = new EmployeeManager();
+      in.controller = new Controller(warehouse, orderManager, employees, staging, trucks);
+      in.controller.setDeadlineScheduling(deadlineScheduling);
+      in.controller.setStockReservation(warehouse.getReservations() != null);
+      in.controller.setOrderClustering(orderClustering);
+      employees.readSnapshot(in);
+    } catch (BufferUnderflowException | IndexOutOfBoundsException error) {
+      throw new IOException(source + " is malformed.");
+    } finally {
+      in.buffer = null;
+    }
+    return in;
+  }
+
+  /**
+   * Return the restored <code>Controller</code>.
+   *
+   * @return the warehouse as it was when the snapshot was taken.
+   */
+  protected Controller getController() {
+    return controller;
+  }
+
+  /**
+   * Return the journal sequence number the snapshot was taken at.
+   *
+   * @return <code>long</code> number of operations run before the snapshot.
+   */
+  protected long getSequence() {
+    return sequence;
+  }
+
+  /**
+   * Return <code>System.nanoTime</code> when the snapshot was taken or restored, so times can be
+   * stored as ages and restored relative to the new clock.
+   *
+   * @return <code>long</code> nanoseconds.
+   */
+  protected long getNow() {
+    return now;
+  }
+
+  /**
+   * Make room for a number of bytes, growing the buffer if needed.
+   *
+   * @param bytes the number of bytes about to be written.
+   */
+  private void reserve(int bytes) {
+    if (buffer.remaining() < bytes) {
+      ByteBuffer larger = ByteBuffer.allocate(Math.max(buffer.capacity() * 2,
+          buffer.position() + bytes));
+      buffer.flip();
+      buffer = larger.put(buffer);
+    }
+  }
+
+  /**
+   * Write a signed integer.
+   *
+   * @param value the integer.
+   */
+  protected void putLong(long value) {
+    reserve(10);
+    EventLog.putVarLong(buffer, (value << 1) ^ (value >> 63));
+  }
+
+  /**
+   * Read an integer written by <code>putLong</code>.
+   *
+   * @return the integer.
+   */
+  protected long getLong() {
+    long value = EventLog.getVarLong(buffer);
+    return (value >>> 1) ^ -(value & 1);
+  }
+
+  /**
+   * Write a signed <code>int</code>.
+   *
+   * @param value the integer.
+   */
+  protected void putInt(int value) {
+    putLong(value);
+  }
+
+  /**
+   * Read an <code>int</code> written by <code>putInt</code>.
+   *
+   * @return the integer.
+   */
+  protected int getInt() {
+    return (int) getLong();
+  }
+
+  /**
+   * Write a boolean.
+   *
+   * @param value the boolean.
+   */
+  protected void putBoolean(boolean value) {
+    reserve(1);
+    buffer.put((byte) (value ? 1 : 0));
+  }
+
+  /**
+   * Read a boolean written by <code>putBoolean</code>.
+   *
+   * @return the boolean.
+   */
+  protected boolean getBoolean() {
+    return buffer.get() != 0;
+  }
+
+  /**
+   * Write a reference to an object, returning true if the object itself must follow.
+   *
+   * @param ids the number of each object of this kind written so far.
+   * @param object the object, or <code>null</code>.
+   * @return true if the object has not been written before.
+   */
+  private <T> boolean putReference(Map<T, Integer> ids, T object) {
+    reserve(10);
+    if (object == null) {
+      buffer.put((byte) 0);
+      return false;
+    }
+    Integer id = ids.get(object);
+    if (id != null) {
+      EventLog.putVarLong(buffer, id + 1L);
+      return false;
+    }
+    ids.put(object, ids.size());
+    EventLog.putVarLong(buffer, ids.size());
+    return true;
+  }
+
+  /**
+   * Read a reference, returning the object if it was written before.
+   *
+   * @param read the objects of this kind read so far.
+   * @return the object, <code>null</code> for a null reference, or <code>read</code> itself if the
+   *         object follows and must be read and added to <code>read</code>.
+   */
+  private <T> Object getReference(ArrayList<T> read) {
+    long id = EventLog.getVarLong(buffer);
+    if (id == 0) {
+      return null;
+    }
+    if (id - 1 < read.size()) {
+      return read.get((int) id - 1);
+    }
+    if (id - 1 == read.size()) {
+      return read;
+    }
+    throw new IndexOutOfBoundsException("Reference to object " + id + " not yet read.");
+  }
+
+  /**
+   * Write a string, or <code>null</code>.
+   *
+   * @param text the string.
+   */
+  protected void putString(String text) {
+    if (putReference(stringIds, text)) {
+      byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+      reserve(10 + bytes.length);
+      EventLog.putVarLong(buffer, bytes.length);
+      buffer.put(bytes);
+    }
+  }
+
+  /**
+   * Read a string written by <code>putString</code>.
+   *
+   * @return the string, or <code>null</code>.
+   */
+  protected String getString() {
+    Object reference = getReference(strings);
+    if (reference != strings) {
+      return (String) reference;
+    }
+    byte[] bytes = new byte[(int) EventLog.getVarLong(buffer)];
+    buffer.get(bytes);
+    String text = new String(bytes, StandardCharsets.UTF_8);
+    strings.add(text);
+    return text;
+  }
+
+  /**
+   * Write an <code>Order</code>, or <code>null</code>.
+   *
+   * @param order the <code>Order</code>.
+   */
+  protected void putOrder(Order order) {
+    if (putReference(orderIds, order)) {
+      order.writeSnapshot(this);
+    }
+  }
+
+  /**
+   * Read an <code>Order</code> written by <code>putOrder</code>.
+   *
+   * @return the <code>Order</code>, or <code>null</code>.
+   */
+  protected Order getOrder() {
+    Object reference = getReference(orders);
+    if (reference != orders) {
+      return (Order) reference;
+    }
+    Order order = Order.readSnapshot(this);
+    orders.add(order);
+    return order;
+  }
+
+  /**
+   * Write a <code>PickRequest</code>, or <code>null</code>.
+   *
+   * @param request the <code>PickRequest</code>.
+   */
+  protected void putRequest(PickRequest request) {
+    if (putReference(requestIds, request)) {
+      request.writeSnapshot(this);
+    }
+  }
+
+  /**
+   * Read a <code>PickRequest</code> written by <code>putRequest</code>.
+   *
+   * @return the <code>PickRequest</code>, or <code>null</code>.
+   */
+  protected PickRequest getRequest() {
+    Object reference = getReference(requests);
+    if (reference != requests) {
+      return (PickRequest) reference;
+    }
+    PickRequest request = PickRequest.readSnapshot(this);
+    requests.add(request);
+    return request;
+  }
+
+  /**
+   * Write a <code>Pallet</code>, or <code>null</code>.
+   *
+   * @param pallet the <code>Pallet</code>.
+   */
+  protected void putPallet(Pallet pallet) {
+    if (putReference(palletIds, pallet)) {
+      pallet.writeSnapshot(this);
+    }
+  }
+
+  /**
+   * Read a <code>Pallet</code> written by <code>putPallet</code>.
+   *
+   * @return the <code>Pallet</code>, or <code>null</code>.
+   */
+  protected Pallet getPallet() {
+    Object reference = getReference(pallets);
+    if (reference != pallets) {
+      return (Pallet) reference;
+    }
+    Pallet pallet = Pallet.readSnapshot(this);
+    pallets.add(pallet);
+    return pallet;
+  }
+}
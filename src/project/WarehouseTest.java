@@ -1,5 +1,6 @@
 package project;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
@@ -8,12 +9,35 @@ import java.io.ByteArrayOutputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.text.ParseException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -124,6 +148,168 @@ public class WarehouseTest {
     ruby.work("A001");
   }
 
+  @Test
+  public void testChangedFaces() {
+    WarehouseManager warehouse = controller.getWarehouse();
+    warehouse.replenish(warehouse.getWarehouseFloor().get("A001")); // Back to 30
+    warehouse.putBack("A003"); // First line of initial.csv is skipped, so 30 to 31
+    Map<String, Integer> changed = new TreeMap<>();
+    for (Map.Entry<String, PickFace> entry : warehouse.getWarehouseFloor().entrySet()) {
+      if (entry.getValue().getStockQty() != 30) {
+        changed.put(entry.getKey(), entry.getValue().getStockQty());
+      }
+    }
+    assertEquals(warehouse.getChangedStockLevels(), changed);
+    assertEquals(warehouse.getChangedFaces().size(), 47);
+    assertFalse(changed.containsKey("A001"));
+    assertEquals(changed.get("A003"), Integer.valueOf(31));
+  }
+
+  @Test
+  public void testStockReservation() throws IOException {
+    controller.setStockReservation(true);
+    WarehouseManager warehouse = controller.getWarehouse();
+    StockReservations reservations = warehouse.getReservations();
+    while (warehouse.getStock("A000") > 2) {
+      warehouse.pick("A000"); // SKU 1, queued for replenishment once 5 or fewer
+    }
+    OrderManager orders = controller.getOrders();
+    for (int order = 0; order < 4; order++) {
+      orders.newOrder("White", "S"); // Needs four of SKU 1
+    }
+    assertEquals(reservations.getHeld(), 1);
+    assertEquals(orders.getActivePickRequests(), 0);
+    Controller restored = WarehouseSnapshot.read(WarehouseSnapshot.image(controller, 0))
+        .getController();
+    assertTrue(restored.isStockReservation());
+    assertEquals(restored.getWarehouse().getReservations().getHeld(), 1);
+    Replenisher ruby = new Replenisher("Ruby", controller);
+    ruby.receive();
+    ruby.work("A000");
+    assertEquals(reservations.getHeld(), 0);
+    assertEquals(orders.getActivePickRequests(), 1);
+    assertEquals(reservations.available("1"), warehouse.getStock("A000") - 4);
+    Picker pick = new Picker("Alice", controller);
+    pick.receive();
+    pick.work("1");
+    assertEquals(reservations.available("1"), warehouse.getStock("A000") - 3);
+  }
+
+  @Test
+  public void testReslot() throws IOException {
+    WarehouseManager warehouse = controller.getWarehouse();
+    for (int order = 0; order < 4; order++) {
+      controller.getOrders().newOrder("White", "S"); // Four each of SKU 1 and 2
+    }
+    Picker pick = new Picker("Alice", controller);
+    pick.receive();
+    pick.work("1");
+    String far = warehouse.getSkuLocation("48");
+    int stock = warehouse.getStock("A000");
+    Map<String, String> moves = new HashMap<>();
+    moves.put("1", far);
+    moves.put("48", "A000");
+    Iterator<PickFace> faces = warehouse.getWarehouseFloor().values().iterator();
+    faces.next();
+    warehouse.reslot(moves);
+    faces.next(); // Reslotting does not change the shape of the floor
+    assertEquals(warehouse.getSkuLocation("1"), far);
+    assertEquals(warehouse.getSku("A000"), "48");
+    assertEquals(warehouse.getStock(far), stock);
+    pick.work("1"); // Picked from where SKU 1 is now
+    assertEquals(pick.pickReq.unsortedPal.getFillProg(), 2);
+    assertEquals(pick.pickOrder.get(2), far);
+    assertEquals(warehouse.getStock(far), stock - 1);
+    boolean rejected = false;
+    try {
+      warehouse.reslot(Collections.singletonMap("2", "A000")); // Would leave A001 empty
+    } catch (IllegalArgumentException error) {
+      rejected = true;
+    }
+    assertTrue(rejected);
+    assertEquals(warehouse.getSku("A001"), "2");
+    WarehouseManager restored = WarehouseSnapshot.read(WarehouseSnapshot.image(controller, 0))
+        .getController().getWarehouse();
+    assertEquals(restored.getSkuLocation("1"), far);
+    assertEquals(restored.getRoute(), warehouse.getRoute());
+    assertEquals(restored.getSlotting().getRoutes(), 1);
+    assertEquals(restored.getSlotting().getPicks("1"), 2);
+  }
+
+  @Test
+  public void testSlottingPlan() {
+    WarehouseManager warehouse = controller.getWarehouse();
+    SlottingEngine slotting = warehouse.getSlotting();
+    for (int route = 0; route < 10; route++) {
+      slotting.routed(Arrays.asList("40", "48")); // Far from the depot, picked together
+    }
+    slotting.routed(Arrays.asList("1", "2"));
+    long travel = slotting.getTravel();
+    assertEquals(slotting.getTravel(Collections.emptyMap()), travel);
+    Map<String, String> plan = slotting.plan();
+    assertTrue(slotting.getTravel(plan) < travel);
+    int first = warehouse.getRoutePosition(plan.get("40"));
+    int second = warehouse.getRoutePosition(plan.get("48"));
+    assertTrue(first <= 2 && second <= 2); // Nearest the depot, next to each other
+  }
+
+  @Test
+  public void testPickHeatmap() throws Exception {
+    WarehouseManager warehouse = controller.getWarehouse();
+    for (int order = 0; order < 4; order++) {
+      controller.getOrders().newOrder("White", "S"); // Four each of SKU 1 and 2
+    }
+    Picker pick = new Picker("Alice", controller);
+    pick.receive();
+    pick.work("1");
+    pick.work("2"); // Wrong item, returned
+    warehouse.replenish(warehouse.getWarehouseFloor().get("A000"));
+    PickHeatmap heatmap = warehouse.getHeatmap();
+    assertEquals(heatmap.getCount("A000", PickHeatmap.Activity.PICK), 1);
+    assertEquals(heatmap.getCount("A001", PickHeatmap.Activity.PICK), 1);
+    assertEquals(heatmap.getCount("A001", PickHeatmap.Activity.WRONG_ITEM), 1);
+    assertEquals(heatmap.getCount("A001", PickHeatmap.Activity.PUT_BACK), 0);
+    assertEquals(heatmap.getCount("A000", PickHeatmap.Activity.REPLENISH), 1);
+    try {
+      heatmap.getCount("Z999", PickHeatmap.Activity.PICK);
+      assertTrue(false);
+    } catch (IllegalArgumentException expected) {
+      assertTrue(expected.getMessage().contains("Z999"));
+    }
+    assertEquals(warehouse.getAislePicks().get("A0"), Long.valueOf(2));
+    Path report = Files.createTempFile("heatmap", ".csv");
+    heatmap.writeReport(report, 0);
+    List<String> rows = Files.readAllLines(report);
+    assertEquals(rows.subList(0, 4), Arrays.asList("A,,,,2,0,1,1,", "A,0,,,2,0,1,1,",
+        "A,0,0,,2,0,1,1,", "A,0,0,0,1,0,0,1,"));
+    Files.delete(report);
+    // Three windows of an hour, moved on while many threads count, without losing any
+    PickHeatmap windows = new PickHeatmap(Arrays.asList("A,0,0,0", "A,0,0,1"), 3600000, 3);
+    ExecutorService pool = Executors.newFixedThreadPool(4);
+    List<Future<Void>> pickers = new ArrayList<>();
+    for (int thread = 0; thread < 4; thread++) {
+      pickers.add(pool.submit(() -> {
+        for (int item = 0; item < 10000; item++) {
+          windows.record(0, PickHeatmap.Activity.PICK);
+        }
+        return null;
+      }));
+    }
+    for (int window = 0; window < 5; window++) {
+      windows.advance();
+    }
+    for (Future<Void> done : pickers) {
+      done.get();
+    }
+    pool.shutdown();
+    assertEquals(windows.getCount("A000", PickHeatmap.Activity.PICK), 40000);
+    windows.advance();
+    windows.record(1, PickHeatmap.Activity.PICK);
+    assertEquals(windows.counts(1)[4], 1); // Only the latest window
+    assertEquals(windows.counts(1)[0], 0);
+    assertEquals(windows.counts(0)[0], 40000);
+  }
+
   // ---------- PickFace ----------
   @Test
   public void testPickFace() {
@@ -173,6 +359,41 @@ public class WarehouseTest {
     assertEquals(truckManager.getNextPickId(), 1);
   }
 
+  @Test
+  public void testTruckManagerReplacesFullTruck() {
+    for (int i = 0; i < 21; i++) {
+      truckManager.load(pickReq);
+    }
+    assertEquals(truckManager.getActiveTruckId(), 1);
+    assertEquals(truckManager.getActiveTruckFill(), 2);
+    assertEquals(truckManager.getNextPickId(), 21);
+  }
+
+  @Test
+  public void testTruckManifest() throws IOException {
+    Path file = Files.createTempFile("manifests", ".csv");
+    TruckManifest manifest = new TruckManifest(file);
+    truckManager.setManifest(manifest);
+    for (String sku : new String[] {"1", "3", "5", "7"}) {
+      pickReq.frontPal.add(sku);
+    }
+    for (String sku : new String[] {"2", "4", "6", "8"}) {
+      pickReq.rearPal.add(sku);
+    }
+    for (int i = 0; i < 21; i++) {
+      truckManager.load(pickReq);
+    }
+    assertEquals(truckManager.getTrucksDispatched(), 1);
+    List<String> lines = Files.readAllLines(file); // Flushed as the first truck left
+    assertEquals(lines.size(), 41);
+    assertEquals(lines.get(0), "0,0,rear,0,1,2,2,4,3,6,4,8,");
+    assertEquals(lines.get(1), "0,1,front,0,1,1,2,3,3,5,4,7,");
+    assertEquals(lines.get(40), "0,dispatched,40,");
+    manifest.close();
+    assertEquals(Files.readAllLines(file).get(42), "1,1,front,0,1,1,2,3,3,5,4,7,");
+    Files.delete(file);
+  }
+
   // ---------- Pallet ----------
   @Test
   public void testNewPallet() {
@@ -205,6 +426,52 @@ public class WarehouseTest {
         lastOrder.equals(new ArrayList<>(Arrays.asList("7", "8"))));
   }
 
+  @Test
+  public void testOrderClustering() throws FileNotFoundException, IOException {
+    // Orders at either end of the route arrive in turn; clustering keeps each end together
+    List<List<String>> orders = new ArrayList<>();
+    for (int order = 0; order < 8; order++) {
+      int sku = (order % 2 == 0) ? 1 + order : 91 + order;
+      orders.add(Arrays.asList(String.valueOf(sku), String.valueOf(sku + 1)));
+    }
+    assertArrayEquals(OrderClustering.group(orders, Integer::parseInt),
+        new int[] {0, 2, 4, 6, 1, 3, 5, 7});
+    assertArrayEquals(OrderClustering.group(orders.subList(0, 4), Integer::parseInt),
+        new int[] {0, 1, 2, 3});
+    // A window is held until full, then formed into requests that take IDs in turn
+    OrderManager manager = new OrderManager(filePath);
+    manager.setClustering(8, new WarehouseManager(filePath));
+    for (String model : Arrays.asList("S", "SE", "SES", "SEL", "S", "SE", "SES")) {
+      manager.newOrder("White", model);
+    }
+    assertEquals(manager.getPurgatorySize(), 7);
+    manager.newOrder("White", "SEL");
+    assertEquals(manager.getPickRequestsCreated(), 2);
+    assertEquals(manager.getOrderArchive().size(), 8);
+    assertEquals(manager.getNewPickReq().getPickRequestId(), 0);
+    assertEquals(manager.getOrderArchive().get(0).getOrderId(), 0);
+    // A flush releases what is held four at a time as it arrived, the last with fewer
+    assertEquals(manager.getHeldMillis(), 0);
+    for (String model : Arrays.asList("S", "SE", "SES", "SEL", "S", "SE")) {
+      manager.newOrder("White", model);
+    }
+    assertTrue(manager.getHeldMillis() >= 0);
+    manager.flushPurgatory();
+    assertEquals(manager.getPurgatorySize(), 0);
+    assertEquals(manager.getPickRequestsCreated(), 4);
+    assertEquals(manager.getOrderArchive().get(8).getOrderId(), 8);
+    manager.getNewPickReq();
+    PickRequest first = manager.getNewPickReq();
+    assertEquals(first.getSeqOrds().get(0).getOrderId(), 8);
+    assertEquals(manager.getNewPickReq().getSeqOrds().size(), 2);
+    try {
+      manager.setClustering(6, null);
+      assertTrue(false);
+    } catch (IllegalArgumentException expected) {
+      assertEquals(manager.getClusteringWindow(), 8);
+    }
+  }
+
   // ---------- Order ----------
   @Test
   public void testUniqueOrderId() {
@@ -254,6 +521,69 @@ public class WarehouseTest {
     pickreq.getPickOrder(warehouse); // Test Pick Order is not null
   }
 
+  // ---------- PickDispatcher ----------
+  @Test
+  public void testPickDispatcherSteals() {
+    PickDispatcher dispatcher = new PickDispatcher(2);
+    int alice = dispatcher.register();
+    int bob = dispatcher.register();
+    PickRequest[] requests = new PickRequest[4];
+    for (int id = 0; id < requests.length; id++) {
+      requests[id] = new PickRequest(new LinkedList<>(), id);
+      dispatcher.release(requests[id]);
+    }
+    assertTrue(dispatcher.take(alice) == requests[0]);
+    assertTrue(dispatcher.take(alice) == requests[2]);
+    assertTrue(dispatcher.take(alice) == requests[1]); // Stolen from Bob
+    dispatcher.repick(requests[0]);
+    assertEquals(dispatcher.size(), 2);
+    assertTrue(dispatcher.take(bob) == requests[0]);
+    assertTrue(dispatcher.take(bob) == requests[3]);
+    assertTrue(dispatcher.take(bob) == null);
+    assertEquals(dispatcher.size(), 0);
+  }
+
+  @Test
+  public void testPickDispatcherStealsFromEveryDeque() {
+    PickDispatcher dispatcher = new PickDispatcher(5);
+    int alice = dispatcher.register();
+    for (int id = 0; id < 8; id++) {
+      dispatcher.release(new PickRequest(new LinkedList<>(), id));
+    }
+    HashSet<Integer> taken = new HashSet<>();
+    for (int take = 0; take < 8; take++) { // Own deque first, then each of the others
+      taken.add(dispatcher.take(alice).getPickRequestId());
+    }
+    assertEquals(taken.size(), 8);
+    assertTrue(dispatcher.take(alice) == null);
+    assertEquals(dispatcher.size(), 0);
+  }
+
+  @Test
+  public void testDeadlineScheduling() {
+    TruckManager trucks = new TruckManager();
+    PickDispatcher dispatcher = new PickDispatcher(2);
+    dispatcher.setDeadlines(trucks);
+    dispatcher.register();
+    int bob = dispatcher.register();
+    PickRequest[] requests = new PickRequest[4];
+    for (int id = 0; id < requests.length; id++) {
+      requests[id] = new PickRequest(new LinkedList<>(), id);
+      dispatcher.release(requests[id]);
+    }
+    assertEquals(trucks.getLoadsAhead(3), 3);
+    assertTrue(dispatcher.take(bob) == requests[0]); // Needed before Bob's own request 1
+    assertTrue(dispatcher.escalate(3));
+    assertFalse(dispatcher.escalate(0));
+    assertTrue(dispatcher.take(bob) == requests[3]);
+    StagingManager staging = new StagingManager();
+    staging.setDeadlines(trucks);
+    staging.marshalAdd(requests[2]);
+    staging.marshalAdd(requests[1]);
+    assertTrue(staging.marshalRemove() == requests[1]);
+    assertTrue(staging.marshalRemove() == requests[2]);
+  }
+
   // ---------- Picker ----------
   @Test
   public void testPicker() {
@@ -289,6 +619,37 @@ public class WarehouseTest {
     pick.push();
   }
 
+  @Test
+  public void testPickerBatch() {
+    OrderManager omanager = controller.getOrders();
+    omanager.newOrder("White", "SEL");
+    omanager.newOrder("White", "SE");
+    omanager.newOrder("White", "SES");
+    omanager.newOrder("White", "S");
+    Picker pick = new Picker("Alice", controller);
+    pick.receive();
+    WarehouseManager warehouse = controller.getWarehouse();
+    String[] skus = new String[9];
+    for (int item = 0; item < 8; item++) {
+      skus[item] = warehouse.getSku(pick.pickOrder.get(item));
+    }
+    String elsewhere = null;
+    for (String location : warehouse.getWarehouseFloor().keySet()) {
+      if (!pick.pickOrder.contains(location)) {
+        elsewhere = location;
+      }
+    }
+    skus[8] = skus[7];
+    int stock = warehouse.getStock(elsewhere);
+    boolean[] picked =
+        pick.work(new String[] {skus[0], skus[1], warehouse.getSku(elsewhere), skus[2]});
+    assertTrue(Arrays.equals(picked, new boolean[] {true, true, false, true}));
+    assertEquals(warehouse.getStock(elsewhere), stock); // never taken from its location
+    picked = pick.work(Arrays.copyOfRange(skus, 3, 9));
+    assertTrue(Arrays.equals(picked, new boolean[] {true, true, true, true, true, false}));
+    assertTrue(pick.pickReq.pickPalFull());
+  }
+
   // ---------- Sequencer ----------
   @Test
   public void testSequence() {
@@ -383,6 +744,33 @@ public class WarehouseTest {
     assertEquals(kyle.isReady(), true);
   }
   
+  @Test
+  public void testLoadersAtDifferentDocks() {
+    TruckManager trucks = controller.getTrucks();
+    trucks.setDocks(2);
+    assertEquals(trucks.getDock(pickReq2.getPickRequestId()), 0);
+    Loader kyle = new Loader("Kyle", controller);
+    Loader lou = new Loader("Lou", controller);
+    controller.getStaging().loadAdd(pickReq2); // Waits behind pickReq at the first dock
+    controller.getStaging().loadAdd(pickReq);
+    kyle.receive();
+    lou.receive();
+    assertEquals(lou.isReady(), true);
+    PickRequest pickReq1 = new PickRequest(new LinkedList<>(Arrays.asList(order5)), 1);
+    controller.getStaging().loadAdd(pickReq1);
+    lou.receive();
+    assertEquals(kyle.isReady(), false);
+    assertEquals(lou.isReady(), false);
+    lou.push();
+    kyle.push();
+    assertEquals(trucks.getDockTruck(0).getLoadPos(), 2);
+    assertEquals(trucks.getDockTruck(1).getLoadPos(), 2);
+    assertEquals(trucks.getNextPickId(0), 2);
+    assertEquals(trucks.getNextPickId(1), 3);
+    assertEquals(trucks.getNextPickId(), 2);
+    assertEquals(controller.getStaging().getLoadZoneSize(), 1);
+  }
+
   @Test
   public void testFrontLoadSeq() {
     Loader kyle = new Loader("Kyle", controller);
@@ -454,6 +842,41 @@ public class WarehouseTest {
 
   }
 
+  @Test
+  public void testLoaderRescanKeepsVerifiedPrefix() {
+    assertTrue(pickReq.isExpected(0, "1") && pickReq.isExpected(7, "8"));
+    assertFalse(pickReq.isExpected(1, "1"));
+    assertFalse(pickReq.isExpected(0, "01")); // Same number, different SKU
+    assertEquals(pickReq.getExpectedSku(5), "6");
+    LinkedList<Order> padded = new LinkedList<>();
+    padded.add(new Order(new ArrayList<>(Arrays.asList("07", "0")), 0));
+    PickRequest paddedReq = new PickRequest(padded, 1);
+    assertTrue(paddedReq.isExpected(0, "07") && paddedReq.isExpected(1, "0"));
+    assertFalse(paddedReq.isExpected(0, "7") || paddedReq.isExpected(1, "00"));
+    assertEquals(paddedReq.getExpectedSku(0), "07");
+    for (int sku = 1; sku <= 8; sku += 2) {
+      pickReq.frontPal.add(String.valueOf(sku));
+      pickReq.rearPal.add(String.valueOf(sku + 1));
+    }
+    controller.getStaging().loadAdd(pickReq);
+    Loader rick = new Loader("Rick", controller);
+    rick.receive();
+    rick.work("1");
+    rick.work("2");
+    rick.work("3");
+    assertEquals(pickReq.frontPal.getVerified(), 2);
+    assertEquals(pickReq.rearPal.getVerified(), 1);
+    rick.rescan();
+    rick.work("1");
+    rick.work("3"); // Out of sequence, not checked
+    assertEquals(rick.progress, 1);
+    for (int sku = 2; sku <= 8; sku++) {
+      rick.work(String.valueOf(sku));
+    }
+    assertEquals(rick.progress, 8);
+    assertEquals(pickReq.rearPal.getVerified(), 4);
+  }
+
   // ---------- Sequencer ----------
   @Test
   public void testSequencer() {
@@ -466,6 +889,173 @@ public class WarehouseTest {
     seq.receive();
   }
 
+  @Test
+  public void testSequencerRepicksOnlyMissing() {
+    WarehouseManager warehouse = controller.getWarehouse();
+    String extra = warehouse.getSkuLocation("16");
+    int extraStock = warehouse.getStock(extra);
+    for (String sku : new String[] {"1", "2", "3", "4", "5", "6", "7", "16"}) {
+      pickReq.unsortedPal.add(sku);
+    }
+    controller.getStaging().marshalAdd(pickReq);
+    Sequencer seq = new Sequencer("seq", controller);
+    seq.receive();
+    for (int sku = 1; sku <= 8; sku++) {
+      seq.work(String.valueOf(sku)); // 8 was never picked
+    }
+    assertTrue(seq.isReady());
+    assertEquals(pickReq.frontPal.getFillProg() + pickReq.rearPal.getFillProg(), 7);
+    assertEquals(warehouse.getStock(extra), extraStock + 1);
+    assertEquals(pickReq.getPickOrder(warehouse),
+        new ArrayList<>(Arrays.asList(warehouse.getSkuLocation("8"))));
+    Picker picker = new Picker("Alice", controller);
+    picker.receive();
+    assertTrue(picker.pickReq == pickReq);
+    picker.work("8");
+    picker.work("8"); // One too many: every item of the re-pick is already on the pallet
+    assertEquals(pickReq.unsortedPal.getFillProg(), 1);
+    assertEquals(picker.work(new String[] {"8"})[0], false);
+    picker.push();
+    seq.receive();
+    for (int sku = 1; sku <= 8; sku++) {
+      seq.work(String.valueOf(sku));
+    }
+    seq.push();
+    assertEquals(pickReq.rearPal.getItemAtPosition(3), "8");
+    assertTrue(controller.getStaging().loadRemove(0) == pickReq);
+  }
+
+  @Test
+  public void testConcurrentSequencers() throws InterruptedException {
+    StagingManager staging = controller.getStaging();
+    for (int id = 0; id < 200; id++) {
+      LinkedList<Order> orders = new LinkedList<>();
+      for (int order = 0; order < 4; order++) {
+        orders.add(new Order(new ArrayList<>(Arrays.asList("1", "2")), id * 4 + order));
+      }
+      PickRequest request = new PickRequest(orders, id);
+      for (int item = 0; item < 8; item++) {
+        request.unsortedPal.add((item % 2 == 0) ? "1" : "2");
+      }
+      staging.marshalAdd(request);
+    }
+    Thread[] threads = new Thread[4];
+    for (int number = 0; number < threads.length; number++) {
+      Sequencer sequencer = new Sequencer("seq" + number, controller);
+      threads[number] = new Thread(() -> {
+        for (sequencer.receive(); sequencer.pickReq != null; sequencer.receive()) {
+          for (int item = 0; item < 8; item++) {
+            sequencer.work((item % 2 == 0) ? "1" : "2");
+          }
+          sequencer.push();
+        }
+      });
+      threads[number].start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    assertEquals(staging.getLoadZoneSize(), 200);
+    for (int id = 0; id < 200; id++) {
+      assertEquals(staging.loadRemove(id).getPickRequestId(), id);
+    }
+    assertEquals(staging.getLoadZoneSize(), 0);
+  }
+
+  @Test
+  public void testConcurrentLoaders() throws InterruptedException, IOException {
+    Path file = Files.createTempFile("manifests", ".csv");
+    TruckManifest manifest = new TruckManifest(file);
+    TruckManager trucks = new TruckManager();
+    trucks.setDocks(4);
+    trucks.setManifest(manifest);
+    Thread[] threads = new Thread[4];
+    for (int number = 0; number < threads.length; number++) {
+      int dock = number;
+      threads[number] = new Thread(() -> {
+        for (int load = 0; load < 200; load++) {
+          LinkedList<Order> orders = new LinkedList<>();
+          orders.add(new Order(new ArrayList<>(Arrays.asList("1", "2")), 0));
+          PickRequest request = new PickRequest(orders, dock + load * 4);
+          request.rearPal.add("1");
+          request.frontPal.add("2");
+          trucks.load(request, "loader" + dock);
+        }
+      });
+      threads[number].start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    assertEquals(trucks.getPickRequestsLoaded(), 800);
+    assertEquals(trucks.getTrucksDispatched(), 40); // 20 requests fill a truck
+    HashSet<Integer> truckIds = new HashSet<>();
+    for (int dock = 0; dock < 4; dock++) {
+      assertEquals(trucks.getNextPickId(dock), dock + 800);
+      assertEquals(trucks.getDockTruck(dock).getLoadPos(), 0);
+      truckIds.add(trucks.getDockTruck(dock).getTruckId());
+    }
+    assertEquals(truckIds.size(), 4);
+    for (int truckId : truckIds) {
+      assertTrue(truckId < 44); // 4 trucks to start with and one for each dispatched
+    }
+    manifest.close();
+    List<String> lines = Files.readAllLines(file);
+    assertEquals(lines.size(), 1600 + 40);
+    for (String line : lines) { // Every row whole
+      assertTrue(line.matches("\\d+,(\\d+,(rear,\\d+,0,1,|front,\\d+,0,2,)|dispatched,40,)"));
+    }
+    Files.delete(file);
+  }
+
+  @Test
+  public void testConcurrentPicks() throws InterruptedException {
+    WarehouseManager warehouse = controller.getWarehouse();
+    warehouse.setReserving(true);
+    String location = warehouse.getSkuLocation("1");
+    int stock = warehouse.getStock(location);
+    AtomicInteger reserved = new AtomicInteger();
+    Thread[] threads = new Thread[8];
+    for (int number = 0; number < threads.length; number++) {
+      LinkedList<Order> orders = new LinkedList<>();
+      for (int order = 0; order < 4; order++) {
+        orders.add(new Order(new ArrayList<>(Arrays.asList("1", "1")), number * 4 + order));
+      }
+      PickRequest request = new PickRequest(orders, number);
+      threads[number] = new Thread(() -> {
+        if (warehouse.getReservations().reserve(request)) {
+          reserved.incrementAndGet();
+        }
+      });
+      threads[number].start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    assertEquals(reserved.get(), stock / 8); // Never more than is in stock
+    assertEquals(warehouse.getReservations().available("1"), stock % 8);
+    for (int number = 0; number < threads.length; number++) {
+      threads[number] = new Thread(() -> {
+        for (int pick = 0; pick < 100; pick++) {
+          warehouse.pick(location);
+          warehouse.putBack(location);
+        }
+        for (int pick = 0; pick < stock / 6; pick++) {
+          warehouse.pick(location);
+        }
+      });
+      threads[number].start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    assertEquals(warehouse.getStock(location), 0); // More picks than stock, but never below 0
+    assertEquals(warehouse.getChangedStockLevels().get(location), Integer.valueOf(0));
+    assertEquals(warehouse.getReplenishBacklog(), 1); // Requested by every thread, queued once
+    assertTrue(warehouse.getNextReplenish().getLocation().equals(location));
+    assertEquals(warehouse.getReplenishBacklog(), 0);
+  }
+
   // ---------- Replenisher ----------
   @Test
   public void testReplenish() throws FileNotFoundException, IOException {
@@ -504,10 +1094,636 @@ public class WarehouseTest {
     assertEquals(lineTwo[3], readLineTwo[3]);
   }
   
+  @Test
+  public void testMappedCsvReader() throws IOException {
+    Path file = Files.createTempFile("rows", ".csv");
+    Files.write(file, "Zone,Qty\r\nA,0,1,2,26,\r\n\nB,9,9,9,-7".getBytes(StandardCharsets.UTF_8));
+    ArrayList<String> rows = new ArrayList<>();
+    MappedCsvReader reader = new MappedCsvReader(',', 16); // Lines cross the mapped windows
+    assertEquals(reader.read(file, true, row -> {
+      rows.add(row.getRowNumber() + ":" + String.join("|", row.getStrings()));
+      if (row.getFieldCount() > 4) {
+        rows.add(row.getString(0, 3) + "=" + row.getInt(4));
+      }
+    }), 3);
+    assertEquals(rows, Arrays.asList("1:A|0|1|2|26", "A012=26", "2:", "3:B|9|9|9|-7", "B999=-7"));
+    assertEquals(ReadAndWrite.readFile(file, ",", false).get(1).length, 5);
+    Files.delete(file);
+  }
+
+  @Test
+  public void testStreamingCsvWriter() throws IOException {
+    Path file = Files.createTempFile("report", ".csv");
+    String longField = String.join("", Collections.nCopies(40, "AB"));
+    try (StreamingCsvWriter writer = new StreamingCsvWriter(file, 16)) { // Rows cross flushes
+      writer.field('A').field('0').field(-2147483648L).field(0).endRow();
+      writer.row(new String[] {longField, "Beige\u00e9"});
+      assertEquals(writer.getRows(), 2);
+    }
+    assertEquals(Files.readAllLines(file, StandardCharsets.UTF_8),
+        Arrays.asList("A,0,-2147483648,0,", longField + ",Beige\u00e9,"));
+    Files.delete(file);
+  }
+
   // ---------- ReadAndWrite ----------
   @Test
   public void testRunWarehouseHelper() throws IOException {
     RunWarehouseHelper helper = new RunWarehouseHelper();
     helper.run(filePath, "sim_no_error.txt");
   }
+
+  @Test
+  public void testJournalRecovery() throws IOException {
+    Path journal = Files.createTempFile("journal", ".bin");
+    RunWarehouseHelper helper = new RunWarehouseHelper();
+    helper.setJournal(journal);
+    helper.run(filePath, "sim_rescan.txt");
+    RunWarehouseHelper recovered = new RunWarehouseHelper();
+    long operations = recovered.recover(filePath, journal);
+    assertEquals(operations, Files.readAllLines(filePath.resolve("sim_rescan.txt")).size() - 1);
+    Controller before = helper.getController();
+    Controller after = recovered.getController();
+    assertEquals(after.getWarehouse().getStockLevels(), before.getWarehouse().getStockLevels());
+    assertEquals(after.getOrders().getOrderArchive().toString(),
+        before.getOrders().getOrderArchive().toString());
+    assertEquals(after.getTrucks().getNextPickId(), before.getTrucks().getNextPickId());
+    Files.write(journal, new byte[] {7, 0, 0}, StandardOpenOption.APPEND); // A torn last group
+    assertEquals(new RunWarehouseHelper().recover(filePath, journal), operations);
+    Files.delete(journal);
+  }
+
+  @Test
+  public void testJournalCommitsIdleGroup() throws IOException, InterruptedException {
+    Path file = Files.createTempFile("journal", ".bin");
+    WarehouseJournal journal = new WarehouseJournal(file, 0, 4096, 10_000_000L);
+    journal.order("S", "White"); // The last operation of a burst, with none after it
+    for (int wait = 0; wait < 200 && journal.getDurableSequence() == 0; wait++) {
+      Thread.sleep(10);
+    }
+    assertEquals(journal.getDurableSequence(), 1);
+    assertEquals(journal.getCommits(), 1);
+    journal.close();
+    Files.delete(file);
+  }
+
+  @Test
+  public void testBatchedScansReplay() throws IOException {
+    Path directory = Files.createTempDirectory("batched");
+    WorkloadGenerator generator = new WorkloadGenerator();
+    generator.setLayout(2, 10, 10, 10);
+    generator.setCatalogue(50, 4);
+    generator.setOrders(80, WorkloadGenerator.Arrival.STEADY);
+    generator.setWorkers(2, 2, 2, 1);
+    generator.setErrorRates(0, 0, 0.2);
+    generator.setSeed(5);
+    generator.generate(directory, "sim_single.txt");
+    List<String> batched = new ArrayList<>();
+    String[] previous = new String[0];
+    for (String line : Files.readAllLines(directory.resolve("sim_single.txt"))) {
+      String[] words = line.split(" ");
+      boolean scan = words.length == 4 && Arrays.asList("pick", "sequence", "check")
+          .contains(words[2]);
+      if (scan && previous.length >= 4 && words[1].equals(previous[1])
+          && words[2].equals(previous[2])) {
+        batched.set(batched.size() - 1, batched.get(batched.size() - 1) + " " + words[3]);
+      } else {
+        batched.add(line);
+      }
+      previous = scan ? words : new String[0];
+    }
+    Files.write(directory.resolve("sim_batched.txt"), batched);
+    assertTrue(batched.size() < Files.readAllLines(directory.resolve("sim_single.txt")).size());
+    RunWarehouseHelper single = new RunWarehouseHelper();
+    single.run(directory, "sim_single.txt");
+    Path journal = directory.resolve("journal.bin");
+    RunWarehouseHelper helper = new RunWarehouseHelper();
+    helper.setJournal(journal);
+    helper.run(directory, "sim_batched.txt");
+    Map<String, Integer> stock = single.getController().getWarehouse().getStockLevels();
+    assertEquals(helper.getController().getWarehouse().getStockLevels(), stock);
+    assertEquals(helper.getController().getTrucks().getPickRequestsLoaded(),
+        single.getController().getTrucks().getPickRequestsLoaded());
+    RunWarehouseHelper recovered = new RunWarehouseHelper();
+    assertEquals(recovered.recover(directory, journal), batched.size() - 1);
+    assertEquals(recovered.getController().getWarehouse().getStockLevels(), stock);
+    try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+      for (Path file : files) {
+        Files.delete(file);
+      }
+    }
+    Files.delete(directory);
+  }
+
+  @Test
+  public void testSnapshotRestore() throws IOException {
+    Path directory = Files.createTempDirectory("snapshot");
+    RunWarehouseHelper helper = new RunWarehouseHelper();
+    helper.setJournal(directory.resolve("journal.bin"));
+    helper.setCheckpoints(directory.resolve("warehouse.snap"), 7); // Last taken mid-task
+    helper.run(filePath, "sim_rescan.txt");
+    RunWarehouseHelper restored = new RunWarehouseHelper();
+    assertEquals(restored.restore(directory.resolve("warehouse.snap"),
+        directory.resolve("journal.bin")), 45);
+    assertEquals(describe(restored.getController()), describe(helper.getController()));
+    WarehouseSnapshot.write(directory.resolve("copy.snap"), controller, 3);
+    WarehouseSnapshot copy = WarehouseSnapshot.read(directory.resolve("copy.snap"));
+    assertEquals(copy.getSequence(), 3);
+    assertEquals(describe(copy.getController()), describe(controller));
+    try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+      for (Path file : files) {
+        Files.delete(file);
+      }
+    }
+    Files.delete(directory);
+  }
+
+  @Test
+  public void testCheckpointsOncePerInterval() throws IOException {
+    Path simulation = filePath.resolve("sim_checkpoints.txt");
+    Files.write(simulation, Arrays.asList("Nothing to reslot", "Order S White", "Reslot",
+        "Order SE White", "Order SES White", "Order SEL White"));
+    ArrayList<Path> checkpoints = new ArrayList<>();
+    RunWarehouseHelper helper = new RunWarehouseHelper() {
+      @Override
+      protected void checkpoint(Path snapshot) throws IOException {
+        checkpoints.add(snapshot);
+        super.checkpoint(snapshot);
+      }
+    };
+    Path snapshot = Files.createTempFile("warehouse", ".snap");
+    try {
+      helper.setCheckpoints(snapshot, 0);
+      assertTrue(false);
+    } catch (IllegalArgumentException expected) {
+      helper.setCheckpoints(snapshot, 1);
+    }
+    helper.run(filePath, "sim_checkpoints.txt"); // The empty reslot runs no operation
+    assertEquals(checkpoints.size(), 4);
+    Files.delete(snapshot);
+    Files.delete(simulation);
+  }
+
+  @Test
+  public void testSnapshotKeepsPickerNumbers() throws IOException {
+    controller.getOrders().setPickDeques(4);
+    controller.getEmployees().addEmployee("Alice", "Picker", controller);
+    controller.getEmployees().addEmployee("Bob", "Picker", controller);
+    for (int order = 0; order < 12; order++) {
+      controller.getOrders().newOrder("White", "S"); // Requests 0, 1 and 2 on deques 0, 1 and 2
+    }
+    Path snapshot = Files.createTempFile("warehouse", ".snap");
+    WarehouseSnapshot.write(snapshot, controller, 12);
+    Controller restored = WarehouseSnapshot.read(snapshot).getController();
+    restored.getEmployees().addEmployee("Carol", "Picker", restored); // Third, as without restore
+    Picker carol = (Picker) restored.getEmployees().getEmployee("Carol");
+    carol.receive();
+    assertEquals(carol.pickReq.getPickRequestId(), 2);
+    Picker bob = (Picker) restored.getEmployees().getEmployee("Bob");
+    bob.receive();
+    assertEquals(bob.pickReq.getPickRequestId(), 1);
+    Picker alice = (Picker) restored.getEmployees().getEmployee("Alice");
+    alice.receive();
+    assertEquals(alice.pickReq.getPickRequestId(), 0);
+    Files.delete(snapshot);
+  }
+
+  /**
+   * Describe the state of a warehouse, to compare two warehouses.
+   *
+   * @param warehouse the warehouse.
+   * @return the stock, orders, staging, trucks and workers of the warehouse.
+   */
+  private static String describe(Controller warehouse) {
+    StringBuilder text = new StringBuilder();
+    text.append(warehouse.getWarehouse().getStockLevels())
+        .append(warehouse.getWarehouse().getReplenishBacklog())
+        .append(warehouse.getOrders().getOrderArchive())
+        .append(warehouse.getOrders().getPurgatorySize())
+        .append(warehouse.getOrders().getActivePickRequests())
+        .append(warehouse.getStaging().getMarshalQueueDepth())
+        .append(warehouse.getStaging().getLoadZoneDepth())
+        .append(warehouse.getTrucks().getActiveTruckId())
+        .append(warehouse.getTrucks().getActiveTruckFill())
+        .append(warehouse.getTrucks().getNextPickId())
+        .append(warehouse.getEmployees().getBusyWorkers());
+    return text.toString();
+  }
+
+  // ---------- WhatIfSimulation ----------
+  @Test
+  public void testWhatIfSimulation() throws IOException {
+    Path directory = Files.createTempDirectory("whatif");
+    RunWarehouseHelper helper = new RunWarehouseHelper();
+    helper.run(filePath, "sim_rescan.txt");
+    String before = describe(helper.getController());
+    WhatIfSimulation simulation = helper.capture();
+    assertFalse(simulation.fork().getController() == simulation.fork().getController());
+    Files.write(directory.resolve("idle.txt"), Arrays.asList("Nothing more happens"));
+    Files.write(directory.resolve("busy.txt"), Arrays.asList("Four more orders",
+        "Order S White", "Order SE White", "Order SES White", "Order SEL White",
+        "Picker Bob ready", "Picker Bob get new pick request", "Picker Bob pick 1"));
+    List<WhatIfSimulation.Outcome> outcomes =
+        simulation.run(directory, Arrays.asList("idle.txt", "busy.txt", "busy.txt"));
+    assertEquals(outcomes.get(0).getName(), "idle.txt");
+    assertEquals(outcomes.get(0).getOperations(), 0);
+    assertEquals(outcomes.get(1).getOperations(), 7);
+    assertEquals(outcomes.get(1).getLoaded(), 0);
+    assertEquals(outcomes.get(1).getBacklog(), outcomes.get(0).getBacklog() + 1);
+    assertEquals(outcomes.get(1).getUnbatched(), outcomes.get(0).getUnbatched());
+    // Forks share the metrics, but each outcome only counts its own fork
+    assertEquals(outcomes.get(2).getOperations(), outcomes.get(1).getOperations());
+    assertEquals(outcomes.get(2).getBacklog(), outcomes.get(1).getBacklog());
+    assertEquals(WhatIfSimulation.report(outcomes).size(), 4);
+    assertEquals(describe(helper.getController()), before); // Forks never touch the original
+    try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+      for (Path file : files) {
+        Files.delete(file);
+      }
+    }
+    Files.delete(directory);
+  }
+
+  // ---------- EventLog ----------
+  @Test
+  public void testEventLog() throws IOException {
+    Path file = Files.createTempFile("events", ".bin");
+    EventLog log = new EventLog(8);
+    int alice = log.registerWorker("Alice");
+    assertEquals(log.registerWorker("Alice"), alice);
+    log.record(EventType.PICKED, alice, 7, 3, -1); // Not open, not recorded
+    log.open(file);
+    log.record(EventType.ORDER_ASSIGNED, -1, -1, 3, 12);
+    log.record(EventType.PICKED, alice, 7, 3, -1);
+    log.record(EventType.PICKED, log.registerWorker("Bob"), 300, 4, -1);
+    int instruction = log.registerText("Picker pick");
+    assertEquals(log.registerText("Picker pick"), instruction);
+    log.recordText(EventType.SCAN_INSTRUCTION, alice, 7, instruction);
+    log.recordText(EventType.INSTRUCTION, alice, -1, log.registerText("Picker ready"));
+    log.close();
+    assertEquals(log.registerText("Picker marshal"), -1); // Not open, not registered
+    StringBuilder text = new StringBuilder();
+    assertEquals(new EventLogDecoder().decode(file, text), 5);
+    String[] lines = text.toString().split(System.lineSeparator());
+    assertTrue(lines[0].endsWith("Order #12 added to PickRequest 3"));
+    assertTrue(lines[1].endsWith("Picker Alice picks fascia 7 for PickRequest 3"));
+    assertTrue(lines[2].endsWith("Picker Bob picks fascia 300 for PickRequest 4"));
+    assertTrue(lines[3].endsWith("Instruction: Picker pick 7 by Alice"));
+    assertTrue(lines[4].endsWith("Instruction: Picker ready by Alice"));
+    // A burst larger than the buffer: every event is either written or counted as dropped
+    long droppedBefore = RunWarehouse.metrics.counter("events dropped").sum();
+    log.open(file);
+    for (int event = 0; event < 1000; event++) {
+      log.record(EventType.PICKED, alice, 7, event, -1);
+    }
+    log.close();
+    assertEquals(new EventLogDecoder().decode(file, new StringBuilder()) + log.getDropped(), 1000);
+    assertEquals(RunWarehouse.metrics.counter("events dropped").sum() - droppedBefore,
+        log.getDropped());
+    assertEquals(EventLog.skuId("42"), 42);
+    assertEquals(EventLog.skuId("A1"), -1);
+    Files.delete(file);
+  }
+
+  @Test
+  public void testEventLogDecoderFilters() throws IOException {
+    Path file = Files.createTempFile("events", ".bin");
+    EventLog log = new EventLog(16);
+    log.open(file);
+    log.record(EventType.ORDER_ASSIGNED, -1, -1, 3, 12);
+    log.record(EventType.PICKED, log.registerWorker("Alice"), 7, 3, -1);
+    log.record(EventType.PICKED, log.registerWorker("Bob"), 300, 4, -1);
+    log.close();
+    EventLogDecoder byOrder = new EventLogDecoder();
+    byOrder.filterOrder(12);
+    assertEquals(byOrder.decode(file, new StringBuilder()), 2);
+    EventLogDecoder byWorker = new EventLogDecoder();
+    byWorker.filterWorker("Bob");
+    assertEquals(byWorker.decode(file, new StringBuilder()), 1);
+    EventLogDecoder bySku = new EventLogDecoder();
+    bySku.filterSku(7);
+    bySku.filterRequest(4);
+    assertEquals(bySku.decode(file, new StringBuilder()), 0);
+    Files.delete(file);
+  }
+
+  // ---------- Metrics ----------
+  @Test
+  public void testLatencyHistogram() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    assertEquals(histogram.getPercentile(50), 0);
+    for (int nanos = 1; nanos <= 1000; nanos++) {
+      histogram.record(nanos * 1000L);
+    }
+    assertEquals(histogram.getCount(), 1000);
+    assertEquals(histogram.getMax(), 1000000);
+    long median = histogram.getPercentile(50);
+    assertTrue(median >= 500000 && median <= 500000 * 1.125);
+    long tail = histogram.getPercentile(99);
+    assertTrue(tail >= 990000 && tail <= 1000000);
+    histogram.reset();
+    assertEquals(histogram.getCount(), 0);
+  }
+
+  @Test
+  public void testMetricsRegistry() throws IOException {
+    RunWarehouseHelper helper = new RunWarehouseHelper();
+    helper.run(filePath, "sim_mini.txt");
+    assertEquals(RunWarehouse.metrics.counter("orders loaded").sum(), 4);
+    assertEquals(RunWarehouse.metrics.histogram("stage picking").getCount(), 1);
+    assertEquals(RunWarehouse.metrics.gauge("load zone depth").get(), 0);
+    ArrayList<String[]> report = ReadAndWrite.readFile(filePath.resolve("metrics.csv"), ",", true);
+    assertEquals(report.size(), RunWarehouse.metrics.snapshot().size() - 1);
+  }
+
+  // ---------- MBeans ----------
+  @Test
+  public void testMBeans() throws JMException {
+    controller.registerMBeans();
+    controller.registerMBeans(); // Replaces the beans already registered
+    controller.getEmployees().addEmployee("Alice", "Picker", controller);
+    controller.getOrders().newOrder("White", "S");
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    assertEquals(server.getAttribute(new ObjectName("project:type=OrderManager"),
+        "PurgatorySize"), 1);
+    assertEquals(server.getAttribute(new ObjectName("project:type=WarehouseManager"),
+        "PickFaceCount"), 48);
+    assertEquals(server.getAttribute(new ObjectName("project:type=TruckManager"),
+        "TruckCapacity"), 40);
+    Map<String, Integer> idle = controller.getEmployees().getIdleWorkers();
+    assertEquals(idle.get("Picker"), Integer.valueOf(1));
+    assertEquals(controller.getWarehouse().getStockLevels().get("A000"), Integer.valueOf(26));
+  }
+
+  // ---------- FlightRecordingSummary ----------
+  @Test
+  public void testFlightRecording() throws IOException, ParseException {
+    Path file = Files.createTempFile("warehouse", ".jfr");
+    Configuration settings = Configuration.create(filePath.resolve("warehouse.jfc"));
+    try (Recording recording = new Recording(settings)) {
+      recording.start();
+      controller.getWarehouse().pick("A001", "Alice", 0);
+      controller.getWarehouse().pick("A001", "Alice", 0);
+      controller.getWarehouse().putBack("A002");
+      controller.getWarehouse().pick(Arrays.asList("A001", "A003"), "Alice", 1);
+      recording.stop();
+      recording.dump(file);
+    }
+    FlightRecordingSummary summary = new FlightRecordingSummary();
+    assertTrue(summary.read(file) >= 5);
+    assertEquals(summary.getOperation("Pick").getCount(), 4); // One for each item picked together
+    assertEquals(summary.getHotLocations(1).get(0), "A001");
+    summary.write(new StringBuilder(), 5);
+    Files.delete(file);
+  }
+
+  // ---------- WorkloadGenerator ----------
+  @Test
+  public void testWorkloadGeneratorDefaults() throws IOException {
+    Path directory = Files.createTempDirectory("workload");
+    WorkloadGenerator generator = new WorkloadGenerator();
+    generator.generate(directory, "sim_generated.txt"); // The default catalogue fits its layout
+    assertEquals(generator.getRequests(), 20);
+    RunWarehouseHelper helper = new RunWarehouseHelper();
+    helper.run(directory, "sim_generated.txt");
+    assertEquals(helper.getController().getTrucks().getPickRequestsLoaded(), 20);
+    try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+      for (Path file : files) {
+        Files.delete(file);
+      }
+    }
+    Files.delete(directory);
+  }
+
+  @Test
+  public void testWorkloadGeneratorReplays() throws IOException {
+    Path directory = Files.createTempDirectory("workload");
+    WorkloadGenerator generator = new WorkloadGenerator();
+    generator.setLayout(2, 10, 10, 10);
+    generator.setCatalogue(50, 4);
+    generator.setOrders(402, WorkloadGenerator.Arrival.BURSTY);
+    generator.setWorkers(3, 2, 2, 1);
+    generator.setErrorRates(0.05, 0.1, 0.2);
+    generator.setShortPickRate(0.1);
+    generator.setSeed(11);
+    generator.generate(directory, "sim_generated.txt");
+    assertEquals(generator.getRequests(), 100);
+    assertTrue(generator.getWrongPicks() > 0 && generator.getRescans() > 0);
+    assertTrue(generator.getReplenishments() > 0);
+    assertTrue(generator.getShortPicks() > 0);
+    new RunWarehouseHelper().run(directory, "sim_generated.txt");
+    assertEquals(RunWarehouse.metrics.counter("items re-picked").sum(),
+        generator.getRepickedItems());
+    assertEquals(Files.readAllLines(directory.resolve("orders.csv")).size(), 400);
+    HashMap<String, Integer> finalStock = new HashMap<>();
+    for (String line : Files.readAllLines(directory.resolve("final.csv"))) {
+      String[] fields = line.split(",");
+      finalStock.put(fields[0] + fields[1] + fields[2] + fields[3], Integer.valueOf(fields[4]));
+    }
+    assertEquals(finalStock, new HashMap<>(generator.getFinalStock()));
+    double fifoWait = generator.getMeanLoadZoneWait();
+    generator.setDeadlineScheduling(true);
+    generator.generate(directory, "sim_generated.txt");
+    assertTrue(generator.getMeanLoadZoneWait() < fifoWait);
+    RunWarehouseHelper helper = new RunWarehouseHelper();
+    helper.setDeadlineScheduling(true);
+    helper.run(directory, "sim_generated.txt");
+    assertEquals(helper.getController().getTrucks().getPickRequestsLoaded(), 100);
+    try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+      for (Path file : files) {
+        Files.delete(file);
+      }
+    }
+    Files.delete(directory);
+  }
+
+  @Test
+  public void testStockReservationReplays() throws IOException {
+    Path directory = Files.createTempDirectory("reserving");
+    WorkloadGenerator generator = new WorkloadGenerator();
+    generator.setLayout(2, 10, 10, 10);
+    generator.setCatalogue(50, 4);
+    generator.setOrders(400, WorkloadGenerator.Arrival.STEADY);
+    generator.setWorkers(8, 2, 2, 1);
+    generator.setErrorRates(0.05, 0.1, 0.5);
+    generator.setShortPickRate(0.1);
+    generator.setSeed(3);
+    generator.generate(directory, "sim_generated.txt");
+    assertTrue(generator.getStockOutWaits() > 0);
+    generator.setStockReservation(true);
+    generator.generate(directory, "sim_generated.txt");
+    assertTrue(generator.getHeldRequests() > 0);
+    assertEquals(generator.getStockOutWaits(), 0);
+    RunWarehouseHelper helper = new RunWarehouseHelper();
+    helper.setStockReservation(true);
+    helper.run(directory, "sim_generated.txt");
+    assertEquals(RunWarehouse.metrics.counter("pick requests held").sum(),
+        generator.getHeldRequests());
+    assertEquals(helper.getController().getTrucks().getPickRequestsLoaded(), 100);
+    HashMap<String, Integer> finalStock = new HashMap<>();
+    for (String line : Files.readAllLines(directory.resolve("final.csv"))) {
+      String[] fields = line.split(",");
+      finalStock.put(fields[0] + fields[1] + fields[2] + fields[3], Integer.valueOf(fields[4]));
+    }
+    assertEquals(finalStock, new HashMap<>(generator.getFinalStock()));
+    try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+      for (Path file : files) {
+        Files.delete(file);
+      }
+    }
+    Files.delete(directory);
+  }
+  @Test
+  public void testSlottingReplays() throws IOException {
+    Path directory = Files.createTempDirectory("slotting");
+    WorkloadGenerator generator = new WorkloadGenerator();
+    generator.setLayout(2, 10, 10, 10);
+    generator.setCatalogue(50, 4);
+    generator.setOrders(400, WorkloadGenerator.Arrival.STEADY);
+    generator.setWorkers(8, 2, 2, 1);
+    generator.setErrorRates(0.05, 0.1, 0.5);
+    generator.setSeed(5);
+    generator.generate(directory, "sim_generated.txt");
+    RunWarehouseHelper helper = new RunWarehouseHelper();
+    helper.run(directory, "sim_generated.txt");
+    SlottingEngine slotting = helper.getController().getWarehouse().getSlotting();
+    long planned = slotting.getTravel(slotting.plan());
+    assertTrue(planned < slotting.getTravel());
+    // The same day on the layout written to slotting.csv travels exactly as far as planned
+    Path slotted = Files.createTempDirectory("slotted");
+    generator.setTraversal(directory.resolve("slotting.csv"));
+    generator.generate(slotted, "sim_generated.txt");
+    helper.run(slotted, "sim_generated.txt");
+    assertEquals(helper.getController().getWarehouse().getSlotting().getTravel(), planned);
+    assertEquals(helper.getController().getTrucks().getPickRequestsLoaded(), 100);
+    HashMap<String, Integer> finalStock = new HashMap<>();
+    for (String line : Files.readAllLines(slotted.resolve("final.csv"))) {
+      String[] fields = line.split(",");
+      finalStock.put(fields[0] + fields[1] + fields[2] + fields[3], Integer.valueOf(fields[4]));
+    }
+    assertEquals(finalStock, new HashMap<>(generator.getFinalStock()));
+    // Re-slotting half way through the day is journaled with the moves made
+    List<String> lines =
+        new ArrayList<>(Files.readAllLines(directory.resolve("sim_generated.txt")));
+    lines.add(lines.size() / 2, "Reslot");
+    Files.write(directory.resolve("sim_generated.txt"), lines);
+    Path journal = directory.resolve("journal.bin");
+    helper.setJournal(journal);
+    helper.run(directory, "sim_generated.txt");
+    RunWarehouseHelper recovered = new RunWarehouseHelper();
+    assertEquals(recovered.recover(directory, journal), lines.size() - 1);
+    WarehouseManager before = helper.getController().getWarehouse();
+    WarehouseManager after = recovered.getController().getWarehouse();
+    assertEquals(after.getLayoutVersion(), 1);
+    for (String place : before.getRoute()) {
+      assertEquals(after.getSku(place.replace(",", "")), before.getSku(place.replace(",", "")));
+    }
+    assertEquals(after.getStockLevels(), before.getStockLevels());
+    assertEquals(recovered.getController().getTrucks().getPickRequestsLoaded(),
+        helper.getController().getTrucks().getPickRequestsLoaded());
+    for (Path folder : Arrays.asList(directory, slotted)) {
+      try (DirectoryStream<Path> files = Files.newDirectoryStream(folder)) {
+        for (Path file : files) {
+          Files.delete(file);
+        }
+      }
+      Files.delete(folder);
+    }
+  }
+
+  @Test
+  public void testOrderClusteringReplays() throws IOException {
+    Path directory = Files.createTempDirectory("clustering");
+    WorkloadGenerator generator = new WorkloadGenerator();
+    generator.setLayout(2, 10, 10, 10);
+    generator.setCatalogue(50, 4);
+    generator.setOrders(408, WorkloadGenerator.Arrival.STEADY);
+    generator.setWorkers(8, 2, 2, 1);
+    generator.setErrorRates(0.05, 0.1, 0.5);
+    generator.setSeed(7);
+    generator.generate(directory, "sim_generated.txt");
+    RunWarehouseHelper helper = new RunWarehouseHelper();
+    helper.run(directory, "sim_generated.txt");
+    long fifo = helper.getController().getWarehouse().getSlotting().getTravel();
+    // The same orders clustered 16 at a time travel less and load in order at two docks. The
+    // last 8 orders never fill a window and are flushed after the last fax
+    generator.setOrderClustering(16);
+    generator.generate(directory, "sim_generated.txt");
+    try {
+      generator.setOrders(410, WorkloadGenerator.Arrival.STEADY); // Would flush a short request
+      assertTrue(false);
+    } catch (IllegalArgumentException expected) {
+      generator.setOrderClustering(4);
+      generator.setOrders(410, WorkloadGenerator.Arrival.STEADY);
+    }
+    try {
+      generator.setOrderClustering(16);
+      assertTrue(false);
+    } catch (IllegalArgumentException expected) {
+      generator.setOrders(408, WorkloadGenerator.Arrival.STEADY);
+      generator.setOrderClustering(16);
+    }
+    helper.setOrderClustering(16);
+    helper.setDocks(2);
+    helper.setJournal(directory.resolve("journal.bin"));
+    helper.run(directory, "sim_generated.txt");
+    assertTrue(helper.getController().getWarehouse().getSlotting().getTravel() < fifo);
+    assertEquals(helper.getController().getTrucks().getPickRequestsLoaded(), 102);
+    RunWarehouseHelper recovered = new RunWarehouseHelper();
+    recovered.setOrderClustering(16);
+    recovered.setDocks(2);
+    recovered.recover(directory, directory.resolve("journal.bin"));
+    assertEquals(recovered.getController().getTrucks().getPickRequestsLoaded(), 102);
+    helper.setJournal(null);
+    HashMap<String, Integer> finalStock = new HashMap<>();
+    for (String line : Files.readAllLines(directory.resolve("final.csv"))) {
+      String[] fields = line.split(",");
+      finalStock.put(fields[0] + fields[1] + fields[2] + fields[3], Integer.valueOf(fields[4]));
+    }
+    assertEquals(finalStock, new HashMap<>(generator.getFinalStock()));
+    // A snapshot keeps its window
+    Path snapshot = directory.resolve("snapshot.bin");
+    helper.checkpoint(snapshot);
+    RunWarehouseHelper restored = new RunWarehouseHelper();
+    restored.restore(snapshot, null);
+    assertEquals(restored.getController().getOrderClustering(), 16);
+    try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+      for (Path file : files) {
+        Files.delete(file);
+      }
+    }
+    Files.delete(directory);
+  }
+
+  @Test
+  public void testOrderTimeout() throws IOException {
+    Path simulation = filePath.resolve("sim_timeout.txt");
+    Files.write(simulation, Arrays.asList("Five orders", "Order S White", "Order SE White",
+        "Order SES White", "Order SEL White", "Order S White"));
+    RunWarehouseHelper helper = new RunWarehouseHelper();
+    helper.setOrderClustering(8);
+    helper.run(filePath, "sim_timeout.txt"); // Flushed when the file ends
+    assertEquals(helper.getController().getOrders().getPickRequestsCreated(), 2);
+    assertEquals(helper.getController().getOrders().getPurgatorySize(), 0);
+    helper.setOrderTimeout(0); // Every order held is flushed before the next line
+    helper.run(filePath, "sim_timeout.txt");
+    assertEquals(helper.getController().getOrders().getPickRequestsCreated(), 5);
+    Files.delete(simulation);
+  }
+
+  @Test
+  public void testFlushedShortRequest() {
+    controller.setOrderClustering(8);
+    controller.getOrders().newOrder("White", "S");
+    controller.getOrders().flushPurgatory();
+    Picker picker = new Picker("Alice", controller);
+    picker.receive();
+    ArrayList<String> skus = picker.pickReq.getPickSkus(controller.getWarehouse());
+    assertEquals(skus.size(), 2);
+    for (String sku : skus) {
+      picker.work(sku);
+    }
+    picker.work(skus.get(0)); // One too many: the pallet only holds one order
+    assertEquals(picker.pickReq.unsortedPal.getFillProg(), 2);
+    assertEquals(picker.work(new String[] {skus.get(0)})[0], false);
+  }
 }
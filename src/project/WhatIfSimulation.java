@@ -0,0 +1,249 @@
+package project;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Tries out different continuations of a warehouse day side by side, such as adding a second
+ * <code>Sequencer</code> part way through. The warehouse is captured once as an in-memory
+ * <code>WarehouseSnapshot</code> image, which is never changed. Each continuation runs on its own
+ * fork restored from that image, with its own <code>Controller</code>, and the forks run in
+ * parallel. Their throughput and backlog are then compared.
+ *
+ * <p>The warehouse state of each fork is its own, so one continuation cannot change what another
+ * picks, sequences or loads. Process-wide state is still shared: the stage histograms and counters
+ * that <code>Picker</code>, <code>Sequencer</code>, <code>StagingManager</code>,
+ * <code>TruckManager</code> and <code>StockReservations</code> keep in
+ * <code>RunWarehouse.metrics</code>, the <code>RunWarehouse.events</code> log, and the thread that
+ * ticks every <code>PickHeatmap</code>. Those mix every fork with the original warehouse, so an
+ * <code>Outcome</code> is read only from counts kept by the fork's own <code>Controller</code>.
+ */
+public class WhatIfSimulation {
+
+  /** The snapshot image every fork is restored from. */
+  private final ByteBuffer image;
+
+  /** Most forks run at once. */
+  private int parallelism = Runtime.getRuntime().availableProcessors();
+
+  /**
+   * Creates a simulation forking from a snapshot image.
+   *
+   * @param image the snapshot image, in the format of a snapshot file.
+   */
+  protected WhatIfSimulation(ByteBuffer image) {
+    this.image = image.asReadOnlyBuffer();
+  }
+
+  /**
+   * Capture a point-in-time copy of a running warehouse.
+   *
+   * @param controller the warehouse.
+   * @param sequence the number of operations run since the start of the day.
+   * @return the simulation forking from the warehouse as it is now.
+   */
+  protected static WhatIfSimulation capture(Controller controller, long sequence) {
+    return new WhatIfSimulation(WarehouseSnapshot.image(controller, sequence));
+  }
+
+  /**
+   * Load a snapshot file, such as a checkpoint taken during the day, to fork from.
+   *
+   * @param snapshot the snapshot file.
+   * @return the simulation forking from the snapshot.
+   * @throws IOException when the file cannot be read or is not a snapshot.
+   */
+  protected static WhatIfSimulation load(Path snapshot) throws IOException {
+    byte[] image = Files.readAllBytes(snapshot);
+    WhatIfSimulation simulation = new WhatIfSimulation(ByteBuffer.wrap(image));
+    simulation.fork(); // Fail now rather than in every fork
+    return simulation;
+  }
+
+  /**
+   * Set the most forks run at once.
+   *
+   * @param parallelism the number of threads, at least one.
+   */
+  protected void setParallelism(int parallelism) {
+    this.parallelism = parallelism;
+  }
+
+  /**
+   * Restore a new, independent copy of the captured warehouse.
+   *
+   * @return the fork.
+   * @throws IOException when the image is damaged.
+   */
+  protected WarehouseSnapshot fork() throws IOException {
+    return WarehouseSnapshot.read(image);
+  }
+
+  /**
+   * Run each continuation on its own fork of the captured warehouse, in parallel.
+   *
+   * @param directory <code>Path</code> of the directory holding the continuations.
+   * @param continuations the names of the simulation files to continue with.
+   * @return the <code>Outcome</code> of each continuation, in the same order.
+   * @throws IOException when a continuation cannot be read or fails.
+   */
+  protected List<Outcome> run(Path directory, List<String> continuations) throws IOException {
+    ExecutorService pool =
+        Executors.newFixedThreadPool(Math.max(1, Math.min(parallelism, continuations.size())));
+    try {
+      List<Future<Outcome>> running = new ArrayList<>();
+      for (String continuation : continuations) {
+        Path file = directory.resolve(continuation);
+        running.add(pool.submit(() -> runFork(continuation, file)));
+      }
+      List<Outcome> outcomes = new ArrayList<>();
+      for (Future<Outcome> outcome : running) {
+        outcomes.add(outcome.get());
+      }
+      return outcomes;
+    } catch (ExecutionException error) {
+      if (error.getCause() instanceof IOException) {
+        throw (IOException) error.getCause();
+      }
+      throw new IOException("Continuation failed: " + error.getCause(), error.getCause());
+    } catch (InterruptedException error) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while running continuations.");
+    } finally {
+      pool.shutdownNow();
+    }
+  }
+
+  /**
+   * Run one continuation on a new fork.
+   *
+   * @param name the name of the continuation.
+   * @param file the simulation file of the continuation.
+   * @return the <code>Outcome</code> of the continuation.
+   * @throws IOException when the fork cannot be restored or the file read.
+   */
+  private Outcome runFork(String name, Path file) throws IOException {
+    long start = System.nanoTime();
+    WarehouseSnapshot restored = fork();
+    int loadedBefore = restored.getController().getTrucks().getPickRequestsLoaded();
+    RunWarehouseHelper helper = new RunWarehouseHelper();
+    long operations = helper.resume(restored, file) - restored.getSequence();
+    Controller controller = helper.getController();
+    return new Outcome(name, operations,
+        controller.getTrucks().getPickRequestsLoaded() - loadedBefore,
+        controller.getOrders().getPickRequestsCreated()
+            - controller.getTrucks().getPickRequestsLoaded(),
+        controller.getOrders().getPurgatorySize(),
+        controller.getWarehouse().getReplenishBacklog(), System.nanoTime() - start);
+  }
+
+  /**
+   * Lay out the outcomes of continuations as a report, one line each after a header.
+   *
+   * @param outcomes the outcomes.
+   * @return the lines of the report.
+   */
+  protected static ArrayList<String[]> report(List<Outcome> outcomes) {
+    ArrayList<String[]> lines = new ArrayList<>();
+    lines.add(new String[] {"continuation", "operations", "loaded", "backlog", "unbatched orders",
+        "replenish backlog", "ms"});
+    for (Outcome outcome : outcomes) {
+      lines.add(new String[] {outcome.getName(), String.valueOf(outcome.getOperations()),
+          String.valueOf(outcome.getLoaded()), String.valueOf(outcome.getBacklog()),
+          String.valueOf(outcome.getUnbatched()), String.valueOf(outcome.getReplenishBacklog()),
+          String.valueOf(outcome.getElapsedNanos() / 1_000_000)});
+    }
+    return lines;
+  }
+
+  /** The throughput and backlog of a fork at the end of its continuation, from its own counts. */
+  protected static class Outcome {
+
+    /** The name of the continuation. */
+    private final String name;
+
+    /** Number of operations in the continuation. */
+    private final long operations;
+
+    /** Number of <code>PickRequest</code> loaded onto trucks during the continuation. */
+    private final int loaded;
+
+    /** Number of <code>PickRequest</code> created but not yet loaded at the end. */
+    private final int backlog;
+
+    /** Number of <code>Order</code> waiting for a full <code>PickRequest</code> at the end. */
+    private final int unbatched;
+
+    /** Number of <code>PickFace</code> waiting to be replenished at the end. */
+    private final int replenishBacklog;
+
+    /** Wall clock time to restore and run the fork, in nanoseconds. */
+    private final long elapsedNanos;
+
+    /**
+     * Creates the outcome of a continuation.
+     *
+     * @param name the name of the continuation.
+     * @param operations the number of operations run.
+     * @param loaded the number of <code>PickRequest</code> loaded.
+     * @param backlog the number of <code>PickRequest</code> not yet loaded.
+     * @param unbatched the number of <code>Order</code> not yet in a <code>PickRequest</code>.
+     * @param replenishBacklog the number of <code>PickFace</code> waiting to be replenished.
+     * @param elapsedNanos the time taken, in nanoseconds.
+     */
+    protected Outcome(String name, long operations, int loaded, int backlog, int unbatched,
+        int replenishBacklog, long elapsedNanos) {
+      this.name = name;
+      this.operations = operations;
+      this.loaded = loaded;
+      this.backlog = backlog;
+      this.unbatched = unbatched;
+      this.replenishBacklog = replenishBacklog;
+      this.elapsedNanos = elapsedNanos;
+    }
+
+    /** Return the name of the continuation. */
+    protected String getName() {
+      return name;
+    }
+
+    /** Return the number of operations in the continuation. */
+    protected long getOperations() {
+      return operations;
+    }
+
+    /** Return the number of <code>PickRequest</code> loaded during the continuation. */
+    protected int getLoaded() {
+      return loaded;
+    }
+
+    /** Return the number of <code>PickRequest</code> created but not loaded at the end. */
+    protected int getBacklog() {
+      return backlog;
+    }
+
+    /** Return the number of <code>Order</code> not yet in a <code>PickRequest</code>. */
+    protected int getUnbatched() {
+      return unbatched;
+    }
+
+    /** Return the number of <code>PickFace</code> waiting to be replenished at the end. */
+    protected int getReplenishBacklog() {
+      return replenishBacklog;
+    }
+
+    /** Return the time taken to restore and run the fork, in nanoseconds. */
+    protected long getElapsedNanos() {
+      return elapsedNanos;
+    }
+  }
+}
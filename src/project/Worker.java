@@ -7,7 +7,7 @@ public abstract class Worker {
    * Whether <code>Worker</code> can take on a new task. <code>true</code> if this
    * <code>Worker</code> can receive new work, <code>false</code> if <code>Worker</code> is busy.
    */
-  private boolean ready;
+  private volatile boolean ready;
 
   /** This <code>Worker</code> name, used to identify this <code>Worker</code>. */
   protected String name;
@@ -15,6 +15,9 @@ public abstract class Worker {
   /** Active <code>PickRequest</code> for this <code>Worker</code>. */
   protected PickRequest pickReq;
 
+  /** ID identifying this <code>Worker</code> in the <code>EventLog</code>. */
+  protected int workerId;
+
   /** This warehouse's <code>Controller</code>. */
   protected Controller controller;
 
@@ -31,6 +34,7 @@ public abstract class Worker {
   public Worker(String name, Controller controller) {
     this.name = name;
     this.controller = controller;
+    workerId = RunWarehouse.events.registerWorker(name);
     ready = true;
   }
 
@@ -74,6 +78,23 @@ public abstract class Worker {
    */
   abstract void work(String toWorkOn);
 
+  /**
+   * Perform a batch of tasks scanned together, in order, returning whether each one moved this
+   * <code>Worker</code> on through their job.
+   * 
+   * @param batch the tasks to be performed as Strings.
+   * @return <code>boolean[]</code> whether each task was accepted.
+   */
+  protected boolean[] work(String[] batch) {
+    boolean[] accepted = new boolean[batch.length];
+    for (int item = 0; item < batch.length; item++) {
+      int before = progress;
+      work(batch[item]);
+      accepted[item] = progress > before;
+    }
+    return accepted;
+  }
+
   /**
    * Move completed tasks on to the next part in the system.
    */
@@ -85,4 +106,27 @@ public abstract class Worker {
   protected void rescan() {
     RunWarehouse.logger.info(name + " has nothing to rescan.");
   }
+
+  /**
+   * Write the current task of this <code>Worker</code> to a snapshot.
+   * 
+   * @param out the snapshot being written.
+   */
+  protected void writeSnapshot(WarehouseSnapshot out) {
+    out.putBoolean(ready);
+    out.putRequest(pickReq);
+    out.putInt(progress);
+  }
+
+  /**
+   * Restore the current task of this <code>Worker</code> from a snapshot written by
+   * <code>writeSnapshot</code>.
+   * 
+   * @param in the snapshot being read.
+   */
+  protected void readSnapshot(WarehouseSnapshot in) {
+    ready = in.getBoolean();
+    pickReq = in.getRequest();
+    progress = in.getInt();
+  }
 }
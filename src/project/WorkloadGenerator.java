@@ -0,0 +1,1181 @@
+package project;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+/**
+ * Generates a consistent warehouse layout and a simulation of any size: traversal_table.csv,
+ * translation.csv, initial.csv and a simulation file. The simulation is produced by modelling the
+ * warehouse while writing it, so every line can be replayed by <code>RunWarehouseHelper</code>:
+ * pickers only pick faces that have stock, replenishers answer every replenish request, and every
+ * complete <code>PickRequest</code> is loaded. Injected errors are wrong picks, which are put back,
+ * short picks, whose missing item the sequencer sends back to be re-picked, rescans by sequencers
+ * and loaders, and faces that start the day nearly empty.
+ */
+public class WorkloadGenerator {
+
+  /** How orders arrive during the day. */
+  public enum Arrival {
+    /** Every order arrives overnight, before any work starts. */
+    OVERNIGHT,
+    /** Orders trickle in, keeping about one <code>PickRequest</code> waiting per picker. */
+    STEADY,
+    /** Orders arrive in bursts of up to 16 <code>PickRequest</code> whenever pickers run dry. */
+    BURSTY
+  }
+
+  /** Colour names used before falling back to numbered colours. */
+  private static final String[] COLOURS = {"White", "Beige", "Red", "Green", "Blue", "Black"};
+
+  /** Stock quantity of a pick face at the start of the day unless initial.csv says otherwise. */
+  private static final int FULL = 30;
+
+  /** Number of <code>PickRequest</code> that fill a truck, two pallets each. */
+  private static final int TRUCK_LOAD = 20;
+
+  /** Number of zones on the floor. */
+  private int zones = 2;
+
+  /** Number of aisles in each zone. */
+  private int aisles = 2;
+
+  /** Number of racks in each aisle. */
+  private int racks = 3;
+
+  /** Number of levels in each rack. */
+  private int levels = 4;
+
+  /** Number of bumper models. */
+  private int models = 4;
+
+  /** Number of colours of each model; each model and colour is one front and one rear SKU. */
+  private int colours = 6;
+
+  /** Number of orders in the day. */
+  private int orderCount = 80;
+
+  /** How the orders arrive. */
+  private Arrival arrival = Arrival.OVERNIGHT;
+
+  /** Number of <code>Picker</code>. */
+  private int pickers = 4;
+
+  /** Number of <code>Sequencer</code>. */
+  private int sequencers = 1;
+
+  /** Number of <code>Loader</code>. */
+  private int loaders = 1;
+
+  /** Number of <code>Replenisher</code>. */
+  private int replenishers = 1;
+
+  /** Chance that a picker picks a wrong item before each correct pick. */
+  private double wrongPickRate = 0;
+
+  /** Chance that a picker marshals a pallet without its last item. */
+  private double shortPickRate = 0;
+
+  /** Chance that a sequencer or loader rescans part way through a pallet. */
+  private double rescanRate = 0;
+
+  /** Fraction of pick faces that start the day nearly empty. */
+  private double emptyStockRate = 0;
+
+  /** Seed of the random choices, so a workload can be generated again. */
+  private long seed = 0;
+
+  /** Whether sequencers take the <code>PickRequest</code> loaded soonest, not the oldest. */
+  private boolean deadlineScheduling = false;
+
+  /** Whether the stock of each <code>PickRequest</code> is reserved as it is released. */
+  private boolean stockReservation = false;
+
+  /** Number of orders held before they are grouped into <code>PickRequest</code>. */
+  private int clusteringWindow = OrderClustering.ORDERS;
+
+  /**
+   * Where each SKU is kept, as rows of traversal_table.csv in route order, or <code>null</code> to
+   * fill the racks with SKUs in order.
+   */
+  private ArrayList<String[]> traversalTable;
+
+  /** Number of lines written to the last simulation. */
+  private long lines;
+
+  /** Number of <code>PickRequest</code> formed in the last simulation. */
+  private int requests;
+
+  /** Number of wrong picks in the last simulation. */
+  private int wrongPicks;
+
+  /** Number of rescans in the last simulation. */
+  private int rescans;
+
+  /** Number of pallets marshaled without their last item in the last simulation. */
+  private int shortPicks;
+
+  /** Number of items picked again after a sequencer found them missing. */
+  private int repickedItems;
+
+  /** Number of replenishments in the last simulation. */
+  private int replenishments;
+
+  /** Number of <code>PickRequest</code> held for want of stock in the last simulation. */
+  private int heldRequests;
+
+  /** Number of turns pickers spent waiting at an empty pick face in the last simulation. */
+  private long stockOutWaits;
+
+  /** Sum over every line of the last simulation of the <code>PickRequest</code> in the load zone. */
+  private long loadZoneWait;
+
+  /** Line of the last simulation at which each full truck was dispatched. */
+  private ArrayList<Long> dispatches = new ArrayList<>();
+
+  /** Stock at the end of the last simulation, for locations whose quantity is not 30. */
+  private TreeMap<String, Integer> finalStock = new TreeMap<>();
+
+  /** Source of the random choices while generating. */
+  private Random random;
+
+  /** The simulation file being written. */
+  private BufferedWriter simulation;
+
+  /** Location of each pick face; the face with index <code>i</code> holds SKU <code>i+1</code>. */
+  private String[] locations;
+
+  /** How far along the route each pick face is, counting from 1 at the depot. */
+  private int[] positions;
+
+  /** Modelled stock quantity of each pick face. */
+  private int[] stock;
+
+  /** Whether each pick face is waiting in <code>toReplenish</code>. */
+  private boolean[] queued;
+
+  /** Modelled number of items reserved at each pick face. */
+  private int[] reserved;
+
+  /** <code>PickRequest</code> held until their stock can be reserved. */
+  private ArrayDeque<int[]> held;
+
+  /** Pick faces waiting for a <code>Replenisher</code>, as in <code>WarehouseManager</code>. */
+  private ArrayDeque<Integer> toReplenish;
+
+  /** <code>PickRequest</code> waiting for a <code>Picker</code>, each an ID followed by SKUs. */
+  private ArrayDeque<int[]> released;
+
+  /** <code>PickRequest</code> waiting for a <code>Sequencer</code>. */
+  private ArrayDeque<int[]> marshalQueue;
+
+  /**
+   * Index of the SKU missing from each short-picked <code>PickRequest</code>, by ID, until it is
+   * re-picked. With the same SKU more than once, the last is the one found missing.
+   */
+  private HashMap<Integer, Integer> gaps;
+
+  /** Sequenced <code>PickRequest</code> waiting for a <code>Loader</code>, by ID. */
+  private HashMap<Integer, int[]> loadZone;
+
+  /** ID of the next <code>PickRequest</code> to load onto a truck. */
+  private int nextLoad;
+
+  /** Number of orders that have not arrived yet. */
+  private int ordersLeft;
+
+  /** SKUs of the orders waiting to form a <code>PickRequest</code>. */
+  private int[] purgatory;
+
+  /** Number of SKUs in <code>purgatory</code>. */
+  private int purgatorySize;
+
+  /** Creates a generator of a workload shaped like the bundled sim_no_error.txt. */
+  public WorkloadGenerator() {}
+
+  /**
+   * Set the shape of the warehouse floor. Locations are one character each, so there are at most
+   * 26 zones and 10 aisles, racks and levels.
+   *
+   * @param zones number of zones.
+   * @param aisles number of aisles in each zone.
+   * @param racks number of racks in each aisle.
+   * @param levels number of levels in each rack.
+   */
+  protected void setLayout(int zones, int aisles, int racks, int levels) {
+    if (zones < 1 || zones > 26 || aisles < 1 || aisles > 10 || racks < 1 || racks > 10
+        || levels < 1 || levels > 10) {
+      throw new IllegalArgumentException("Layout must be 1-26 zones and 1-10 aisles, racks and "
+          + "levels.");
+    }
+    this.zones = zones;
+    this.aisles = aisles;
+    this.racks = racks;
+    this.levels = levels;
+  }
+
+  /**
+   * Set the catalogue of bumpers. Each model and colour takes two pick faces.
+   *
+   * @param models number of models.
+   * @param colours number of colours.
+   */
+  protected void setCatalogue(int models, int colours) {
+    if (models < 1 || colours < 1) {
+      throw new IllegalArgumentException("There must be at least one model and colour.");
+    }
+    this.models = models;
+    this.colours = colours;
+  }
+
+  /**
+   * Set the orders of the day. Orders left over after the last full window of orders stay in
+   * purgatory, as they would in the warehouse, unless they are clustered, when they are flushed.
+   *
+   * @param count number of orders, a multiple of four when they are clustered.
+   * @param arrival how the orders arrive.
+   */
+  protected void setOrders(int count, Arrival arrival) {
+    if (count < 0) {
+      throw new IllegalArgumentException("Order count cannot be negative.");
+    }
+    checkFlushed(count, clusteringWindow);
+    this.orderCount = count;
+    this.arrival = arrival;
+  }
+
+  /**
+   * Set the number of each kind of <code>Worker</code>. Every kind is needed to finish the day.
+   *
+   * @param pickers number of <code>Picker</code>.
+   * @param sequencers number of <code>Sequencer</code>.
+   * @param loaders number of <code>Loader</code>.
+   * @param replenishers number of <code>Replenisher</code>.
+   */
+  protected void setWorkers(int pickers, int sequencers, int loaders, int replenishers) {
+    if (pickers < 1 || sequencers < 1 || loaders < 1 || replenishers < 1) {
+      throw new IllegalArgumentException("There must be at least one worker of each kind.");
+    }
+    this.pickers = pickers;
+    this.sequencers = sequencers;
+    this.loaders = loaders;
+    this.replenishers = replenishers;
+  }
+
+  /**
+   * Set the rates of injected errors, each between 0 and 1.
+   *
+   * @param wrongPick chance that a picker picks a wrong item before each correct pick.
+   * @param rescan chance that a sequencer or loader rescans part way through a pallet.
+   * @param emptyStock fraction of pick faces that start the day with 1 to 5 items.
+   */
+  protected void setErrorRates(double wrongPick, double rescan, double emptyStock) {
+    this.wrongPickRate = wrongPick;
+    this.rescanRate = rescan;
+    this.emptyStockRate = emptyStock;
+  }
+
+  /**
+   * Set the chance that a picker marshals a pallet without picking its last item. The sequencer
+   * finds it missing and sends the <code>PickRequest</code> back to re-pick just that item.
+   *
+   * @param shortPick chance of a short pick on each <code>PickRequest</code>, between 0 and 1.
+   */
+  protected void setShortPickRate(double shortPick) {
+    this.shortPickRate = shortPick;
+  }
+
+  /**
+   * Set the seed of the random choices.
+   *
+   * @param seed the seed.
+   */
+  protected void setSeed(long seed) {
+    this.seed = seed;
+  }
+
+  /**
+   * Model a warehouse with deadline scheduling, as <code>Controller.setDeadlineScheduling</code>
+   * runs it: sequencers take the <code>PickRequest</code> from the marshaling area that is loaded
+   * soonest. Only replays on a warehouse scheduled the same way.
+   *
+   * @param deadlineScheduling whether to schedule by loading deadline.
+   */
+  protected void setDeadlineScheduling(boolean deadlineScheduling) {
+    this.deadlineScheduling = deadlineScheduling;
+  }
+
+  /**
+   * Model a warehouse reserving stock, as <code>Controller.setStockReservation</code> runs it: a
+   * <code>PickRequest</code> is only released once every item it needs is reserved, so pickers
+   * never wait at an empty pick face. Only replays on a warehouse reserving stock the same way.
+   *
+   * @param stockReservation whether to reserve stock.
+   */
+  protected void setStockReservation(boolean stockReservation) {
+    this.stockReservation = stockReservation;
+  }
+
+  /**
+   * Model a warehouse clustering orders, as <code>Controller.setOrderClustering</code> runs it: a
+   * window of orders is held and grouped into <code>PickRequest</code> whose SKUs lie close
+   * together. Only replays on a warehouse clustering orders the same way.
+   *
+   * @param window the number of orders held, a multiple of four; four groups them FIFO.
+   */
+  protected void setOrderClustering(int window) {
+    if (window < OrderClustering.ORDERS || window % OrderClustering.ORDERS != 0) {
+      throw new IllegalArgumentException("Orders must be clustered in windows of a multiple of "
+          + OrderClustering.ORDERS + ".");
+    }
+    checkFlushed(orderCount, window);
+    this.clusteringWindow = window;
+  }
+
+  /**
+   * Check that the orders flushed after the last fax form only full <code>PickRequest</code>.
+   * The warehouse would release the rest as a short <code>PickRequest</code>, which the modelled
+   * pickers, sequencers and loaders, handling eight items each, cannot follow.
+   *
+   * @param count number of orders.
+   * @param window the number of orders held to be clustered.
+   */
+  private static void checkFlushed(int count, int window) {
+    if (window > OrderClustering.ORDERS && count % OrderClustering.ORDERS != 0) {
+      throw new IllegalArgumentException("Clustered orders are flushed " + OrderClustering.ORDERS
+          + " at a time, so " + count + " orders would leave a short pick request.");
+    }
+  }
+
+  /**
+   * Keep the SKUs where a traversal table puts them, such as the slotting.csv a run writes, rather
+   * than filling the racks in order. Everything else is generated as before, so the same seed
+   * gives the same day on the new layout.
+   *
+   * @param file the traversal table, or <code>null</code> to fill the racks in order.
+   * @throws IOException when the file cannot be read.
+   */
+  protected void setTraversal(Path file) throws IOException {
+    if (file == null) {
+      traversalTable = null;
+      return;
+    }
+    traversalTable = new ArrayList<>();
+    for (String line : Files.readAllLines(file)) {
+      if (!line.isEmpty()) {
+        traversalTable.add(line.split(","));
+      }
+    }
+  }
+
+  /**
+   * Return the location of a pick face, filling each rack level by level, each aisle rack by rack
+   * and each zone aisle by aisle.
+   *
+   * @param index index of the pick face.
+   * @return the zone, aisle, rack and level of the pick face.
+   */
+  protected String[] location(int index) {
+    return new String[] {String.valueOf((char) ('A' + index / (levels * racks * aisles))),
+        String.valueOf(index / (levels * racks) % aisles), String.valueOf(index / levels % racks),
+        String.valueOf(index % levels)};
+  }
+
+  /**
+   * Return the name of a model.
+   *
+   * @param model index of the model.
+   * @return the model name.
+   */
+  protected static String model(int model) {
+    return "M" + model;
+  }
+
+  /**
+   * Return the name of a colour.
+   *
+   * @param colour index of the colour.
+   * @return the colour name.
+   */
+  protected static String colour(int colour) {
+    return (colour < COLOURS.length) ? COLOURS[colour] : "Colour" + colour;
+  }
+
+  /**
+   * Write the layout and a simulation into a directory, replacing any files there.
+   *
+   * @param directory the directory to write in.
+   * @param name the file name of the simulation.
+   * @throws IOException when a file cannot be written.
+   */
+  protected void generate(Path directory, String name) throws IOException {
+    int faces = 2 * models * colours;
+    if (faces > zones * aisles * racks * levels) {
+      throw new IllegalArgumentException(faces + " pick faces are needed, but the layout has "
+          + zones * aisles * racks * levels + ".");
+    }
+    random = new Random(seed);
+    locations = new String[faces];
+    positions = new int[faces];
+    stock = new int[faces];
+    queued = new boolean[faces];
+    reserved = new int[faces];
+    held = new ArrayDeque<>();
+    toReplenish = new ArrayDeque<>();
+    released = new ArrayDeque<>();
+    marshalQueue = new ArrayDeque<>();
+    loadZone = new HashMap<>();
+    nextLoad = 0;
+    ordersLeft = orderCount;
+    purgatory = new int[2 * clusteringWindow];
+    purgatorySize = 0;
+    lines = 0;
+    requests = 0;
+    wrongPicks = 0;
+    rescans = 0;
+    shortPicks = 0;
+    repickedItems = 0;
+    gaps = new HashMap<>();
+    replenishments = 0;
+    heldRequests = 0;
+    stockOutWaits = 0;
+    loadZoneWait = 0;
+    dispatches = new ArrayList<>();
+    writeLayout(directory);
+    try (BufferedWriter writer = Files.newBufferedWriter(directory.resolve(name))) {
+      simulation = writer;
+      emit(String.format(Locale.ROOT, "Generated workload - %d orders arriving %s on %d pick "
+          + "faces, %d Pickers, %d Sequencers, %d Loaders and %d Replenishers, wrong picks %.3f, "
+          + "short picks %.3f, rescans %.3f, empty stock %.3f, seed %d.", orderCount,
+          arrival.toString().toLowerCase(Locale.ROOT), faces, pickers, sequencers, loaders,
+          replenishers, wrongPickRate, shortPickRate, rescanRate, emptyStockRate, seed));
+      runDay();
+    } finally {
+      simulation = null;
+    }
+    finalStock = new TreeMap<>();
+    for (int face = 0; face < faces; face++) {
+      if (stock[face] != FULL) {
+        finalStock.put(locations[face], stock[face]);
+      }
+    }
+  }
+
+  /**
+   * Write traversal_table.csv, translation.csv and initial.csv, and set the initial stock.
+   *
+   * @param directory the directory to write in.
+   * @throws IOException when a file cannot be written.
+   */
+  private void writeLayout(Path directory) throws IOException {
+    try (BufferedWriter traversal =
+        Files.newBufferedWriter(directory.resolve("traversal_table.csv"));
+        BufferedWriter translation = Files.newBufferedWriter(directory.resolve("translation.csv"));
+        BufferedWriter initial = Files.newBufferedWriter(directory.resolve("initial.csv"))) {
+      translation.write("Colour,Model,SKU (front),SKU (back)");
+      translation.newLine();
+      initial.write("Zone,Aisle,Rack,Level,Quantity");
+      initial.newLine();
+      for (String row : route()) {
+        traversal.write(row);
+        traversal.newLine();
+      }
+      for (int face = 0; face < locations.length; face++) {
+        String place = locations[face];
+        locations[face] = place.replace(",", "");
+        stock[face] = FULL;
+        if (random.nextDouble() < emptyStockRate) {
+          stock[face] = 1 + random.nextInt(5);
+          initial.write(place + "," + stock[face]);
+          initial.newLine();
+        }
+      }
+      for (int colour = 0; colour < colours; colour++) {
+        for (int model = 0; model < models; model++) {
+          int front = 2 * (colour * models + model) + 1;
+          translation.write(colour(colour) + "," + model(model) + "," + front + "," + (front + 1));
+          translation.newLine();
+        }
+      }
+    }
+  }
+
+  /**
+   * Place every pick face, leaving the zone, aisle, rack and level of each in
+   * <code>locations</code> separated by commas.
+   *
+   * @return the rows of traversal_table.csv, in route order.
+   */
+  private ArrayList<String> route() {
+    ArrayList<String> rows = new ArrayList<>();
+    if (traversalTable == null) {
+      for (int face = 0; face < locations.length; face++) {
+        locations[face] = String.join(",", location(face));
+        rows.add(locations[face] + "," + (face + 1));
+        positions[face] = rows.size();
+      }
+      return rows;
+    }
+    for (String[] row : traversalTable) {
+      int face = (row.length == 5) ? Integer.parseInt(row[4]) - 1 : -1;
+      if (face < 0 || face >= locations.length || locations[face] != null) {
+        throw new IllegalArgumentException("The traversal table must place SKUs 1 to "
+            + locations.length + " once each.");
+      }
+      locations[face] = String.join(",", Arrays.copyOf(row, 4));
+      rows.add(String.join(",", row));
+      positions[face] = rows.size();
+    }
+    if (rows.size() != locations.length) {
+      throw new IllegalArgumentException("The traversal table must place SKUs 1 to "
+          + locations.length + " once each.");
+    }
+    return rows;
+  }
+
+  /**
+   * Run the modelled day, writing one line for every order and instruction. Workers that can
+   * make progress are chosen at random, so their instructions interleave as on the floor.
+   *
+   * @throws IOException when the simulation cannot be written.
+   */
+  private void runDay() throws IOException {
+    ArrayList<Crew> crew = new ArrayList<>();
+    addCrew(crew, "Picker", "P", pickers);
+    addCrew(crew, "Sequencer", "S", sequencers);
+    addCrew(crew, "Loader", "L", loaders);
+    addCrew(crew, "Replenisher", "R", replenishers);
+    for (Crew member : crew) {
+      emit(member.prefix + "ready");
+    }
+    if (arrival == Arrival.OVERNIGHT) {
+      receiveOrders(ordersLeft);
+    }
+    ArrayList<Crew> able = new ArrayList<>();
+    while (true) {
+      able.clear();
+      for (Crew member : crew) {
+        if (canAct(member)) {
+          able.add(member);
+        } else if (member.request != null) {
+          stockOutWaits++;
+        }
+      }
+      boolean faxWaiting = ordersLeft > 0
+          && ((arrival == Arrival.STEADY && released.size() < pickers)
+              || (arrival == Arrival.BURSTY && released.isEmpty()));
+      if (able.isEmpty() && !faxWaiting) {
+        break;
+      }
+      int choice = random.nextInt(able.size() + (faxWaiting ? 1 : 0));
+      if (choice == able.size()) {
+        receiveOrders((arrival == Arrival.STEADY) ? 1 : 4 * (1 + random.nextInt(16)));
+      } else {
+        act(able.get(choice));
+      }
+    }
+    if (nextLoad != requests) {
+      throw new IllegalStateException("The generated day stalled after loading " + nextLoad
+          + " of " + requests + " pick requests.");
+    }
+  }
+
+  /**
+   * Add workers of one kind to the crew.
+   *
+   * @param crew the crew.
+   * @param role the kind of <code>Worker</code>.
+   * @param initial first letter of their names.
+   * @param count number of workers to add.
+   */
+  private void addCrew(ArrayList<Crew> crew, String role, String initial, int count) {
+    for (int i = 1; i <= count; i++) {
+      crew.add(new Crew(role, role + " " + initial + i + " "));
+    }
+  }
+
+  /**
+   * Write orders arriving by fax, forming a <code>PickRequest</code> from every four, or grouping
+   * each window of orders as <code>OrderClustering</code> does. Once the last order has arrived,
+   * orders still held to be clustered are flushed, four at a time in the order they arrived.
+   *
+   * @param count the number of orders to receive, at most those left.
+   * @throws IOException when the simulation cannot be written.
+   */
+  private void receiveOrders(int count) throws IOException {
+    for (int i = Math.min(count, ordersLeft); i > 0; i--) {
+      int colour = random.nextInt(colours);
+      int model = random.nextInt(models);
+      emit("Order " + model(model) + " " + colour(colour));
+      int front = 2 * (colour * models + model) + 1;
+      purgatory[purgatorySize++] = front;
+      purgatory[purgatorySize++] = front + 1;
+      ordersLeft--;
+      if (purgatorySize == purgatory.length) {
+        release(group());
+      }
+    }
+    if (ordersLeft == 0 && purgatorySize > 0 && clusteringWindow > OrderClustering.ORDERS) {
+      emit("Flush");
+      int[] arrived = new int[purgatorySize / 2];
+      for (int order = 0; order < arrived.length; order++) {
+        arrived[order] = order;
+      }
+      release(arrived);
+    }
+  }
+
+  /**
+   * Form the orders in purgatory into <code>PickRequest</code> four at a time and empty it.
+   *
+   * @param grouped the index of each order in purgatory, grouped four by four.
+   */
+  private void release(int[] grouped) {
+    for (int start = 0; start < grouped.length; start += OrderClustering.ORDERS) {
+      int[] request = new int[9];
+      request[0] = requests++;
+      for (int order = 0; order < OrderClustering.ORDERS; order++) {
+        request[1 + 2 * order] = purgatory[2 * grouped[start + order]];
+        request[2 + 2 * order] = purgatory[2 * grouped[start + order] + 1];
+      }
+      if (!stockReservation || reserve(request)) {
+        released.add(request);
+      } else {
+        held.add(request);
+        heldRequests++;
+      }
+    }
+    purgatorySize = 0;
+  }
+
+  /**
+   * Return the orders in purgatory in the order they are formed into <code>PickRequest</code>.
+   *
+   * @return the index of each order, grouped four by four.
+   */
+  private int[] group() {
+    if (clusteringWindow == OrderClustering.ORDERS) {
+      return new int[] {0, 1, 2, 3};
+    }
+    List<List<String>> orders = new ArrayList<>();
+    for (int order = 0; order < clusteringWindow; order++) {
+      orders.add(Arrays.asList(String.valueOf(purgatory[2 * order]),
+          String.valueOf(purgatory[2 * order + 1])));
+    }
+    return OrderClustering.group(orders, sku -> positions[Integer.parseInt(sku) - 1]);
+  }
+
+  /**
+   * Reserve every item of a new <code>PickRequest</code>, or none of them, queueing pick faces
+   * without enough unreserved stock for replenishment, as <code>StockReservations</code> does.
+   *
+   * @param request the <code>PickRequest</code> ID followed by its eight SKUs.
+   * @return whether the items were reserved.
+   */
+  private boolean reserve(int[] request) {
+    LinkedHashMap<Integer, Integer> needed = new LinkedHashMap<>();
+    for (int item : pickOrder(request)) {
+      needed.merge(request[1 + item] - 1, 1, Integer::sum);
+    }
+    boolean enough = true;
+    for (Map.Entry<Integer, Integer> need : needed.entrySet()) {
+      int face = need.getKey();
+      if (stock[face] - reserved[face] < need.getValue()) {
+        if (!queued[face]) {
+          queued[face] = true;
+          toReplenish.add(face);
+        }
+        enough = false;
+      }
+    }
+    if (enough) {
+      for (Map.Entry<Integer, Integer> need : needed.entrySet()) {
+        reserved[need.getKey()] += need.getValue();
+      }
+    }
+    return enough;
+  }
+
+  /** Release every held <code>PickRequest</code> whose items can now be reserved, in order. */
+  private void releaseHeld() {
+    for (Iterator<int[]> waiting = held.iterator(); waiting.hasNext();) {
+      int[] request = waiting.next();
+      if (reserve(request)) {
+        waiting.remove();
+        released.add(request);
+      }
+    }
+  }
+
+  /**
+   * Return <code>true</code> if a worker can write its next instruction without an error.
+   *
+   * @param member the worker.
+   * @return whether the worker can act.
+   */
+  private boolean canAct(Crew member) {
+    if (member.request == null && member.face < 0) {
+      switch (member.role) {
+        case "Picker":
+          return !released.isEmpty();
+        case "Sequencer":
+          return !marshalQueue.isEmpty();
+        case "Loader":
+          return loadZone.containsKey(nextLoad);
+        default:
+          return !toReplenish.isEmpty();
+      }
+    }
+    if (member.role.equals("Picker") && member.step < member.pickOrder.length) {
+      return stock[member.request[1 + member.pickOrder[member.step]] - 1] > 0;
+    }
+    return true;
+  }
+
+  /**
+   * Write the next instruction of a worker and update the modelled warehouse.
+   *
+   * @param member the worker.
+   * @throws IOException when the simulation cannot be written.
+   */
+  private void act(Crew member) throws IOException {
+    switch (member.role) {
+      case "Picker":
+        pickerActs(member);
+        break;
+      case "Sequencer":
+        scannerActs(member, "get new unsorted pallet", "sequence", "move pallets to staging");
+        break;
+      case "Loader":
+        scannerActs(member, "get pallets from staging", "check", "load pallets");
+        break;
+      default:
+        if (member.face < 0) {
+          emit(member.prefix + "get replenishRequest");
+          member.face = toReplenish.removeFirst();
+          queued[member.face] = false;
+        } else {
+          emit(member.prefix + "replenish " + locations[member.face]);
+          stock[member.face] = (stock[member.face] <= 5) ? stock[member.face] + 25 : FULL;
+          replenishments++;
+          member.face = -1;
+          if (stockReservation) {
+            releaseHeld();
+          }
+        }
+    }
+  }
+
+  /**
+   * Write the next instruction of a <code>Picker</code>: take a <code>PickRequest</code>, pick
+   * its items in order, possibly picking a wrong item first, then marshal, possibly leaving the
+   * last item behind. A <code>PickRequest</code> sent back only has its missing item picked.
+   *
+   * @param member the <code>Picker</code>.
+   * @throws IOException when the simulation cannot be written.
+   */
+  private void pickerActs(Crew member) throws IOException {
+    if (member.request == null) {
+      emit(member.prefix + "get new pick request");
+      member.request = released.removeFirst();
+      Integer gap = gaps.get(member.request[0]);
+      member.pickOrder = (gap == null) ? pickOrder(member.request) : new int[] {gap};
+      member.step = 0;
+      member.strayed = false;
+    } else if (member.step == member.pickOrder.length) {
+      emit(member.prefix + "marshal");
+      if (member.pickOrder.length < 8) {
+        gaps.remove(member.request[0]);
+      }
+      marshalQueue.add(member.request);
+      member.request = null;
+    } else if (member.step == 7 && !member.strayed && random.nextDouble() < shortPickRate) {
+      emit(member.prefix + "marshal");
+      int sku = member.request[1 + member.pickOrder[7]];
+      int gap = 7;
+      while (member.request[1 + gap] != sku) {
+        gap--;
+      }
+      gaps.put(member.request[0], gap);
+      shortPicks++;
+      marshalQueue.add(member.request);
+      member.request = null;
+    } else {
+      int sku = member.request[1 + member.pickOrder[member.step]];
+      if (!member.strayed && random.nextDouble() < wrongPickRate) {
+        member.strayed = true;
+        int wrong = random.nextInt(stock.length) + 1;
+        if (wrong != sku && stock[wrong - 1] > 0) {
+          emit(member.prefix + "pick " + wrong);
+          take(wrong - 1);
+          stock[wrong - 1]++;
+          wrongPicks++;
+          return;
+        }
+      }
+      emit(member.prefix + "pick " + sku);
+      take(sku - 1);
+      if (stockReservation) {
+        reserved[sku - 1]--;
+      }
+      member.step++;
+      member.strayed = false;
+    }
+  }
+
+  /**
+   * Write the next instruction of a <code>Sequencer</code> or <code>Loader</code>: take a
+   * <code>PickRequest</code>, scan its eight items in sequence, possibly rescanning part way, then
+   * pass it on. A <code>Sequencer</code> scanning a missing item sends the
+   * <code>PickRequest</code> back to the front of the pickers' queue.
+   *
+   * @param member the <code>Sequencer</code> or <code>Loader</code>.
+   * @param receive the instruction to take a <code>PickRequest</code>.
+   * @param scan the instruction to scan an item.
+   * @param push the instruction to pass the <code>PickRequest</code> on.
+   * @throws IOException when the simulation cannot be written.
+   */
+  private void scannerActs(Crew member, String receive, String scan, String push)
+      throws IOException {
+    boolean loader = member.role.equals("Loader");
+    if (member.request == null) {
+      emit(member.prefix + receive);
+      if (loader) {
+        member.request = loadZone.remove(nextLoad);
+      } else if (deadlineScheduling) {
+        member.request = soonestMarshaled();
+      } else {
+        member.request = marshalQueue.removeFirst();
+      }
+      member.step = 0;
+      member.rescanAt = (random.nextDouble() < rescanRate) ? 1 + random.nextInt(7) : -1;
+    } else if (member.step == member.rescanAt) {
+      emit(member.prefix + "rescan");
+      member.rescanAt = -1;
+      member.step = 0;
+      rescans++;
+    } else if (member.step < 8) {
+      emit(member.prefix + scan + " " + member.request[1 + member.step]);
+      Integer gap = gaps.get(member.request[0]);
+      if (!loader && gap != null && gap == member.step) {
+        released.addFirst(member.request);
+        repickedItems++;
+        member.request = null;
+        if (stockReservation) {
+          releaseHeld();
+        }
+      } else {
+        member.step++;
+      }
+    } else {
+      emit(member.prefix + push);
+      if (loader) {
+        nextLoad++;
+        if (nextLoad % TRUCK_LOAD == 0) {
+          dispatches.add(lines);
+        }
+      } else {
+        loadZone.put(member.request[0], member.request);
+      }
+      member.request = null;
+    }
+  }
+
+  /**
+   * Remove the <code>PickRequest</code> in the marshaling area with the lowest ID, which a
+   * <code>Loader</code> needs soonest.
+   *
+   * @return the <code>PickRequest</code> ID followed by its SKUs.
+   */
+  private int[] soonestMarshaled() {
+    int[] soonest = marshalQueue.peekFirst();
+    for (int[] request : marshalQueue) {
+      if (request[0] < soonest[0]) {
+        soonest = request;
+      }
+    }
+    marshalQueue.removeFirstOccurrence(soonest);
+    return soonest;
+  }
+
+  /**
+   * Take one item from a pick face, queueing a replenish request when it runs low, as
+   * <code>WarehouseManager.pick</code> does.
+   *
+   * @param face index of the pick face.
+   */
+  private void take(int face) {
+    stock[face]--;
+    if (stock[face] <= 5 && !queued[face]) {
+      queued[face] = true;
+      toReplenish.add(face);
+    }
+  }
+
+  /**
+   * Return the order in which the items of a <code>PickRequest</code> are picked:
+   * <code>WarehousePicking</code> sorts SKUs as text.
+   *
+   * @param request the <code>PickRequest</code> ID followed by its eight SKUs.
+   * @return indexes into the SKUs of the request, in picking order.
+   */
+  private static int[] pickOrder(int[] request) {
+    Integer[] order = {0, 1, 2, 3, 4, 5, 6, 7};
+    Arrays.sort(order, (first, second) -> String.valueOf(request[1 + first])
+        .compareTo(String.valueOf(request[1 + second])));
+    int[] pickOrder = new int[8];
+    for (int i = 0; i < 8; i++) {
+      pickOrder[i] = order[i];
+    }
+    return pickOrder;
+  }
+
+  /**
+   * Write one line of the simulation.
+   *
+   * @param line the line.
+   * @throws IOException when the simulation cannot be written.
+   */
+  private void emit(String line) throws IOException {
+    simulation.write(line);
+    simulation.newLine();
+    lines++;
+    loadZoneWait += loadZone.size();
+  }
+
+  /**
+   * Return the number of lines in the last generated simulation, including its description.
+   *
+   * @return <code>long</code> number of lines.
+   */
+  protected long getLines() {
+    return lines;
+  }
+
+  /**
+   * Return the number of <code>PickRequest</code> formed, all of which are loaded by the end of
+   * the simulation.
+   *
+   * @return number of <code>PickRequest</code>.
+   */
+  protected int getRequests() {
+    return requests;
+  }
+
+  /**
+   * Return the number of wrong picks, each of which logs a warning when replayed.
+   *
+   * @return number of wrong picks.
+   */
+  protected int getWrongPicks() {
+    return wrongPicks;
+  }
+
+  /**
+   * Return the number of rescans by sequencers and loaders.
+   *
+   * @return number of rescans.
+   */
+  protected int getRescans() {
+    return rescans;
+  }
+
+  /**
+   * Return the number of pallets marshaled without their last item, each of which logs a warning
+   * when its sequencer finds the item missing.
+   *
+   * @return number of short picks.
+   */
+  protected int getShortPicks() {
+    return shortPicks;
+  }
+
+  /**
+   * Return the number of items picked again after a sequencer found them missing.
+   *
+   * @return number of items re-picked.
+   */
+  protected int getRepickedItems() {
+    return repickedItems;
+  }
+
+  /**
+   * Return the number of pick faces replenished.
+   *
+   * @return number of replenishments.
+   */
+  protected int getReplenishments() {
+    return replenishments;
+  }
+
+  /**
+   * Return the number of <code>PickRequest</code> held for want of stock in the last simulation.
+   *
+   * @return <code>int</code> number of requests held.
+   */
+  protected int getHeldRequests() {
+    return heldRequests;
+  }
+
+  /**
+   * Return the number of turns pickers spent waiting at an empty pick face in the last simulation,
+   * counting each waiting picker once every time any worker acts.
+   *
+   * @return <code>long</code> number of turns.
+   */
+  protected long getStockOutWaits() {
+    return stockOutWaits;
+  }
+
+  /**
+   * Return how long the average <code>PickRequest</code> waited in the load zone, counted in
+   * lines of the simulation.
+   *
+   * @return mean lines waited, or 0 if nothing was loaded.
+   */
+  protected double getMeanLoadZoneWait() {
+    return (requests == 0) ? 0 : (double) loadZoneWait / requests;
+  }
+
+  /**
+   * Return the line of the simulation at which each full truck was dispatched.
+   *
+   * @return lines of the dispatches, in order.
+   */
+  protected ArrayList<Long> getDispatches() {
+    return dispatches;
+  }
+
+  /**
+   * Return the stock expected at the end of the simulation, for every location whose quantity is
+   * not 30, as in final.csv.
+   *
+   * @return quantities by location.
+   */
+  protected TreeMap<String, Integer> getFinalStock() {
+    return finalStock;
+  }
+
+  /** A modelled <code>Worker</code> and the task in hand. */
+  private static final class Crew {
+
+    /** The kind of <code>Worker</code>. */
+    final String role;
+
+    /** Start of each instruction line: the kind and the name of the worker. */
+    final String prefix;
+
+    /** The <code>PickRequest</code> ID followed by its SKUs, or <code>null</code> if idle. */
+    int[] request;
+
+    /** The order of picking, as indexes into the SKUs of <code>request</code>. */
+    int[] pickOrder;
+
+    /** Number of items picked or scanned so far. */
+    int step;
+
+    /** Step at which to rescan, or -1. */
+    int rescanAt = -1;
+
+    /** Whether a wrong pick was already considered for this step. */
+    boolean strayed;
+
+    /** Pick face held by a replenisher, or -1. */
+    int face = -1;
+
+    /**
+     * Create an idle worker.
+     *
+     * @param role the kind of <code>Worker</code>.
+     * @param prefix the kind and name of the worker, followed by a space.
+     */
+    Crew(String role, String prefix) {
+      this.role = role;
+      this.prefix = prefix;
+    }
+  }
+
+  /**
+   * Generate a workload from the command line.
+   *
+   * @param args the directory to write in, followed by any of <code>--layout
+   *        zones,aisles,racks,levels</code>, <code>--catalogue models,colours</code>,
+   *        <code>--orders count</code>, <code>--arrival overnight|steady|bursty</code>,
+   *        <code>--workers pickers,sequencers,loaders,replenishers</code>, <code>--errors
+   *        wrongPick,rescan,emptyStock[,shortPick]</code>, <code>--scheduling fifo|deadline</code>,
+   *        <code>--reservation on|off</code>, <code>--clustering window</code>,
+   *        <code>--traversal file</code>, <code>--seed n</code> and <code>--name file</code>.
+   * @throws IOException when a file cannot be written.
+   */
+  public static void main(String[] args) throws IOException {
+    if (args.length == 0 || args.length % 2 == 0) {
+      System.err.println("Usage: WorkloadGenerator <directory> [--layout z,a,r,l]"
+          + " [--catalogue models,colours] [--orders n] [--arrival overnight|steady|bursty]"
+          + " [--workers p,s,l,r] [--errors wrongPick,rescan,emptyStock[,shortPick]]"
+          + " [--scheduling fifo|deadline] [--reservation on|off] [--clustering orders]"
+          + " [--traversal slotting.csv]"
+          + " [--seed n] [--name sim.txt]");
+      System.exit(1);
+    }
+    WorkloadGenerator generator = new WorkloadGenerator();
+    String name = "sim_generated.txt";
+    for (int i = 1; i < args.length; i += 2) {
+      String[] values = args[i + 1].split(",");
+      if (args[i].equals("--layout")) {
+        generator.setLayout(Integer.parseInt(values[0]), Integer.parseInt(values[1]),
+            Integer.parseInt(values[2]), Integer.parseInt(values[3]));
+      } else if (args[i].equals("--catalogue")) {
+        generator.setCatalogue(Integer.parseInt(values[0]), Integer.parseInt(values[1]));
+      } else if (args[i].equals("--orders")) {
+        generator.setOrders(Integer.parseInt(values[0]), generator.arrival);
+      } else if (args[i].equals("--arrival")) {
+        generator.setOrders(generator.orderCount,
+            Arrival.valueOf(values[0].toUpperCase(Locale.ROOT)));
+      } else if (args[i].equals("--workers")) {
+        generator.setWorkers(Integer.parseInt(values[0]), Integer.parseInt(values[1]),
+            Integer.parseInt(values[2]), Integer.parseInt(values[3]));
+      } else if (args[i].equals("--errors")) {
+        generator.setErrorRates(Double.parseDouble(values[0]), Double.parseDouble(values[1]),
+            Double.parseDouble(values[2]));
+        if (values.length > 3) {
+          generator.setShortPickRate(Double.parseDouble(values[3]));
+        }
+      } else if (args[i].equals("--scheduling")) {
+        generator.setDeadlineScheduling(values[0].equals("deadline"));
+      } else if (args[i].equals("--reservation")) {
+        generator.setStockReservation(values[0].equals("on"));
+      } else if (args[i].equals("--clustering")) {
+        generator.setOrderClustering(Integer.parseInt(values[0]));
+      } else if (args[i].equals("--traversal")) {
+        generator.setTraversal(Paths.get(args[i + 1]));
+      } else if (args[i].equals("--seed")) {
+        generator.setSeed(Long.parseLong(values[0]));
+      } else if (args[i].equals("--name")) {
+        name = args[i + 1];
+      } else {
+        System.err.println("Unknown option " + args[i] + ".");
+        System.exit(1);
+      }
+    }
+    generator.generate(Paths.get(args[0]), name);
+    System.out.println("Wrote " + name + ": " + generator.getLines() + " lines, "
+        + generator.getRequests() + " pick requests, " + generator.getWrongPicks()
+        + " wrong picks, " + generator.getShortPicks() + " short picks, "
+        + generator.getRescans() + " rescans, "
+        + generator.getReplenishments() + " replenishments, " + generator.getHeldRequests()
+        + " pick requests held, " + generator.getStockOutWaits() + " turns waiting at empty faces.");
+  }
+}